@@ -1,7 +1,61 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
 import java.util.Scanner;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
 
 public class ComputerSimulation {
 
@@ -9,6 +63,9 @@ public class ComputerSimulation {
     static abstract class ComputerSimulationBase {
         protected Map<String, Integer> registers;
         protected int[] memory;
+        // Memoria fuera del heap (ver WordMemory): si la máquina la usa, "memory" es null y los
+        // accesos pasan por ella. La detección de bucles y la caché de resultados necesitan "memory".
+        protected WordMemory wordMemory;
         protected Map<String, String> controlUnits;
         protected int currentStep;
         protected boolean isRunning;
@@ -16,6 +73,57 @@ public class ComputerSimulation {
         protected Map<String, String> instructionSet;
         protected Scanner scanner;
 
+        // Ejecución continua
+        protected boolean halted;
+        protected long instructionCount;
+        protected long cycleCount;
+
+        // Jerarquía de memoria: caché opcional entre MAR/MBR y la memoria principal
+        protected Cache cache;
+        protected int memoryLatency = 1;
+
+        // Costo en ciclos de cada transferencia de LOADIO/STORIO por el bus de E/S
+        protected int ioCycles = 1;
+
+        // Memoria virtual opcional entre MAR y la memoria física: durante una ejecución continua el
+        // contenido vive en sus marcos y en el archivo de intercambio, y "memory" se actualiza al terminar
+        protected VirtualMemory virtualMemory;
+
+        // Caché coherente de una CPU del multiprocesador (ver MultiprocessorSimulation): los accesos
+        // se anotan y se cobran al final de cada ronda
+        protected MesiCache coherentCache;
+
+        // Costo en ciclos de las operaciones de la ALU
+        protected int aluCycles = 1;
+        protected int mulDivCycles = 10;
+
+        // Predicción de saltos condicionales: cada fallo cuesta branchPenalty ciclos
+        protected BranchPredictor branchPredictor;
+        protected int branchPenalty = 2;
+
+        // Detección de bucles infinitos en la ejecución continua (opcional)
+        protected LoopDetector loopDetector;
+        protected boolean loopDetected;
+
+        // Traza de ejecución (opcional): una línea por instrucción
+        protected ExecutionTrace trace;
+
+        // Guion del caso de prueba compilado a micro-operaciones (uno por cada entrada de steps)
+        protected MicroOp[] microSteps = new MicroOp[0];
+
+        // Vista de consola: displayState() escribe en display, que durante un fotograma es el
+        // búfer del renderizador por diferencias
+        protected final TerminalRenderer renderer = new TerminalRenderer(System.out);
+        protected PrintStream display = System.out;
+
+        // Ejecución continua en la consola: ritmo de los pasos y de los fotogramas
+        private static final long RUN_STEP_MILLIS = 25;
+        private static final long FRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+        // Latches de la ALU entre el cálculo y el almacenamiento del resultado
+        protected long aluResult;
+        protected long aluRemainder;
+
         public ComputerSimulationBase() {
             registers = new HashMap<>();
             controlUnits = new HashMap<>();
@@ -25,7 +133,6 @@ public class ComputerSimulation {
         }
 
         public abstract void initialize();
-        public abstract void executeStep();
         public abstract void displayState();
         public abstract String[] getTestCases();
 
@@ -33,25 +140,36 @@ public class ComputerSimulation {
             initialize();
             loadTestCase(testCaseIndex);
             isRunning = true;
+            renderer.invalidate();
 
             try {
+                boolean continuous = false;
+                long nextFrame = 0;
                 while (isRunning && currentStep < steps.length) {
-                    System.out.print("\033[H\033[2J"); // Limpiar consola
-                    System.out.flush();
-
-                    displayState();
+                    if (!continuous) {
+                        renderFrame("Presione ENTER para continuar al siguiente paso",
+                                "Presione 'c' y ENTER para ejecutar de forma continua",
+                                "Presione 'q' y ENTER para salir de la simulación");
 
-                    // Mostrar instrucciones para el usuario
-                    System.out.println("===============================================");
-                    System.out.println("Presione ENTER para continuar al siguiente paso");
-                    System.out.println("Presione 'q' y ENTER para salir de la simulación");
-                    System.out.println("===============================================");
-
-                    // Esperar a que el usuario presione una tecla
-                    String input = scanner.nextLine();
-                    if (input.equalsIgnoreCase("q")) {
-                        System.out.println("Simulación interrumpida por el usuario.");
-                        break;
+                        // Esperar a que el usuario presione una tecla
+                        String input = scanner.nextLine();
+                        if (input.equalsIgnoreCase("q")) {
+                            System.out.println("Simulación interrumpida por el usuario.");
+                            break;
+                        }
+                        continuous = input.equalsIgnoreCase("c");
+                    } else {
+                        // En ejecución continua la vista se redibuja a ritmo fijo, no en cada paso
+                        if (System.nanoTime() >= nextFrame) {
+                            renderFrame("Ejecución continua: presione ENTER para pausar");
+                            nextFrame = System.nanoTime() + FRAME_NANOS;
+                        }
+                        if (System.in.available() > 0) {
+                            scanner.nextLine();
+                            continuous = false;
+                            continue;
+                        }
+                        TimeUnit.MILLISECONDS.sleep(RUN_STEP_MILLIS);
                     }
 
                     executeStep();
@@ -59,8 +177,7 @@ public class ComputerSimulation {
                 }
 
                 if (currentStep >= steps.length) {
-                    System.out.println("Simulación completada.");
-                    System.out.println("Presione ENTER para continuar...");
+                    renderFrame("Simulación completada.", "Presione ENTER para continuar...");
                     scanner.nextLine();
                 }
             } catch (Exception e) {
@@ -71,488 +188,4822 @@ public class ComputerSimulation {
             }
         }
 
-        protected abstract void loadTestCase(int testCaseIndex);
-
-        public void closeScanner() {
-            if (scanner != null) {
-                scanner.close();
+        // Componer un fotograma con el estado y las instrucciones para el usuario, y enviar a
+        // la terminal solo lo que cambió respecto del anterior
+        private void renderFrame(String... footer) {
+            display = renderer.beginFrame();
+            try {
+                displayState();
+                display.println("===============================================");
+                for (String line : footer) {
+                    display.println(line);
+                }
+                display.println("===============================================");
+            } finally {
+                display = System.out;
             }
+            renderer.endFrame();
         }
-    }
 
-    // Simulación de la Máquina Hipotética
-    static class HypotheticalMachineSimulation extends ComputerSimulationBase {
-        public HypotheticalMachineSimulation() {
-            super();
-            instructionSet = new HashMap<>();
-            instructionSet.put("0001", "LOAD");
-            instructionSet.put("0010", "STOR");
-            instructionSet.put("0011", "LOADIO");
-            instructionSet.put("0100", "STORIO");
-            instructionSet.put("0101", "ADD");
-            instructionSet.put("0110", "SUB");
-            instructionSet.put("0111", "JUMP");
-            instructionSet.put("1000", "JNEG");
-            instructionSet.put("1001", "JPOS");
-            instructionSet.put("1010", "JZERO");
-        }
+        protected abstract void loadTestCase(int testCaseIndex);
 
-        @Override
-        public void initialize() {
-            memory = new int[4096];
-            registers.put("PC", 0);
-            registers.put("MAR", 0);
-            registers.put("MBR", 0);
-            registers.put("IR", 0);
-            registers.put("AC", 0);
+        // Ejecutar la micro-operación del paso actual del guion
+        public void executeStep() {
+            if (currentStep >= microSteps.length) {
+                isRunning = false;
+                return;
+            }
+            executeMicroOp(microSteps[currentStep]);
+        }
 
-            controlUnits.put("ALU", "INACTIVA");
-            controlUnits.put("Control", "INACTIVA");
+        // Narración de un paso del guion generada a partir del estado real de la máquina
+        public String describeStep(int step) {
+            if (step >= microSteps.length) {
+                return "Simulación completada";
+            }
+            MicroOp op = microSteps[step];
+            return op.getPhase().getLabel() + " - " + describeMicroOp(op);
         }
 
-        @Override
-        public void loadTestCase(int testCaseIndex) {
-            // Reiniciar memoria y registros
-            for (int i = 0; i < memory.length; i++) {
-                memory[i] = 0;
+        // Compilar una sola vez el guion de un caso de prueba a micro-operaciones tipadas
+        protected static MicroOp[] compileSteps(String[] steps) {
+            MicroOp[] compiled = new MicroOp[steps.length];
+            for (int i = 0; i < steps.length; i++) {
+                compiled[i] = MicroOp.parse(steps[i]);
             }
+            return compiled;
+        }
 
-            registers.put("PC", 0);
-            registers.put("MAR", 0);
-            registers.put("MBR", 0);
-            registers.put("IR", 0);
-            registers.put("AC", 0);
+        // Ejecución continua micro-operación a micro-operación según la tabla de microcódigo.
+        // Es más lenta que runProgram, pero recorre los mismos pasos que el modo paso a paso.
+        public long runMicrocoded(long maxInstructions) {
+            halted = false;
+            beginRun();
 
-            controlUnits.put("ALU", "INACTIVA");
-            controlUnits.put("Control", "INACTIVA");
+            long executed = 0;
+            try {
+                while (!halted && !loopDetected && executed < maxInstructions) {
+                    executeMicroInstruction();
+                    executed++;
+                }
+            } finally {
+                instructionCount += executed;
+                if (virtualMemory != null) {
+                    virtualMemory.detach(memory);
+                }
+                afterRun();
+            }
+            return executed;
+        }
 
-            // Cargar caso de prueba
-            switch (testCaseIndex) {
-                case 1: // Suma Básica (5 + 10)
-                    memory[0x100] = 0x1200; // LOAD M(0x200)
-                    memory[0x101] = 0x5201; // ADD M(0x201)
-                    memory[0x102] = 0x2202; // STOR M(0x202)
-                    memory[0x200] = 5;
-                    memory[0x201] = 10;
-                    memory[0x202] = 0;
-                    registers.put("PC", 0x100);
+        // Captar y ejecutar una instrucción completa: microprograma de captación seguido del
+        // microprograma del código de operación que quedó en IR
+        protected void executeMicroInstruction() {
+            for (MicroOp op : fetchMicrocode()) {
+                executeMicroOp(op);
+            }
+            for (MicroOp op : executeMicrocode(registers.get("IR"))) {
+                executeMicroOp(op);
+            }
+        }
 
-                    steps = new String[] {
-                            "Ciclo de captación - PC contiene la dirección de la instrucción",
-                            "Ciclo de captación - Copiar PC a MAR",
-                            "Ciclo de captación - Leer instrucción de memoria a MBR",
-                            "Ciclo de captación - Incrementar PC",
-                            "Ciclo de captación - Transferir instrucción de MBR a IR",
-                            "Ciclo de ejecución - Decodificar instrucción LOAD M(0x200)",
-                            "Ciclo de ejecución - Extraer dirección del operando (0x200) y colocar en MAR",
-                            "Ciclo de ejecución - Leer dato de memoria a MBR",
-                            "Ciclo de ejecución - Transferir dato de MBR a AC",
-                            "Ciclo de captación - Copiar PC a MAR",
-                            "Ciclo de captación - Leer instrucción de memoria a MBR",
-                            "Ciclo de captación - Incrementar PC",
-                            "Ciclo de captación - Transferir instrucción de MBR a IR",
-                            "Ciclo de ejecución - Decodificar instrucción ADD M(0x201)",
-                            "Ciclo de ejecución - Extraer dirección del operando (0x201) y colocar en MAR",
-                            "Ciclo de ejecución - Leer dato de memoria a MBR",
-                            "Ciclo de ejecución - ALU realizando operación de suma",
-                            "Ciclo de ejecución - Sumar MBR (10) a AC (5) = 15",
-                            "Ciclo de captación - Copiar PC a MAR",
-                            "Ciclo de captación - Leer instrucción de memoria a MBR",
-                            "Ciclo de captación - Incrementar PC",
-                            "Ciclo de captación - Transferir instrucción de MBR a IR",
-                            "Ciclo de ejecución - Decodificar instrucción STOR M(0x202)",
-                            "Ciclo de ejecución - Extraer dirección del operando (0x202) y colocar en MAR",
-                            "Ciclo de ejecución - Copiar AC (15) a MBR",
-                            "Ciclo de ejecución - Escribir MBR (15) en memoria (0x202)"
-                    };
+        // Ejecutar una micro-operación sobre los registros. El despacho es por tipo y los
+        // valores salen del estado real, nunca del texto de la narración.
+        protected void executeMicroOp(MicroOp op) {
+            int mbr = registers.get("MBR");
+            int ac = registers.get("AC");
+            switch (op) {
+                case PC_READY:
                     break;
-
-                case 2: // Resta Básica (20 - 8)
-                    memory[0x110] = 0x1210; // LOAD M(0x210)
-                    memory[0x111] = 0x6211; // SUB M(0x211)
-                    memory[0x112] = 0x2212; // STOR M(0x212)
-                    memory[0x210] = 20;
-                    memory[0x211] = 8;
-                    memory[0x212] = 0;
-                    registers.put("PC", 0x110);
-
-                    steps = new String[] {
-                            "Ciclo de captación - PC contiene la dirección de la instrucción",
-                            "Ciclo de captación - Copiar PC a MAR",
-                            "Ciclo de captación - Leer instrucción de memoria a MBR",
-                            "Ciclo de captación - Incrementar PC",
-                            "Ciclo de captación - Transferir instrucción de MBR a IR",
-                            "Ciclo de ejecución - Decodificar instrucción LOAD M(0x210)",
-                            "Ciclo de ejecución - Extraer dirección del operando (0x210) y colocar en MAR",
-                            "Ciclo de ejecución - Leer dato de memoria a MBR",
-                            "Ciclo de ejecución - Transferir dato de MBR a AC",
-                            "Ciclo de captación - Copiar PC a MAR",
-                            "Ciclo de captación - Leer instrucción de memoria a MBR",
-                            "Ciclo de captación - Incrementar PC",
-                            "Ciclo de captación - Transferir instrucción de MBR a IR",
-                            "Ciclo de ejecución - Decodificar instrucción SUB M(0x211)",
-                            "Ciclo de ejecución - Extraer dirección del operando (0x211) y colocar en MAR",
-                            "Ciclo de ejecución - Leer dato de memoria a MBR",
-                            "Ciclo de ejecución - ALU realizando operación de resta",
-                            "Ciclo de ejecución - Restar MBR (8) de AC (20) = 12",
-                            "Ciclo de captación - Copiar PC a MAR",
-                            "Ciclo de captación - Leer instrucción de memoria a MBR",
-                            "Ciclo de captación - Incrementar PC",
-                            "Ciclo de captación - Transferir instrucción de MBR a IR",
-                            "Ciclo de ejecución - Decodificar instrucción STOR M(0x212)",
-                            "Ciclo de ejecución - Extraer dirección del operando (0x212) y colocar en MAR",
-                            "Ciclo de ejecución - Copiar AC (12) a MBR",
-                            "Ciclo de ejecución - Escribir MBR (12) en memoria (0x212)"
-                    };
+                case PC_TO_MAR:
+                    registers.put("MAR", registers.get("PC"));
                     break;
-
-                case 3: // Suma Triple (4 + 7 + 9)
-                    memory[0x120] = 0x1220; // LOAD M(0x220)
-                    memory[0x121] = 0x5221; // ADD M(0x221)
-                    memory[0x122] = 0x5222; // ADD M(0x222)
-                    memory[0x123] = 0x2223; // STOR M(0x223)
-                    memory[0x220] = 4;
-                    memory[0x221] = 7;
-                    memory[0x222] = 9;
-                    memory[0x223] = 0;
-                    registers.put("PC", 0x120);
-
-                    steps = new String[] {
-                            "Ciclo de captación - Copiar PC a MAR",
-                            "Ciclo de captación - Leer instrucción de memoria a MBR",
-                            "Ciclo de captación - Incrementar PC",
-                            "Ciclo de captación - Transferir instrucción de MBR a IR",
-                            "Ciclo de ejecución - Decodificar instrucción LOAD M(0x220)",
-                            "Ciclo de ejecución - Extraer dirección del operando (0x220) y colocar en MAR",
-                            "Ciclo de ejecución - Leer dato de memoria a MBR",
-                            "Ciclo de ejecución - Transferir dato de MBR a AC",
-                            "Ciclo de captación - Copiar PC a MAR",
-                            "Ciclo de captación - Leer instrucción de memoria a MBR",
-                            "Ciclo de captación - Incrementar PC",
-                            "Ciclo de captación - Transferir instrucción de MBR a IR",
-                            "Ciclo de ejecución - Decodificar instrucción ADD M(0x221)",
-                            "Ciclo de ejecución - Extraer dirección del operando (0x221) y colocar en MAR",
-                            "Ciclo de ejecución - Leer dato de memoria a MBR",
-                            "Ciclo de ejecución - ALU realizando operación de suma",
-                            "Ciclo de ejecución - Sumar MBR (7) a AC (4) = 11",
-                            "Ciclo de captación - Copiar PC a MAR",
-                            "Ciclo de captación - Leer instrucción de memoria a MBR",
-                            "Ciclo de captación - Incrementar PC",
-                            "Ciclo de captación - Transferir instrucción de MBR a IR",
-                            "Ciclo de ejecución - Decodificar instrucción ADD M(0x222)",
-                            "Ciclo de ejecución - Extraer dirección del operando (0x222) y colocar en MAR",
-                            "Ciclo de ejecución - Leer dato de memoria a MBR",
-                            "Ciclo de ejecución - ALU realizando operación de suma",
-                            "Ciclo de ejecución - Sumar MBR (9) a AC (11) = 20",
-                            "Ciclo de captación - Copiar PC a MAR",
-                            "Ciclo de captación - Leer instrucción de memoria a MBR",
-                            "Ciclo de captación - Incrementar PC",
-                            "Ciclo de captación - Transferir instrucción de MBR a IR",
-                            "Ciclo de ejecución - Decodificar instrucción STOR M(0x223)",
-                            "Ciclo de ejecución - Extraer dirección del operando (0x223) y colocar en MAR",
-                            "Ciclo de ejecución - Copiar AC (20) a MBR",
-                            "Ciclo de ejecución - Escribir MBR (20) en memoria (0x223)"
-                    };
+                case READ_INSTRUCTION:
+                case READ_WORD:
+                case READ_DATA:
+                    registers.put("MBR", readMemory(registers.get("MAR")));
                     break;
-
-                default:
-                    System.out.println("Caso de prueba no válido.");
-                    isRunning = false;
+                case INCREMENT_PC:
+                    registers.put("PC", (registers.get("PC") + 1) & addressMask());
+                    break;
+                case MBR_TO_IR:
+                    registers.put("IR", mbr);
+                    break;
+                case MBR_LEFT_TO_IR:
+                    // Cada palabra contiene una sola instrucción de 20 bits
+                    registers.put("IR", mbr & instructionMask());
+                    break;
+                case MBR_RIGHT_TO_IBR:
+                    // No hay instrucción derecha: IBR queda vacío
+                    registers.put("IBR", 0);
+                    break;
+                case DECODE:
+                    controlUnits.put("Control", "DECODIFICANDO");
+                    return;
+                case IR_ADDRESS_TO_MAR:
+                    registers.put("MAR", registers.get("IR") & addressMask());
+                    break;
+                case MBR_TO_AC:
+                    registers.put("AC", mbr);
+                    break;
+                case MBR_NEGATED_TO_AC:
+                    registers.put("AC", wrap(-(long) signed(mbr)));
+                    cycleCount += aluCycles;
+                    break;
+                case MBR_ABS_TO_AC:
+                    registers.put("AC", wrap(Math.abs((long) signed(mbr))));
+                    cycleCount += aluCycles;
+                    break;
+                case MBR_NEGATED_ABS_TO_AC:
+                    registers.put("AC", wrap(-Math.abs((long) signed(mbr))));
+                    cycleCount += aluCycles;
+                    break;
+                case IO_TO_AC:
+                    cycleCount += ioCycles;
+                    registers.put("AC", wrap(ioRead(registers.get("MAR"))));
+                    break;
+                case AC_TO_IO:
+                    cycleCount += ioCycles;
+                    ioWrite(registers.get("MAR"), signed(ac));
+                    break;
+                case ALU_ADD_START:
+                    controlUnits.put("ALU", "SUMANDO");
+                    break;
+                case ALU_SUB_START:
+                    controlUnits.put("ALU", "RESTANDO");
+                    break;
+                case ALU_MUL_START:
+                    controlUnits.put("ALU", "MULTIPLICANDO");
+                    break;
+                case ALU_DIV_START:
+                    controlUnits.put("ALU", "DIVIDIENDO");
+                    break;
+                case ALU_ADD:
+                case ALU_ADD_ABS:
+                case ALU_SUB:
+                case ALU_SUB_ABS:
+                case ALU_LSH:
+                case ALU_RSH:
+                    registers.put("AC", (int) aluOutput(op));
+                    controlUnits.put("ALU", "INACTIVA");
+                    cycleCount += aluCycles;
+                    break;
+                case ALU_MUL:
+                    aluResult = aluOutput(op);
+                    break;
+                case ALU_DIV:
+                    aluResult = aluOutput(op);
+                    aluRemainder = (long) signed(ac) % signed(mbr);
+                    break;
+                case MUL_STORE:
+                    registers.put("AC", (int) aluResult);
+                    registers.put("MQ", (int) (aluResult >> 32));
+                    controlUnits.put("ALU", "INACTIVA");
+                    cycleCount += mulDivCycles;
+                    break;
+                case DIV_STORE:
+                    registers.put("MQ", (int) aluResult);
+                    registers.put("AC", (int) aluRemainder);
+                    controlUnits.put("ALU", "INACTIVA");
+                    cycleCount += mulDivCycles;
+                    break;
+                case AC_TO_MBR:
+                    registers.put("MBR", ac);
                     break;
+                case MQ_TO_MBR:
+                    registers.put("MBR", registers.get("MQ"));
+                    break;
+                case MQ_TO_AC:
+                    registers.put("AC", registers.get("MQ"));
+                    break;
+                case AC_ADDRESS_TO_MBR:
+                    registers.put("MBR", (mbr & ~addressMask()) | (ac & addressMask()));
+                    break;
+                case MBR_TO_MEMORY:
+                    writeMemory(registers.get("MAR"), mbr);
+                    break;
+                case IR_ADDRESS_TO_PC:
+                    backEdge((registers.get("PC") - 1) & addressMask(), registers.get("IR") & addressMask(), ac,
+                            registers.getOrDefault("MQ", 0));
+                    registers.put("PC", registers.get("IR") & addressMask());
+                    break;
+                case JUMP_IF_NEGATIVE:
+                    jumpIf(signed(ac) < 0);
+                    break;
+                case JUMP_IF_POSITIVE:
+                    jumpIf(signed(ac) > 0);
+                    break;
+                case JUMP_IF_ZERO:
+                    jumpIf(ac == 0);
+                    break;
+                case JUMP_IF_NONNEGATIVE:
+                    jumpIf(signed(ac) >= 0);
+                    break;
+                case HALT:
+                    halted = true;
+                    controlUnits.put("Control", "DETENIDA");
+                    return;
             }
+            controlUnits.put("Control", "INACTIVA");
         }
 
-        @Override
-        public void executeStep() {
-            if (currentStep >= steps.length) {
-                isRunning = false;
-                return;
+        private void jumpIf(boolean taken) {
+            int target = registers.get("IR") & addressMask();
+            branchResolved((registers.get("PC") - 1) & addressMask(), target, taken);
+            if (taken) {
+                backEdge((registers.get("PC") - 1) & addressMask(), target, registers.get("AC"),
+                        registers.getOrDefault("MQ", 0));
+                registers.put("PC", target);
             }
+        }
 
-            String step = steps[currentStep];
-
-            // Ejecutar la acción correspondiente al paso actual
-            if (step.contains("Copiar PC a MAR")) {
-                registers.put("MAR", registers.get("PC"));
-            } else if (step.contains("Leer instrucción de memoria a MBR")) {
-                registers.put("MBR", memory[registers.get("MAR")]);
-            } else if (step.contains("Incrementar PC")) {
-                registers.put("PC", registers.get("PC") + 1);
-            } else if (step.contains("Transferir instrucción de MBR a IR")) {
-                registers.put("IR", registers.get("MBR"));
-            } else if (step.contains("Decodificar instrucción")) {
-                controlUnits.put("Control", "DECODIFICANDO");
-            } else if (step.contains("Extraer dirección del operando")) {
-                int address = registers.get("IR") & 0xFFF;
-                registers.put("MAR", address);
-            } else if (step.contains("Leer dato de memoria a MBR")) {
-                registers.put("MBR", memory[registers.get("MAR")]);
-            } else if (step.contains("Transferir dato de MBR a AC")) {
-                registers.put("AC", registers.get("MBR"));
-            } else if (step.contains("ALU realizando operación de suma")) {
-                controlUnits.put("ALU", "SUMANDO");
-            } else if (step.contains("ALU realizando operación de resta")) {
-                controlUnits.put("ALU", "RESTANDO");
-            } else if (step.contains("Sumar MBR")) {
-                // Extraer valores de la descripción del paso
-                int mbrValue = extractValue(step, "MBR");
-                int acValue = extractValue(step, "AC");
-                int result = extractResult(step);
-                registers.put("AC", result);
-                controlUnits.put("ALU", "INACTIVA");
-            } else if (step.contains("Restar MBR")) {
-                // Extraer valores de la descripción del paso
-                int mbrValue = extractValue(step, "MBR");
-                int acValue = extractValue(step, "AC");
-                int result = extractResult(step);
-                registers.put("AC", result);
-                controlUnits.put("ALU", "INACTIVA");
-            } else if (step.contains("Copiar AC")) {
-                int acValue = extractValue(step, "AC");
-                registers.put("MBR", acValue);
-            } else if (step.contains("Escribir MBR")) {
-                int mbrValue = extractValue(step, "MBR");
-                int address = extractAddress(step);
-                memory[address] = mbrValue;
+        // Resultado de la ALU para una micro-operación aritmética con los registros actuales
+        protected long aluOutput(MicroOp op) {
+            long ac = signed(registers.get("AC"));
+            long mbr = signed(registers.get("MBR"));
+            switch (op) {
+                case ALU_ADD:
+                    return wrap(ac + mbr);
+                case ALU_ADD_ABS:
+                    return wrap(ac + Math.abs(mbr));
+                case ALU_SUB:
+                    return wrap(ac - mbr);
+                case ALU_SUB_ABS:
+                    return wrap(ac - Math.abs(mbr));
+                case ALU_LSH:
+                    return wrap(ac << 1);
+                case ALU_RSH:
+                    return wrap(ac >> 1);
+                case ALU_MUL:
+                    return ac * mbr;
+                case ALU_DIV:
+                    if (mbr == 0) {
+                        throw new ArithmeticException("División por cero");
+                    }
+                    return ac / mbr;
+                default:
+                    throw new IllegalArgumentException(op + " no es una operación de la ALU");
             }
+        }
 
-            // Restablecer unidades de control si es necesario
-            if (currentStep < steps.length - 1 && !steps[currentStep + 1].contains("ALU") && !steps[currentStep + 1].contains("Decodificar")) {
-                controlUnits.put("Control", "INACTIVA");
+        // Narración de una micro-operación: su plantilla rellenada con el estado actual. Solo
+        // se usa para mostrarla; la ejecución no depende de este texto.
+        public String describeMicroOp(MicroOp op) {
+            String text = op.getTemplate();
+            if (text.indexOf('{') < 0) {
+                return text;
             }
+            int ir = registers.get("IR");
+            text = text.replace("{INSTR}", disassemble(ir))
+                    .replace("{ADDR}", formatAddress(ir & addressMask()))
+                    .replace("{MAR}", formatAddress(registers.get("MAR")))
+                    .replace("{MBR}", Integer.toString(signed(registers.get("MBR"))))
+                    .replace("{AC}", Integer.toString(signed(registers.get("AC"))))
+                    .replace("{MQ}", Integer.toString(registers.getOrDefault("MQ", 0)));
+            if (text.contains("{RESULT}")) {
+                String result;
+                try {
+                    long value = aluOutput(op);
+                    result = op == MicroOp.ALU_MUL || op == MicroOp.ALU_DIV
+                            ? Long.toString(value) : Integer.toString(signed((int) value));
+                } catch (ArithmeticException e) {
+                    result = "indefinido";
+                }
+                text = text.replace("{RESULT}", result);
+            }
+            return text;
         }
 
-        // Método auxiliar para extraer valores numéricos de las descripciones de pasos
-        private int extractValue(String step, String register) {
-            try {
-                int startIndex = step.indexOf(register) + register.length() + 2;
-                int endIndex = step.indexOf(')', startIndex);
-                String valueStr = step.substring(startIndex, endIndex);
-                return Integer.parseInt(valueStr);
-            } catch (Exception e) {
-                // Si hay un error al extraer el valor, devolver 0
-                return 0;
-            }
+        // Ganchos de la ruta de datos que dependen de cada máquina
+        protected MicroOp[] fetchMicrocode() {
+            throw new UnsupportedOperationException("Esta máquina no tiene tabla de microcódigo");
         }
 
-        // Método auxiliar para extraer el resultado de una operación
-        private int extractResult(String step) {
-            try {
-                int startIndex = step.indexOf('=') + 2;
-                return Integer.parseInt(step.substring(startIndex));
-            } catch (Exception e) {
-                // Si hay un error al extraer el resultado, devolver 0
-                return 0;
-            }
+        protected MicroOp[] executeMicrocode(int instruction) {
+            throw new UnsupportedOperationException("Esta máquina no tiene tabla de microcódigo");
         }
 
-        // Método auxiliar para extraer una dirección de memoria
-        private int extractAddress(String step) {
-            try {
-                int startIndex = step.indexOf('(') + 1;
-                int endIndex = step.indexOf(')', startIndex);
-                String addressStr = step.substring(startIndex, endIndex);
-                if (addressStr.startsWith("0x")) {
-                    return Integer.parseInt(addressStr.substring(2), 16);
-                } else {
-                    return Integer.parseInt(addressStr);
+        // Campo de dirección de una instrucción (y ancho de PC y MAR)
+        protected int addressMask() {
+            return 0xFFF;
+        }
+
+        // Bits de una palabra que forman la instrucción (código de operación y dirección)
+        protected int instructionMask() {
+            return 0xFFFFF;
+        }
+
+        // Ajustar un resultado al ancho de AC
+        protected int wrap(long value) {
+            return (int) value;
+        }
+
+        // Valor con signo de un registro
+        protected int signed(int value) {
+            return value;
+        }
+
+        protected String formatAddress(int address) {
+            return Integer.toString(address);
+        }
+
+        protected String disassemble(int instruction) {
+            return String.format("0x%05X", instruction);
+        }
+
+        protected int ioRead(int port) {
+            throw new IllegalStateException("Esta máquina no tiene bus de E/S");
+        }
+
+        protected void ioWrite(int port, int value) {
+            throw new IllegalStateException("Esta máquina no tiene bus de E/S");
+        }
+
+        // Lecturas de E/S realizadas: forman parte del estado para la detección de bucles
+        protected long ioReadCount() {
+            return 0;
+        }
+
+        // Palabras transferidas por el bus de E/S (lecturas y escrituras), para los límites de ejecución
+        protected long ioTransferCount() {
+            return 0;
+        }
+
+        // Ejecución continua: capta, decodifica y ejecuta las instrucciones reales de la
+        // memoria hasta que la máquina se detiene o se alcanza el límite de instrucciones
+        public long runProgram(long maxInstructions) {
+            RunLimits limits = new RunLimits();
+            limits.setMaxInstructions(maxInstructions);
+            RunResult result = run(limits);
+            if (result.getError() != null) {
+                throw result.getError();
+            }
+            return result.getInstructions();
+        }
+
+        // Ejecución continua con límites de recursos. Las instrucciones se ejecutan en bloques de
+        // limits.getCheckInterval() sin más comprobación que la de detención; los límites de
+        // ciclos, tiempo, E/S y traza se revisan entre bloques, así que pueden excederse como
+        // mucho en un bloque. Los errores de la simulación terminan la ejecución con StopReason.ERROR.
+        public RunResult run(RunLimits limits) {
+            loadRegisterFile();
+            halted = false;
+            beginRun();
+
+            long startNanos = System.nanoTime();
+            long deadline = limits.getMaxMillis() > 0
+                    ? startNanos + TimeUnit.MILLISECONDS.toNanos(limits.getMaxMillis()) : Long.MAX_VALUE;
+            long startCycles = cycleCount;
+            long startIo = ioTransferCount();
+            long startTrace = trace != null ? trace.getBytes() : 0;
+
+            long executed = 0;
+            StopReason reason = null;
+            RuntimeException error = null;
+            try {
+                while (reason == null) {
+                    long blockEnd = executed + Math.min(limits.getCheckInterval(), limits.getMaxInstructions() - executed);
+                    while (!halted && !loopDetected && executed < blockEnd) {
+                        executeInstruction();
+                        executed++;
+                    }
+
+                    if (halted) {
+                        reason = StopReason.HALTED;
+                    } else if (loopDetected) {
+                        reason = StopReason.LOOP;
+                    } else if (executed >= limits.getMaxInstructions()) {
+                        reason = StopReason.INSTRUCTION_LIMIT;
+                    } else if (cycleCount - startCycles >= limits.getMaxCycles()) {
+                        reason = StopReason.CYCLE_LIMIT;
+                    } else if (ioTransferCount() - startIo >= limits.getMaxIoWords()) {
+                        reason = StopReason.IO_LIMIT;
+                    } else if (trace != null && trace.getBytes() - startTrace >= limits.getMaxTraceBytes()) {
+                        reason = StopReason.TRACE_LIMIT;
+                    } else if (System.nanoTime() >= deadline) {
+                        reason = StopReason.TIME_LIMIT;
+                    }
                 }
-            } catch (Exception e) {
-                // Si hay un error al extraer la dirección, devolver 0
-                return 0;
+            } catch (RuntimeException e) {
+                reason = StopReason.ERROR;
+                error = e;
+            } finally {
+                instructionCount += executed;
+                storeRegisterFile();
+                if (virtualMemory != null) {
+                    virtualMemory.detach(memory);
+                }
+                afterRun();
             }
+            return new RunResult(reason, executed, cycleCount - startCycles, System.nanoTime() - startNanos,
+                    ioTransferCount() - startIo, trace != null ? trace.getBytes() - startTrace : 0, error);
         }
 
-        @Override
-        public void displayState() {
-            System.out.println("===============================================");
-            System.out.println("         MÁQUINA HIPOTÉTICA");
-            System.out.println("===============================================");
-            System.out.println("Paso actual: " + (currentStep + 1) + "/" + steps.length);
-            System.out.println("Acción: " + steps[currentStep]);
-            System.out.println();
+        // Copiar los registros del mapa a los campos de la ejecución continua y viceversa
+        protected abstract void loadRegisterFile();
+        protected abstract void storeRegisterFile();
+        protected abstract void executeInstruction();
 
-            // Mostrar registros
-            System.out.println("REGISTROS:");
-            System.out.println("-----------------------------------------------");
-            System.out.printf("%-8s %-12s %-10s%n", "Registro", "Valor", "Bits");
-            System.out.printf("%-8s 0x%03X        12 bits%n", "PC", registers.get("PC"));
-            System.out.printf("%-8s 0x%03X        12 bits%n", "MAR", registers.get("MAR"));
-            System.out.printf("%-8s 0x%04X       16 bits%n", "MBR", registers.get("MBR"));
-            System.out.printf("%-8s 0x%04X       16 bits%n", "IR", registers.get("IR"));
-            System.out.printf("%-8s 0x%04X       16 bits%n", "AC", registers.get("AC"));
-            System.out.println();
+        protected void afterRun() {
+        }
 
-            // Mostrar unidades de control
-            System.out.println("UNIDADES DE CONTROL:");
-            System.out.println("-----------------------------------------------");
-            System.out.printf("%-15s %-15s%n", "Unidad", "Estado");
-            System.out.printf("%-15s %-15s%n", "ALU", controlUnits.get("ALU"));
-            System.out.printf("%-15s %-15s%n", "Control", controlUnits.get("Control"));
-            System.out.println();
+        public boolean isHalted() {
+            return halted;
+        }
 
-            // Mostrar memoria relevante
-            System.out.println("MEMORIA RELEVANTE:");
-            System.out.println("-----------------------------------------------");
-            System.out.printf("%-8s %-12s %-15s%n", "Dirección", "Valor", "Contenido");
+        public long getInstructionCount() {
+            return instructionCount;
+        }
 
-            // Mostrar instrucciones
-            for (int i = 0x100; i <= 0x123; i++) {
-                if (memory[i] != 0) {
-                    int value = memory[i];
-                    String content = "";
+        public long getCycleCount() {
+            return cycleCount;
+        }
 
-                    if (i < 0x200) { // Es una instrucción
-                        int opcode = (value >> 12) & 0xF;
-                        int address = value & 0xFFF;
-                        String opcodeStr = String.format("%04X", opcode);
-                        content = instructionSet.getOrDefault(opcodeStr, "???") + " M(0x" + Integer.toHexString(address).toUpperCase() + ")";
-                    } else { // Es un dato
-                        content = Integer.toString(value);
-                    }
+        public Cache getCache() {
+            return cache;
+        }
+
+        public void setCache(Cache cache) {
+            this.cache = cache;
+        }
+
+        public VirtualMemory getVirtualMemory() {
+            return virtualMemory;
+        }
+
+        public void setVirtualMemory(VirtualMemory virtualMemory) {
+            this.virtualMemory = virtualMemory;
+        }
+
+        public void setMemoryLatency(int memoryLatency) {
+            this.memoryLatency = memoryLatency;
+        }
+
+        public void setIoCycles(int ioCycles) {
+            this.ioCycles = ioCycles;
+        }
+
+        public void setAluCycles(int aluCycles) {
+            this.aluCycles = aluCycles;
+        }
+
+        public void setMulDivCycles(int mulDivCycles) {
+            this.mulDivCycles = mulDivCycles;
+        }
+
+        public BranchPredictor getBranchPredictor() {
+            return branchPredictor;
+        }
+
+        public void setBranchPredictor(BranchPredictor branchPredictor) {
+            this.branchPredictor = branchPredictor;
+        }
+
+        public void setBranchPenalty(int branchPenalty) {
+            this.branchPenalty = branchPenalty;
+        }
+
+        public LoopDetector getLoopDetector() {
+            return loopDetector;
+        }
+
+        public void setLoopDetector(LoopDetector loopDetector) {
+            this.loopDetector = loopDetector;
+        }
+
+        public boolean isLoopDetected() {
+            return loopDetected;
+        }
+
+        public void setTrace(ExecutionTrace trace) {
+            this.trace = trace;
+        }
+
+        // Registrar en la traza una instrucción ya ejecutada
+        protected final void traceInstruction(int address, int instruction, int ac) {
+            trace.record(formatAddress(address), disassemble(instruction), signed(ac));
+        }
 
-                    System.out.printf("0x%03X    0x%04X       %-15s%n", i, value, content);
+        // Antes de una ejecución continua: reiniciar la detección de bucles y pasar la imagen de
+        // memoria a la memoria virtual (si hay)
+        private void beginRun() {
+            loopDetected = false;
+            if (loopDetector != null && (memory == null || virtualMemory != null)) {
+                throw new IllegalStateException("La detección de bucles necesita la memoria en el heap y sin memoria virtual");
+            }
+            if (virtualMemory != null) {
+                if (memory == null) {
+                    throw new IllegalStateException("La memoria virtual necesita la memoria en el heap");
                 }
+                virtualMemory.attach(memory);
             }
+            if (loopDetector != null) {
+                loopDetector.start(memory);
+            }
+        }
 
-            // Mostrar datos
-            for (int i = 0x200; i <= 0x223; i++) {
-                if (memory[i] != 0) {
-                    System.out.printf("0x%03X    0x%04X       %-15s%n", i, memory[i], memory[i]);
+        // Salto tomado: si va hacia atrás, comprobar si el estado de la máquina ya se repitió
+        protected final void backEdge(int from, int target, int ac, int mq) {
+            if (loopDetector != null && target <= from
+                    && loopDetector.backEdge(from, target, ac, mq, ioReadCount(), memory)) {
+                loopDetected = true;
+            }
+        }
+
+        // Consultar y entrenar el predictor con un salto condicional ya resuelto; en las máquinas
+        // secuenciales el fallo se modela como ciclos de penalización de una captación especulativa
+        protected final void branchResolved(int pc, int target, boolean taken) {
+            if (branchPredictor != null) {
+                boolean predicted = branchPredictor.predict(pc, target);
+                if (branchPredictor.update(pc, predicted, taken, branchPenalty)) {
+                    cycleCount += branchPenalty;
                 }
             }
+        }
 
-            System.out.println();
+        // Cargar una imagen de memoria ya preparada (p. ej. la de otra simulación)
+        public void loadImage(int[] image, int startAddress) {
+            initialize();
+            if (memory != null) {
+                System.arraycopy(image, 0, memory, 0, Math.min(image.length, memory.length));
+            } else {
+                wordMemory.load(0, image.length <= wordMemory.size() ? image : Arrays.copyOf(image, (int) wordMemory.size()));
+            }
+            registers.put("PC", startAddress);
         }
 
-        @Override
-        public String[] getTestCases() {
-            return new String[] {
-                    "1. Suma Básica (5 + 10)",
-                    "2. Resta Básica (20 - 8)",
-                    "3. Suma Triple (4 + 7 + 9)"
-            };
+        // Acceso a memoria a través de la memoria virtual y la caché (si existen), sumando su costo
+        // en ciclos. La caché trabaja con direcciones físicas.
+        protected final int readMemory(int address) {
+            checkAddress(address);
+            if (coherentCache != null) {
+                return coherentCache.read(address);
+            }
+            if (virtualMemory != null) {
+                int physical = virtualMemory.translate(address, false, memoryLatency);
+                cycleCount += virtualMemory.getLastCost()
+                        + (cache != null ? cache.access(physical, false, memoryLatency) : memoryLatency);
+                return virtualMemory.read(physical);
+            }
+            if (cache != null) {
+                cycleCount += cache.access(address, false, memoryLatency);
+            } else {
+                cycleCount += memoryLatency;
+            }
+            return memory != null ? memory[address] : (int) wordMemory.read(address);
+        }
+
+        protected final void writeMemory(int address, int value) {
+            checkAddress(address);
+            if (coherentCache != null) {
+                coherentCache.write(address, value);
+                return;
+            }
+            if (virtualMemory != null) {
+                int physical = virtualMemory.translate(address, true, memoryLatency);
+                cycleCount += virtualMemory.getLastCost()
+                        + (cache != null ? cache.access(physical, true, memoryLatency) : memoryLatency);
+                virtualMemory.write(physical, value);
+                return;
+            }
+            if (cache != null) {
+                cycleCount += cache.access(address, true, memoryLatency);
+            } else {
+                cycleCount += memoryLatency;
+            }
+            if (loopDetector != null) {
+                loopDetector.memoryWritten(address, memory[address], value);
+            }
+            setMemoryWord(address, value);
+        }
+
+        // Acceso a una palabra sin caché ni costo en ciclos (carga de programas y volcados)
+        protected final int getMemoryWord(int address) {
+            return memory != null ? memory[address] : (int) wordMemory.read(address);
+        }
+
+        protected final void setMemoryWord(int address, int value) {
+            if (memory != null) {
+                memory[address] = value;
+            } else {
+                wordMemory.write(address, value);
+            }
+        }
+
+        // Mostrar las estadísticas de la caché (si hay una configurada)
+        protected void displayCacheState() {
+            if (cache == null) {
+                return;
+            }
+            display.println("CACHÉ (" + cache + "):");
+            display.println("-----------------------------------------------");
+            display.printf("Aciertos: %d   Fallos: %d   Tasa de aciertos: %.1f%%%n",
+                    cache.getHits(), cache.getMisses(), cache.getHitRate() * 100);
+            display.printf("Escrituras diferidas: %d   Ciclos de memoria: %d%n", cache.getWriteBacks(), cache.getCycles());
+            display.println();
+        }
+
+        private void checkAddress(int address) {
+            if (address < 0 || address >= (memory != null ? memory.length : wordMemory.size())) {
+                throw new IllegalStateException(String.format("Dirección de memoria fuera de rango: 0x%03X", address));
+            }
+        }
+
+        // Cargar una imagen de programa desde un archivo de texto.
+        // Formato por línea: "dirección: valor" en hexadecimal, "PC: dirección" para
+        // fijar la dirección de inicio; '#' inicia un comentario.
+        public void loadProgram(Path file) throws IOException {
+            initialize();
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            for (int lineNumber = 0; lineNumber < lines.size(); lineNumber++) {
+                String line = lines.get(lineNumber);
+                int comment = line.indexOf('#');
+                if (comment >= 0) {
+                    line = line.substring(0, comment);
+                }
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+
+                int separator = line.indexOf(':');
+                if (separator < 0) {
+                    throw new IOException("Línea " + (lineNumber + 1) + " sin ':' en " + file);
+                }
+                String key = line.substring(0, separator).trim();
+                int value = Integer.parseInt(line.substring(separator + 1).trim(), 16);
+
+                if (key.equalsIgnoreCase("PC")) {
+                    registers.put("PC", value);
+                } else {
+                    setMemoryWord(Integer.parseInt(key, 16), value);
+                }
+            }
+        }
+
+        public void closeScanner() {
+            if (scanner != null) {
+                scanner.close();
+            }
         }
     }
 
-    // Simulación del Computador IAS
-    static class IASSimulation extends ComputerSimulationBase {
-        public IASSimulation() {
-            super();
-            instructionSet = new HashMap<>();
-            instructionSet.put("00000001", "LOAD M(X)");
-            instructionSet.put("00000010", "LOAD -M(X)");
-            instructionSet.put("00000011", "LOAD |M(X)|");
-            instructionSet.put("00000100", "LOAD -|M(X)|");
-            instructionSet.put("00000101", "STOR M(X)");
-            instructionSet.put("00000110", "JUMP M(X,0:19)");
-            instructionSet.put("00000111", "JUMP M(X,20:39)");
-            instructionSet.put("00001000", "JUMP+ M(X,0:19)");
-            instructionSet.put("00001001", "JUMP+ M(X,20:39)");
-            instructionSet.put("00001010", "ADD M(X)");
-            instructionSet.put("00001011", "ADD |M(X)|");
-            instructionSet.put("00001100", "SUB M(X)");
-            instructionSet.put("00001101", "SUB |M(X)|");
-            instructionSet.put("00001110", "MUL M(X)");
-            instructionSet.put("00001111", "DIV M(X)");
-            instructionSet.put("00010000", "LSH");
-            instructionSet.put("00010001", "RSH");
-            instructionSet.put("00010010", "STOR M(X,8:19)");
+    // Fases del ciclo de instrucción en las que se agrupan las micro-operaciones
+    enum MicroPhase {
+        FETCH("Ciclo de captación"),
+        EXECUTE("Ciclo de ejecución");
+
+        private final String label;
+
+        MicroPhase(String label) {
+            this.label = label;
         }
 
-        @Override
-        public void initialize() {
-            memory = new int[1000];
-            registers.put("PC", 0);
-            registers.put("MAR", 0);
-            registers.put("MBR", 0);
-            registers.put("IR", 0);
-            registers.put("IBR", 0);
-            registers.put("AC", 0);
-            registers.put("MQ", 0);
+        public String getLabel() {
+            return label;
+        }
+    }
 
-            controlUnits.put("ALU", "INACTIVA");
-            controlUnits.put("Control", "INACTIVA");
+    // Micro-operaciones de la unidad de control. Cada una lleva la plantilla de su narración;
+    // los marcadores {INSTR}, {ADDR}, {MAR}, {MBR}, {AC}, {MQ} y {RESULT} se rellenan con el
+    // estado de la máquina solo al mostrarla.
+    enum MicroOp {
+        PC_READY(MicroPhase.FETCH, "PC contiene la dirección de la instrucción"),
+        PC_TO_MAR(MicroPhase.FETCH, "Copiar PC a MAR"),
+        READ_INSTRUCTION(MicroPhase.FETCH, "Leer instrucción de memoria a MBR"),
+        READ_WORD(MicroPhase.FETCH, "Leer palabra de memoria a MBR"),
+        INCREMENT_PC(MicroPhase.FETCH, "Incrementar PC"),
+        MBR_TO_IR(MicroPhase.FETCH, "Transferir instrucción de MBR a IR"),
+        MBR_LEFT_TO_IR(MicroPhase.FETCH, "Transferir instrucción izquierda de MBR a IR"),
+        MBR_RIGHT_TO_IBR(MicroPhase.FETCH, "Transferir instrucción derecha de MBR a IBR"),
+        DECODE(MicroPhase.EXECUTE, "Decodificar instrucción {INSTR}"),
+        IR_ADDRESS_TO_MAR(MicroPhase.EXECUTE, "Extraer dirección del operando ({ADDR}) y colocar en MAR"),
+        READ_DATA(MicroPhase.EXECUTE, "Leer dato de memoria a MBR"),
+        MBR_TO_AC(MicroPhase.EXECUTE, "Transferir dato de MBR a AC"),
+        MBR_NEGATED_TO_AC(MicroPhase.EXECUTE, "Transferir dato negado de MBR a AC"),
+        MBR_ABS_TO_AC(MicroPhase.EXECUTE, "Transferir valor absoluto de MBR a AC"),
+        MBR_NEGATED_ABS_TO_AC(MicroPhase.EXECUTE, "Transferir valor absoluto negado de MBR a AC"),
+        IO_TO_AC(MicroPhase.EXECUTE, "Leer dato del puerto de E/S ({MAR}) a AC"),
+        AC_TO_IO(MicroPhase.EXECUTE, "Escribir AC ({AC}) en puerto de E/S ({MAR})"),
+        ALU_ADD_START(MicroPhase.EXECUTE, "ALU realizando operación de suma"),
+        ALU_SUB_START(MicroPhase.EXECUTE, "ALU realizando operación de resta"),
+        ALU_MUL_START(MicroPhase.EXECUTE, "ALU realizando operación de multiplicación"),
+        ALU_DIV_START(MicroPhase.EXECUTE, "ALU realizando operación de división"),
+        ALU_ADD(MicroPhase.EXECUTE, "Sumar MBR ({MBR}) a AC ({AC}) = {RESULT}"),
+        ALU_ADD_ABS(MicroPhase.EXECUTE, "Sumar |MBR| ({MBR}) a AC ({AC}) = {RESULT}"),
+        ALU_SUB(MicroPhase.EXECUTE, "Restar MBR ({MBR}) de AC ({AC}) = {RESULT}"),
+        ALU_SUB_ABS(MicroPhase.EXECUTE, "Restar |MBR| ({MBR}) de AC ({AC}) = {RESULT}"),
+        ALU_LSH(MicroPhase.EXECUTE, "Desplazar a la izquierda AC ({AC}) = {RESULT}"),
+        ALU_RSH(MicroPhase.EXECUTE, "Desplazar a la derecha AC ({AC}) = {RESULT}"),
+        ALU_MUL(MicroPhase.EXECUTE, "Multiplicar AC ({AC}) por MBR ({MBR}) = {RESULT}"),
+        MUL_STORE(MicroPhase.EXECUTE, "Almacenar parte alta en AC y parte baja en MQ"),
+        ALU_DIV(MicroPhase.EXECUTE, "Dividir AC ({AC}) por MBR ({MBR}) = {RESULT}"),
+        DIV_STORE(MicroPhase.EXECUTE, "Almacenar cociente en MQ y resto en AC"),
+        AC_TO_MBR(MicroPhase.EXECUTE, "Copiar AC ({AC}) a MBR"),
+        MQ_TO_MBR(MicroPhase.EXECUTE, "Copiar MQ ({MQ}) a MBR"),
+        MQ_TO_AC(MicroPhase.EXECUTE, "Transferir MQ ({MQ}) a AC"),
+        AC_ADDRESS_TO_MBR(MicroPhase.EXECUTE, "Reemplazar el campo de dirección de MBR con AC ({AC})"),
+        MBR_TO_MEMORY(MicroPhase.EXECUTE, "Escribir MBR ({MBR}) en memoria ({MAR})"),
+        IR_ADDRESS_TO_PC(MicroPhase.EXECUTE, "Cargar dirección de salto ({ADDR}) en PC"),
+        JUMP_IF_NEGATIVE(MicroPhase.EXECUTE, "Si AC es negativo ({AC}), cargar dirección de salto ({ADDR}) en PC"),
+        JUMP_IF_POSITIVE(MicroPhase.EXECUTE, "Si AC es positivo ({AC}), cargar dirección de salto ({ADDR}) en PC"),
+        JUMP_IF_ZERO(MicroPhase.EXECUTE, "Si AC es cero ({AC}), cargar dirección de salto ({ADDR}) en PC"),
+        JUMP_IF_NONNEGATIVE(MicroPhase.EXECUTE, "Si AC no es negativo ({AC}), cargar dirección de salto ({ADDR}) en PC"),
+        HALT(MicroPhase.EXECUTE, "Detener la máquina");
+
+        private final MicroPhase phase;
+        private final String template;
+        private final String prefix; // Texto fijo inicial, para reconocer la micro-operación en un guion
+
+        MicroOp(MicroPhase phase, String template) {
+            this.phase = phase;
+            this.template = template;
+            int marker = template.indexOf('{');
+            this.prefix = (marker < 0 ? template : template.substring(0, marker)).replaceAll("[\\s(]+$", "");
         }
 
-        @Override
-        public void loadTestCase(int testCaseIndex) {
-            // Reiniciar memoria y registros
-            for (int i = 0; i < memory.length; i++) {
-                memory[i] = 0;
+        public MicroPhase getPhase() {
+            return phase;
+        }
+
+        public String getTemplate() {
+            return template;
+        }
+
+        // Reconocer la micro-operación de un paso de guion ("Ciclo de ... - descripción");
+        // gana el prefijo más largo para distinguir, p. ej., "Sumar MBR" de "Sumar |MBR|"
+        static MicroOp parse(String step) {
+            int separator = step.indexOf(" - ");
+            String description = separator < 0 ? step : step.substring(separator + 3);
+            MicroOp match = null;
+            for (MicroOp op : values()) {
+                if (description.startsWith(op.prefix) && (match == null || op.prefix.length() > match.prefix.length())) {
+                    match = op;
+                }
+            }
+            if (match == null) {
+                throw new IllegalArgumentException("Paso de guion sin micro-operación: " + step);
             }
+            return match;
+        }
+    }
 
-            registers.put("PC", 0);
-            registers.put("MAR", 0);
-            registers.put("MBR", 0);
-            registers.put("IR", 0);
-            registers.put("IBR", 0);
-            registers.put("AC", 0);
-            registers.put("MQ", 0);
+    // Renderizador de consola por diferencias. Cada fotograma se compone en un búfer
+    // reutilizable y se compara, línea a línea, con el anterior: solo se envían los
+    // movimientos de cursor y los caracteres que cambiaron, en una única escritura.
+    // Las posiciones absolutas solo sirven si el fotograma cabe en la terminal; si no cabe
+    // se redibuja entero con saltos de línea y la terminal lo desplaza como antes.
+    static class TerminalRenderer {
+        // Tramos iguales más cortos que esto no justifican un movimiento de cursor
+        private static final int MIN_GAP = 8;
+        // Alto supuesto cuando no se puede consultar la terminal
+        private static final int DEFAULT_HEIGHT = 24;
 
-            controlUnits.put("ALU", "INACTIVA");
-            controlUnits.put("Control", "INACTIVA");
+        private final PrintStream terminal;
+        private final ByteArrayOutputStream frameBytes = new ByteArrayOutputStream(8192);
+        private final PrintStream frame = new PrintStream(frameBytes, false, StandardCharsets.UTF_8);
+        private final StringBuilder output = new StringBuilder(8192);
+        private char[][] previous = new char[0][];
+        private int[] previousLengths = new int[0];
+        private int previousRows;
+        private boolean cleared;
+        private int height = -1;
 
-            // Cargar caso de prueba
-            switch (testCaseIndex) {
-                case 1: // Cargar AC desde memoria, sumar otro valor y almacenar resultado
-                    // Instrucciones (formato: 8 bits opcode + 12 bits dirección)
-                    memory[0] = 0x010A0; // LOAD M(10)
-                    memory[1] = 0x0A0A1; // ADD M(11)
-                    memory[2] = 0x050A2; // STOR M(12)
-                    memory[10] = 5;
-                    memory[11] = 10;
-                    memory[12] = 0;
-                    registers.put("PC", 0);
+        public TerminalRenderer(PrintStream terminal) {
+            this.terminal = terminal;
+        }
 
-                    steps = new String[] {
-                            "Ciclo de captación - PC contiene la dirección de la instrucción",
-                            "Ciclo de captación - Copiar PC a MAR",
-                            "Ciclo de captación - Leer palabra de memoria a MBR",
-                            "Ciclo de captación - Incrementar PC",
-                            "Ciclo de captación - Transferir instrucción izquierda de MBR a IR",
-                            "Ciclo de captación - Transferir instrucción derecha de MBR a IBR",
-                            "Ciclo de ejecución - Decodificar instrucción LOAD M(10)",
-                            "Ciclo de ejecución - Extraer dirección del operando (10) y colocar en MAR",
-                            "Ciclo de ejecución - Leer dato de memoria a MBR",
-                            "Ciclo de ejecución - Transferir dato de MBR a AC",
-                            "Ciclo de captación - Copiar PC a MAR",
-                            "Ciclo de captación - Leer palabra de memoria a MBR",
-                            "Ciclo de captación - Incrementar PC",
-                            "Ciclo de captación - Transferir instrucción izquierda de MBR a IR",
-                            "Ciclo de captación - Transferir instrucción derecha de MBR a IBR",
-                            "Ciclo de ejecución - Decodificar instrucción ADD M(11)",
-                            "Ciclo de ejecución - Extraer dirección del operando (11) y colocar en MAR",
-                            "Ciclo de ejecución - Leer dato de memoria a MBR",
-                            "Ciclo de ejecución - ALU realizando operación de suma",
-                            "Ciclo de ejecución - Sumar MBR (10) a AC (5) = 15",
-                            "Ciclo de captación - Copiar PC a MAR",
-                            "Ciclo de captación - Leer palabra de memoria a MBR",
-                            "Ciclo de captación - Incrementar PC",
-                            "Ciclo de captación - Transferir instrucción izquierda de MBR a IR",
-                            "Ciclo de captación - Transferir instrucción derecha de MBR a IBR",
-                            "Ciclo de ejecución - Decodificar instrucción STOR M(12)",
-                            "Ciclo de ejecución - Extraer dirección del operando (12) y colocar en MAR",
-                            "Ciclo de ejecución - Copiar AC (15) a MBR",
-                            "Ciclo de ejecución - Escribir MBR (15) en memoria (12)"
-                    };
-                    break;
+        // Olvidar el fotograma anterior: el siguiente borra la pantalla y se dibuja entero.
+        // El alto de la terminal se vuelve a consultar por si cambió entre simulaciones.
+        public void invalidate() {
+            cleared = false;
+            previousRows = 0;
+            height = -1;
+        }
 
-                case 2: // Multiplicación y división
-                    memory[0] = 0x010A0; // LOAD M(10)
-                    memory[1] = 0x0E0A1; // MUL M(11)
-                    memory[2] = 0x050A2; // STOR M(12)
-                    memory[3] = 0x010A0; // LOAD M(10)
-                    memory[4] = 0x0F0A1; // DIV M(11)
-                    memory[5] = 0x050A3; // STOR M(13)
-                    memory[10] = 20;
-                    memory[11] = 4;
-                    memory[12] = 0;
-                    memory[13] = 0;
-                    registers.put("PC", 0);
+        // Filas de la terminal: $LINES o, si no está definida, "stty size" sobre /dev/tty
+        private static int queryHeight() {
+            try {
+                String lines = System.getenv("LINES");
+                if (lines != null) {
+                    return Integer.parseInt(lines.trim());
+                }
+                Process stty = new ProcessBuilder("sh", "-c", "stty size < /dev/tty").redirectErrorStream(true).start();
+                String size = new String(stty.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+                if (stty.waitFor() == 0 && size.matches("\\d+ \\d+")) {
+                    return Integer.parseInt(size.substring(0, size.indexOf(' ')));
+                }
+            } catch (IOException | NumberFormatException e) {
+                // Sin terminal consultable: se usa el alto por omisión
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return DEFAULT_HEIGHT;
+        }
 
-                    steps = new String[] {
-                            "Ciclo de captación - PC contiene la dirección de la instrucción",
+        public PrintStream beginFrame() {
+            frameBytes.reset();
+            return frame;
+        }
+
+        public void endFrame() {
+            frame.flush();
+            String text = frameBytes.toString(StandardCharsets.UTF_8);
+            output.setLength(0);
+            if (height < 0) {
+                height = queryHeight();
+            }
+
+            // Además del fotograma hacen falta la línea donde escribe el usuario y la siguiente, a la
+            // que baja el cursor con ENTER
+            int frameRows = 0;
+            for (int i = 0; i < text.length(); i++) {
+                if (text.charAt(i) == '\n') {
+                    frameRows++;
+                }
+            }
+            if (frameRows + 2 > height) {
+                output.append("\033[H\033[2J").append(text);
+                cleared = false;
+                previousRows = 0;
+                byte[] bytes = output.toString().getBytes(StandardCharsets.UTF_8);
+                terminal.write(bytes, 0, bytes.length);
+                terminal.flush();
+                return;
+            }
+
+            if (!cleared) {
+                output.append("\033[H\033[2J");
+                cleared = true;
+            } else {
+                // Borrar lo que el usuario escribió bajo el fotograma anterior
+                moveTo(previousRows, 0);
+                output.append("\033[K");
+            }
+
+            int rows = 0;
+            int lastLength = 0;
+            int start = 0;
+            while (start < text.length()) {
+                int end = text.indexOf('\n', start);
+                if (end < 0) {
+                    end = text.length();
+                }
+                lastLength = diffLine(rows, text, start, end);
+                rows++;
+                start = end + 1;
+            }
+
+            // Borrar las líneas que sobran del fotograma anterior
+            for (int row = rows; row < previousRows; row++) {
+                moveTo(row, 0);
+                output.append("\033[K");
+            }
+            previousRows = rows;
+
+            // Dejar el cursor tras la última línea, donde el usuario escribe
+            moveTo(rows, 0);
+            byte[] bytes = output.toString().getBytes(StandardCharsets.UTF_8);
+            terminal.write(bytes, 0, bytes.length);
+            terminal.flush();
+        }
+
+        // Emitir los tramos que difieren de la misma línea del fotograma anterior y guardarla
+        private int diffLine(int row, String text, int start, int end) {
+            int length = end - start;
+            ensureRow(row, length);
+            char[] old = previous[row];
+            int oldLength = row < previousRows ? previousLengths[row] : 0;
+            int width = Math.max(length, oldLength);
+
+            int column = 0;
+            while (column < width) {
+                if (cell(text, start, length, column) == (column < oldLength ? old[column] : ' ')) {
+                    column++;
+                    continue;
+                }
+                // Extender el tramo mientras haya diferencias separadas por menos de MIN_GAP
+                int runEnd = column + 1;
+                int equal = 0;
+                while (runEnd + equal < width && equal < MIN_GAP) {
+                    int next = runEnd + equal;
+                    if (cell(text, start, length, next) == (next < oldLength ? old[next] : ' ')) {
+                        equal++;
+                    } else {
+                        runEnd = next + 1;
+                        equal = 0;
+                    }
+                }
+                moveTo(row, column);
+                for (int c = column; c < runEnd; c++) {
+                    output.append(cell(text, start, length, c));
+                }
+                column = runEnd;
+            }
+
+            text.getChars(start, end, old, 0);
+            previousLengths[row] = length;
+            return length;
+        }
+
+        private static char cell(String text, int start, int length, int column) {
+            return column < length ? text.charAt(start + column) : ' ';
+        }
+
+        private void ensureRow(int row, int length) {
+            if (row >= previous.length) {
+                previous = Arrays.copyOf(previous, Math.max(row + 1, previous.length * 2));
+                previousLengths = Arrays.copyOf(previousLengths, previous.length);
+            }
+            if (previous[row] == null || previous[row].length < length) {
+                char[] grown = new char[Math.max(length, 80)];
+                if (previous[row] != null) {
+                    System.arraycopy(previous[row], 0, grown, 0, previous[row].length);
+                }
+                previous[row] = grown;
+            }
+        }
+
+        private void moveTo(int row, int column) {
+            output.append("\033[").append(row + 1).append(';').append(column + 1).append('H');
+        }
+    }
+
+    // Memoria principal de palabras de cualquier ancho hasta 64 bits. Las palabras se guardan
+    // truncadas al ancho y se leen sin signo; las direcciones son long para admitir espacios de
+    // direcciones mayores que un arreglo de Java.
+    interface WordMemory {
+        int getWordBits();
+
+        long size();
+
+        long read(long address);
+
+        void write(long address, long value);
+
+        // Poner toda la memoria a cero
+        void clear();
+
+        // Copiar count palabras de from a to; las zonas pueden solaparse
+        void copy(long from, long to, long count);
+
+        // Cargar una imagen a partir de una dirección
+        void load(long address, int[] words);
+    }
+
+    // Memoria fuera del heap, en ByteBuffer directos de hasta 1 GiB (un ByteBuffer se indexa
+    // con int) con 2, 4 u 8 bytes por palabra según el ancho. No la recorre el recolector de
+    // basura, y el borrado, la copia y la carga de imágenes son copias en bloque de
+    // ByteBuffer, que la JVM hace con instrucciones vectoriales.
+    static class DirectWordMemory implements WordMemory {
+        private static final int CHUNK_BYTES_SHIFT = 30;
+        private static final int BLOCK_BYTES = 64 * 1024;
+        private static final ByteBuffer ZEROS = ByteBuffer.allocateDirect(BLOCK_BYTES);
+
+        private final int wordBits;
+        private final long wordMask;
+        private final long size;
+        private final int bytesShift;        // log2 de los bytes por palabra
+        private final int chunkShift;        // log2 de las palabras por bloque de memoria
+        private final long chunkMask;
+        private final ByteBuffer[] chunks;
+        private final ByteBuffer bounce = ByteBuffer.allocateDirect(BLOCK_BYTES).order(ByteOrder.nativeOrder());
+
+        public DirectWordMemory(int wordBits, long size) {
+            if (wordBits < 1 || wordBits > 64) {
+                throw new IllegalArgumentException("Ancho de palabra no válido: " + wordBits);
+            }
+            if (size < 1) {
+                throw new IllegalArgumentException("Tamaño de memoria no válido: " + size);
+            }
+            this.wordBits = wordBits;
+            this.wordMask = wordBits == 64 ? -1L : (1L << wordBits) - 1;
+            this.size = size;
+            this.bytesShift = wordBits <= 16 ? 1 : wordBits <= 32 ? 2 : 3;
+            this.chunkShift = CHUNK_BYTES_SHIFT - bytesShift;
+            this.chunkMask = (1L << chunkShift) - 1;
+
+            int count = (int) ((size + chunkMask) >>> chunkShift);
+            chunks = new ByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long words = Math.min(size - ((long) i << chunkShift), 1L << chunkShift);
+                chunks[i] = ByteBuffer.allocateDirect((int) (words << bytesShift)).order(ByteOrder.nativeOrder());
+            }
+        }
+
+        @Override
+        public int getWordBits() {
+            return wordBits;
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public long read(long address) {
+            checkRange(address, 1);
+            ByteBuffer chunk = chunks[(int) (address >>> chunkShift)];
+            int offset = (int) (address & chunkMask) << bytesShift;
+            switch (bytesShift) {
+                case 1:
+                    return chunk.getShort(offset) & 0xFFFFL;
+                case 2:
+                    return chunk.getInt(offset) & 0xFFFFFFFFL;
+                default:
+                    return chunk.getLong(offset);
+            }
+        }
+
+        @Override
+        public void write(long address, long value) {
+            checkRange(address, 1);
+            ByteBuffer chunk = chunks[(int) (address >>> chunkShift)];
+            int offset = (int) (address & chunkMask) << bytesShift;
+            value &= wordMask;
+            switch (bytesShift) {
+                case 1:
+                    chunk.putShort(offset, (short) value);
+                    break;
+                case 2:
+                    chunk.putInt(offset, (int) value);
+                    break;
+                default:
+                    chunk.putLong(offset, value);
+                    break;
+            }
+        }
+
+        @Override
+        public void clear() {
+            for (ByteBuffer chunk : chunks) {
+                ByteBuffer target = chunk.duplicate();
+                target.clear();
+                while (target.hasRemaining()) {
+                    ByteBuffer zeros = ZEROS.duplicate();
+                    zeros.limit(Math.min(zeros.capacity(), target.remaining()));
+                    target.put(zeros);
+                }
+            }
+        }
+
+        @Override
+        public void copy(long from, long to, long count) {
+            checkRange(from, count);
+            checkRange(to, count);
+            if (count == 0 || from == to) {
+                return;
+            }
+
+            // Por bloques a través de un búfer intermedio; hacia atrás si el destino está detrás
+            // del origen y las zonas se solapan, para no pisar palabras aún no copiadas
+            long blockWords = BLOCK_BYTES >>> bytesShift;
+            boolean backwards = to > from && to < from + count;
+            long done = 0;
+            while (done < count) {
+                long words = Math.min(blockWords, count - done);
+                long offset = backwards ? count - done - words : done;
+                transfer(from + offset, words, true);
+                transfer(to + offset, words, false);
+                done += words;
+            }
+        }
+
+        // Mover words palabras (dentro de un bloque de BLOCK_BYTES) entre la memoria y el búfer intermedio
+        private void transfer(long address, long words, boolean toBounce) {
+            bounce.clear();
+            long remaining = words;
+            while (remaining > 0) {
+                ByteBuffer chunk = chunks[(int) (address >>> chunkShift)];
+                int offset = (int) (address & chunkMask);
+                int count = (int) Math.min(remaining, (chunkMask + 1) - offset);
+                ByteBuffer region = chunk.duplicate();
+                region.position(offset << bytesShift).limit((offset + count) << bytesShift);
+                if (toBounce) {
+                    bounce.put(region);
+                } else {
+                    ByteBuffer source = bounce.duplicate();
+                    source.limit(source.position() + (count << bytesShift));
+                    region.put(source);
+                    bounce.position(source.position());
+                }
+                address += count;
+                remaining -= count;
+            }
+            if (toBounce) {
+                bounce.flip();
+            }
+        }
+
+        @Override
+        public void load(long address, int[] words) {
+            checkRange(address, words.length);
+            // Se trunca cada bloque al ancho en un arreglo intermedio (un bucle que el compilador
+            // JIT vectoriza) y se copia en bloque; en las palabras de más de 32 bits el int de la
+            // imagen se extiende con su signo, como en write
+            int blockWords = BLOCK_BYTES >>> bytesShift;
+            short[] shorts = bytesShift == 1 ? new short[blockWords] : null;
+            int[] ints = bytesShift == 2 ? new int[blockWords] : null;
+            long[] longs = bytesShift == 3 ? new long[blockWords] : null;
+            int done = 0;
+            while (done < words.length) {
+                ByteBuffer region = chunks[(int) (address >>> chunkShift)].duplicate().order(ByteOrder.nativeOrder());
+                int offset = (int) (address & chunkMask);
+                int count = (int) Math.min(Math.min(words.length - done, blockWords), (chunkMask + 1) - offset);
+                region.position(offset << bytesShift);
+                switch (bytesShift) {
+                    case 1:
+                        for (int i = 0; i < count; i++) {
+                            shorts[i] = (short) (words[done + i] & wordMask);
+                        }
+                        region.asShortBuffer().put(shorts, 0, count);
+                        break;
+                    case 2:
+                        for (int i = 0; i < count; i++) {
+                            ints[i] = (int) (words[done + i] & wordMask);
+                        }
+                        region.asIntBuffer().put(ints, 0, count);
+                        break;
+                    default:
+                        for (int i = 0; i < count; i++) {
+                            longs[i] = words[done + i] & wordMask;
+                        }
+                        region.asLongBuffer().put(longs, 0, count);
+                        break;
+                }
+                address += count;
+                done += count;
+            }
+        }
+
+        private void checkRange(long address, long count) {
+            if (address < 0 || count < 0 || address + count > size) {
+                throw new IndexOutOfBoundsException(String.format("Dirección de memoria fuera de rango: 0x%X", address));
+            }
+        }
+    }
+
+    // Memoria dispersa en páginas de 256 palabras: una página se reserva en su primera
+    // escritura distinta de cero y las páginas sin reservar se leen como cero. La tabla de
+    // páginas tiene dos niveles, así que su tamaño también depende de las zonas usadas. Lleva
+    // el conjunto de páginas escritas desde la última instantánea: borrar, tomar una
+    // instantánea, restaurarla o compararla cuesta un tiempo proporcional a las páginas usadas
+    // y no al tamaño del espacio de direcciones.
+    static class SparsePagedMemory implements WordMemory {
+        static final int PAGE_SHIFT = 8;
+        static final int PAGE_WORDS = 1 << PAGE_SHIFT;
+        private static final int TABLE_SHIFT = 8;  // Páginas por tabla de segundo nivel
+        private static final int POOL_PAGES = 64;  // Páginas liberadas que se guardan para reutilizarlas
+
+        private static final class Page {
+            long number;
+            final long[] words = new long[PAGE_WORDS];
+            boolean dirty;
+        }
+
+        // Copia de las páginas reservadas en un momento dado
+        static final class Snapshot {
+            private final long generation;
+            private final Map<Long, long[]> pages;
+
+            private Snapshot(long generation, Map<Long, long[]> pages) {
+                this.generation = generation;
+                this.pages = pages;
+            }
+
+            public int getPageCount() {
+                return pages.size();
+            }
+        }
+
+        private final int wordBits;
+        private final long wordMask;
+        private final long size;
+        private final Page[][] directory;
+        private final List<Page> allocated = new ArrayList<>();
+        private final List<Page> dirtyPages = new ArrayList<>();
+        private final ArrayDeque<Page> pool = new ArrayDeque<>();
+        // Instantánea respecto de la que se anotan las páginas escritas (0: ninguna)
+        private long generation;
+        private long nextGeneration = 1;
+
+        public SparsePagedMemory(int wordBits, long size) {
+            if (wordBits < 1 || wordBits > 64) {
+                throw new IllegalArgumentException("Ancho de palabra no válido: " + wordBits);
+            }
+            if (size < 1) {
+                throw new IllegalArgumentException("Tamaño de memoria no válido: " + size);
+            }
+            this.wordBits = wordBits;
+            this.wordMask = wordBits == 64 ? -1L : (1L << wordBits) - 1;
+            this.size = size;
+            long pageCount = (size + PAGE_WORDS - 1) >>> PAGE_SHIFT;
+            this.directory = new Page[(int) ((pageCount + (1 << TABLE_SHIFT) - 1) >>> TABLE_SHIFT)][];
+        }
+
+        @Override
+        public int getWordBits() {
+            return wordBits;
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        public int getAllocatedPages() {
+            return allocated.size();
+        }
+
+        public int getDirtyPages() {
+            return dirtyPages.size();
+        }
+
+        // Bytes ocupados por las páginas reservadas
+        public long getFootprint() {
+            return (long) allocated.size() * PAGE_WORDS * Long.BYTES;
+        }
+
+        @Override
+        public long read(long address) {
+            checkRange(address, 1);
+            Page page = page(address >>> PAGE_SHIFT);
+            return page == null ? 0 : page.words[(int) address & (PAGE_WORDS - 1)];
+        }
+
+        @Override
+        public void write(long address, long value) {
+            checkRange(address, 1);
+            value &= wordMask;
+            Page page = page(address >>> PAGE_SHIFT);
+            if (page == null) {
+                if (value == 0) {
+                    return;
+                }
+                page = allocate(address >>> PAGE_SHIFT);
+            }
+            page.words[(int) address & (PAGE_WORDS - 1)] = value;
+            markDirty(page);
+        }
+
+        @Override
+        public void clear() {
+            for (Page page : allocated) {
+                release(page);
+            }
+            allocated.clear();
+            dirtyPages.clear();
+            // El contenido ya no es el de la última instantánea
+            generation = 0;
+        }
+
+        @Override
+        public void copy(long from, long to, long count) {
+            checkRange(from, count);
+            checkRange(to, count);
+            if (count == 0 || from == to) {
+                return;
+            }
+
+            // Por tramos que no cruzan el límite de página ni en el origen ni en el destino;
+            // hacia atrás si el destino está detrás del origen y las zonas se solapan
+            boolean backwards = to > from && to < from + count;
+            long done = 0;
+            while (done < count) {
+                long words;
+                long offset;
+                if (backwards) {
+                    long end = count - done;
+                    words = Math.min(end, Math.min(((from + end - 1) & (PAGE_WORDS - 1)) + 1,
+                            ((to + end - 1) & (PAGE_WORDS - 1)) + 1));
+                    offset = end - words;
+                } else {
+                    words = Math.min(count - done, Math.min(PAGE_WORDS - ((from + done) & (PAGE_WORDS - 1)),
+                            PAGE_WORDS - ((to + done) & (PAGE_WORDS - 1))));
+                    offset = done;
+                }
+
+                Page source = page((from + offset) >>> PAGE_SHIFT);
+                Page target = page((to + offset) >>> PAGE_SHIFT);
+                int targetIndex = (int) (to + offset) & (PAGE_WORDS - 1);
+                if (source != null) {
+                    if (target == null) {
+                        target = allocate((to + offset) >>> PAGE_SHIFT);
+                    }
+                    System.arraycopy(source.words, (int) (from + offset) & (PAGE_WORDS - 1), target.words, targetIndex, (int) words);
+                    markDirty(target);
+                } else if (target != null) {
+                    Arrays.fill(target.words, targetIndex, targetIndex + (int) words, 0);
+                    markDirty(target);
+                }
+                done += words;
+            }
+        }
+
+        @Override
+        public void load(long address, int[] words) {
+            checkRange(address, words.length);
+            int done = 0;
+            while (done < words.length) {
+                int index = (int) (address + done) & (PAGE_WORDS - 1);
+                int count = Math.min(words.length - done, PAGE_WORDS - index);
+                Page page = page((address + done) >>> PAGE_SHIFT);
+                if (page == null && !allZero(words, done, count)) {
+                    page = allocate((address + done) >>> PAGE_SHIFT);
+                }
+                if (page != null) {
+                    for (int i = 0; i < count; i++) {
+                        page.words[index + i] = words[done + i] & wordMask;
+                    }
+                    markDirty(page);
+                }
+                done += count;
+            }
+        }
+
+        private static boolean allZero(int[] words, int from, int count) {
+            for (int i = from; i < from + count; i++) {
+                if (words[i] != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Copiar las páginas reservadas; desde aquí se anotan las páginas que se escriban
+        public Snapshot snapshot() {
+            Map<Long, long[]> copies = new HashMap<>();
+            for (Page page : allocated) {
+                copies.put(page.number, page.words.clone());
+            }
+            for (Page page : dirtyPages) {
+                page.dirty = false;
+            }
+            dirtyPages.clear();
+            generation = nextGeneration++;
+            return new Snapshot(generation, copies);
+        }
+
+        // Volver al contenido de una instantánea. Si es la última, solo se restauran las páginas
+        // escritas desde entonces; si no, todas las reservadas.
+        public void restore(Snapshot snapshot) {
+            boolean incremental = snapshot.generation == generation;
+            for (Page page : new ArrayList<>(incremental ? dirtyPages : allocated)) {
+                long[] saved = snapshot.pages.get(page.number);
+                if (saved == null) {
+                    release(page);
+                    allocated.remove(page);
+                } else {
+                    System.arraycopy(saved, 0, page.words, 0, PAGE_WORDS);
+                }
+            }
+            if (!incremental) {
+                // Páginas de la instantánea que se liberaron después (p. ej. con clear)
+                for (Map.Entry<Long, long[]> entry : snapshot.pages.entrySet()) {
+                    if (page(entry.getKey()) == null) {
+                        System.arraycopy(entry.getValue(), 0, allocate(entry.getKey()).words, 0, PAGE_WORDS);
+                    }
+                }
+            }
+            for (Page page : dirtyPages) {
+                page.dirty = false;
+            }
+            dirtyPages.clear();
+            generation = snapshot.generation;
+        }
+
+        // Direcciones cuyo contenido difiere del de una instantánea, en orden; si es la última,
+        // solo se revisan las páginas escritas desde entonces
+        public long[] diff(Snapshot snapshot) {
+            TreeSet<Long> candidates = new TreeSet<>();
+            for (Page page : snapshot.generation == generation ? dirtyPages : allocated) {
+                candidates.add(page.number);
+            }
+            if (snapshot.generation != generation) {
+                candidates.addAll(snapshot.pages.keySet());
+            }
+
+            long[] differences = new long[16];
+            int count = 0;
+            long[] zeros = new long[PAGE_WORDS];
+            for (long number : candidates) {
+                Page page = page(number);
+                long[] current = page != null ? page.words : zeros;
+                long[] saved = snapshot.pages.getOrDefault(number, zeros);
+                int index = Arrays.mismatch(current, saved);
+                while (index >= 0) {
+                    if (count == differences.length) {
+                        differences = Arrays.copyOf(differences, count * 2);
+                    }
+                    differences[count++] = (number << PAGE_SHIFT) + index;
+                    int next = Arrays.mismatch(current, index + 1, PAGE_WORDS, saved, index + 1, PAGE_WORDS);
+                    index = next < 0 ? -1 : index + 1 + next;
+                }
+            }
+            return Arrays.copyOf(differences, count);
+        }
+
+        private Page page(long number) {
+            Page[] table = directory[(int) (number >>> TABLE_SHIFT)];
+            return table == null ? null : table[(int) number & ((1 << TABLE_SHIFT) - 1)];
+        }
+
+        private Page allocate(long number) {
+            Page[] table = directory[(int) (number >>> TABLE_SHIFT)];
+            if (table == null) {
+                table = new Page[1 << TABLE_SHIFT];
+                directory[(int) (number >>> TABLE_SHIFT)] = table;
+            }
+            Page page;
+            if (pool.isEmpty()) {
+                page = new Page();
+            } else {
+                page = pool.pop();
+                Arrays.fill(page.words, 0);
+                page.dirty = false;
+            }
+            page.number = number;
+            table[(int) number & ((1 << TABLE_SHIFT) - 1)] = page;
+            allocated.add(page);
+            return page;
+        }
+
+        private void release(Page page) {
+            directory[(int) (page.number >>> TABLE_SHIFT)][(int) page.number & ((1 << TABLE_SHIFT) - 1)] = null;
+            if (pool.size() < POOL_PAGES) {
+                pool.push(page);
+            }
+        }
+
+        private void markDirty(Page page) {
+            if (!page.dirty) {
+                page.dirty = true;
+                dirtyPages.add(page);
+            }
+        }
+
+        private void checkRange(long address, long count) {
+            if (address < 0 || count < 0 || address + count > size) {
+                throw new IndexOutOfBoundsException(String.format("Dirección de memoria fuera de rango: 0x%X", address));
+            }
+        }
+    }
+
+    enum ReplacementPolicy { LRU, FIFO, RANDOM }
+
+    enum WritePolicy { WRITE_BACK, WRITE_THROUGH }
+
+    // Caché simulada entre MAR/MBR y la memoria principal. Solo modela etiquetas, bits de
+    // modificado y tiempos: los datos siempre se leen y escriben en la memoria principal.
+    // Con una vía es de correspondencia directa; con varias, asociativa por conjuntos.
+    static class Cache {
+        private final int sizeWords;
+        private final int lineWords;
+        private final int ways;
+        private final int sets;
+        private final int offsetBits;
+        private final ReplacementPolicy replacement;
+        private final WritePolicy writePolicy;
+        private final int hitCycles;
+
+        private final int[] tags;     // Número de bloque almacenado, -1 si la línea es inválida
+        private final boolean[] dirty;
+        private final long[] stamps;  // LRU: último uso; FIFO: momento de carga
+        private long clock;
+        private long randomState = 0x9E3779B97F4A7C15L;
+
+        private long hits;
+        private long misses;
+        private long writeBacks;
+        private long cycles;
+
+        public Cache(int sizeWords, int lineWords, int ways, ReplacementPolicy replacement, WritePolicy writePolicy) {
+            if (Integer.bitCount(lineWords) != 1 || ways < 1 || sizeWords % (lineWords * ways) != 0
+                    || Integer.bitCount(sizeWords / (lineWords * ways)) != 1) {
+                throw new IllegalArgumentException("Configuración de caché no válida: " + sizeWords
+                        + " palabras, líneas de " + lineWords + ", " + ways + " vías");
+            }
+            this.sizeWords = sizeWords;
+            this.lineWords = lineWords;
+            this.ways = ways;
+            this.sets = sizeWords / (lineWords * ways);
+            this.offsetBits = Integer.numberOfTrailingZeros(lineWords);
+            this.replacement = replacement;
+            this.writePolicy = writePolicy;
+            this.hitCycles = 1;
+
+            int lines = sets * ways;
+            tags = new int[lines];
+            dirty = new boolean[lines];
+            stamps = new long[lines];
+            reset();
+        }
+
+        // Formato: "palabras:palabras_por_línea:vías:lru|fifo|aleatorio:wb|wt", p. ej. "64:4:2:lru:wb"
+        public static Cache fromSpec(String spec) {
+            String[] parts = spec.split(":");
+            if (parts.length != 5) {
+                throw new IllegalArgumentException("Especificación de caché no válida: " + spec);
+            }
+
+            return new Cache(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+                    parseReplacementPolicy(parts[3]), parseWritePolicy(parts[4]));
+        }
+
+        public static ReplacementPolicy parseReplacementPolicy(String name) {
+            switch (name.toLowerCase()) {
+                case "lru":
+                    return ReplacementPolicy.LRU;
+                case "fifo":
+                    return ReplacementPolicy.FIFO;
+                case "aleatorio":
+                    return ReplacementPolicy.RANDOM;
+                default:
+                    throw new IllegalArgumentException("Política de reemplazo desconocida: " + name);
+            }
+        }
+
+        public static WritePolicy parseWritePolicy(String name) {
+            switch (name.toLowerCase()) {
+                case "wb":
+                    return WritePolicy.WRITE_BACK;
+                case "wt":
+                    return WritePolicy.WRITE_THROUGH;
+                default:
+                    throw new IllegalArgumentException("Política de escritura desconocida: " + name);
+            }
+        }
+
+        public void reset() {
+            Arrays.fill(tags, -1);
+            Arrays.fill(dirty, false);
+            Arrays.fill(stamps, 0);
+            clock = 0;
+            hits = 0;
+            misses = 0;
+            writeBacks = 0;
+            cycles = 0;
+        }
+
+        public void setRandomSeed(long seed) {
+            randomState = seed != 0 ? seed : 0x9E3779B97F4A7C15L;
+        }
+
+        // Registrar un acceso y devolver los ciclos que consume. La escritura directa
+        // (write-through) no asigna línea en los fallos de escritura.
+        public int access(int address, boolean write, int memoryLatency) {
+            int block = address >>> offsetBits;
+            int base = (block & (sets - 1)) * ways;
+            clock++;
+
+            int cost;
+            int line = lookup(base, block);
+            if (line >= 0) {
+                hits++;
+                if (replacement == ReplacementPolicy.LRU) {
+                    stamps[line] = clock;
+                }
+                cost = hitCycles;
+                if (write) {
+                    if (writePolicy == WritePolicy.WRITE_THROUGH) {
+                        cost += memoryLatency;
+                    } else {
+                        dirty[line] = true;
+                    }
+                }
+            } else {
+                misses++;
+                if (write && writePolicy == WritePolicy.WRITE_THROUGH) {
+                    cost = hitCycles + memoryLatency;
+                } else {
+                    int victim = chooseVictim(base);
+                    cost = hitCycles + lineTransferCycles(memoryLatency);
+                    if (dirty[victim]) {
+                        writeBacks++;
+                        cost += lineTransferCycles(memoryLatency);
+                    }
+                    tags[victim] = block;
+                    dirty[victim] = write;
+                    stamps[victim] = clock;
+                }
+            }
+
+            cycles += cost;
+            return cost;
+        }
+
+        private int lookup(int base, int block) {
+            for (int way = 0; way < ways; way++) {
+                if (tags[base + way] == block) {
+                    return base + way;
+                }
+            }
+            return -1;
+        }
+
+        private int chooseVictim(int base) {
+            for (int way = 0; way < ways; way++) {
+                if (tags[base + way] < 0) {
+                    return base + way;
+                }
+            }
+
+            if (replacement == ReplacementPolicy.RANDOM) {
+                randomState ^= randomState << 13;
+                randomState ^= randomState >>> 7;
+                randomState ^= randomState << 17;
+                return base + (int) ((randomState >>> 1) % ways);
+            }
+
+            int victim = base;
+            for (int way = 1; way < ways; way++) {
+                if (stamps[base + way] < stamps[victim]) {
+                    victim = base + way;
+                }
+            }
+            return victim;
+        }
+
+        // Primera palabra con la latencia completa y el resto de la línea a una palabra por ciclo
+        private int lineTransferCycles(int memoryLatency) {
+            return memoryLatency + lineWords - 1;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getWriteBacks() {
+            return writeBacks;
+        }
+
+        public long getCycles() {
+            return cycles;
+        }
+
+        public double getHitRate() {
+            long accesses = hits + misses;
+            return accesses > 0 ? (double) hits / accesses : 0.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d palabras, líneas de %d, %d vía(s), %s, %s", sizeWords, lineWords, ways,
+                    replacement, writePolicy);
+        }
+    }
+
+    // Memoria virtual paginada entre MAR y la memoria física (opcional). La tabla de páginas, el
+    // TLB (totalmente asociativo) y la tabla de marcos son arreglos primitivos, de modo que una
+    // traducción no crea objetos. Las páginas que no caben en los marcos viven en un archivo de
+    // intercambio en disco; cada fallo de página lee la página de ese archivo y, si la víctima
+    // estaba modificada, la escribe antes.
+    static class VirtualMemory implements AutoCloseable {
+        private final int frames;
+        private final int pageWords;
+        private final int pageShift;
+        private final int tlbEntries;
+        private final ReplacementPolicy tlbReplacement;
+        private final ReplacementPolicy pageReplacement;
+        private int faultCycles = 1000;
+
+        private int[] pageFrame = new int[0];  // Marco de cada página virtual, -1 si no está en memoria
+        private final int[] framePage;         // Página virtual de cada marco, -1 si está libre
+        private final boolean[] frameDirty;
+        private final long[] frameStamps;      // LRU: último uso; FIFO: momento de carga
+        private final int[] physical;          // Contenido de los marcos
+
+        private final int[] tlbPage;           // -1 si la entrada es inválida
+        private final int[] tlbFrame;
+        private final long[] tlbStamps;
+        private int lastEntry;
+
+        private long clock;
+        private long randomState = 0x9E3779B97F4A7C15L;
+
+        private Path swapFile;
+        private FileChannel swap;
+        private final ByteBuffer pageBuffer;
+        private final IntBuffer pageWordsView;  // Vista de pageBuffer para copiar páginas sin crear objetos
+
+        private int lastCost;
+        private long tlbHits;
+        private long tlbMisses;
+        private long pageFaults;
+        private long swapIns;
+        private long swapOuts;
+        private long cycles;
+
+        public VirtualMemory(int frames, int pageWords, int tlbEntries, ReplacementPolicy tlbReplacement,
+                ReplacementPolicy pageReplacement) {
+            if (frames < 1 || Integer.bitCount(pageWords) != 1 || tlbEntries < 1) {
+                throw new IllegalArgumentException("Configuración de memoria virtual no válida: " + frames
+                        + " marcos, páginas de " + pageWords + " palabras, TLB de " + tlbEntries);
+            }
+            this.frames = frames;
+            this.pageWords = pageWords;
+            this.pageShift = Integer.numberOfTrailingZeros(pageWords);
+            this.tlbEntries = tlbEntries;
+            this.tlbReplacement = tlbReplacement;
+            this.pageReplacement = pageReplacement;
+
+            framePage = new int[frames];
+            frameDirty = new boolean[frames];
+            frameStamps = new long[frames];
+            physical = new int[frames * pageWords];
+            tlbPage = new int[tlbEntries];
+            tlbFrame = new int[tlbEntries];
+            tlbStamps = new long[tlbEntries];
+            pageBuffer = ByteBuffer.allocateDirect(pageWords * Integer.BYTES).order(ByteOrder.nativeOrder());
+            pageWordsView = pageBuffer.asIntBuffer();
+        }
+
+        // Formato: "marcos:palabras_por_página:entradas_tlb:política_tlb:política_páginas",
+        // p. ej. "8:64:4:lru:fifo"; las políticas son lru, fifo o aleatorio
+        public static VirtualMemory fromSpec(String spec) {
+            String[] parts = spec.split(":");
+            if (parts.length != 5) {
+                throw new IllegalArgumentException("Especificación de memoria virtual no válida: " + spec);
+            }
+
+            return new VirtualMemory(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+                    Cache.parseReplacementPolicy(parts[3]), Cache.parseReplacementPolicy(parts[4]));
+        }
+
+        public void setFaultCycles(int faultCycles) {
+            this.faultCycles = faultCycles;
+        }
+
+        public void setRandomSeed(long seed) {
+            randomState = seed != 0 ? seed : 0x9E3779B97F4A7C15L;
+        }
+
+        // Empezar una ejecución: la imagen completa pasa al archivo de intercambio y ninguna
+        // página queda en memoria (paginación por demanda desde el primer acceso)
+        public void attach(int[] image) {
+            if (image.length % pageWords != 0) {
+                throw new IllegalArgumentException("El tamaño de la memoria (" + image.length
+                        + " palabras) no es múltiplo del tamaño de página (" + pageWords + ")");
+            }
+            if (pageFrame.length != image.length >>> pageShift) {
+                pageFrame = new int[image.length >>> pageShift];
+            }
+            Arrays.fill(pageFrame, -1);
+            Arrays.fill(framePage, -1);
+            Arrays.fill(frameDirty, false);
+            Arrays.fill(frameStamps, 0);
+            Arrays.fill(tlbPage, -1);
+            Arrays.fill(tlbStamps, 0);
+            lastEntry = 0;
+            clock = 0;
+
+            try {
+                if (swap == null) {
+                    swapFile = Files.createTempFile("intercambio", ".swp");
+                    swap = FileChannel.open(swapFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                }
+                swap.truncate(0);
+                for (int page = 0; page < pageFrame.length; page++) {
+                    pageBuffer.clear();
+                    pageWordsView.put(0, image, page << pageShift, pageWords);
+                    writePage(page);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        // Terminar una ejecución: devolver a la imagen el contenido del intercambio y de los marcos
+        public void detach(int[] image) {
+            try {
+                for (int page = 0; page < pageFrame.length; page++) {
+                    int frame = pageFrame[page];
+                    if (frame >= 0) {
+                        System.arraycopy(physical, frame << pageShift, image, page << pageShift, pageWords);
+                    } else {
+                        readPage(page);
+                        pageWordsView.get(0, image, page << pageShift, pageWords);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        // Traducir una dirección virtual a un índice de la memoria física; el costo en ciclos del
+        // acceso al TLB, a la tabla de páginas y al disco queda en getLastCost()
+        public int translate(int address, boolean write, int memoryLatency) {
+            int page = address >>> pageShift;
+            clock++;
+
+            // Las páginas de una entrada válida son distintas, así que empezar por la entrada del
+            // último acierto solo cambia el orden de la búsqueda
+            int frame = -1;
+            int entry = lastEntry;
+            for (int searched = 0; searched < tlbEntries; searched++) {
+                if (tlbPage[entry] == page) {
+                    tlbHits++;
+                    if (tlbReplacement == ReplacementPolicy.LRU) {
+                        tlbStamps[entry] = clock;
+                    }
+                    frame = tlbFrame[entry];
+                    lastEntry = entry;
+                    lastCost = 0;
+                    break;
+                }
+                entry = entry + 1 < tlbEntries ? entry + 1 : 0;
+            }
+
+            if (frame < 0) {
+                // Fallo del TLB: recorrer la tabla de páginas (un acceso a memoria)
+                tlbMisses++;
+                lastCost = memoryLatency;
+                frame = pageFrame[page];
+                if (frame < 0) {
+                    frame = pageFault(page);
+                }
+                entry = chooseVictim(tlbPage, tlbStamps, tlbReplacement);
+                lastEntry = entry;
+                tlbPage[entry] = page;
+                tlbFrame[entry] = frame;
+                tlbStamps[entry] = clock;
+            }
+
+            if (pageReplacement == ReplacementPolicy.LRU) {
+                frameStamps[frame] = clock;
+            }
+            if (write) {
+                frameDirty[frame] = true;
+            }
+            cycles += lastCost;
+            return (frame << pageShift) | (address & (pageWords - 1));
+        }
+
+        private int pageFault(int page) {
+            pageFaults++;
+            lastCost += faultCycles;
+            int frame = chooseVictim(framePage, frameStamps, pageReplacement);
+            try {
+                int victim = framePage[frame];
+                if (victim >= 0) {
+                    if (frameDirty[frame]) {
+                        lastCost += faultCycles;
+                        pageBuffer.clear();
+                        pageWordsView.put(0, physical, frame << pageShift, pageWords);
+                        writePage(victim);
+                        swapOuts++;
+                    }
+                    pageFrame[victim] = -1;
+                    for (int entry = 0; entry < tlbEntries; entry++) {
+                        if (tlbPage[entry] == victim) {
+                            tlbPage[entry] = -1;
+                        }
+                    }
+                }
+
+                readPage(page);
+                pageWordsView.get(0, physical, frame << pageShift, pageWords);
+                swapIns++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            pageFrame[page] = frame;
+            framePage[frame] = page;
+            frameDirty[frame] = false;
+            frameStamps[frame] = clock;
+            return frame;
+        }
+
+        // Entrada libre (-1) o, si no hay, la víctima según la política (menor marca de tiempo)
+        private int chooseVictim(int[] owners, long[] stamps, ReplacementPolicy policy) {
+            for (int i = 0; i < owners.length; i++) {
+                if (owners[i] < 0) {
+                    return i;
+                }
+            }
+
+            if (policy == ReplacementPolicy.RANDOM) {
+                randomState ^= randomState << 13;
+                randomState ^= randomState >>> 7;
+                randomState ^= randomState << 17;
+                return (int) ((randomState >>> 1) % owners.length);
+            }
+
+            int victim = 0;
+            for (int i = 1; i < owners.length; i++) {
+                if (stamps[i] < stamps[victim]) {
+                    victim = i;
+                }
+            }
+            return victim;
+        }
+
+        private void readPage(int page) throws IOException {
+            pageBuffer.clear();
+            long position = (long) page * pageBuffer.capacity();
+            while (pageBuffer.hasRemaining()) {
+                if (swap.read(pageBuffer, position + pageBuffer.position()) < 0) {
+                    throw new EOFException("Página " + page + " fuera del archivo de intercambio");
+                }
+            }
+            pageBuffer.flip();
+        }
+
+        private void writePage(int page) throws IOException {
+            long position = (long) page * pageBuffer.capacity();
+            while (pageBuffer.hasRemaining()) {
+                swap.write(pageBuffer, position + pageBuffer.position());
+            }
+        }
+
+        public int read(int physicalAddress) {
+            return physical[physicalAddress];
+        }
+
+        public void write(int physicalAddress, int value) {
+            physical[physicalAddress] = value;
+        }
+
+        public int getLastCost() {
+            return lastCost;
+        }
+
+        public long getTlbHits() {
+            return tlbHits;
+        }
+
+        public long getTlbMisses() {
+            return tlbMisses;
+        }
+
+        public double getTlbHitRate() {
+            long accesses = tlbHits + tlbMisses;
+            return accesses > 0 ? (double) tlbHits / accesses : 0.0;
+        }
+
+        public long getPageFaults() {
+            return pageFaults;
+        }
+
+        public long getSwapIns() {
+            return swapIns;
+        }
+
+        public long getSwapOuts() {
+            return swapOuts;
+        }
+
+        public long getCycles() {
+            return cycles;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (swap != null) {
+                swap.close();
+                Files.deleteIfExists(swapFile);
+                swap = null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d marcos de %d palabras, TLB de %d entradas %s, reemplazo de páginas %s", frames,
+                    pageWords, tlbEntries, tlbReplacement, pageReplacement);
+        }
+    }
+
+    // Caché privada de una CPU del multiprocesador con el protocolo MESI. Como Cache, solo modela
+    // etiquetas, estados y tiempos: los datos están en la memoria compartida. Durante una ronda la
+    // CPU solo anota sus accesos y guarda sus escrituras en un búfer (sus propias lecturas las ven);
+    // al final de la ronda el bus procesa los accesos de todas las CPU en orden de arbitraje.
+    static class MesiCache {
+        static final byte INVALID = 0;
+        static final byte SHARED = 1;
+        static final byte EXCLUSIVE = 2;
+        static final byte MODIFIED = 3;
+
+        private final int lineWords;
+        private final int ways;
+        private final int sets;
+        private final int offsetBits;
+        private final int[] tags;
+        private final byte[] states;
+        private final long[] stamps;  // LRU
+        private long clock;
+
+        private final int[] memory;
+
+        // Accesos de la ronda (dirección << 1 | escritura) y búfer de escrituras
+        private int[] log = new int[16];
+        private int logCount;
+        private int[] bufferAddresses = new int[8];
+        private int[] bufferValues = new int[8];
+        private int bufferCount;
+
+        private long hits;
+        private long misses;
+        private long writeBacks;
+        private long invalidationsReceived;
+
+        public MesiCache(int sizeWords, int lineWords, int ways, int[] memory) {
+            if (Integer.bitCount(lineWords) != 1 || ways < 1 || sizeWords % (lineWords * ways) != 0
+                    || Integer.bitCount(sizeWords / (lineWords * ways)) != 1) {
+                throw new IllegalArgumentException("Configuración de caché no válida: " + sizeWords
+                        + " palabras, líneas de " + lineWords + ", " + ways + " vías");
+            }
+            this.lineWords = lineWords;
+            this.ways = ways;
+            this.sets = sizeWords / (lineWords * ways);
+            this.offsetBits = Integer.numberOfTrailingZeros(lineWords);
+            this.memory = memory;
+            tags = new int[sets * ways];
+            states = new byte[sets * ways];
+            stamps = new long[sets * ways];
+            Arrays.fill(tags, -1);
+        }
+
+        // Lado de la CPU (en su hilo)
+        public int read(int address) {
+            record(address << 1);
+            for (int i = bufferCount - 1; i >= 0; i--) {
+                if (bufferAddresses[i] == address) {
+                    return bufferValues[i];
+                }
+            }
+            return memory[address];
+        }
+
+        public void write(int address, int value) {
+            record(address << 1 | 1);
+            if (bufferCount == bufferAddresses.length) {
+                bufferAddresses = Arrays.copyOf(bufferAddresses, bufferCount * 2);
+                bufferValues = Arrays.copyOf(bufferValues, bufferCount * 2);
+            }
+            bufferAddresses[bufferCount] = address;
+            bufferValues[bufferCount++] = value;
+        }
+
+        private void record(int entry) {
+            if (logCount == log.length) {
+                log = Arrays.copyOf(log, logCount * 2);
+            }
+            log[logCount++] = entry;
+        }
+
+        // Lado del bus (en la acción de la barrera, con las demás CPU detenidas)
+        int getLogCount() {
+            return logCount;
+        }
+
+        int getLogEntry(int index) {
+            return log[index];
+        }
+
+        void commitWrites() {
+            for (int i = 0; i < bufferCount; i++) {
+                memory[bufferAddresses[i]] = bufferValues[i];
+            }
+            bufferCount = 0;
+            logCount = 0;
+        }
+
+        int block(int address) {
+            return address >>> offsetBits;
+        }
+
+        int lookup(int block) {
+            int base = (block & (sets - 1)) * ways;
+            for (int way = 0; way < ways; way++) {
+                if (tags[base + way] == block && states[base + way] != INVALID) {
+                    return base + way;
+                }
+            }
+            return -1;
+        }
+
+        byte getState(int line) {
+            return states[line];
+        }
+
+        void setState(int line, byte state) {
+            states[line] = state;
+        }
+
+        void touch(int line) {
+            stamps[line] = ++clock;
+        }
+
+        void hit() {
+            hits++;
+        }
+
+        // Fallo: reservar una línea para el bloque (expulsando la víctima LRU) y devolver su índice;
+        // si la víctima estaba modificada, writeBack() la cuenta y el bus cobra su escritura
+        int allocate(int block) {
+            misses++;
+            int base = (block & (sets - 1)) * ways;
+            int victim = base;
+            for (int way = 0; way < ways; way++) {
+                if (states[base + way] == INVALID) {
+                    victim = base + way;
+                    break;
+                }
+                if (stamps[base + way] < stamps[victim]) {
+                    victim = base + way;
+                }
+            }
+            tags[victim] = block;
+            return victim;
+        }
+
+        boolean evicting(int line) {
+            return states[line] == MODIFIED;
+        }
+
+        void writeBack() {
+            writeBacks++;
+        }
+
+        void invalidated() {
+            invalidationsReceived++;
+        }
+
+        int lineTransferCycles(int memoryLatency) {
+            return memoryLatency + lineWords - 1;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getWriteBacks() {
+            return writeBacks;
+        }
+
+        public long getInvalidationsReceived() {
+            return invalidationsReceived;
+        }
+
+        public double getHitRate() {
+            long accesses = hits + misses;
+            return accesses > 0 ? (double) hits / accesses : 0.0;
+        }
+    }
+
+    // Multiprocesador de N Máquinas Hipotéticas sobre una sola memoria, cada una con su caché MESI.
+    // Cada CPU se simula en su propio hilo; las CPU ejecutan por rondas de "quantum" instrucciones
+    // separadas por una CyclicBarrier, y la acción de la barrera hace de bus: procesa los accesos de
+    // la ronda CPU por CPU en orden de arbitraje (rotatorio) y aplica sus escrituras. Durante una
+    // ronda nadie escribe en la memoria compartida, así que el resultado no depende de los hilos.
+    static class MultiprocessorSimulation {
+        public static final int CPU_ID_PORT = 0x00A;
+
+        private final HypotheticalMachineSimulation[] cpus;
+        private final MesiCache[] caches;
+        private final RecordingDevice[] consoles;
+        private final int[] memory;
+        private int memoryLatency = 1;
+        private int quantum = 1;
+        private int startPc;
+
+        private int firstInOrder;
+        private long rounds;
+        private long maxInstructions = 1_000_000;
+        private volatile boolean stopped;
+        private final RuntimeException[] errors;
+
+        private long busReads;
+        private long busReadExclusives;
+        private long busUpgrades;
+        private long invalidations;
+        private long interventions;
+
+        // Caché de cada CPU: "palabras:palabras_por_línea:vías", p. ej. "64:4:2"
+        public MultiprocessorSimulation(int count, String cacheSpec) {
+            String[] parts = cacheSpec.split(":");
+            if (count < 1 || parts.length != 3) {
+                throw new IllegalArgumentException("Configuración de multiprocesador no válida: " + count + " CPU, caché "
+                        + cacheSpec);
+            }
+            cpus = new HypotheticalMachineSimulation[count];
+            caches = new MesiCache[count];
+            consoles = new RecordingDevice[count];
+            errors = new RuntimeException[count];
+            memory = new int[4096];
+            for (int id = 0; id < count; id++) {
+                HypotheticalMachineSimulation cpu = new HypotheticalMachineSimulation();
+                cpu.initialize();
+                cpu.memory = memory;
+                caches[id] = new MesiCache(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]),
+                        Integer.parseInt(parts[2]), memory);
+                cpu.coherentCache = caches[id];
+
+                // E/S propia de cada CPU: la consola se registra (sin leer del teclado) y el puerto
+                // CPU_ID_PORT devuelve el número de la CPU. Sin DMA: escribiría la memoria compartida
+                // desde el hilo de la CPU a mitad de ronda, sin pasar por la caché coherente
+                consoles[id] = new RecordingDevice(new NullDevice());
+                cpu.getIOBus().attach(IOBus.CONSOLE_PORT, consoles[id]);
+                for (int port = IOBus.DMA_FIRST_PORT; port < IOBus.DMA_FIRST_PORT + 4; port++) {
+                    cpu.getIOBus().attach(port, null);
+                }
+                int cpuId = id;
+                cpu.getIOBus().attach(CPU_ID_PORT, new IODevice() {
+                    @Override
+                    public int read() {
+                        return cpuId;
+                    }
+
+                    @Override
+                    public void write(int value) {
+                        throw new IllegalStateException(
+                                String.format("El puerto de E/S 0x%03X (número de CPU) es de solo lectura", CPU_ID_PORT));
+                    }
+                });
+                cpus[id] = cpu;
+            }
+        }
+
+        public void setMemoryLatency(int memoryLatency) {
+            this.memoryLatency = memoryLatency;
+        }
+
+        public void setQuantum(int quantum) {
+            this.quantum = quantum;
+        }
+
+        public void setMaxInstructions(long maxInstructions) {
+            this.maxInstructions = maxInstructions;
+        }
+
+        // Todas las CPU empiezan en el PC del programa
+        public void loadProgram(Path file) throws IOException {
+            HypotheticalMachineSimulation loader = new HypotheticalMachineSimulation();
+            loader.loadProgram(file);
+            System.arraycopy(loader.memory, 0, memory, 0, memory.length);
+            startPc = loader.registers.get("PC");
+            for (HypotheticalMachineSimulation cpu : cpus) {
+                cpu.registers.put("PC", startPc);
+            }
+        }
+
+        public void run() throws InterruptedException {
+            for (HypotheticalMachineSimulation cpu : cpus) {
+                cpu.loadRegisterFile();
+                cpu.halted = false;
+            }
+
+            CyclicBarrier barrier = new CyclicBarrier(cpus.length, this::endRound);
+            Thread[] threads = new Thread[cpus.length];
+            for (int id = 0; id < cpus.length; id++) {
+                int cpuId = id;
+                threads[id] = new Thread(() -> runCpu(cpuId, barrier), "CPU " + id);
+                threads[id].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            for (HypotheticalMachineSimulation cpu : cpus) {
+                cpu.storeRegisterFile();
+                cpu.afterRun();
+            }
+        }
+
+        private void runCpu(int id, CyclicBarrier barrier) {
+            HypotheticalMachineSimulation cpu = cpus[id];
+            try {
+                while (!stopped) {
+                    for (int i = 0; i < quantum && !cpu.halted && errors[id] == null
+                            && cpu.instructionCount < maxInstructions; i++) {
+                        try {
+                            cpu.executeInstruction();
+                            cpu.instructionCount++;
+                        } catch (RuntimeException e) {
+                            errors[id] = e;
+                        }
+                    }
+                    barrier.await();
+                }
+            } catch (InterruptedException | BrokenBarrierException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // Acción de la barrera: arbitraje del bus y fin de la ejecución
+        private void endRound() {
+            for (int i = 0; i < cpus.length; i++) {
+                int id = (firstInOrder + i) % cpus.length;
+                MesiCache cache = caches[id];
+                long cycles = 0;
+                for (int entry = 0; entry < cache.getLogCount(); entry++) {
+                    int access = cache.getLogEntry(entry);
+                    cycles += access(id, access >>> 1, (access & 1) != 0);
+                }
+                cache.commitWrites();
+                cpus[id].cycleCount += cycles;
+            }
+            firstInOrder = (firstInOrder + 1) % cpus.length;
+            rounds++;
+
+            boolean running = false;
+            for (int id = 0; id < cpus.length; id++) {
+                if (errors[id] != null) {
+                    stopped = true;
+                    return;
+                }
+                running |= !cpus[id].halted && cpus[id].instructionCount < maxInstructions;
+            }
+            stopped = !running;
+        }
+
+        // Acceso de la CPU id a través de su caché; las demás cachés espían el bus
+        private int access(int id, int address, boolean write) {
+            MesiCache cache = caches[id];
+            int block = cache.block(address);
+            int line = cache.lookup(block);
+            int cost = 1;
+
+            if (line >= 0) {
+                cache.hit();
+                byte state = cache.getState(line);
+                if (write && state == MesiCache.SHARED) {
+                    // BusUpgr: invalidar las demás copias
+                    busUpgrades++;
+                    invalidateOthers(id, block);
+                    cost += memoryLatency;
+                }
+                if (write) {
+                    cache.setState(line, MesiCache.MODIFIED);
+                }
+                cache.touch(line);
+                return cost;
+            }
+
+            line = cache.allocate(block);
+            if (cache.evicting(line)) {
+                cache.writeBack();
+                cost += cache.lineTransferCycles(memoryLatency);
+            }
+            cost += cache.lineTransferCycles(memoryLatency);
+            if (write) {
+                // BusRdX: leer el bloque para modificarlo e invalidar las demás copias
+                busReadExclusives++;
+                invalidateOthers(id, block);
+                cache.setState(line, MesiCache.MODIFIED);
+            } else {
+                // BusRd: las demás copias pasan a compartidas (una modificada se escribe antes)
+                busReads++;
+                boolean shared = false;
+                for (int other = 0; other < caches.length; other++) {
+                    int otherLine = other != id ? caches[other].lookup(block) : -1;
+                    if (otherLine >= 0) {
+                        if (caches[other].getState(otherLine) == MesiCache.MODIFIED) {
+                            interventions++;
+                            caches[other].writeBack();
+                        }
+                        caches[other].setState(otherLine, MesiCache.SHARED);
+                        shared = true;
+                    }
+                }
+                cache.setState(line, shared ? MesiCache.SHARED : MesiCache.EXCLUSIVE);
+            }
+            cache.touch(line);
+            return cost;
+        }
+
+        private void invalidateOthers(int id, int block) {
+            for (int other = 0; other < caches.length; other++) {
+                int otherLine = other != id ? caches[other].lookup(block) : -1;
+                if (otherLine >= 0) {
+                    if (caches[other].getState(otherLine) == MesiCache.MODIFIED) {
+                        interventions++;
+                        caches[other].writeBack();
+                    }
+                    caches[other].setState(otherLine, MesiCache.INVALID);
+                    caches[other].invalidated();
+                    invalidations++;
+                }
+            }
+        }
+
+        public String report() {
+            StringWriter buffer = new StringWriter();
+            PrintWriter report = new PrintWriter(buffer);
+            report.printf("%d CPU, %d rondas de %d instrucciones%n", cpus.length, rounds, quantum);
+            for (int id = 0; id < cpus.length; id++) {
+                HypotheticalMachineSimulation cpu = cpus[id];
+                MesiCache cache = caches[id];
+                String status = errors[id] != null ? "error (" + errors[id].getMessage() + ")"
+                        : cpu.halted ? "detenida" : "límite de instrucciones";
+                report.printf("CPU %d: %d instrucciones, %d ciclos, PC = 0x%03X, AC = %d, %s%n", id,
+                        cpu.getInstructionCount(), cpu.getCycleCount(), cpu.registers.get("PC"),
+                        (short) (int) cpu.registers.get("AC"), status);
+                report.printf("  Caché: %d aciertos, %d fallos (%.1f%%), %d escrituras de bloques modificados, %d invalidaciones recibidas%n",
+                        cache.getHits(), cache.getMisses(), cache.getHitRate() * 100, cache.getWriteBacks(),
+                        cache.getInvalidationsReceived());
+                int[] output = consoles[id].getWritten();
+                if (output.length > 0) {
+                    report.println("  Consola: " + Arrays.toString(output));
+                }
+            }
+            report.printf("Bus: %d BusRd, %d BusRdX, %d BusUpgr, %d invalidaciones, %d intervenciones de bloques modificados%n",
+                    busReads, busReadExclusives, busUpgrades, invalidations, interventions);
+            report.flush();
+            return buffer.toString();
+        }
+
+        public HypotheticalMachineSimulation getCpu(int id) {
+            return cpus[id];
+        }
+    }
+
+    // Predictor de saltos condicionales. Las tablas son arreglos primitivos indexados por los
+    // bits bajos del PC, de modo que millones de saltos no crean objetos. La historia global
+    // se actualiza al resolver cada salto (no de forma especulativa).
+    static abstract class BranchPredictor {
+        private long predictions;
+        private long mispredictions;
+        private long penaltyCycles;
+
+        public abstract boolean predict(int pc, int target);
+
+        protected abstract void train(int pc, boolean taken);
+
+        public abstract String getName();
+
+        // Registrar el resultado real del salto; devuelve true si la predicción falló
+        public final boolean update(int pc, boolean predicted, boolean taken, int penalty) {
+            predictions++;
+            train(pc, taken);
+            if (predicted != taken) {
+                mispredictions++;
+                penaltyCycles += penalty;
+                return true;
+            }
+            return false;
+        }
+
+        public long getPredictions() {
+            return predictions;
+        }
+
+        public long getMispredictions() {
+            return mispredictions;
+        }
+
+        public long getPenaltyCycles() {
+            return penaltyCycles;
+        }
+
+        public double getAccuracy() {
+            return predictions > 0 ? 1.0 - (double) mispredictions / predictions : 0.0;
+        }
+
+        // Formato: "no-tomado", "tomado", "btfn", "1bit:bits", "2bit:bits" o "gshare:bits",
+        // donde bits es el logaritmo del número de entradas de la tabla (10 por defecto)
+        public static BranchPredictor fromSpec(String spec) {
+            String[] parts = spec.split(":");
+            int indexBits = parts.length > 1 ? Integer.parseInt(parts[1]) : 10;
+            switch (parts[0].toLowerCase()) {
+                case "no-tomado":
+                    return new StaticPredictor(StaticPredictor.NOT_TAKEN);
+                case "tomado":
+                    return new StaticPredictor(StaticPredictor.TAKEN);
+                case "btfn":
+                    return new StaticPredictor(StaticPredictor.BACKWARD_TAKEN);
+                case "1bit":
+                    return new OneBitPredictor(indexBits);
+                case "2bit":
+                    return new TwoBitPredictor(indexBits);
+                case "gshare":
+                    return new GsharePredictor(indexBits);
+                default:
+                    throw new IllegalArgumentException("Predictor desconocido: " + spec);
+            }
+        }
+    }
+
+    // Predicción estática: siempre no tomado, siempre tomado, o tomado solo hacia atrás (bucles)
+    static class StaticPredictor extends BranchPredictor {
+        static final int NOT_TAKEN = 0, TAKEN = 1, BACKWARD_TAKEN = 2;
+        private final int mode;
+
+        public StaticPredictor(int mode) {
+            this.mode = mode;
+        }
+
+        @Override
+        public boolean predict(int pc, int target) {
+            return mode == TAKEN || (mode == BACKWARD_TAKEN && target <= pc);
+        }
+
+        @Override
+        protected void train(int pc, boolean taken) {
+        }
+
+        @Override
+        public String getName() {
+            return mode == TAKEN ? "estático (tomado)" : mode == BACKWARD_TAKEN ? "estático (hacia atrás tomado)"
+                    : "estático (no tomado)";
+        }
+    }
+
+    // Un bit por entrada: se predice lo que hizo el salto la última vez
+    static class OneBitPredictor extends BranchPredictor {
+        private final boolean[] lastTaken;
+        private final int mask;
+
+        public OneBitPredictor(int indexBits) {
+            lastTaken = new boolean[1 << indexBits];
+            mask = lastTaken.length - 1;
+        }
+
+        @Override
+        public boolean predict(int pc, int target) {
+            return lastTaken[pc & mask];
+        }
+
+        @Override
+        protected void train(int pc, boolean taken) {
+            lastTaken[pc & mask] = taken;
+        }
+
+        @Override
+        public String getName() {
+            return "1 bit, " + lastTaken.length + " entradas";
+        }
+    }
+
+    // Contadores saturados de 2 bits (0-1: no tomado, 2-3: tomado), iniciados en "débilmente no tomado"
+    static class TwoBitPredictor extends BranchPredictor {
+        protected final byte[] counters;
+        protected final int mask;
+
+        public TwoBitPredictor(int indexBits) {
+            counters = new byte[1 << indexBits];
+            Arrays.fill(counters, (byte) 1);
+            mask = counters.length - 1;
+        }
+
+        protected int index(int pc) {
+            return pc & mask;
+        }
+
+        @Override
+        public boolean predict(int pc, int target) {
+            return counters[index(pc)] >= 2;
+        }
+
+        @Override
+        protected void train(int pc, boolean taken) {
+            int i = index(pc);
+            if (taken) {
+                if (counters[i] < 3) {
+                    counters[i]++;
+                }
+            } else if (counters[i] > 0) {
+                counters[i]--;
+            }
+        }
+
+        @Override
+        public String getName() {
+            return "2 bits, " + counters.length + " entradas";
+        }
+    }
+
+    // gshare: contadores de 2 bits indexados por PC XOR historia global de saltos
+    static class GsharePredictor extends TwoBitPredictor {
+        private int history;
+
+        public GsharePredictor(int indexBits) {
+            super(indexBits);
+        }
+
+        @Override
+        protected int index(int pc) {
+            return (pc ^ history) & mask;
+        }
+
+        @Override
+        protected void train(int pc, boolean taken) {
+            super.train(pc, taken);
+            history = ((history << 1) | (taken ? 1 : 0)) & mask;
+        }
+
+        @Override
+        public String getName() {
+            return "gshare, " + counters.length + " entradas";
+        }
+    }
+
+    // Detector de bucles infinitos para la ejecución continua. En cada salto hacia atrás compara el
+    // estado (PC, AC, MQ, lecturas de E/S y un hash de la memoria que se actualiza en cada escritura)
+    // con un único estado guardado que se renueva cada 2^k saltos (algoritmo de Brent), así que un
+    // bucle de periodo p se detecta antes de 2p saltos desde que se entra en él. Si los hashes
+    // coinciden se compara la memoria completa: solo se informa cuando el estado se repite exactamente.
+    static class LoopDetector {
+        private long memoryHash;
+
+        private boolean saved;
+        private int savedPc;
+        private int savedAc;
+        private int savedMq;
+        private long savedIoReads;
+        private long savedHash;
+        private int[] savedMemory;
+
+        private long power;
+        private long distance;
+        private int windowLow;
+        private int windowHigh;
+
+        private boolean detected;
+        private int loopStart;
+        private int loopEnd;
+        private long loopPeriod;
+
+        public void start(int[] memory) {
+            memoryHash = 0;
+            for (int address = 0; address < memory.length; address++) {
+                memoryHash += mix(address, memory[address]);
+            }
+            saved = false;
+            power = 1;
+            distance = 0;
+            detected = false;
+        }
+
+        public void memoryWritten(int address, int oldValue, int newValue) {
+            memoryHash += mix(address, newValue) - mix(address, oldValue);
+        }
+
+        // Devuelve true si el estado al saltar de "from" a "target" ya se había visto
+        public boolean backEdge(int from, int target, int ac, int mq, long ioReads, int[] memory) {
+            windowLow = Math.min(windowLow, target);
+            windowHigh = Math.max(windowHigh, from);
+
+            if (saved && target == savedPc && ac == savedAc && mq == savedMq && ioReads == savedIoReads
+                    && memoryHash == savedHash && Arrays.equals(memory, savedMemory)) {
+                detected = true;
+                loopStart = windowLow;
+                loopEnd = windowHigh;
+                loopPeriod = distance + 1;
+                return true;
+            }
+
+            distance++;
+            if (!saved || distance == power) {
+                saved = true;
+                savedPc = target;
+                savedAc = ac;
+                savedMq = mq;
+                savedIoReads = ioReads;
+                savedHash = memoryHash;
+                if (savedMemory == null || savedMemory.length != memory.length) {
+                    savedMemory = new int[memory.length];
+                }
+                System.arraycopy(memory, 0, savedMemory, 0, memory.length);
+                power <<= 1;
+                distance = 0;
+                windowLow = Integer.MAX_VALUE;
+                windowHigh = Integer.MIN_VALUE;
+            }
+            return false;
+        }
+
+        public boolean isDetected() {
+            return detected;
+        }
+
+        // Rango de direcciones del bucle (del destino más bajo al salto más alto)
+        public int getLoopStart() {
+            return loopStart;
+        }
+
+        public int getLoopEnd() {
+            return loopEnd;
+        }
+
+        // Saltos hacia atrás por vuelta del bucle
+        public long getLoopPeriod() {
+            return loopPeriod;
+        }
+
+        // Mezcla dirección y valor (finalizador de SplitMix64) para el hash aditivo de la memoria
+        private static long mix(int address, int value) {
+            long z = ((long) address << 32) ^ (value & 0xFFFFFFFFL);
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+    }
+
+    // Motivo por el que terminó una ejecución continua; el código es el que aparece en los CSV
+    enum StopReason {
+        HALTED("detenida", "detenida"),
+        INSTRUCTION_LIMIT("limite", "límite de instrucciones alcanzado"),
+        CYCLE_LIMIT("limite_ciclos", "límite de ciclos alcanzado"),
+        TIME_LIMIT("limite_tiempo", "límite de tiempo alcanzado"),
+        IO_LIMIT("limite_es", "límite de E/S alcanzado"),
+        TRACE_LIMIT("limite_traza", "límite de tamaño de la traza alcanzado"),
+        LOOP("bucle", "bucle infinito"),
+        ERROR("error", "error");
+
+        private final String code;
+        private final String description;
+
+        StopReason(String code, String description) {
+            this.code = code;
+            this.description = description;
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    // Límites de recursos de una ejecución continua (Long.MAX_VALUE = sin límite) y cada cuántas
+    // instrucciones se comprueban
+    static class RunLimits {
+        public static final int DEFAULT_CHECK_INTERVAL = 4096;
+
+        private long maxInstructions = Long.MAX_VALUE;
+        private long maxCycles = Long.MAX_VALUE;
+        private long maxMillis;
+        private long maxIoWords = Long.MAX_VALUE;
+        private long maxTraceBytes = Long.MAX_VALUE;
+        private int checkInterval = DEFAULT_CHECK_INTERVAL;
+
+        public long getMaxInstructions() {
+            return maxInstructions;
+        }
+
+        public void setMaxInstructions(long maxInstructions) {
+            this.maxInstructions = maxInstructions;
+        }
+
+        public long getMaxCycles() {
+            return maxCycles;
+        }
+
+        public void setMaxCycles(long maxCycles) {
+            this.maxCycles = maxCycles;
+        }
+
+        // 0 = sin límite de tiempo
+        public long getMaxMillis() {
+            return maxMillis;
+        }
+
+        public void setMaxMillis(long maxMillis) {
+            this.maxMillis = maxMillis;
+        }
+
+        public long getMaxIoWords() {
+            return maxIoWords;
+        }
+
+        public void setMaxIoWords(long maxIoWords) {
+            this.maxIoWords = maxIoWords;
+        }
+
+        public long getMaxTraceBytes() {
+            return maxTraceBytes;
+        }
+
+        public void setMaxTraceBytes(long maxTraceBytes) {
+            this.maxTraceBytes = maxTraceBytes;
+        }
+
+        public int getCheckInterval() {
+            return checkInterval;
+        }
+
+        public void setCheckInterval(int checkInterval) {
+            if (checkInterval < 1) {
+                throw new IllegalArgumentException("El intervalo de comprobación debe ser positivo");
+            }
+            this.checkInterval = checkInterval;
+        }
+
+        // Aplicar una opción de línea de órdenes; devuelve false si no es un límite
+        public boolean configure(String option, String value) {
+            switch (option) {
+                case "--max":
+                    maxInstructions = Long.parseLong(value);
+                    return true;
+                case "--max-ciclos":
+                    maxCycles = Long.parseLong(value);
+                    return true;
+                case "--max-tiempo":
+                    maxMillis = Long.parseLong(value);
+                    return true;
+                case "--max-es":
+                    maxIoWords = Long.parseLong(value);
+                    return true;
+                case "--max-traza":
+                    maxTraceBytes = Long.parseLong(value);
+                    return true;
+                case "--comprobar":
+                    setCheckInterval(Integer.parseInt(value));
+                    return true;
+                default:
+                    return false;
+            }
+        }
+    }
+
+    // Resultado de una ejecución continua: motivo de la parada y recursos consumidos
+    static class RunResult {
+        private final StopReason stopReason;
+        private final long instructions;
+        private final long cycles;
+        private final long elapsedNanos;
+        private final long ioWords;
+        private final long traceBytes;
+        private final RuntimeException error;
+
+        RunResult(StopReason stopReason, long instructions, long cycles, long elapsedNanos, long ioWords,
+                  long traceBytes, RuntimeException error) {
+            this.stopReason = stopReason;
+            this.instructions = instructions;
+            this.cycles = cycles;
+            this.elapsedNanos = elapsedNanos;
+            this.ioWords = ioWords;
+            this.traceBytes = traceBytes;
+            this.error = error;
+        }
+
+        public StopReason getStopReason() {
+            return stopReason;
+        }
+
+        public long getInstructions() {
+            return instructions;
+        }
+
+        public long getCycles() {
+            return cycles;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public long getIoWords() {
+            return ioWords;
+        }
+
+        public long getTraceBytes() {
+            return traceBytes;
+        }
+
+        // Excepción que detuvo la simulación (solo con StopReason.ERROR)
+        public RuntimeException getError() {
+            return error;
+        }
+    }
+
+    // Traza de ejecución en un archivo de texto: dirección, instrucción desensamblada y AC tras ejecutarla
+    static class ExecutionTrace {
+        private final Writer out;
+        private long bytes;
+
+        public ExecutionTrace(Path file) throws IOException {
+            out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        }
+
+        public void record(String address, String instruction, int ac) {
+            String line = address + "  " + instruction + "  AC=" + ac + "\n";
+            try {
+                out.write(line);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            // Las líneas son ASCII salvo el desensamblado, que tampoco usa otros caracteres
+            bytes += line.length();
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    // Dispositivo conectado a un puerto del bus de E/S
+    interface IODevice {
+        int read() throws IOException;
+        void write(int value) throws IOException;
+
+        // Transferencia de un bloque (DMA); por omisión, palabra a palabra
+        default void read(int[] buffer, int offset, int length) throws IOException {
+            for (int i = offset; i < offset + length; i++) {
+                buffer[i] = read();
+            }
+        }
+
+        default void write(int[] buffer, int offset, int length) throws IOException {
+            for (int i = offset; i < offset + length; i++) {
+                write(buffer[i]);
+            }
+        }
+
+        default void flush() throws IOException {
+        }
+
+        default void close() throws IOException {
+            flush();
+        }
+    }
+
+    // Lector de palabras decimales (o hexadecimales con prefijo 0x) sobre un canal NIO.
+    // Se lee por bloques para no hacer una llamada al sistema por cada palabra.
+    static class BufferedWordReader {
+        private final ReadableByteChannel channel;
+        private final ByteBuffer buffer;
+        private boolean endOfStream;
+
+        public BufferedWordReader(ReadableByteChannel channel, int capacity) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocate(capacity);
+            this.buffer.flip();
+        }
+
+        public boolean hasNext() throws IOException {
+            int b = peekNonSeparator();
+            return b >= 0;
+        }
+
+        public int nextWord() throws IOException {
+            int b = peekNonSeparator();
+            if (b < 0) {
+                throw new EOFException("No quedan palabras en la entrada");
+            }
+
+            boolean negative = false;
+            if (b == '-') {
+                negative = true;
+                buffer.get();
+                b = peek();
+            }
+
+            int radix = 10;
+            long value = 0;
+            boolean hasDigits = false;
+            if (b == '0') {
+                hasDigits = true;
+                buffer.get();
+                b = peek();
+                if (b == 'x' || b == 'X') {
+                    radix = 16;
+                    buffer.get();
+                    b = peek();
+                }
+            }
+
+            while (b >= 0) {
+                int digit = Character.digit(b, radix);
+                if (digit < 0) {
+                    break;
+                }
+                hasDigits = true;
+                value = value * radix + digit;
+                buffer.get();
+                b = peek();
+            }
+
+            if (!hasDigits) {
+                throw new IOException("Carácter inesperado en la entrada: '" + (char) b + "'");
+            }
+
+            return (int) (negative ? -value : value);
+        }
+
+        private int peekNonSeparator() throws IOException {
+            int b = peek();
+            while (b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == ',') {
+                buffer.get();
+                b = peek();
+            }
+            return b;
+        }
+
+        private int peek() throws IOException {
+            if (!buffer.hasRemaining() && !fill()) {
+                return -1;
+            }
+            return buffer.get(buffer.position()) & 0xFF;
+        }
+
+        private boolean fill() throws IOException {
+            if (endOfStream) {
+                return false;
+            }
+            buffer.clear();
+            int read;
+            do {
+                read = channel.read(buffer);
+            } while (read == 0);
+            buffer.flip();
+            if (read < 0) {
+                endOfStream = true;
+                return false;
+            }
+            return true;
+        }
+    }
+
+    // Escritor de palabras decimales (una por línea) sobre un canal NIO con búfer propio
+    static class BufferedWordWriter {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer;
+        private final byte[] digits = new byte[12];
+
+        public BufferedWordWriter(WritableByteChannel channel, int capacity) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocate(capacity);
+        }
+
+        public void writeWord(int value) throws IOException {
+            if (buffer.remaining() < digits.length + 1) {
+                flush();
+            }
+
+            long remaining = value;
+            if (remaining < 0) {
+                buffer.put((byte) '-');
+                remaining = -remaining;
+            }
+            int count = 0;
+            do {
+                digits[count++] = (byte) ('0' + remaining % 10);
+                remaining /= 10;
+            } while (remaining > 0);
+            while (count > 0) {
+                buffer.put(digits[--count]);
+            }
+            buffer.put((byte) '\n');
+        }
+
+        public void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    // Consola: lee palabras de la entrada estándar y escribe en la salida estándar
+    static class ConsoleDevice implements IODevice {
+        private final BufferedWordReader in = new BufferedWordReader(Channels.newChannel(System.in), 4096);
+        private final BufferedWordWriter out = new BufferedWordWriter(Channels.newChannel(System.out), 4096);
+
+        @Override
+        public int read() throws IOException {
+            // Vaciar la salida pendiente antes de esperar datos del usuario
+            out.flush();
+            return in.hasNext() ? in.nextWord() : 0;
+        }
+
+        @Override
+        public void write(int value) throws IOException {
+            out.writeWord(value);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+    }
+
+    // Archivo de entrada: devuelve las palabras del archivo en orden y 0 al llegar al final
+    static class FileInputDevice implements IODevice {
+        private final FileChannel channel;
+        private final BufferedWordReader in;
+
+        public FileInputDevice(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            in = new BufferedWordReader(channel, 64 * 1024);
+        }
+
+        @Override
+        public int read() throws IOException {
+            return in.hasNext() ? in.nextWord() : 0;
+        }
+
+        @Override
+        public void write(int value) {
+            throw new IllegalStateException(String.format("El puerto de E/S 0x%03X (archivo de entrada) es de solo lectura",
+                    IOBus.INPUT_FILE_PORT));
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    // Archivo de salida: escribe una palabra decimal por línea
+    static class FileOutputDevice implements IODevice {
+        private final FileChannel channel;
+        private final BufferedWordWriter out;
+
+        public FileOutputDevice(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            out = new BufferedWordWriter(channel, 64 * 1024);
+        }
+
+        @Override
+        public int read() {
+            throw new IllegalStateException(String.format("El puerto de E/S 0x%03X (archivo de salida) es de solo escritura",
+                    IOBus.OUTPUT_FILE_PORT));
+        }
+
+        @Override
+        public void write(int value) throws IOException {
+            out.writeWord(value);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+            channel.close();
+        }
+    }
+
+    // Temporizador: al leerlo devuelve los ticks transcurridos desde la última escritura
+    static class TimerDevice implements IODevice {
+        private final LongSupplier clock;
+        private long start;
+
+        public TimerDevice(LongSupplier clock) {
+            this.clock = clock;
+            this.start = clock.getAsLong();
+        }
+
+        @Override
+        public int read() {
+            return (int) (clock.getAsLong() - start);
+        }
+
+        @Override
+        public void write(int value) {
+            start = clock.getAsLong() - value;
+        }
+    }
+
+    // Temporizador programable: escribir n pide la línea del temporizador cada n ciclos (0 lo
+    // detiene); leer devuelve los ciclos que faltan para la próxima petición (0 si está detenido)
+    static class IntervalTimerDevice implements IODevice {
+        private final InterruptController interrupts;
+        private final LongSupplier clock;
+
+        public IntervalTimerDevice(InterruptController interrupts, LongSupplier clock) {
+            this.interrupts = interrupts;
+            this.clock = clock;
+        }
+
+        @Override
+        public int read() {
+            long deadline = interrupts.getDeadline(InterruptController.TIMER_LINE);
+            return deadline == Long.MAX_VALUE ? 0 : (int) Math.max(0, deadline - clock.getAsLong());
+        }
+
+        @Override
+        public void write(int value) {
+            int period = value & 0xFFFF;
+            if (period == 0) {
+                interrupts.cancel(InterruptController.TIMER_LINE);
+            } else {
+                interrupts.schedule(InterruptController.TIMER_LINE, clock.getAsLong() + period, period);
+            }
+        }
+    }
+
+    // Registro de máscara del controlador: escribir habilita las líneas cuyos bits están a 1 y
+    // leer devuelve las peticiones pendientes
+    static class InterruptMaskDevice implements IODevice {
+        private final InterruptController interrupts;
+
+        public InterruptMaskDevice(InterruptController interrupts) {
+            this.interrupts = interrupts;
+        }
+
+        @Override
+        public int read() {
+            return interrupts.getPending();
+        }
+
+        @Override
+        public void write(int value) {
+            interrupts.setMask(value);
+        }
+    }
+
+    // Dispositivo que pide una interrupción latency ciclos después de cada transferencia
+    // (p. ej. "dato listo" tras una lectura o "escritura terminada")
+    static class InterruptingDevice implements IODevice {
+        private final IODevice device;
+        private final InterruptController interrupts;
+        private final int line;
+        private final long latency;
+        private final LongSupplier clock;
+
+        public InterruptingDevice(IODevice device, InterruptController interrupts, int line, long latency,
+                LongSupplier clock) {
+            this.device = device;
+            this.interrupts = interrupts;
+            this.line = line;
+            this.latency = latency;
+            this.clock = clock;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = device.read();
+            interrupts.schedule(line, clock.getAsLong() + latency, 0);
+            return value;
+        }
+
+        @Override
+        public void write(int value) throws IOException {
+            device.write(value);
+            interrupts.schedule(line, clock.getAsLong() + latency, 0);
+        }
+
+        @Override
+        public void read(int[] buffer, int offset, int length) throws IOException {
+            device.read(buffer, offset, length);
+            interrupts.schedule(line, clock.getAsLong() + latency, 0);
+        }
+
+        @Override
+        public void write(int[] buffer, int offset, int length) throws IOException {
+            device.write(buffer, offset, length);
+            interrupts.schedule(line, clock.getAsLong() + latency, 0);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            device.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            device.close();
+        }
+    }
+
+    // Sumidero: descarta lo que se escribe y devuelve 0 al leer
+    static class NullDevice implements IODevice {
+        @Override
+        public int read() {
+            return 0;
+        }
+
+        @Override
+        public void write(int value) {
+        }
+
+        @Override
+        public void read(int[] buffer, int offset, int length) {
+            Arrays.fill(buffer, offset, offset + length, 0);
+        }
+
+        @Override
+        public void write(int[] buffer, int offset, int length) {
+        }
+    }
+
+    // Envoltorio que registra las palabras escritas en otro dispositivo y cuenta las lecturas;
+    // permite guardar la salida de una ejecución para reproducirla desde la caché de resultados
+    static class RecordingDevice implements IODevice {
+        private final IODevice device;
+        private int[] written = new int[64];
+        private int writeCount;
+        private long readCount;
+
+        public RecordingDevice(IODevice device) {
+            this.device = device;
+        }
+
+        @Override
+        public int read() throws IOException {
+            readCount++;
+            return device.read();
+        }
+
+        @Override
+        public void write(int value) throws IOException {
+            if (writeCount == written.length) {
+                written = Arrays.copyOf(written, writeCount * 2);
+            }
+            written[writeCount++] = value;
+            device.write(value);
+        }
+
+        @Override
+        public void read(int[] buffer, int offset, int length) throws IOException {
+            readCount += length;
+            device.read(buffer, offset, length);
+        }
+
+        @Override
+        public void write(int[] buffer, int offset, int length) throws IOException {
+            if (writeCount + length > written.length) {
+                written = Arrays.copyOf(written, Math.max(written.length * 2, writeCount + length));
+            }
+            System.arraycopy(buffer, offset, written, writeCount, length);
+            writeCount += length;
+            device.write(buffer, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            device.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            device.close();
+        }
+
+        public int[] getWritten() {
+            return Arrays.copyOf(written, writeCount);
+        }
+
+        public long getReadCount() {
+            return readCount;
+        }
+    }
+
+    // Registro de las entradas externas de una ejecución (lecturas de la consola y del archivo de
+    // entrada, interrupciones aceptadas y la semilla de las políticas aleatorias) en un archivo
+    // binario al que solo se añade al final. Al reproducirlo, las lecturas devuelven los valores
+    // grabados y cada evento se compara con el registro (tipo, puerto o línea y ciclo), así que la
+    // ejecución es idéntica bit a bit o se detiene en el primer punto en que diverge. Al grabar, los
+    // eventos se escriben en un búfer directo reservado de antemano y pasan al archivo en bloques.
+    static class InputLog implements AutoCloseable {
+        private static final int MAGIC = 0x53524547;  // "SREG"
+        private static final short VERSION = 1;
+        private static final byte READ = 1, BLOCK = 2, INTERRUPT = 3, SEED = 4;
+        private static final String[] EVENT_NAMES = {"", "lectura", "lectura de bloque", "interrupción", "semilla"};
+        private static final int BUFFER_BYTES = 64 * 1024;
+
+        private final Path file;
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final boolean replaying;
+        private long reads;
+        private long interrupts;
+        private boolean remaining;
+
+        private InputLog(Path file, FileChannel channel, boolean replaying) {
+            this.file = file;
+            this.channel = channel;
+            this.replaying = replaying;
+            buffer = (replaying ? ByteBuffer.allocate(BUFFER_BYTES) : ByteBuffer.allocateDirect(BUFFER_BYTES))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (replaying) {
+                buffer.flip();
+            }
+        }
+
+        // Grabar en un archivo nuevo (se reemplaza si ya existía). "checksum" identifica el
+        // programa y su estado inicial (ver checksum()).
+        public static InputLog record(Path file, long checksum) throws IOException {
+            Files.deleteIfExists(file);
+            InputLog log = new InputLog(file, FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.APPEND), false);
+            log.buffer.putInt(MAGIC).putShort(VERSION).putLong(checksum);
+            return log;
+        }
+
+        public static InputLog replay(Path file, long checksum) throws IOException {
+            InputLog log = new InputLog(file, FileChannel.open(file, StandardOpenOption.READ), true);
+            try {
+                if (!log.fill(14) || log.buffer.getInt() != MAGIC || log.buffer.getShort() != VERSION) {
+                    throw new IOException("No es un registro de entradas: " + file);
+                }
+                if (log.buffer.getLong() != checksum) {
+                    throw new IOException("El registro " + file + " corresponde a otro programa o a otro estado inicial");
+                }
+            } catch (IOException | RuntimeException e) {
+                log.channel.close();
+                throw e;
+            }
+            return log;
+        }
+
+        // CRC-32 de la imagen de memoria y el PC inicial
+        public static long checksum(int[] memory, int pc) {
+            CRC32 crc = new CRC32();
+            ByteBuffer word = ByteBuffer.allocate(4);
+            for (int value : memory) {
+                word.clear();
+                crc.update(word.putInt(value).flip());
+            }
+            word.clear();
+            crc.update(word.putInt(pc).flip());
+            return crc.getValue();
+        }
+
+        public boolean isReplaying() {
+            return replaying;
+        }
+
+        // Semilla de las políticas de reemplazo aleatorias: al reproducir, la grabada
+        public long seed(long seed) throws IOException {
+            if (replaying) {
+                expect(SEED, 0, -1);
+                fill(8);
+                return buffer.getLong();
+            }
+            reserve(9);
+            buffer.put(SEED).putLong(seed);
+            return seed;
+        }
+
+        public void recordRead(int port, long cycle, int value) throws IOException {
+            reserve(15);
+            buffer.put(READ).putShort((short) port).putLong(cycle).putInt(value);
+            reads++;
+        }
+
+        public int replayRead(int port, long cycle) throws IOException {
+            expect(READ, port, cycle);
+            fill(4);
+            reads++;
+            return buffer.getInt();
+        }
+
+        public void recordBlock(int port, long cycle, int[] values, int offset, int length) throws IOException {
+            reserve(15);
+            buffer.put(BLOCK).putShort((short) port).putLong(cycle).putInt(length);
+            for (int i = offset; i < offset + length; i++) {
+                reserve(4);
+                buffer.putInt(values[i]);
+            }
+            reads += length;
+        }
+
+        public void replayBlock(int port, long cycle, int[] values, int offset, int length) throws IOException {
+            expect(BLOCK, port, cycle);
+            fill(4);
+            int recorded = buffer.getInt();
+            if (recorded != length) {
+                throw new IllegalStateException(String.format(
+                        "La reproducción diverge del registro: bloque de %d palabras en el ciclo %d, grabado de %d",
+                        length, cycle, recorded));
+            }
+            for (int i = offset; i < offset + length; i++) {
+                fill(4);
+                values[i] = buffer.getInt();
+            }
+            reads += length;
+        }
+
+        // Interrupción aceptada: se graba o se comprueba que llega en el mismo ciclo
+        public void interrupt(int line, long cycle) {
+            try {
+                if (replaying) {
+                    expect(INTERRUPT, line, cycle);
+                } else {
+                    reserve(10);
+                    buffer.put(INTERRUPT).put((byte) line).putLong(cycle);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            interrupts++;
+        }
+
+        public long getReads() {
+            return reads;
+        }
+
+        public long getInterrupts() {
+            return interrupts;
+        }
+
+        // Después de cerrar una reproducción: si quedaron eventos sin consumir (la ejecución terminó
+        // antes que la grabada)
+        public boolean hasRemaining() {
+            return remaining;
+        }
+
+        // Leer la cabecera del siguiente evento y comprobar que coincide con el que se produce
+        private void expect(byte type, int source, long cycle) throws IOException {
+            if (!fill(1)) {
+                throw new IllegalStateException(String.format(
+                        "La reproducción diverge del registro: %s en el ciclo %d después del último evento grabado",
+                        EVENT_NAMES[type], cycle));
+            }
+            byte recorded = buffer.get();
+            int recordedSource = 0;
+            long recordedCycle = -1;
+            if (recorded == READ || recorded == BLOCK) {
+                fill(10);
+                recordedSource = buffer.getShort() & 0xFFF;
+                recordedCycle = buffer.getLong();
+            } else if (recorded == INTERRUPT) {
+                fill(9);
+                recordedSource = buffer.get();
+                recordedCycle = buffer.getLong();
+            } else if (recorded != SEED) {
+                throw new IOException("Registro de entradas dañado: " + file);
+            }
+            if (recorded != type || recordedSource != source || recordedCycle != cycle) {
+                throw new IllegalStateException(String.format(
+                        "La reproducción diverge del registro: %s (%d) en el ciclo %d, grabado %s (%d) en el ciclo %d",
+                        EVENT_NAMES[type], source, cycle, EVENT_NAMES[recorded], recordedSource, recordedCycle));
+            }
+        }
+
+        // Al reproducir, dejar al menos "bytes" bytes en el búfer; false si el registro ya terminó
+        private boolean fill(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return true;
+            }
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    boolean empty = buffer.position() == 0;
+                    buffer.flip();
+                    if (empty) {
+                        return false;
+                    }
+                    throw new IOException("Registro de entradas incompleto: " + file);
+                }
+            }
+            buffer.flip();
+            return true;
+        }
+
+        // Al grabar, vaciar el búfer en el archivo si no caben "bytes" bytes más
+        private void reserve(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                drain();
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (replaying) {
+                    remaining = buffer.hasRemaining() || channel.position() < channel.size();
+                } else {
+                    drain();
+                }
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    // Dispositivo de entrada externo bajo el registro de entradas: al grabar anota cada lectura y al
+    // reproducir devuelve las grabadas sin leer del dispositivo. Las escrituras siempre llegan a él.
+    static class LoggedInputDevice implements IODevice {
+        private final IODevice device;
+        private final InputLog log;
+        private final int port;
+        private final LongSupplier clock;
+
+        public LoggedInputDevice(IODevice device, InputLog log, int port, LongSupplier clock) {
+            this.device = device;
+            this.log = log;
+            this.port = port;
+            this.clock = clock;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (log.isReplaying()) {
+                return log.replayRead(port, clock.getAsLong());
+            }
+            int value = device.read();
+            log.recordRead(port, clock.getAsLong(), value);
+            return value;
+        }
+
+        @Override
+        public void write(int value) throws IOException {
+            device.write(value);
+        }
+
+        @Override
+        public void read(int[] buffer, int offset, int length) throws IOException {
+            if (log.isReplaying()) {
+                log.replayBlock(port, clock.getAsLong(), buffer, offset, length);
+            } else {
+                device.read(buffer, offset, length);
+                log.recordBlock(port, clock.getAsLong(), buffer, offset, length);
+            }
+        }
+
+        @Override
+        public void write(int[] buffer, int offset, int length) throws IOException {
+            device.write(buffer, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            device.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            device.close();
+        }
+    }
+
+    // Controlador de interrupciones de la Máquina Hipotética. Cada línea puede pedirse en el
+    // momento (raise) o programarse para un ciclo futuro (schedule), una vez o de forma periódica.
+    // La máquina solo consulta getNextCheck() entre instrucciones: es el ciclo a partir del cual
+    // hay algo que hacer (Long.MIN_VALUE si hay una petición lista para atenderse, Long.MAX_VALUE
+    // si no hay nada pendiente ni programado), así que sin interrupciones cuesta una comparación.
+    static class InterruptController {
+        public static final int LINES = 8;
+        public static final int TIMER_LINE = 0;
+        public static final int DMA_LINE = 2;
+
+        private final long[] deadlines = new long[LINES];  // Long.MAX_VALUE si la línea no está programada
+        private final long[] periods = new long[LINES];    // 0: una sola vez
+        private int pending;
+        private int mask;
+        private boolean inService;
+        private long nextCheck;
+
+        private long requests;
+        private long serviced;
+        private long serviceStart;
+        private long serviceCycles;
+
+        public InterruptController() {
+            reset();
+        }
+
+        public void reset() {
+            Arrays.fill(deadlines, Long.MAX_VALUE);
+            Arrays.fill(periods, 0);
+            pending = 0;
+            mask = (1 << LINES) - 1;
+            inService = false;
+            requests = 0;
+            serviced = 0;
+            serviceCycles = 0;
+            update();
+        }
+
+        public void raise(int line) {
+            requests++;
+            pending |= 1 << line;
+            update();
+        }
+
+        // Pedir la línea en el ciclo indicado y, si period > 0, cada period ciclos a partir de él
+        public void schedule(int line, long cycle, long period) {
+            deadlines[line] = cycle;
+            periods[line] = period;
+            update();
+        }
+
+        public void cancel(int line) {
+            deadlines[line] = Long.MAX_VALUE;
+            periods[line] = 0;
+            update();
+        }
+
+        public long getDeadline(int line) {
+            return deadlines[line];
+        }
+
+        public long getNextCheck() {
+            return nextCheck;
+        }
+
+        // Pasar a pendientes las líneas cuyo ciclo llegó y, si no se está atendiendo otra, aceptar
+        // la petición habilitada de menor número. Devuelve la línea aceptada o -1.
+        public int poll(long now) {
+            for (int line = 0; line < LINES; line++) {
+                if (deadlines[line] <= now) {
+                    requests++;
+                    pending |= 1 << line;
+                    if (periods[line] > 0) {
+                        // Los periodos que vencieron mientras tanto se funden en una sola petición
+                        long missed = (now - deadlines[line]) / periods[line];
+                        deadlines[line] += (missed + 1) * periods[line];
+                    } else {
+                        deadlines[line] = Long.MAX_VALUE;
+                    }
+                }
+            }
+
+            int line = -1;
+            int ready = pending & mask;
+            if (!inService && ready != 0) {
+                line = Integer.numberOfTrailingZeros(ready);
+                pending &= ~(1 << line);
+                inService = true;
+                serviced++;
+                serviceStart = now;
+            }
+            update();
+            return line;
+        }
+
+        // Fin de la rutina de servicio (IRET): se vuelven a aceptar peticiones
+        public void returned(long now) {
+            inService = false;
+            serviceCycles += now - serviceStart;
+            update();
+        }
+
+        public boolean isInService() {
+            return inService;
+        }
+
+        public int getPending() {
+            return pending;
+        }
+
+        public int getMask() {
+            return mask;
+        }
+
+        public void setMask(int mask) {
+            this.mask = mask & ((1 << LINES) - 1);
+            update();
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public long getServiced() {
+            return serviced;
+        }
+
+        // Ciclos desde la aceptación de cada interrupción hasta su IRET (incluye la entrada)
+        public long getServiceCycles() {
+            return serviceCycles;
+        }
+
+        private void update() {
+            if (!inService && (pending & mask) != 0) {
+                nextCheck = Long.MIN_VALUE;
+                return;
+            }
+            long next = Long.MAX_VALUE;
+            for (long deadline : deadlines) {
+                next = Math.min(next, deadline);
+            }
+            nextCheck = next;
+        }
+    }
+
+    // Controlador de DMA de la Máquina Hipotética. El programa escribe la dirección de memoria,
+    // el número de palabras y el puerto del dispositivo (o la dirección de origen, en una copia de
+    // memoria a memoria) y arranca la transferencia escribiendo el modo en el registro de control
+    // (más INTERRUPT_ON_COMPLETION para pedir la línea DMA_LINE al terminar). El bloque se mueve en
+    // wordCycles ciclos por palabra mientras la CPU sigue ejecutando; al terminar se copia de una
+    // vez (a través de un búfer, avisando al detector de bucles de cada palabra escrita) y se cobran
+    // a la CPU los ciclos de bus robados.
+    static class DmaController {
+        public static final int MODE_DEVICE_TO_MEMORY = 1;
+        public static final int MODE_MEMORY_TO_DEVICE = 2;
+        public static final int MODE_MEMORY_TO_MEMORY = 3;
+        public static final int INTERRUPT_ON_COMPLETION = 0x8;
+
+        private final IOBus ioBus;
+        private final InterruptController interrupts;
+        private final LongSupplier clock;
+        private int wordCycles = 1;
+        private int stealCycles = 1;
+
+        private int address;
+        private int count;
+        private int source;
+        private int mode;
+        private boolean interruptOnCompletion;
+        private long completion = Long.MAX_VALUE;  // Long.MAX_VALUE si no hay transferencia en curso
+        private int[] buffer = new int[0];
+
+        private long transfers;
+        private long words;
+        private long stolenCycles;
+
+        public DmaController(IOBus ioBus, InterruptController interrupts, LongSupplier clock) {
+            this.ioBus = ioBus;
+            this.interrupts = interrupts;
+            this.clock = clock;
+        }
+
+        // Formato: "ciclos_por_palabra:ciclos_robados_por_palabra", p. ej. "2:1"
+        public void configure(String spec) {
+            String[] parts = spec.split(":");
+            if (parts.length != 2 || Integer.parseInt(parts[0]) < 1 || Integer.parseInt(parts[1]) < 0) {
+                throw new IllegalArgumentException("Especificación de DMA no válida: " + spec);
+            }
+            wordCycles = Integer.parseInt(parts[0]);
+            stealCycles = Integer.parseInt(parts[1]);
+        }
+
+        public void reset() {
+            address = 0;
+            count = 0;
+            source = 0;
+            mode = 0;
+            completion = Long.MAX_VALUE;
+            transfers = 0;
+            words = 0;
+            stolenCycles = 0;
+        }
+
+        // Registros en los puertos de E/S: dirección, número de palabras, dispositivo u origen y control
+        public void attach(int firstPort) {
+            ioBus.attach(firstPort, new Register(0));
+            ioBus.attach(firstPort + 1, new Register(1));
+            ioBus.attach(firstPort + 2, new Register(2));
+            ioBus.attach(firstPort + 3, new Register(3));
+        }
+
+        public boolean isBusy() {
+            return completion != Long.MAX_VALUE;
+        }
+
+        public long getCompletion() {
+            return completion;
+        }
+
+        private void start(int control) {
+            if (isBusy()) {
+                throw new IllegalStateException("El DMA ya tiene una transferencia en curso");
+            }
+            int mode = control & ~INTERRUPT_ON_COMPLETION;
+            if (mode < MODE_DEVICE_TO_MEMORY || mode > MODE_MEMORY_TO_MEMORY) {
+                throw new IllegalStateException("Modo de DMA no válido: " + control);
+            }
+            this.mode = mode;
+            interruptOnCompletion = (control & INTERRUPT_ON_COMPLETION) != 0;
+            completion = clock.getAsLong() + (long) count * wordCycles;
+            // La línea del DMA hace que la máquina llame a advance() en cuanto termine el bloque;
+            // sin interrupción, advance() la cancela antes de que llegue a estar pendiente
+            interrupts.schedule(InterruptController.DMA_LINE, completion, 0);
+        }
+
+        // Completar la transferencia si ya pasó su tiempo; devuelve los ciclos robados a la CPU
+        public int advance(long now, int[] memory, LoopDetector loopDetector) {
+            if (now < completion) {
+                return 0;
+            }
+            completion = Long.MAX_VALUE;
+            if (!interruptOnCompletion) {
+                interrupts.cancel(InterruptController.DMA_LINE);
+            }
+            if (address + count > memory.length || (mode == MODE_MEMORY_TO_MEMORY && source + count > memory.length)) {
+                throw new IllegalStateException(String.format("Bloque de DMA fuera de la memoria: 0x%03X, %d palabras",
+                        address, count));
+            }
+
+            if (buffer.length < count) {
+                buffer = new int[count];
+            }
+            switch (mode) {
+                case MODE_DEVICE_TO_MEMORY:
+                    ioBus.readBlock(source, buffer, 0, count);
+                    store(memory, loopDetector);
+                    break;
+                case MODE_MEMORY_TO_DEVICE:
+                    for (int i = 0; i < count; i++) {
+                        buffer[i] = (short) memory[address + i];
+                    }
+                    ioBus.writeBlock(source, buffer, 0, count);
+                    break;
+                default:
+                    // Primero al búfer: los bloques de origen y destino pueden solaparse
+                    System.arraycopy(memory, source, buffer, 0, count);
+                    store(memory, loopDetector);
+                    break;
+            }
+
+            transfers++;
+            words += count;
+            int stolen = count * stealCycles;
+            stolenCycles += stolen;
+            return stolen;
+        }
+
+        // Escribir el búfer en el bloque de destino sin pasar por la caché (el DMA trabaja sobre la
+        // memoria física), manteniendo al día el resumen de memoria del detector de bucles
+        private void store(int[] memory, LoopDetector loopDetector) {
+            for (int i = 0; i < count; i++) {
+                int value = buffer[i] & 0xFFFF;
+                if (loopDetector != null) {
+                    loopDetector.memoryWritten(address + i, memory[address + i], value);
+                }
+                memory[address + i] = value;
+            }
+        }
+
+        public long getTransfers() {
+            return transfers;
+        }
+
+        public long getWords() {
+            return words;
+        }
+
+        public long getStolenCycles() {
+            return stolenCycles;
+        }
+
+        private final class Register implements IODevice {
+            private final int index;
+
+            Register(int index) {
+                this.index = index;
+            }
+
+            @Override
+            public int read() {
+                switch (index) {
+                    case 0:
+                        return address;
+                    case 1: // Palabras que faltan
+                        return isBusy() ? (int) ((Math.max(0, completion - clock.getAsLong()) + wordCycles - 1) / wordCycles) : 0;
+                    case 2:
+                        return source;
+                    default:
+                        return isBusy() ? 1 : 0;
+                }
+            }
+
+            @Override
+            public void write(int value) {
+                if (index < 3 && isBusy()) {
+                    throw new IllegalStateException("El DMA ya tiene una transferencia en curso");
+                }
+                switch (index) {
+                    case 0:
+                        address = value & 0xFFF;
+                        break;
+                    case 1:
+                        count = value & 0xFFFF;
+                        break;
+                    case 2:
+                        source = value & 0xFFF;
+                        break;
+                    default:
+                        start(value & 0xFFFF);
+                        break;
+                }
+            }
+        }
+    }
+
+    // Bus de E/S con dispositivos direccionados por puerto (12 bits, como las direcciones)
+    static class IOBus {
+        public static final int CONSOLE_PORT = 0x000;
+        public static final int TIMER_PORT = 0x001;
+        public static final int INPUT_FILE_PORT = 0x002;
+        public static final int OUTPUT_FILE_PORT = 0x003;
+        public static final int INTERRUPT_TIMER_PORT = 0x004;
+        public static final int INTERRUPT_MASK_PORT = 0x005;
+        public static final int DMA_FIRST_PORT = 0x006;  // 0x006-0x009: registros del DMA
+
+        private final IODevice[] ports = new IODevice[4096];
+        private long readCount;
+        private long writeCount;
+
+        public void attach(int port, IODevice device) {
+            ports[port & 0xFFF] = device;
+        }
+
+        public IODevice getDevice(int port) {
+            return ports[port & 0xFFF];
+        }
+
+        public int read(int port) {
+            readCount++;
+            try {
+                return device(port).read();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        // Transferencias de bloque del DMA (cuentan una lectura o escritura por palabra)
+        public void readBlock(int port, int[] buffer, int offset, int length) {
+            readCount += length;
+            try {
+                device(port).read(buffer, offset, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        public void writeBlock(int port, int[] buffer, int offset, int length) {
+            writeCount += length;
+            try {
+                device(port).write(buffer, offset, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        public long getReadCount() {
+            return readCount;
+        }
+
+        public long getTransferCount() {
+            return readCount + writeCount;
+        }
+
+        public void write(int port, int value) {
+            writeCount++;
+            try {
+                device(port).write(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        public void flush() {
+            try {
+                for (IODevice device : ports) {
+                    if (device != null) {
+                        device.flush();
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        public void close() {
+            try {
+                for (IODevice device : ports) {
+                    if (device != null) {
+                        device.close();
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private IODevice device(int port) {
+            IODevice device = ports[port & 0xFFF];
+            if (device == null) {
+                throw new IllegalStateException(String.format("No hay dispositivo en el puerto de E/S 0x%03X", port & 0xFFF));
+            }
+            return device;
+        }
+    }
+
+    // Simulación de la Máquina Hipotética
+    static class HypotheticalMachineSimulation extends ComputerSimulationBase {
+        protected IOBus ioBus;
+
+        // Interrupciones (solo en la ejecución continua): al aceptar la línea n se guardan PC y AC,
+        // se salta a la dirección de M(n) y la rutina de servicio vuelve con IRET (código 1011)
+        protected final InterruptController interrupts = new InterruptController();
+        protected final DmaController dma;
+        private int savedPc, savedAc;
+        private int interruptEntryCycles = 2;
+
+        // Registro de entradas (opcional): anota o comprueba cada interrupción aceptada
+        private InputLog inputLog;
+
+        // Registros de la ejecución continua (se copian a "registers" al terminar)
+        private int pc, mar, mbr, ir, ac;
+
+        // Tabla de microcódigo: captación común y un microprograma por código de operación.
+        // Los códigos sin asignar (0000 y 1011-1111) detienen la máquina; sin ejecución continua
+        // no se aceptan interrupciones, así que IRET (1011) también detiene.
+        private static final MicroOp[] FETCH_MICROCODE = {
+                MicroOp.PC_TO_MAR, MicroOp.READ_INSTRUCTION, MicroOp.INCREMENT_PC, MicroOp.MBR_TO_IR
+        };
+        private static final MicroOp[][] MICROCODE = new MicroOp[16][];
+
+        static {
+            Arrays.fill(MICROCODE, new MicroOp[] {MicroOp.DECODE, MicroOp.HALT});
+            MICROCODE[0x1] = new MicroOp[] {MicroOp.DECODE, MicroOp.IR_ADDRESS_TO_MAR, MicroOp.READ_DATA, MicroOp.MBR_TO_AC};
+            MICROCODE[0x2] = new MicroOp[] {MicroOp.DECODE, MicroOp.IR_ADDRESS_TO_MAR, MicroOp.AC_TO_MBR, MicroOp.MBR_TO_MEMORY};
+            MICROCODE[0x3] = new MicroOp[] {MicroOp.DECODE, MicroOp.IR_ADDRESS_TO_MAR, MicroOp.IO_TO_AC};
+            MICROCODE[0x4] = new MicroOp[] {MicroOp.DECODE, MicroOp.IR_ADDRESS_TO_MAR, MicroOp.AC_TO_IO};
+            MICROCODE[0x5] = new MicroOp[] {MicroOp.DECODE, MicroOp.IR_ADDRESS_TO_MAR, MicroOp.READ_DATA,
+                    MicroOp.ALU_ADD_START, MicroOp.ALU_ADD};
+            MICROCODE[0x6] = new MicroOp[] {MicroOp.DECODE, MicroOp.IR_ADDRESS_TO_MAR, MicroOp.READ_DATA,
+                    MicroOp.ALU_SUB_START, MicroOp.ALU_SUB};
+            MICROCODE[0x7] = new MicroOp[] {MicroOp.DECODE, MicroOp.IR_ADDRESS_TO_PC};
+            MICROCODE[0x8] = new MicroOp[] {MicroOp.DECODE, MicroOp.JUMP_IF_NEGATIVE};
+            MICROCODE[0x9] = new MicroOp[] {MicroOp.DECODE, MicroOp.JUMP_IF_POSITIVE};
+            MICROCODE[0xA] = new MicroOp[] {MicroOp.DECODE, MicroOp.JUMP_IF_ZERO};
+        }
+
+        public HypotheticalMachineSimulation() {
+            super();
+            ioBus = new IOBus();
+            ioBus.attach(IOBus.CONSOLE_PORT, new ConsoleDevice());
+            ioBus.attach(IOBus.TIMER_PORT, new TimerDevice(() -> cycleCount));
+            ioBus.attach(IOBus.INTERRUPT_TIMER_PORT, new IntervalTimerDevice(interrupts, () -> cycleCount));
+            ioBus.attach(IOBus.INTERRUPT_MASK_PORT, new InterruptMaskDevice(interrupts));
+            dma = new DmaController(ioBus, interrupts, () -> cycleCount);
+            dma.attach(IOBus.DMA_FIRST_PORT);
+            instructionSet = newInstructionSet();
+        }
+
+        // Tabla de códigos de operación, compartida con la máquina segmentada
+        static Map<String, String> newInstructionSet() {
+            Map<String, String> instructionSet = new HashMap<>();
+            instructionSet.put("0001", "LOAD");
+            instructionSet.put("0010", "STOR");
+            instructionSet.put("0011", "LOADIO");
+            instructionSet.put("0100", "STORIO");
+            instructionSet.put("0101", "ADD");
+            instructionSet.put("0110", "SUB");
+            instructionSet.put("0111", "JUMP");
+            instructionSet.put("1000", "JNEG");
+            instructionSet.put("1001", "JPOS");
+            instructionSet.put("1010", "JZERO");
+            return instructionSet;
+        }
+
+        @Override
+        public void initialize() {
+            memory = new int[4096];
+            interrupts.reset();
+            dma.reset();
+            registers.put("PC", 0);
+            registers.put("MAR", 0);
+            registers.put("MBR", 0);
+            registers.put("IR", 0);
+            registers.put("AC", 0);
+
+            controlUnits.put("ALU", "INACTIVA");
+            controlUnits.put("Control", "INACTIVA");
+        }
+
+        @Override
+        public void loadTestCase(int testCaseIndex) {
+            // Reiniciar memoria y registros
+            Arrays.fill(memory, 0);
+
+            registers.put("PC", 0);
+            registers.put("MAR", 0);
+            registers.put("MBR", 0);
+            registers.put("IR", 0);
+            registers.put("AC", 0);
+
+            controlUnits.put("ALU", "INACTIVA");
+            controlUnits.put("Control", "INACTIVA");
+
+            // Cargar caso de prueba
+            switch (testCaseIndex) {
+                case 1: // Suma Básica (5 + 10)
+                    memory[0x100] = 0x1200; // LOAD M(0x200)
+                    memory[0x101] = 0x5201; // ADD M(0x201)
+                    memory[0x102] = 0x2202; // STOR M(0x202)
+                    memory[0x200] = 5;
+                    memory[0x201] = 10;
+                    memory[0x202] = 0;
+                    registers.put("PC", 0x100);
+
+                    steps = new String[] {
+                            "Ciclo de captación - PC contiene la dirección de la instrucción",
+                            "Ciclo de captación - Copiar PC a MAR",
+                            "Ciclo de captación - Leer instrucción de memoria a MBR",
+                            "Ciclo de captación - Incrementar PC",
+                            "Ciclo de captación - Transferir instrucción de MBR a IR",
+                            "Ciclo de ejecución - Decodificar instrucción LOAD M(0x200)",
+                            "Ciclo de ejecución - Extraer dirección del operando (0x200) y colocar en MAR",
+                            "Ciclo de ejecución - Leer dato de memoria a MBR",
+                            "Ciclo de ejecución - Transferir dato de MBR a AC",
+                            "Ciclo de captación - Copiar PC a MAR",
+                            "Ciclo de captación - Leer instrucción de memoria a MBR",
+                            "Ciclo de captación - Incrementar PC",
+                            "Ciclo de captación - Transferir instrucción de MBR a IR",
+                            "Ciclo de ejecución - Decodificar instrucción ADD M(0x201)",
+                            "Ciclo de ejecución - Extraer dirección del operando (0x201) y colocar en MAR",
+                            "Ciclo de ejecución - Leer dato de memoria a MBR",
+                            "Ciclo de ejecución - ALU realizando operación de suma",
+                            "Ciclo de ejecución - Sumar MBR (10) a AC (5) = 15",
+                            "Ciclo de captación - Copiar PC a MAR",
+                            "Ciclo de captación - Leer instrucción de memoria a MBR",
+                            "Ciclo de captación - Incrementar PC",
+                            "Ciclo de captación - Transferir instrucción de MBR a IR",
+                            "Ciclo de ejecución - Decodificar instrucción STOR M(0x202)",
+                            "Ciclo de ejecución - Extraer dirección del operando (0x202) y colocar en MAR",
+                            "Ciclo de ejecución - Copiar AC (15) a MBR",
+                            "Ciclo de ejecución - Escribir MBR (15) en memoria (0x202)"
+                    };
+                    break;
+
+                case 2: // Resta Básica (20 - 8)
+                    memory[0x110] = 0x1210; // LOAD M(0x210)
+                    memory[0x111] = 0x6211; // SUB M(0x211)
+                    memory[0x112] = 0x2212; // STOR M(0x212)
+                    memory[0x210] = 20;
+                    memory[0x211] = 8;
+                    memory[0x212] = 0;
+                    registers.put("PC", 0x110);
+
+                    steps = new String[] {
+                            "Ciclo de captación - PC contiene la dirección de la instrucción",
+                            "Ciclo de captación - Copiar PC a MAR",
+                            "Ciclo de captación - Leer instrucción de memoria a MBR",
+                            "Ciclo de captación - Incrementar PC",
+                            "Ciclo de captación - Transferir instrucción de MBR a IR",
+                            "Ciclo de ejecución - Decodificar instrucción LOAD M(0x210)",
+                            "Ciclo de ejecución - Extraer dirección del operando (0x210) y colocar en MAR",
+                            "Ciclo de ejecución - Leer dato de memoria a MBR",
+                            "Ciclo de ejecución - Transferir dato de MBR a AC",
+                            "Ciclo de captación - Copiar PC a MAR",
+                            "Ciclo de captación - Leer instrucción de memoria a MBR",
+                            "Ciclo de captación - Incrementar PC",
+                            "Ciclo de captación - Transferir instrucción de MBR a IR",
+                            "Ciclo de ejecución - Decodificar instrucción SUB M(0x211)",
+                            "Ciclo de ejecución - Extraer dirección del operando (0x211) y colocar en MAR",
+                            "Ciclo de ejecución - Leer dato de memoria a MBR",
+                            "Ciclo de ejecución - ALU realizando operación de resta",
+                            "Ciclo de ejecución - Restar MBR (8) de AC (20) = 12",
+                            "Ciclo de captación - Copiar PC a MAR",
+                            "Ciclo de captación - Leer instrucción de memoria a MBR",
+                            "Ciclo de captación - Incrementar PC",
+                            "Ciclo de captación - Transferir instrucción de MBR a IR",
+                            "Ciclo de ejecución - Decodificar instrucción STOR M(0x212)",
+                            "Ciclo de ejecución - Extraer dirección del operando (0x212) y colocar en MAR",
+                            "Ciclo de ejecución - Copiar AC (12) a MBR",
+                            "Ciclo de ejecución - Escribir MBR (12) en memoria (0x212)"
+                    };
+                    break;
+
+                case 3: // Suma Triple (4 + 7 + 9)
+                    memory[0x120] = 0x1220; // LOAD M(0x220)
+                    memory[0x121] = 0x5221; // ADD M(0x221)
+                    memory[0x122] = 0x5222; // ADD M(0x222)
+                    memory[0x123] = 0x2223; // STOR M(0x223)
+                    memory[0x220] = 4;
+                    memory[0x221] = 7;
+                    memory[0x222] = 9;
+                    memory[0x223] = 0;
+                    registers.put("PC", 0x120);
+
+                    steps = new String[] {
+                            "Ciclo de captación - Copiar PC a MAR",
+                            "Ciclo de captación - Leer instrucción de memoria a MBR",
+                            "Ciclo de captación - Incrementar PC",
+                            "Ciclo de captación - Transferir instrucción de MBR a IR",
+                            "Ciclo de ejecución - Decodificar instrucción LOAD M(0x220)",
+                            "Ciclo de ejecución - Extraer dirección del operando (0x220) y colocar en MAR",
+                            "Ciclo de ejecución - Leer dato de memoria a MBR",
+                            "Ciclo de ejecución - Transferir dato de MBR a AC",
+                            "Ciclo de captación - Copiar PC a MAR",
+                            "Ciclo de captación - Leer instrucción de memoria a MBR",
+                            "Ciclo de captación - Incrementar PC",
+                            "Ciclo de captación - Transferir instrucción de MBR a IR",
+                            "Ciclo de ejecución - Decodificar instrucción ADD M(0x221)",
+                            "Ciclo de ejecución - Extraer dirección del operando (0x221) y colocar en MAR",
+                            "Ciclo de ejecución - Leer dato de memoria a MBR",
+                            "Ciclo de ejecución - ALU realizando operación de suma",
+                            "Ciclo de ejecución - Sumar MBR (7) a AC (4) = 11",
+                            "Ciclo de captación - Copiar PC a MAR",
+                            "Ciclo de captación - Leer instrucción de memoria a MBR",
+                            "Ciclo de captación - Incrementar PC",
+                            "Ciclo de captación - Transferir instrucción de MBR a IR",
+                            "Ciclo de ejecución - Decodificar instrucción ADD M(0x222)",
+                            "Ciclo de ejecución - Extraer dirección del operando (0x222) y colocar en MAR",
+                            "Ciclo de ejecución - Leer dato de memoria a MBR",
+                            "Ciclo de ejecución - ALU realizando operación de suma",
+                            "Ciclo de ejecución - Sumar MBR (9) a AC (11) = 20",
+                            "Ciclo de captación - Copiar PC a MAR",
+                            "Ciclo de captación - Leer instrucción de memoria a MBR",
+                            "Ciclo de captación - Incrementar PC",
+                            "Ciclo de captación - Transferir instrucción de MBR a IR",
+                            "Ciclo de ejecución - Decodificar instrucción STOR M(0x223)",
+                            "Ciclo de ejecución - Extraer dirección del operando (0x223) y colocar en MAR",
+                            "Ciclo de ejecución - Copiar AC (20) a MBR",
+                            "Ciclo de ejecución - Escribir MBR (20) en memoria (0x223)"
+                    };
+                    break;
+
+                default:
+                    System.out.println("Caso de prueba no válido.");
+                    isRunning = false;
+                    break;
+            }
+
+            microSteps = steps == null ? new MicroOp[0] : compileSteps(steps);
+        }
+
+        @Override
+        protected void loadRegisterFile() {
+            pc = registers.get("PC");
+            mar = registers.get("MAR");
+            mbr = registers.get("MBR");
+            ir = registers.get("IR");
+            ac = registers.get("AC");
+        }
+
+        @Override
+        protected void storeRegisterFile() {
+            registers.put("PC", pc);
+            registers.put("MAR", mar);
+            registers.put("MBR", mbr);
+            registers.put("IR", ir);
+            registers.put("AC", ac);
+        }
+
+        @Override
+        protected void afterRun() {
+            ioBus.flush();
+        }
+
+        public IOBus getIOBus() {
+            return ioBus;
+        }
+
+        public InterruptController getInterruptController() {
+            return interrupts;
+        }
+
+        public void setInputLog(InputLog inputLog) {
+            this.inputLog = inputLog;
+        }
+
+        public DmaController getDmaController() {
+            return dma;
+        }
+
+        // Ciclos de guardar PC y AC al aceptar una interrupción (más la lectura del vector)
+        public void setInterruptEntryCycles(int interruptEntryCycles) {
+            this.interruptEntryCycles = interruptEntryCycles;
+        }
+
+        @Override
+        protected MicroOp[] fetchMicrocode() {
+            return FETCH_MICROCODE;
+        }
+
+        @Override
+        protected MicroOp[] executeMicrocode(int instruction) {
+            return MICROCODE[(instruction >> 12) & 0xF];
+        }
+
+        // AC y las palabras de memoria son de 16 bits en complemento a 2
+        @Override
+        protected int wrap(long value) {
+            return (int) (value & 0xFFFF);
+        }
+
+        @Override
+        protected int signed(int value) {
+            return (short) value;
+        }
+
+        @Override
+        protected String formatAddress(int address) {
+            return String.format("0x%03X", address);
+        }
+
+        @Override
+        protected String disassemble(int instruction) {
+            String opcode = String.format("%4s", Integer.toBinaryString((instruction >> 12) & 0xF)).replace(' ', '0');
+            String name = instructionSet.get(opcode);
+            if (name == null) {
+                return opcode.equals("1011") ? "IRET" : "HALT";
+            }
+            return name + " M(" + formatAddress(instruction & 0xFFF) + ")";
+        }
+
+        @Override
+        protected int ioRead(int port) {
+            return ioBus.read(port);
+        }
+
+        @Override
+        protected void ioWrite(int port, int value) {
+            ioBus.write(port, value);
+        }
+
+        @Override
+        protected long ioReadCount() {
+            return ioBus.getReadCount();
+        }
+
+        @Override
+        protected long ioTransferCount() {
+            return ioBus.getTransferCount();
+        }
+
+        // Los códigos sin asignar (0000 y 1100-1111) detienen la máquina, igual que IRET fuera de
+        // una rutina de servicio
+        @Override
+        protected void executeInstruction() {
+            // Ciclo de interrupción, entre instrucciones
+            if (cycleCount >= interrupts.getNextCheck()) {
+                acceptInterrupt();
+            }
+
+            // Ciclo de captación
+            int instructionAddress = pc;
+            mar = pc;
+            mbr = readMemory(mar);
+            pc = (pc + 1) & 0xFFF;
+            ir = mbr;
+
+            // Ciclo de ejecución (AC y las palabras de memoria son de 16 bits en complemento a 2)
+            int address = ir & 0xFFF;
+            switch ((ir >> 12) & 0xF) {
+                case 0x1: // LOAD
+                    mar = address;
+                    mbr = readMemory(mar);
+                    ac = mbr;
+                    break;
+                case 0x2: // STOR
+                    mar = address;
+                    mbr = ac;
+                    writeMemory(mar, mbr);
+                    break;
+                case 0x3: // LOADIO (el temporizador ve el ciclo ya cobrado)
+                    mar = address;
+                    cycleCount += ioCycles;
+                    ac = ioBus.read(mar) & 0xFFFF;
+                    break;
+                case 0x4: // STORIO
+                    mar = address;
+                    cycleCount += ioCycles;
+                    ioBus.write(mar, (short) ac);
+                    break;
+                case 0x5: // ADD
+                    mar = address;
+                    mbr = readMemory(mar);
+                    ac = (ac + mbr) & 0xFFFF;
+                    cycleCount += aluCycles;
+                    break;
+                case 0x6: // SUB
+                    mar = address;
+                    mbr = readMemory(mar);
+                    ac = (ac - mbr) & 0xFFFF;
+                    cycleCount += aluCycles;
+                    break;
+                case 0x7: // JUMP
+                    jumpBackEdge(instructionAddress, address);
+                    pc = address;
+                    break;
+                case 0x8: // JNEG
+                    conditionalJump(instructionAddress, address, (short) ac < 0);
+                    break;
+                case 0x9: // JPOS
+                    conditionalJump(instructionAddress, address, (short) ac > 0);
+                    break;
+                case 0xA: // JZERO
+                    conditionalJump(instructionAddress, address, ac == 0);
+                    break;
+                case 0xB: // IRET
+                    if (interrupts.isInService()) {
+                        pc = savedPc;
+                        ac = savedAc;
+                        interrupts.returned(cycleCount);
+                        break;
+                    }
+                    halted = true;
+                    controlUnits.put("Control", "DETENIDA");
+                    break;
+                default: // Código sin asignar: detener
+                    halted = true;
+                    controlUnits.put("Control", "DETENIDA");
+                    break;
+            }
+
+            // La máquina no se da por detenida hasta que el DMA termina el bloque en curso
+            if (halted && dma.isBusy()) {
+                cycleCount = Math.max(cycleCount, dma.getCompletion());
+                advanceDma();
+            }
+
+            if (trace != null) {
+                traceInstruction(instructionAddress, ir, ac);
+            }
+        }
+
+        // Entre instrucciones: terminar el DMA si ya le toca y aceptar la interrupción pendiente
+        private void acceptInterrupt() {
+            if (dma.isBusy()) {
+                advanceDma();
+            }
+            int line = interrupts.poll(cycleCount);
+            if (line >= 0) {
+                if (inputLog != null) {
+                    inputLog.interrupt(line, cycleCount);
+                }
+                savedPc = pc;
+                savedAc = ac;
+                cycleCount += interruptEntryCycles;
+                mar = line;
+                mbr = readMemory(mar);
+                pc = mbr & 0xFFF;
+            }
+        }
+
+        private void advanceDma() {
+            if (virtualMemory != null) {
+                throw new IllegalStateException("El DMA no está disponible con memoria virtual");
+            }
+            if (coherentCache != null) {
+                throw new IllegalStateException("El DMA no está disponible en el multiprocesador");
+            }
+            cycleCount += dma.advance(cycleCount, memory, loopDetector);
+        }
+
+        // Con interrupciones pendientes o programadas, repetir el estado no implica un bucle infinito
+        // (p. ej. la espera activa de una interrupción del temporizador)
+        private void jumpBackEdge(int instructionAddress, int address) {
+            if (interrupts.getNextCheck() == Long.MAX_VALUE) {
+                backEdge(instructionAddress, address, ac, 0);
+            }
+        }
+
+        private void conditionalJump(int instructionAddress, int address, boolean taken) {
+            branchResolved(instructionAddress, address, taken);
+            if (taken) {
+                jumpBackEdge(instructionAddress, address);
+                pc = address;
+            }
+        }
+
+        @Override
+        public void displayState() {
+            display.println("===============================================");
+            display.println("         MÁQUINA HIPOTÉTICA");
+            display.println("===============================================");
+            display.println("Paso actual: " + Math.min(currentStep + 1, steps.length) + "/" + steps.length);
+            display.println("Acción: " + describeStep(currentStep));
+            display.println();
+
+            // Mostrar registros
+            display.println("REGISTROS:");
+            display.println("-----------------------------------------------");
+            display.printf("%-8s %-12s %-10s%n", "Registro", "Valor", "Bits");
+            display.printf("%-8s 0x%03X        12 bits%n", "PC", registers.get("PC"));
+            display.printf("%-8s 0x%03X        12 bits%n", "MAR", registers.get("MAR"));
+            display.printf("%-8s 0x%04X       16 bits%n", "MBR", registers.get("MBR"));
+            display.printf("%-8s 0x%04X       16 bits%n", "IR", registers.get("IR"));
+            display.printf("%-8s 0x%04X       16 bits%n", "AC", registers.get("AC"));
+            display.println();
+
+            // Mostrar unidades de control
+            display.println("UNIDADES DE CONTROL:");
+            display.println("-----------------------------------------------");
+            display.printf("%-15s %-15s%n", "Unidad", "Estado");
+            display.printf("%-15s %-15s%n", "ALU", controlUnits.get("ALU"));
+            display.printf("%-15s %-15s%n", "Control", controlUnits.get("Control"));
+            display.println();
+
+            // Mostrar memoria relevante
+            display.println("MEMORIA RELEVANTE:");
+            display.println("-----------------------------------------------");
+            display.printf("%-8s %-12s %-15s%n", "Dirección", "Valor", "Contenido");
+
+            // Mostrar instrucciones
+            for (int i = 0x100; i <= 0x123; i++) {
+                if (memory[i] != 0) {
+                    int value = memory[i];
+                    String content = "";
+
+                    if (i < 0x200) { // Es una instrucción
+                        content = disassemble(value);
+                    } else { // Es un dato
+                        content = Integer.toString(value);
+                    }
+
+                    display.printf("0x%03X    0x%04X       %-15s%n", i, value, content);
+                }
+            }
+
+            // Mostrar datos
+            for (int i = 0x200; i <= 0x223; i++) {
+                if (memory[i] != 0) {
+                    display.printf("0x%03X    0x%04X       %-15s%n", i, memory[i], memory[i]);
+                }
+            }
+
+            display.println();
+
+            displayCacheState();
+        }
+
+        @Override
+        public String[] getTestCases() {
+            return new String[] {
+                    "1. Suma Básica (5 + 10)",
+                    "2. Resta Básica (20 - 8)",
+                    "3. Suma Triple (4 + 7 + 9)"
+            };
+        }
+    }
+
+    // Simulación del Computador IAS
+    static class IASSimulation extends ComputerSimulationBase {
+        // Registros de la ejecución continua (se copian a "registers" al terminar)
+        protected int pc, mar, mbr, ir, ibr, ac, mq;
+
+        // IBR: la palabra captada en una dirección par trae también la instrucción
+        // siguiente, que se ejecuta después sin volver a acceder a memoria
+        private boolean ibrEnabled = true;
+        protected boolean ibrValid;
+        protected int ibrAddress;
+
+        // Tabla de microcódigo indexada por el código de operación de 8 bits; los códigos sin
+        // asignar detienen la máquina
+        private static final MicroOp[] FETCH_MICROCODE = {
+                MicroOp.PC_TO_MAR, MicroOp.READ_WORD, MicroOp.INCREMENT_PC, MicroOp.MBR_LEFT_TO_IR, MicroOp.MBR_RIGHT_TO_IBR
+        };
+        private static final MicroOp[][] MICROCODE = new MicroOp[256][];
+
+        static {
+            Arrays.fill(MICROCODE, new MicroOp[] {MicroOp.DECODE, MicroOp.HALT});
+            MICROCODE[0x01] = new MicroOp[] {MicroOp.DECODE, MicroOp.IR_ADDRESS_TO_MAR, MicroOp.READ_DATA, MicroOp.MBR_TO_AC};
+            MICROCODE[0x02] = new MicroOp[] {MicroOp.DECODE, MicroOp.IR_ADDRESS_TO_MAR, MicroOp.READ_DATA, MicroOp.MBR_NEGATED_TO_AC};
+            MICROCODE[0x03] = new MicroOp[] {MicroOp.DECODE, MicroOp.IR_ADDRESS_TO_MAR, MicroOp.READ_DATA, MicroOp.MBR_ABS_TO_AC};
+            MICROCODE[0x04] = new MicroOp[] {MicroOp.DECODE, MicroOp.IR_ADDRESS_TO_MAR, MicroOp.READ_DATA, MicroOp.MBR_NEGATED_ABS_TO_AC};
+            MICROCODE[0x05] = new MicroOp[] {MicroOp.DECODE, MicroOp.IR_ADDRESS_TO_MAR, MicroOp.AC_TO_MBR, MicroOp.MBR_TO_MEMORY};
+            MICROCODE[0x06] = new MicroOp[] {MicroOp.DECODE, MicroOp.IR_ADDRESS_TO_PC};
+            MICROCODE[0x07] = MICROCODE[0x06];
+            MICROCODE[0x08] = new MicroOp[] {MicroOp.DECODE, MicroOp.JUMP_IF_NONNEGATIVE};
+            MICROCODE[0x09] = MICROCODE[0x08];
+            MICROCODE[0x0A] = new MicroOp[] {MicroOp.DECODE, MicroOp.IR_ADDRESS_TO_MAR, MicroOp.READ_DATA,
+                    MicroOp.ALU_ADD_START, MicroOp.ALU_ADD};
+            MICROCODE[0x0B] = new MicroOp[] {MicroOp.DECODE, MicroOp.IR_ADDRESS_TO_MAR, MicroOp.READ_DATA,
+                    MicroOp.ALU_ADD_START, MicroOp.ALU_ADD_ABS};
+            MICROCODE[0x0C] = new MicroOp[] {MicroOp.DECODE, MicroOp.IR_ADDRESS_TO_MAR, MicroOp.READ_DATA,
+                    MicroOp.ALU_SUB_START, MicroOp.ALU_SUB};
+            MICROCODE[0x0D] = new MicroOp[] {MicroOp.DECODE, MicroOp.IR_ADDRESS_TO_MAR, MicroOp.READ_DATA,
+                    MicroOp.ALU_SUB_START, MicroOp.ALU_SUB_ABS};
+            MICROCODE[0x0E] = new MicroOp[] {MicroOp.DECODE, MicroOp.IR_ADDRESS_TO_MAR, MicroOp.READ_DATA,
+                    MicroOp.ALU_MUL_START, MicroOp.ALU_MUL, MicroOp.MUL_STORE};
+            MICROCODE[0x0F] = new MicroOp[] {MicroOp.DECODE, MicroOp.IR_ADDRESS_TO_MAR, MicroOp.READ_DATA,
+                    MicroOp.ALU_DIV_START, MicroOp.ALU_DIV, MicroOp.DIV_STORE};
+            MICROCODE[0x10] = new MicroOp[] {MicroOp.DECODE, MicroOp.ALU_LSH};
+            MICROCODE[0x11] = new MicroOp[] {MicroOp.DECODE, MicroOp.ALU_RSH};
+            MICROCODE[0x12] = new MicroOp[] {MicroOp.DECODE, MicroOp.IR_ADDRESS_TO_MAR, MicroOp.READ_DATA,
+                    MicroOp.AC_ADDRESS_TO_MBR, MicroOp.MBR_TO_MEMORY};
+            MICROCODE[0x13] = new MicroOp[] {MicroOp.DECODE, MicroOp.MQ_TO_AC};
+        }
+
+        public IASSimulation() {
+            super();
+            instructionSet = new HashMap<>();
+            instructionSet.put("00000001", "LOAD M(X)");
+            instructionSet.put("00000010", "LOAD -M(X)");
+            instructionSet.put("00000011", "LOAD |M(X)|");
+            instructionSet.put("00000100", "LOAD -|M(X)|");
+            instructionSet.put("00000101", "STOR M(X)");
+            instructionSet.put("00000110", "JUMP M(X,0:19)");
+            instructionSet.put("00000111", "JUMP M(X,20:39)");
+            instructionSet.put("00001000", "JUMP+ M(X,0:19)");
+            instructionSet.put("00001001", "JUMP+ M(X,20:39)");
+            instructionSet.put("00001010", "ADD M(X)");
+            instructionSet.put("00001011", "ADD |M(X)|");
+            instructionSet.put("00001100", "SUB M(X)");
+            instructionSet.put("00001101", "SUB |M(X)|");
+            instructionSet.put("00001110", "MUL M(X)");
+            instructionSet.put("00001111", "DIV M(X)");
+            instructionSet.put("00010000", "LSH");
+            instructionSet.put("00010001", "RSH");
+            instructionSet.put("00010010", "STOR M(X,8:19)");
+            // El IAS original usa 00001010, que aquí es ADD M(X)
+            instructionSet.put("00010011", "LOAD MQ");
+        }
+
+        @Override
+        public void initialize() {
+            memory = new int[1000];
+            registers.put("PC", 0);
+            registers.put("MAR", 0);
+            registers.put("MBR", 0);
+            registers.put("IR", 0);
+            registers.put("IBR", 0);
+            registers.put("AC", 0);
+            registers.put("MQ", 0);
+
+            controlUnits.put("ALU", "INACTIVA");
+            controlUnits.put("Control", "INACTIVA");
+        }
+
+        @Override
+        public void loadTestCase(int testCaseIndex) {
+            // Reiniciar memoria y registros
+            Arrays.fill(memory, 0);
+
+            registers.put("PC", 0);
+            registers.put("MAR", 0);
+            registers.put("MBR", 0);
+            registers.put("IR", 0);
+            registers.put("IBR", 0);
+            registers.put("AC", 0);
+            registers.put("MQ", 0);
+
+            controlUnits.put("ALU", "INACTIVA");
+            controlUnits.put("Control", "INACTIVA");
+
+            // Cargar caso de prueba
+            switch (testCaseIndex) {
+                case 1: // Cargar AC desde memoria, sumar otro valor y almacenar resultado
+                    // Instrucciones (formato: 8 bits opcode + 12 bits dirección)
+                    memory[0] = 0x0100A; // LOAD M(10)
+                    memory[1] = 0x0A00B; // ADD M(11)
+                    memory[2] = 0x0500C; // STOR M(12)
+                    memory[10] = 5;
+                    memory[11] = 10;
+                    memory[12] = 0;
+                    registers.put("PC", 0);
+
+                    steps = new String[] {
+                            "Ciclo de captación - PC contiene la dirección de la instrucción",
+                            "Ciclo de captación - Copiar PC a MAR",
+                            "Ciclo de captación - Leer palabra de memoria a MBR",
+                            "Ciclo de captación - Incrementar PC",
+                            "Ciclo de captación - Transferir instrucción izquierda de MBR a IR",
+                            "Ciclo de captación - Transferir instrucción derecha de MBR a IBR",
+                            "Ciclo de ejecución - Decodificar instrucción LOAD M(10)",
+                            "Ciclo de ejecución - Extraer dirección del operando (10) y colocar en MAR",
+                            "Ciclo de ejecución - Leer dato de memoria a MBR",
+                            "Ciclo de ejecución - Transferir dato de MBR a AC",
+                            "Ciclo de captación - Copiar PC a MAR",
+                            "Ciclo de captación - Leer palabra de memoria a MBR",
+                            "Ciclo de captación - Incrementar PC",
+                            "Ciclo de captación - Transferir instrucción izquierda de MBR a IR",
+                            "Ciclo de captación - Transferir instrucción derecha de MBR a IBR",
+                            "Ciclo de ejecución - Decodificar instrucción ADD M(11)",
+                            "Ciclo de ejecución - Extraer dirección del operando (11) y colocar en MAR",
+                            "Ciclo de ejecución - Leer dato de memoria a MBR",
+                            "Ciclo de ejecución - ALU realizando operación de suma",
+                            "Ciclo de ejecución - Sumar MBR (10) a AC (5) = 15",
+                            "Ciclo de captación - Copiar PC a MAR",
+                            "Ciclo de captación - Leer palabra de memoria a MBR",
+                            "Ciclo de captación - Incrementar PC",
+                            "Ciclo de captación - Transferir instrucción izquierda de MBR a IR",
+                            "Ciclo de captación - Transferir instrucción derecha de MBR a IBR",
+                            "Ciclo de ejecución - Decodificar instrucción STOR M(12)",
+                            "Ciclo de ejecución - Extraer dirección del operando (12) y colocar en MAR",
+                            "Ciclo de ejecución - Copiar AC (15) a MBR",
+                            "Ciclo de ejecución - Escribir MBR (15) en memoria (12)"
+                    };
+                    break;
+
+                case 2: // Multiplicación y división
+                    memory[0] = 0x0100A; // LOAD M(10)
+                    memory[1] = 0x0E00B; // MUL M(11)
+                    memory[2] = 0x0500C; // STOR M(12)
+                    memory[3] = 0x0100A; // LOAD M(10)
+                    memory[4] = 0x0F00B; // DIV M(11)
+                    memory[5] = 0x13000; // LOAD MQ
+                    memory[6] = 0x0500D; // STOR M(13)
+                    memory[10] = 20;
+                    memory[11] = 4;
+                    memory[12] = 0;
+                    memory[13] = 0;
+                    registers.put("PC", 0);
+
+                    steps = new String[] {
+                            "Ciclo de captación - PC contiene la dirección de la instrucción",
                             "Ciclo de captación - Copiar PC a MAR",
                             "Ciclo de captación - Leer palabra de memoria a MBR",
                             "Ciclo de captación - Incrementar PC",
@@ -607,221 +5058,3445 @@ public class ComputerSimulation {
                             "Ciclo de captación - Incrementar PC",
                             "Ciclo de captación - Transferir instrucción izquierda de MBR a IR",
                             "Ciclo de captación - Transferir instrucción derecha de MBR a IBR",
+                            "Ciclo de ejecución - Decodificar instrucción LOAD MQ",
+                            "Ciclo de ejecución - Transferir MQ (5) a AC",
+                            "Ciclo de captación - Copiar PC a MAR",
+                            "Ciclo de captación - Leer palabra de memoria a MBR",
+                            "Ciclo de captación - Incrementar PC",
+                            "Ciclo de captación - Transferir instrucción izquierda de MBR a IR",
+                            "Ciclo de captación - Transferir instrucción derecha de MBR a IBR",
                             "Ciclo de ejecución - Decodificar instrucción STOR M(13)",
                             "Ciclo de ejecución - Extraer dirección del operando (13) y colocar en MAR",
-                            "Ciclo de ejecución - Copiar MQ (5) a MBR",
+                            "Ciclo de ejecución - Copiar AC (5) a MBR",
                             "Ciclo de ejecución - Escribir MBR (5) en memoria (13)"
                     };
                     break;
 
-                default:
-                    System.out.println("Caso de prueba no válido.");
-                    isRunning = false;
-                    break;
+                default:
+                    System.out.println("Caso de prueba no válido.");
+                    isRunning = false;
+                    break;
+            }
+
+            microSteps = steps == null ? new MicroOp[0] : compileSteps(steps);
+        }
+
+        public void setIbrEnabled(boolean ibrEnabled) {
+            this.ibrEnabled = ibrEnabled;
+        }
+
+        @Override
+        protected MicroOp[] fetchMicrocode() {
+            return FETCH_MICROCODE;
+        }
+
+        @Override
+        protected MicroOp[] executeMicrocode(int instruction) {
+            return MICROCODE[(instruction >> 12) & 0xFF];
+        }
+
+        @Override
+        protected String disassemble(int instruction) {
+            String opcode = String.format("%8s", Integer.toBinaryString((instruction >> 12) & 0xFF)).replace(' ', '0');
+            String name = instructionSet.get(opcode);
+            return name == null ? "HALT" : name.replace("X", Integer.toString(instruction & 0xFFF));
+        }
+
+        @Override
+        protected void loadRegisterFile() {
+            pc = registers.get("PC");
+            mar = registers.get("MAR");
+            mbr = registers.get("MBR");
+            ir = registers.get("IR");
+            ibr = registers.get("IBR");
+            ac = registers.get("AC");
+            mq = registers.get("MQ");
+            ibrValid = false;
+        }
+
+        @Override
+        protected void storeRegisterFile() {
+            registers.put("PC", pc);
+            registers.put("MAR", mar);
+            registers.put("MBR", mbr);
+            registers.put("IR", ir);
+            registers.put("IBR", ibr);
+            registers.put("AC", ac);
+            registers.put("MQ", mq);
+        }
+
+        // Cada palabra contiene una instrucción de 20 bits (8 bits de código de operación y
+        // 12 de dirección), igual que en los casos de prueba. Los códigos sin asignar detienen
+        // la máquina.
+        @Override
+        protected void executeInstruction() {
+            // Ciclo de captación: usar IBR si ya contiene la instrucción siguiente
+            int instructionAddress = pc;
+            if (ibrValid && ibrAddress == pc) {
+                ir = ibr;
+                ibrValid = false;
+            } else {
+                mar = pc;
+                mbr = readMemory(mar);
+                ir = mbr & 0xFFFFF;
+                if (ibrEnabled && (pc & 1) == 0 && pc + 1 < memory.length) {
+                    ibr = memory[pc + 1] & 0xFFFFF;
+                    ibrAddress = pc + 1;
+                    ibrValid = true;
+                }
+            }
+            pc = (pc + 1) & 0xFFF;
+
+            // Ciclo de ejecución
+            int address = ir & 0xFFF;
+            switch ((ir >> 12) & 0xFF) {
+                case 0x01: // LOAD M(X)
+                    ac = loadOperand(address);
+                    break;
+                case 0x02: // LOAD -M(X)
+                    ac = -loadOperand(address);
+                    cycleCount += aluCycles;
+                    break;
+                case 0x03: // LOAD |M(X)|
+                    ac = Math.abs(loadOperand(address));
+                    cycleCount += aluCycles;
+                    break;
+                case 0x04: // LOAD -|M(X)|
+                    ac = -Math.abs(loadOperand(address));
+                    cycleCount += aluCycles;
+                    break;
+                case 0x05: // STOR M(X)
+                    storeOperand(address, ac);
+                    break;
+                case 0x06: // JUMP M(X,0:19)
+                case 0x07: // JUMP M(X,20:39)
+                    backEdge(instructionAddress, address, ac, mq);
+                    jump(address);
+                    break;
+                case 0x08: // JUMP+ M(X,0:19)
+                case 0x09: // JUMP+ M(X,20:39)
+                    branchResolved(instructionAddress, address, ac >= 0);
+                    if (ac >= 0) {
+                        backEdge(instructionAddress, address, ac, mq);
+                        jump(address);
+                    }
+                    break;
+                case 0x0A: // ADD M(X)
+                    ac += loadOperand(address);
+                    cycleCount += aluCycles;
+                    break;
+                case 0x0B: // ADD |M(X)|
+                    ac += Math.abs(loadOperand(address));
+                    cycleCount += aluCycles;
+                    break;
+                case 0x0C: // SUB M(X)
+                    ac -= loadOperand(address);
+                    cycleCount += aluCycles;
+                    break;
+                case 0x0D: // SUB |M(X)|
+                    ac -= Math.abs(loadOperand(address));
+                    cycleCount += aluCycles;
+                    break;
+                case 0x0E: { // MUL M(X): como en el guion, el producto queda en AC y el desbordamiento en MQ
+                    long product = (long) ac * loadOperand(address);
+                    ac = (int) product;
+                    mq = (int) (product >> 32);
+                    cycleCount += mulDivCycles;
+                    break;
+                }
+                case 0x0F: { // DIV M(X): cociente en MQ y resto en AC
+                    int divisor = loadOperand(address);
+                    if (divisor == 0) {
+                        throw new ArithmeticException("División por cero en la dirección " + address);
+                    }
+                    mq = ac / divisor;
+                    ac = ac % divisor;
+                    cycleCount += mulDivCycles;
+                    break;
+                }
+                case 0x10: // LSH
+                    ac <<= 1;
+                    cycleCount += aluCycles;
+                    break;
+                case 0x11: // RSH
+                    ac >>= 1;
+                    cycleCount += aluCycles;
+                    break;
+                case 0x12: { // STOR M(X,8:19): reemplazar el campo de dirección de la instrucción
+                    int word = loadOperand(address);
+                    storeOperand(address, (word & ~0xFFF) | (ac & 0xFFF));
+                    break;
+                }
+                case 0x13: // LOAD MQ
+                    ac = mq;
+                    break;
+                default: // Código sin asignar: detener
+                    halted = true;
+                    controlUnits.put("Control", "DETENIDA");
+                    break;
+            }
+
+            if (trace != null) {
+                traceInstruction(instructionAddress, ir, ac);
+            }
+        }
+
+        private int loadOperand(int address) {
+            mar = address;
+            mbr = readMemory(mar);
+            return mbr;
+        }
+
+        private void storeOperand(int address, int value) {
+            mar = address;
+            mbr = value;
+            writeMemory(mar, mbr);
+            if (ibrValid && ibrAddress == address) {
+                ibrValid = false;
+            }
+        }
+
+        private void jump(int address) {
+            pc = address;
+            ibrValid = false;
+        }
+
+        @Override
+        public void displayState() {
+            display.println("===============================================");
+            display.println("         COMPUTADOR IAS");
+            display.println("===============================================");
+            display.println("Paso actual: " + Math.min(currentStep + 1, steps.length) + "/" + steps.length);
+            display.println("Acción: " + describeStep(currentStep));
+            display.println();
+
+            // Mostrar registros
+            display.println("REGISTROS:");
+            display.println("-----------------------------------------------");
+            display.printf("%-8s %-12s %-10s%n", "Registro", "Valor", "Bits");
+            display.printf("%-8s 0x%03X        12 bits%n", "PC", registers.get("PC"));
+            display.printf("%-8s 0x%03X        12 bits%n", "MAR", registers.get("MAR"));
+            display.printf("%-8s 0x%010X    40 bits%n", "MBR", registers.get("MBR"));
+            display.printf("%-8s 0x%05X      20 bits%n", "IR", registers.get("IR"));
+            display.printf("%-8s 0x%05X      20 bits%n", "IBR", registers.get("IBR"));
+            display.printf("%-8s 0x%010X    40 bits%n", "AC", registers.get("AC"));
+            display.printf("%-8s 0x%010X    40 bits%n", "MQ", registers.get("MQ"));
+            display.println();
+
+            // Mostrar unidades de control
+            display.println("UNIDADES DE CONTROL:");
+            display.println("-----------------------------------------------");
+            display.printf("%-15s %-15s%n", "Unidad", "Estado");
+            display.printf("%-15s %-15s%n", "ALU", controlUnits.get("ALU"));
+            display.printf("%-15s %-15s%n", "Control", controlUnits.get("Control"));
+            display.println();
+
+            // Mostrar memoria relevante
+            display.println("MEMORIA RELEVANTE:");
+            display.println("-----------------------------------------------");
+            display.printf("%-8s %-12s %-15s%n", "Dirección", "Valor", "Contenido");
+
+            // Mostrar instrucciones
+            for (int i = 0; i <= 5; i++) {
+                if (memory[i] != 0) {
+                    int value = memory[i];
+                    String content = "";
+
+                    // Cada palabra contiene una instrucción de 20 bits
+                    content = disassemble(value & 0xFFFFF);
+
+                    display.printf("0x%03X    0x%010X    %-15s%n", i, value, content);
+                }
+            }
+
+            // Mostrar datos
+            for (int i = 10; i <= 13; i++) {
+                if (memory[i] != 0) {
+                    display.printf("0x%03X    0x%010X    %-15s%n", i, memory[i], memory[i]);
+                }
+            }
+
+            display.println();
+
+            displayCacheState();
+        }
+
+        @Override
+        public String[] getTestCases() {
+            return new String[] {
+                    "1. Suma Básica (5 + 10)",
+                    "2. Multiplicación y División (20 * 4, 20 / 4)"
+            };
+        }
+    }
+
+    // Ejecución fuera de orden del IAS al estilo de Tomasulo: estaciones de reserva por unidad
+    // funcional, búfer de reordenamiento (ROB) que retira en orden y renombrado de AC y MQ, de modo
+    // que solo las dependencias verdaderas retrasan una instrucción. Las direcciones del IAS son
+    // constantes, así que las cargas conocen desde la emisión si dependen de un STOR anterior (y
+    // toman su dato de él). Cada instrucción se ejecuta en orden con el intérprete del IAS, que da
+    // los resultados, y después pasa por el modelo de tiempos, que calcula sus ciclos de emisión,
+    // ejecución, difusión por el bus común (CDB) y retiro. El estado del modelo son arreglos de
+    // tamaño fijo, de modo que el costo por instrucción es constante.
+    static class OutOfOrderIASSimulation extends IASSimulation {
+        private static final int ALU = 0, MUL_DIV = 1, MEMORY = 2;
+        private static final String[] UNIT_NAMES = {"ALU", "MUL/DIV", "memoria"};
+        private static final int CDB_SLOTS = 1024;
+
+        private int width = 2;
+        private int robSize = 16;
+        private final int[] stationCount = {4, 2, 4};
+
+        private long[] robCommit;      // Ciclo de retiro de cada entrada del ROB (anillo)
+        private long[][] stationFree;  // Ciclo en que queda libre cada estación de reserva
+        private final long[] unitFree = new long[3];
+        private final long[] cdbCycles = new long[CDB_SLOTS];
+        private long[] storeReady;     // Ciclo en que está listo el dato del último STOR a cada dirección
+
+        private long base;
+        private long frontEnd;
+        private long issueCycle;
+        private int issuedInCycle;
+        private long commitCycle;
+        private int committedInCycle;
+        private long acReady;
+        private long mqReady;
+        private long sequence;
+
+        private long retired;
+        private long robStalls;
+        private final long[] stationStalls = new long[3];
+        private long branchStalls;
+        private long executingCycles;
+        private long inFlightCycles;
+
+        // Formato: "anchura:rob:alu:muldiv:memoria" (instrucciones emitidas y retiradas por ciclo,
+        // entradas del ROB y estaciones de reserva de cada unidad), p. ej. "2:16:4:2:4"
+        public void configure(String spec) {
+            String[] parts = spec.split(":");
+            if (parts.length != 5) {
+                throw new IllegalArgumentException("Especificación fuera de orden no válida: " + spec);
+            }
+            int[] values = new int[5];
+            for (int i = 0; i < 5; i++) {
+                values[i] = Integer.parseInt(parts[i]);
+                if (values[i] < 1) {
+                    throw new IllegalArgumentException("Especificación fuera de orden no válida: " + spec);
+                }
+            }
+            width = values[0];
+            robSize = values[1];
+            stationCount[ALU] = values[2];
+            stationCount[MUL_DIV] = values[3];
+            stationCount[MEMORY] = values[4];
+        }
+
+        @Override
+        public void setCache(Cache cache) {
+            throw new IllegalArgumentException("El modelo fuera de orden no simula la caché");
+        }
+
+        // Cada ejecución continua empieza con el ROB vacío y todas las unidades libres
+        @Override
+        protected void loadRegisterFile() {
+            super.loadRegisterFile();
+            resetModel();
+        }
+
+        private void resetModel() {
+            robCommit = new long[robSize];
+            stationFree = new long[3][];
+            for (int unit = 0; unit < 3; unit++) {
+                stationFree[unit] = new long[stationCount[unit]];
+            }
+            storeReady = new long[4096];
+            base = cycleCount;
+            Arrays.fill(robCommit, base);
+            for (long[] stations : stationFree) {
+                Arrays.fill(stations, base);
+            }
+            Arrays.fill(unitFree, base);
+            Arrays.fill(cdbCycles, -1);
+            Arrays.fill(storeReady, base);
+            frontEnd = base;
+            issueCycle = base;
+            issuedInCycle = 0;
+            commitCycle = base;
+            committedInCycle = 0;
+            acReady = base;
+            mqReady = base;
+            sequence = 0;
+            retired = 0;
+            robStalls = 0;
+            Arrays.fill(stationStalls, 0);
+            branchStalls = 0;
+            executingCycles = 0;
+            inFlightCycles = 0;
+        }
+
+        @Override
+        protected void executeInstruction() {
+            boolean fromIbr = ibrValid && ibrAddress == pc;
+            long start = cycleCount;
+            long mispredictions = branchPredictor != null ? branchPredictor.getMispredictions() : 0;
+            super.executeInstruction();
+            // El intérprete suma los ciclos de una ejecución secuencial; el modelo lleva su propio reloj
+            cycleCount = start;
+
+            int opcode = (ir >> 12) & 0xFF;
+            int address = ir & 0xFFF;
+            boolean mispredicted = branchPredictor != null && branchPredictor.getMispredictions() != mispredictions;
+            model(opcode, address, fromIbr, mispredicted);
+            cycleCount = commitCycle;
+        }
+
+        private void model(int opcode, int address, boolean fromIbr, boolean mispredicted) {
+            // Captación (la instrucción derecha de una palabra ya está en IBR) y emisión en orden
+            long fetched = frontEnd + (fromIbr ? 0 : memoryLatency);
+            frontEnd = fetched;
+            int unit = opcode == 0x0E || opcode == 0x0F ? MUL_DIV : isMemoryOnly(opcode) ? MEMORY : ALU;
+
+            long issue = Math.max(fetched, issueCycle);
+            int slot = (int) (sequence % robSize);
+            if (robCommit[slot] > issue) {
+                robStalls += robCommit[slot] - issue;
+                issue = robCommit[slot];
+            }
+            long[] stations = stationFree[unit];
+            int station = 0;
+            for (int i = 1; i < stations.length; i++) {
+                if (stations[i] < stations[station]) {
+                    station = i;
+                }
+            }
+            if (stations[station] > issue) {
+                stationStalls[unit] += stations[station] - issue;
+                issue = stations[station];
+            }
+            if (issue == issueCycle && issuedInCycle == width) {
+                issue++;
+            }
+            if (issue != issueCycle) {
+                issueCycle = issue;
+                issuedInCycle = 0;
+            }
+            issuedInCycle++;
+
+            // Operandos: AC y MQ renombrados y, si la instrucción lee memoria, la carga (o el dato del
+            // STOR anterior a la misma dirección)
+            long ready = issue + 1;
+            if (readsAc(opcode)) {
+                ready = Math.max(ready, acReady);
+            }
+            if (readsMq(opcode)) {
+                ready = Math.max(ready, mqReady);
+            }
+            long executeStart;
+            long complete;
+            if (readsMemory(opcode)) {
+                long load = Math.max(Math.max(issue + 1, storeReady[address]), unitFree[MEMORY]);
+                unitFree[MEMORY] = load + 1;
+                long value = load + memoryLatency;
+                stations[station] = load;
+                if (unit == MEMORY) {
+                    executeStart = load;
+                    complete = value + (opcode == 0x01 ? 0 : aluCycles);
+                } else {
+                    executeStart = Math.max(Math.max(ready, value), unitFree[unit]);
+                    complete = executeStart + latency(unit);
+                }
+            } else {
+                executeStart = Math.max(ready, unitFree[unit]);
+                complete = executeStart
+                        + (opcode == 0x05 || opcode == 0x13 || isJump(opcode) || isHalt(opcode) ? 0 : latency(unit));
+                stations[station] = executeStart;
+            }
+            if (unit != MEMORY) {
+                // La ALU está segmentada; el multiplicador/divisor no
+                unitFree[unit] = unit == MUL_DIV ? complete : executeStart + 1;
+            }
+            if (writesAc(opcode) || writesMq(opcode)) {
+                complete = broadcast(complete);
+            }
+            executingCycles += complete - executeStart;
+
+            // Resultados renombrados y dato de los STOR para las cargas posteriores
+            if (writesAc(opcode)) {
+                acReady = complete;
+            }
+            if (writesMq(opcode)) {
+                mqReady = complete;
+            }
+            if (opcode == 0x05 || opcode == 0x12) {
+                storeReady[address] = complete;
+            }
+
+            // Retiro en orden, hasta "width" instrucciones por ciclo
+            long commit = Math.max(complete + 1, commitCycle);
+            if (commit == commitCycle && committedInCycle == width) {
+                commit++;
+            }
+            if (commit != commitCycle) {
+                commitCycle = commit;
+                committedInCycle = 0;
+            }
+            committedInCycle++;
+            robCommit[slot] = commit;
+            sequence++;
+            retired++;
+            inFlightCycles += commit - issue;
+
+            // Saltos: JUMP se resuelve al decodificar; JUMP+ con un fallo de predicción (o sin
+            // predictor) detiene la captación hasta resolverse. STOR M(X,8:19) modifica código, así
+            // que la captación espera a su retiro.
+            if (opcode == 0x06 || opcode == 0x07) {
+                frontEnd = Math.max(frontEnd, issue + 1);
+            } else if ((opcode == 0x08 || opcode == 0x09) && (branchPredictor == null || mispredicted)) {
+                long resume = complete + (branchPredictor != null ? branchPenalty : 0);
+                if (resume > frontEnd) {
+                    // Solo cuenta lo que la captación se retrasa respecto de la emisión
+                    branchStalls += Math.max(0, resume - Math.max(frontEnd, issue));
+                    frontEnd = resume;
+                }
+            } else if (opcode == 0x12) {
+                frontEnd = Math.max(frontEnd, commit);
+            }
+        }
+
+        // Primer ciclo libre del bus común a partir de "cycle" (una difusión por ciclo)
+        private long broadcast(long cycle) {
+            while (cdbCycles[(int) (cycle & (CDB_SLOTS - 1))] == cycle) {
+                cycle++;
+            }
+            cdbCycles[(int) (cycle & (CDB_SLOTS - 1))] = cycle;
+            return cycle;
+        }
+
+        private int latency(int unit) {
+            return unit == MUL_DIV ? mulDivCycles : aluCycles;
+        }
+
+        private static boolean isMemoryOnly(int opcode) {
+            return (opcode >= 0x01 && opcode <= 0x05) || opcode == 0x12;
+        }
+
+        private static boolean isJump(int opcode) {
+            return opcode >= 0x06 && opcode <= 0x09;
+        }
+
+        private static boolean isHalt(int opcode) {
+            return opcode == 0 || opcode > 0x13;
+        }
+
+        private static boolean readsMemory(int opcode) {
+            return (opcode >= 0x01 && opcode <= 0x04) || (opcode >= 0x0A && opcode <= 0x0F) || opcode == 0x12;
+        }
+
+        private static boolean readsAc(int opcode) {
+            return opcode == 0x05 || (opcode >= 0x08 && opcode <= 0x12);
+        }
+
+        private static boolean writesAc(int opcode) {
+            return (opcode >= 0x01 && opcode <= 0x04) || (opcode >= 0x0A && opcode <= 0x11) || opcode == 0x13;
+        }
+
+        private static boolean readsMq(int opcode) {
+            return opcode == 0x13;
+        }
+
+        private static boolean writesMq(int opcode) {
+            return opcode == 0x0E || opcode == 0x0F;
+        }
+
+        public long getRetired() {
+            return retired;
+        }
+
+        public double getIpc() {
+            long cycles = commitCycle - base;
+            return cycles > 0 ? (double) retired / cycles : 0.0;
+        }
+
+        // Media de instrucciones en unidades funcionales por ciclo (paralelismo aprovechado)
+        public double getIlp() {
+            long cycles = commitCycle - base;
+            return cycles > 0 ? (double) executingCycles / cycles : 0.0;
+        }
+
+        public double getRobOccupancy() {
+            long cycles = commitCycle - base;
+            return cycles > 0 ? (double) inFlightCycles / cycles : 0.0;
+        }
+
+        public long getRobStalls() {
+            return robStalls;
+        }
+
+        public long getStationStalls(int unit) {
+            return stationStalls[unit];
+        }
+
+        public long getBranchStalls() {
+            return branchStalls;
+        }
+
+        public String describeStalls() {
+            StringBuilder text = new StringBuilder();
+            text.append(robStalls).append(" por ROB lleno");
+            for (int unit = 0; unit < UNIT_NAMES.length; unit++) {
+                text.append(", ").append(stationStalls[unit]).append(" por estaciones de ").append(UNIT_NAMES[unit]);
+            }
+            text.append(", ").append(branchStalls).append(" de captación por saltos");
+            return text.toString();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("anchura %d, ROB de %d, estaciones %d/%d/%d", width, robSize, stationCount[ALU],
+                    stationCount[MUL_DIV], stationCount[MEMORY]);
+        }
+    }
+
+    // Máquina Hipotética segmentada: solapa captación (IF), decodificación (ID), ejecución (EX)
+    // y escritura de resultados (WB). AC se lee en EX y se escribe en WB; los saltos
+    // condicionales se resuelven en EX y JUMP en ID. Se supone memoria de instrucciones y de
+    // datos separadas, por lo que no hay riesgos estructurales.
+    static class PipelinedMachineSimulation extends ComputerSimulationBase {
+        private static final int IF = 0, ID = 1, EX = 2, WB = 3;
+        private static final String[] STAGE_NAMES = {"IF", "ID", "EX", "WB"};
+
+        // Contenido de cada etapa: instrucción, su dirección y el valor calculado en EX
+        private final boolean[] valid = new boolean[4];
+        private final int[] stagePc = new int[4];
+        private final int[] stageIr = new int[4];
+        private final int[] stageValue = new int[4];
+        private final boolean[] stagePredicted = new boolean[4];
+
+        private int fetchPc;
+        private int ac;
+        private boolean forwarding = true;
+        private boolean stallOnBranch;
+
+        private long dataStalls;
+        private long controlStalls;
+        private long flushedInstructions;
+        private String lastEvent = "";
+
+        public PipelinedMachineSimulation() {
+            super();
+            instructionSet = HypotheticalMachineSimulation.newInstructionSet();
+        }
+
+        public void setForwarding(boolean forwarding) {
+            this.forwarding = forwarding;
+        }
+
+        // Sin especulación: al decodificar un salto condicional se deja de captar hasta resolverlo
+        public void setStallOnBranch(boolean stallOnBranch) {
+            this.stallOnBranch = stallOnBranch;
+        }
+
+        @Override
+        public void initialize() {
+            memory = new int[4096];
+            registers.put("PC", 0);
+            registers.put("AC", 0);
+
+            controlUnits.put("ALU", "INACTIVA");
+            controlUnits.put("Control", "INACTIVA");
+            resetPipeline();
+        }
+
+        private void resetPipeline() {
+            Arrays.fill(valid, false);
+            halted = false;
+            instructionCount = 0;
+            cycleCount = 0;
+            dataStalls = 0;
+            controlStalls = 0;
+            flushedInstructions = 0;
+            lastEvent = "";
+        }
+
+        @Override
+        public void loadTestCase(int testCaseIndex) {
+            if (testCaseIndex == 4) {
+                // Bucle: restar 1 a M(0x230) mientras sea positivo
+                int[] loop = new int[4096];
+                loop[0x130] = 0x1230; // LOAD M(0x230)
+                loop[0x131] = 0x6231; // SUB M(0x231)
+                loop[0x132] = 0x2230; // STOR M(0x230)
+                loop[0x133] = 0x9131; // JPOS 0x131
+                loop[0x230] = 3;
+                loop[0x231] = 1;
+                loadImage(loop, 0x130);
+            } else {
+                // Los mismos programas que la máquina secuencial
+                HypotheticalMachineSimulation source = new HypotheticalMachineSimulation();
+                source.initialize();
+                source.loadTestCase(testCaseIndex);
+                if (source.steps == null) {
+                    isRunning = false;
+                    steps = new String[0];
+                    return;
+                }
+                loadImage(source.memory, source.registers.get("PC"));
+            }
+
+            // Ejecutar una vez para obtener la narración de cada ciclo y volver al estado inicial
+            int[] image = memory.clone();
+            int start = stagePc[IF];
+            List<String> narration = new ArrayList<>();
+            while (!halted && narration.size() < 10_000) {
+                narration.add(describeCycle());
+                cycle();
+            }
+            steps = narration.toArray(new String[0]);
+            loadImage(image, start);
+        }
+
+        // Al cargar el programa la primera instrucción ya está en la etapa IF
+        @Override
+        public void loadImage(int[] image, int startAddress) {
+            super.loadImage(image, startAddress);
+            loadRegisterFile();
+            fetch();
+            storeRegisterFile();
+        }
+
+        @Override
+        protected void loadRegisterFile() {
+            fetchPc = registers.get("PC");
+            ac = registers.get("AC");
+        }
+
+        @Override
+        protected void storeRegisterFile() {
+            registers.put("PC", fetchPc);
+            registers.put("AC", ac);
+        }
+
+        // Como en la máquina secuencial, AC y la memoria son de 16 bits
+        @Override
+        protected int wrap(long value) {
+            return (int) (value & 0xFFFF);
+        }
+
+        @Override
+        protected int signed(int value) {
+            return (short) value;
+        }
+
+        // Avanzar ciclos hasta retirar una instrucción (o detener la máquina)
+        @Override
+        protected void executeInstruction() {
+            long retired = instructionCount;
+            while (!halted && instructionCount == retired) {
+                cycle();
+            }
+            // runProgram suma las instrucciones ejecutadas por su cuenta
+            instructionCount = retired;
+        }
+
+        // Paso a paso: cada paso es un ciclo de reloj
+        @Override
+        public void executeStep() {
+            if (currentStep >= steps.length || halted) {
+                isRunning = false;
+                return;
+            }
+            loadRegisterFile();
+            cycle();
+            storeRegisterFile();
+        }
+
+        private void cycle() {
+            cycleCount++;
+            lastEvent = "";
+
+            // Riesgo de datos: EX necesita AC y la instrucción en WB todavía no lo ha escrito
+            boolean producerInWb = valid[WB] && writesAc(opcode(stageIr[WB]));
+            boolean dataStall = valid[EX] && readsAc(opcode(stageIr[EX])) && producerInWb && !forwarding;
+            int acForEx = producerInWb ? stageValue[WB] : ac;
+
+            // WB: escribir AC y retirar
+            if (valid[WB]) {
+                int op = opcode(stageIr[WB]);
+                if (writesAc(op)) {
+                    ac = stageValue[WB];
+                }
+                instructionCount++;
+                if (isHalt(op)) {
+                    halted = true;
+                    fetchPc = (stagePc[WB] + 1) & 0xFFF;
+                    Arrays.fill(valid, false);
+                    controlUnits.put("Control", "DETENIDA");
+                    return;
+                }
+            }
+
+            if (dataStall) {
+                // EX, ID e IF esperan; entra una burbuja en WB
+                dataStalls++;
+                valid[WB] = false;
+                lastEvent = "Riesgo de datos en AC: burbuja";
+                return;
+            }
+
+            // EX: ejecutar y resolver los saltos condicionales
+            int redirect = -1;
+            if (valid[EX]) {
+                int op = opcode(stageIr[EX]);
+                int address = stageIr[EX] & 0xFFF;
+                stageValue[EX] = execute(op, address, acForEx);
+                if (isConditionalJump(op)) {
+                    // Se captó por el camino predicho (no tomado si no hay predictor)
+                    boolean taken = branchTaken(op, acForEx);
+                    if (branchPredictor != null && !stallOnBranch) {
+                        branchPredictor.update(stagePc[EX], stagePredicted[EX], taken, 2);
+                    }
+                    if (taken != stagePredicted[EX]) {
+                        redirect = taken ? address : (stagePc[EX] + 1) & 0xFFF;
+                    }
+                }
+                controlUnits.put("ALU", op == 0x5 ? "SUMANDO" : op == 0x6 ? "RESTANDO" : "INACTIVA");
+            } else {
+                controlUnits.put("ALU", "INACTIVA");
+            }
+
+            // ID: JUMP se resuelve al decodificar
+            int jumpTarget = -1;
+            if (valid[ID] && redirect < 0 && opcode(stageIr[ID]) == 0x7) {
+                jumpTarget = stageIr[ID] & 0xFFF;
+            }
+            controlUnits.put("Control", valid[ID] ? "DECODIFICANDO" : "INACTIVA");
+
+            // Avanzar la segmentación
+            moveStage(EX, WB);
+            if (redirect >= 0) {
+                flush(ID);
+                flush(IF);
+                fetchPc = redirect;
+                lastEvent = String.format("Predicción de salto fallida, se continúa en 0x%03X: se descartan las instrucciones captadas", redirect);
+            } else if (jumpTarget >= 0) {
+                moveStage(ID, EX);
+                flush(IF);
+                fetchPc = jumpTarget;
+                lastEvent = String.format("JUMP a 0x%03X: se descarta la instrucción captada", jumpTarget);
+            } else {
+                moveStage(ID, EX);
+                moveStage(IF, ID);
+            }
+
+            // Sin especulación no se capta nada mientras haya un salto condicional sin resolver
+            if (stallOnBranch && (pendingBranch(ID) || pendingBranch(EX))) {
+                controlStalls++;
+                lastEvent = "Riesgo de control: captación detenida hasta resolver el salto";
+                return;
+            }
+            fetch();
+        }
+
+        private boolean pendingBranch(int stage) {
+            return valid[stage] && isConditionalJump(opcode(stageIr[stage]));
+        }
+
+        // Captar la siguiente instrucción; con predictor, los saltos condicionales que se
+        // predicen tomados redirigen la captación al destino (que está en la propia instrucción)
+        private void fetch() {
+            valid[IF] = true;
+            stagePc[IF] = fetchPc;
+            stageIr[IF] = memory[fetchPc];
+            stagePredicted[IF] = false;
+            fetchPc = (fetchPc + 1) & 0xFFF;
+
+            int op = opcode(stageIr[IF]);
+            if (branchPredictor != null && !stallOnBranch && isConditionalJump(op)) {
+                int target = stageIr[IF] & 0xFFF;
+                stagePredicted[IF] = branchPredictor.predict(stagePc[IF], target);
+                if (stagePredicted[IF]) {
+                    fetchPc = target;
+                }
+            }
+        }
+
+        private void moveStage(int from, int to) {
+            valid[to] = valid[from];
+            stagePc[to] = stagePc[from];
+            stageIr[to] = stageIr[from];
+            stageValue[to] = stageValue[from];
+            stagePredicted[to] = stagePredicted[from];
+            valid[from] = false;
+        }
+
+        private void flush(int stage) {
+            if (valid[stage]) {
+                flushedInstructions++;
+            }
+            valid[stage] = false;
+        }
+
+        // Operación de la etapa EX; devuelve el valor que se escribirá en AC en WB
+        private int execute(int op, int address, int acValue) {
+            switch (op) {
+                case 0x1: // LOAD
+                    return memory[address];
+                case 0x2: // STOR
+                    memory[address] = acValue;
+                    return acValue;
+                case 0x3: // LOADIO
+                    throw new IllegalStateException("La máquina segmentada no tiene bus de E/S");
+                case 0x4: // STORIO
+                    throw new IllegalStateException("La máquina segmentada no tiene bus de E/S");
+                case 0x5: // ADD
+                    return (acValue + memory[address]) & 0xFFFF;
+                case 0x6: // SUB
+                    return (acValue - memory[address]) & 0xFFFF;
+                default:
+                    return acValue;
+            }
+        }
+
+        private static int opcode(int instruction) {
+            return (instruction >> 12) & 0xF;
+        }
+
+        private static boolean writesAc(int op) {
+            return op == 0x1 || op == 0x3 || op == 0x5 || op == 0x6;
+        }
+
+        private static boolean readsAc(int op) {
+            return op == 0x2 || op == 0x4 || op == 0x5 || op == 0x6 || isConditionalJump(op);
+        }
+
+        private static boolean isConditionalJump(int op) {
+            return op == 0x8 || op == 0x9 || op == 0xA;
+        }
+
+        private static boolean isHalt(int op) {
+            return op == 0x0 || op > 0xA;
+        }
+
+        private static boolean branchTaken(int op, int acValue) {
+            switch (op) {
+                case 0x8:
+                    return (short) acValue < 0;
+                case 0x9:
+                    return (short) acValue > 0;
+                default:
+                    return acValue == 0;
+            }
+        }
+
+        @Override
+        protected String disassemble(int instruction) {
+            int op = opcode(instruction);
+            if (isHalt(op)) {
+                return "HALT";
+            }
+            String opcodeBinary = String.format("%4s", Integer.toBinaryString(op)).replace(' ', '0');
+            return instructionSet.get(opcodeBinary) + " M(0x" + Integer.toHexString(instruction & 0xFFF).toUpperCase() + ")";
+        }
+
+        private String describeCycle() {
+            StringBuilder description = new StringBuilder("Ciclo ").append(cycleCount + 1).append(" -");
+            for (int stage = IF; stage <= WB; stage++) {
+                description.append(' ').append(STAGE_NAMES[stage]).append(": ")
+                        .append(valid[stage] ? disassemble(stageIr[stage]) : "-");
+                if (stage < WB) {
+                    description.append(" |");
+                }
+            }
+            return description.toString();
+        }
+
+        public long getDataStalls() {
+            return dataStalls;
+        }
+
+        public long getControlStalls() {
+            return controlStalls;
+        }
+
+        public long getFlushedInstructions() {
+            return flushedInstructions;
+        }
+
+        // Instrucciones retiradas por ciclo
+        public double getThroughput() {
+            return cycleCount > 0 ? (double) instructionCount / cycleCount : 0.0;
+        }
+
+        // Aceleración frente a la misma máquina sin segmentar (4 ciclos por instrucción)
+        public double getSpeedup() {
+            return cycleCount > 0 ? 4.0 * instructionCount / cycleCount : 0.0;
+        }
+
+        @Override
+        public String describeStep(int step) {
+            return step < steps.length ? steps[step] : "Simulación completada";
+        }
+
+        @Override
+        public void displayState() {
+            display.println("===============================================");
+            display.println("     MÁQUINA HIPOTÉTICA SEGMENTADA (4 ETAPAS)");
+            display.println("===============================================");
+            display.println("Paso actual: " + Math.min(currentStep + 1, steps.length) + "/" + steps.length);
+            display.println("Acción: " + describeStep(currentStep));
+            if (!lastEvent.isEmpty()) {
+                display.println("Ciclo anterior: " + lastEvent);
+            }
+            display.println();
+
+            display.println("SEGMENTACIÓN:");
+            display.println("-----------------------------------------------");
+            display.printf("%-6s %-10s %-15s%n", "Etapa", "Dirección", "Instrucción");
+            for (int stage = IF; stage <= WB; stage++) {
+                if (valid[stage]) {
+                    display.printf("%-6s 0x%03X      %-15s%n", STAGE_NAMES[stage], stagePc[stage], disassemble(stageIr[stage]));
+                } else {
+                    display.printf("%-6s %-10s %-15s%n", STAGE_NAMES[stage], "-", "(burbuja)");
+                }
+            }
+            display.println();
+
+            display.println("REGISTROS:");
+            display.println("-----------------------------------------------");
+            display.printf("%-8s 0x%03X        12 bits%n", "PC", fetchPc);
+            display.printf("%-8s 0x%04X       16 bits%n", "AC", ac);
+            display.println();
+
+            display.println("RENDIMIENTO:");
+            display.println("-----------------------------------------------");
+            display.printf("Ciclos: %d   Instrucciones retiradas: %d   Rendimiento: %.2f instr/ciclo%n",
+                    cycleCount, instructionCount, getThroughput());
+            display.printf("Burbujas por datos: %d   Ciclos detenidos por saltos: %d   Instrucciones descartadas: %d%n",
+                    dataStalls, controlStalls, flushedInstructions);
+            display.println();
+
+            display.println("MEMORIA DE DATOS:");
+            display.println("-----------------------------------------------");
+            for (int i = 0x200; i <= 0x231; i++) {
+                if (memory[i] != 0) {
+                    display.printf("0x%03X    0x%04X       %-15s%n", i, memory[i], (short) memory[i]);
+                }
+            }
+            display.println();
+        }
+
+        @Override
+        public String[] getTestCases() {
+            return new String[] {
+                    "1. Suma Básica (5 + 10)",
+                    "2. Resta Básica (20 - 8)",
+                    "3. Suma Triple (4 + 7 + 9)",
+                    "4. Bucle con salto condicional (JPOS)"
+            };
+        }
+    }
+
+    // Descripción declarativa de un repertorio de instrucciones, leída de un archivo .isa (ver
+    // Java/isa). Formato por línea, con '#' como comentario:
+    //   nombre: texto               palabra: bits (hasta 32)     direccion: bits
+    //   codigo: bits                memoria: palabras            direcciones: hex|decimal
+    //   es: si|no                   registros: PC MAR MBR IR AC [IBR] [MQ]
+    //   almacen: heap|directo|disperso (memoria en un int[], fuera del heap en DirectWordMemory
+    //   o por páginas en SparsePagedMemory)
+    //   captacion: micro-operaciones
+    //   op <código en binario> <mnemónico, con (X en el lugar de la dirección> = micro-operaciones
+    // Las micro-operaciones se nombran como en MicroOp y tienen la semántica de executeMicroOp;
+    // las líneas "op" van después de "codigo:".
+    static class IsaDescriptor {
+        private static final List<String> REQUIRED_REGISTERS = List.of("PC", "MAR", "MBR", "IR", "AC");
+        private static final List<String> OPTIONAL_REGISTERS = List.of("IBR", "MQ");
+
+        String name = "ISA";
+        int wordBits = 16;
+        int addressBits = 12;
+        int opcodeBits = 4;
+        int memoryWords = 4096;
+        boolean hexAddresses = true;
+        boolean io;
+        String storage = "heap";
+        final List<String> registers = new ArrayList<>();
+        MicroOp[] fetch;
+        final Map<Integer, String> mnemonics = new TreeMap<>();
+        final Map<Integer, MicroOp[]> microcode = new TreeMap<>();
+        // Texto del archivo, para la clave de la caché de resultados
+        String source;
+
+        public static IsaDescriptor load(Path file) throws IOException {
+            IsaDescriptor descriptor = new IsaDescriptor();
+            descriptor.source = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            for (int lineNumber = 0; lineNumber < lines.size(); lineNumber++) {
+                String line = lines.get(lineNumber);
+                int comment = line.indexOf('#');
+                if (comment >= 0) {
+                    line = line.substring(0, comment);
+                }
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+
+                try {
+                    if (line.startsWith("op ")) {
+                        descriptor.parseOperation(line.substring(3).trim());
+                    } else {
+                        int separator = line.indexOf(':');
+                        if (separator < 0) {
+                            throw new IllegalArgumentException("falta ':'");
+                        }
+                        descriptor.parseProperty(line.substring(0, separator).trim(), line.substring(separator + 1).trim());
+                    }
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Línea " + (lineNumber + 1) + " de " + file + ": " + e.getMessage());
+                }
+            }
+
+            try {
+                descriptor.validate();
+            } catch (IllegalArgumentException e) {
+                throw new IOException(file + ": " + e.getMessage());
+            }
+            return descriptor;
+        }
+
+        private void parseProperty(String key, String value) {
+            switch (key) {
+                case "nombre":
+                    name = value;
+                    break;
+                case "palabra":
+                    wordBits = Integer.parseInt(value);
+                    break;
+                case "direccion":
+                    addressBits = Integer.parseInt(value);
+                    break;
+                case "codigo":
+                    opcodeBits = Integer.parseInt(value);
+                    break;
+                case "memoria":
+                    memoryWords = Integer.parseInt(value);
+                    break;
+                case "direcciones":
+                    if (!value.equals("hex") && !value.equals("decimal")) {
+                        throw new IllegalArgumentException("direcciones debe ser hex o decimal");
+                    }
+                    hexAddresses = value.equals("hex");
+                    break;
+                case "es":
+                    if (!value.equals("si") && !value.equals("no")) {
+                        throw new IllegalArgumentException("es debe ser si o no");
+                    }
+                    io = value.equals("si");
+                    break;
+                case "almacen":
+                    if (!value.equals("heap") && !value.equals("directo") && !value.equals("disperso")) {
+                        throw new IllegalArgumentException("almacen debe ser heap, directo o disperso");
+                    }
+                    storage = value;
+                    break;
+                case "registros":
+                    for (String register : value.split("\\s+")) {
+                        if (!REQUIRED_REGISTERS.contains(register) && !OPTIONAL_REGISTERS.contains(register)) {
+                            throw new IllegalArgumentException("registro desconocido: " + register);
+                        }
+                        if (!registers.contains(register)) {
+                            registers.add(register);
+                        }
+                    }
+                    break;
+                case "captacion":
+                    fetch = parseMicroOps(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("clave desconocida: " + key);
+            }
+        }
+
+        // "<código> <mnemónico> = <micro-operaciones>"; se usa '=' porque los mnemónicos del IAS llevan ':'
+        private void parseOperation(String text) {
+            int equals = text.lastIndexOf('=');
+            int space = text.indexOf(' ');
+            if (equals < 0 || space < 0 || space > equals) {
+                throw new IllegalArgumentException("se esperaba 'op <código> <mnemónico> = <micro-operaciones>'");
+            }
+            String bits = text.substring(0, space);
+            String mnemonic = text.substring(space + 1, equals).trim();
+            if (!bits.matches("[01]+") || bits.length() != opcodeBits) {
+                throw new IllegalArgumentException("el código " + bits + " no es un número binario de " + opcodeBits + " bits");
+            }
+            if (mnemonic.isEmpty()) {
+                throw new IllegalArgumentException("falta el mnemónico del código " + bits);
+            }
+            int opcode = Integer.parseInt(bits, 2);
+            if (microcode.containsKey(opcode)) {
+                throw new IllegalArgumentException("código repetido: " + bits);
+            }
+            mnemonics.put(opcode, mnemonic);
+            microcode.put(opcode, parseMicroOps(text.substring(equals + 1)));
+        }
+
+        private static MicroOp[] parseMicroOps(String text) {
+            String[] names = text.trim().split("\\s+");
+            if (names[0].isEmpty()) {
+                throw new IllegalArgumentException("microprograma vacío");
+            }
+            MicroOp[] program = new MicroOp[names.length];
+            for (int i = 0; i < names.length; i++) {
+                try {
+                    program[i] = MicroOp.valueOf(names[i]);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("micro-operación desconocida: " + names[i]);
+                }
+            }
+            return program;
+        }
+
+        // Comprobaciones que no dependen del orden de las líneas
+        private void validate() {
+            if (wordBits < 1 || wordBits > 32) {
+                throw new IllegalArgumentException("la palabra debe tener entre 1 y 32 bits");
+            }
+            if (opcodeBits < 1 || opcodeBits > 16 || addressBits < 1 || opcodeBits + addressBits > wordBits) {
+                throw new IllegalArgumentException("el código de operación (" + opcodeBits + " bits) y la dirección ("
+                        + addressBits + " bits) no caben en una palabra de " + wordBits + " bits");
+            }
+            if (memoryWords < 1 || memoryWords > (1L << addressBits)) {
+                throw new IllegalArgumentException("la memoria debe tener entre 1 y " + (1L << addressBits) + " palabras");
+            }
+            for (String register : REQUIRED_REGISTERS) {
+                if (!registers.contains(register)) {
+                    throw new IllegalArgumentException("falta el registro " + register);
+                }
+            }
+            if (fetch == null) {
+                throw new IllegalArgumentException("falta el microprograma de captación");
+            }
+            if (!Arrays.asList(fetch).contains(MicroOp.MBR_TO_IR) && !Arrays.asList(fetch).contains(MicroOp.MBR_LEFT_TO_IR)) {
+                throw new IllegalArgumentException("la captación no carga IR");
+            }
+            if (microcode.isEmpty()) {
+                throw new IllegalArgumentException("no hay operaciones");
+            }
+
+            validateMicroprogram("captación", fetch);
+            for (Map.Entry<Integer, MicroOp[]> entry : microcode.entrySet()) {
+                validateMicroprogram(mnemonics.get(entry.getKey()), entry.getValue());
+            }
+        }
+
+        private void validateMicroprogram(String owner, MicroOp[] program) {
+            MicroOp pending = null; // Operación de la ALU cuyo resultado espera almacenarse
+            for (MicroOp op : program) {
+                String register = requiredRegister(op);
+                if (register != null && !registers.contains(register)) {
+                    throw new IllegalArgumentException(owner + ": " + op + " necesita el registro " + register);
+                }
+                if ((op == MicroOp.IO_TO_AC || op == MicroOp.AC_TO_IO) && !io) {
+                    throw new IllegalArgumentException(owner + ": " + op + " necesita 'es: si'");
+                }
+                if ((op == MicroOp.MUL_STORE && pending != MicroOp.ALU_MUL)
+                        || (op == MicroOp.DIV_STORE && pending != MicroOp.ALU_DIV)) {
+                    throw new IllegalArgumentException(owner + ": " + op + " sin la operación de la ALU que lo precede");
+                }
+                if (op == MicroOp.ALU_MUL || op == MicroOp.ALU_DIV) {
+                    pending = op;
+                }
+            }
+        }
+
+        // Registro opcional que usa una micro-operación (los obligatorios siempre existen)
+        private static String requiredRegister(MicroOp op) {
+            switch (op) {
+                case MBR_RIGHT_TO_IBR:
+                    return "IBR";
+                case MUL_STORE:
+                case DIV_STORE:
+                case MQ_TO_MBR:
+                case MQ_TO_AC:
+                    return "MQ";
+                default:
+                    return null;
+            }
+        }
+    }
+
+    // Máquina definida por un IsaDescriptor. Al crearla se genera la tabla de despacho del
+    // microcódigo (para el modo paso a paso y runMicrocoded) y, para runProgram, una segunda
+    // tabla con los mismos microprogramas sin las micro-operaciones que solo narran (PC_READY,
+    // DECODE y las *_START), que se ejecutan sobre registros en campos y no en el mapa. Cada
+    // micro-operación despachada cuesta un salto indirecto, así que las secuencias habituales
+    // (la captación estándar y la carga del operando) se reconocen al crear la máquina y se
+    // ejecutan sin despacho.
+    static class DescriptorSimulation extends ComputerSimulationBase {
+        private final IsaDescriptor isa;
+        private final int addressMask;
+        private final int instructionMask;
+        private final int opcodeMask;
+        private final int signShift;
+        private final long wordMask;
+        private final MicroOp[][] microcode;
+        private final MicroOp[] compiledFetch;
+        private final MicroOp[][] compiledMicrocode;
+
+        // Captación estándar (PC a MAR, lectura, incremento de PC y carga de IR, con IBR vacío
+        // si la descripción lo usa) y máscara que se aplica a MBR al cargar IR
+        private final boolean directFetch;
+        private final boolean fetchClearsIbr;
+        private final int fetchIrMask;
+
+        // Por código de operación: pasos iniciales que se hacen sin despacho (1: dirección del
+        // operando a MAR; 2: además, lectura del operando a MBR); compiledMicrocode guarda el resto
+        private final byte[] operandPrefix;
+
+        private IOBus ioBus;
+
+        // Registros de la ejecución continua (se copian a "registers" al terminar)
+        private int pc, mar, mbr, ir, ibr, ac, mq;
+        private int instructionAddress;
+
+        public DescriptorSimulation(IsaDescriptor isa) {
+            super();
+            this.isa = isa;
+            addressMask = (1 << isa.addressBits) - 1;
+            instructionMask = (int) ((1L << (isa.opcodeBits + isa.addressBits)) - 1);
+            opcodeMask = (1 << isa.opcodeBits) - 1;
+            signShift = 32 - isa.wordBits;
+            wordMask = (1L << isa.wordBits) - 1;
+            if (isa.io) {
+                ioBus = new IOBus();
+                ioBus.attach(IOBus.CONSOLE_PORT, new ConsoleDevice());
+                ioBus.attach(IOBus.TIMER_PORT, new TimerDevice(() -> cycleCount));
+            }
+
+            // Los códigos sin asignar detienen la máquina
+            instructionSet = new HashMap<>();
+            microcode = new MicroOp[1 << isa.opcodeBits][];
+            Arrays.fill(microcode, new MicroOp[] {MicroOp.DECODE, MicroOp.HALT});
+            for (Map.Entry<Integer, MicroOp[]> entry : isa.microcode.entrySet()) {
+                microcode[entry.getKey()] = entry.getValue();
+                instructionSet.put(opcodeBinary(entry.getKey()), isa.mnemonics.get(entry.getKey()));
+            }
+
+            compiledFetch = compile(isa.fetch);
+            List<MicroOp> fetch = Arrays.asList(compiledFetch);
+            directFetch = (fetch.size() == 4 || (fetch.size() == 5 && fetch.get(4) == MicroOp.MBR_RIGHT_TO_IBR))
+                    && fetch.get(0) == MicroOp.PC_TO_MAR && isRead(fetch.get(1)) && fetch.get(2) == MicroOp.INCREMENT_PC
+                    && (fetch.get(3) == MicroOp.MBR_TO_IR || fetch.get(3) == MicroOp.MBR_LEFT_TO_IR);
+            fetchClearsIbr = fetch.contains(MicroOp.MBR_RIGHT_TO_IBR);
+            fetchIrMask = fetch.contains(MicroOp.MBR_LEFT_TO_IR) ? instructionMask : -1;
+
+            compiledMicrocode = new MicroOp[microcode.length][];
+            operandPrefix = new byte[microcode.length];
+            MicroOp[] halt = {MicroOp.HALT};
+            for (int opcode = 0; opcode < microcode.length; opcode++) {
+                MicroOp[] program = isa.microcode.containsKey(opcode) ? compile(microcode[opcode]) : halt;
+                int prefix = 0;
+                if (program.length > 0 && program[0] == MicroOp.IR_ADDRESS_TO_MAR) {
+                    prefix = program.length > 1 && program[1] == MicroOp.READ_DATA ? 2 : 1;
+                }
+                operandPrefix[opcode] = (byte) prefix;
+                compiledMicrocode[opcode] = Arrays.copyOfRange(program, prefix, program.length);
+            }
+        }
+
+        private static boolean isRead(MicroOp op) {
+            return op == MicroOp.READ_INSTRUCTION || op == MicroOp.READ_WORD || op == MicroOp.READ_DATA;
+        }
+
+        public IOBus getIOBus() {
+            return ioBus;
+        }
+
+        private String opcodeBinary(int opcode) {
+            return String.format("%" + isa.opcodeBits + "s", Integer.toBinaryString(opcode)).replace(' ', '0');
+        }
+
+        // Microprograma sin las micro-operaciones que solo narran
+        private static MicroOp[] compile(MicroOp[] program) {
+            List<MicroOp> compiled = new ArrayList<>();
+            for (MicroOp op : program) {
+                if (op != MicroOp.PC_READY && op != MicroOp.DECODE && !op.name().endsWith("_START")) {
+                    compiled.add(op);
+                }
+            }
+            return compiled.toArray(new MicroOp[0]);
+        }
+
+        // Misma semántica que executeMicroOp, sobre los campos en lugar del mapa de registros
+        private void execute(MicroOp op) {
+            switch (op) {
+                case PC_TO_MAR:
+                    mar = pc;
+                    break;
+                case READ_INSTRUCTION:
+                case READ_WORD:
+                case READ_DATA:
+                    mbr = readMemory(mar);
+                    break;
+                case INCREMENT_PC:
+                    pc = (pc + 1) & addressMask;
+                    break;
+                case MBR_TO_IR:
+                    ir = mbr;
+                    break;
+                case MBR_LEFT_TO_IR:
+                    ir = mbr & instructionMask;
+                    break;
+                case MBR_RIGHT_TO_IBR:
+                    ibr = 0;
+                    break;
+                case IR_ADDRESS_TO_MAR:
+                    mar = ir & addressMask;
+                    break;
+                case MBR_TO_AC:
+                    ac = mbr;
+                    break;
+                case AC_TO_MBR:
+                    mbr = ac;
+                    break;
+                case MBR_TO_MEMORY:
+                    writeMemory(mar, mbr);
+                    break;
+                case MBR_NEGATED_TO_AC:
+                    ac = wrap(-(long) signed(mbr));
+                    cycleCount += aluCycles;
+                    break;
+                case MBR_ABS_TO_AC:
+                    ac = wrap(Math.abs((long) signed(mbr)));
+                    cycleCount += aluCycles;
+                    break;
+                case MBR_NEGATED_ABS_TO_AC:
+                    ac = wrap(-Math.abs((long) signed(mbr)));
+                    cycleCount += aluCycles;
+                    break;
+                case IO_TO_AC:
+                    cycleCount += ioCycles;
+                    ac = wrap(ioRead(mar));
+                    break;
+                case AC_TO_IO:
+                    cycleCount += ioCycles;
+                    ioWrite(mar, signed(ac));
+                    break;
+                case ALU_ADD:
+                    ac = wrap((long) signed(ac) + signed(mbr));
+                    cycleCount += aluCycles;
+                    break;
+                case ALU_ADD_ABS:
+                    ac = wrap(signed(ac) + Math.abs((long) signed(mbr)));
+                    cycleCount += aluCycles;
+                    break;
+                case ALU_SUB:
+                    ac = wrap((long) signed(ac) - signed(mbr));
+                    cycleCount += aluCycles;
+                    break;
+                case ALU_SUB_ABS:
+                    ac = wrap(signed(ac) - Math.abs((long) signed(mbr)));
+                    cycleCount += aluCycles;
+                    break;
+                case ALU_LSH:
+                    ac = wrap((long) signed(ac) << 1);
+                    cycleCount += aluCycles;
+                    break;
+                case ALU_RSH:
+                    ac = wrap(signed(ac) >> 1);
+                    cycleCount += aluCycles;
+                    break;
+                case ALU_MUL:
+                    aluResult = (long) signed(ac) * signed(mbr);
+                    break;
+                case ALU_DIV: {
+                    long divisor = signed(mbr);
+                    if (divisor == 0) {
+                        throw new ArithmeticException("División por cero");
+                    }
+                    aluResult = signed(ac) / divisor;
+                    aluRemainder = signed(ac) % divisor;
+                    break;
+                }
+                case MUL_STORE:
+                    ac = (int) aluResult;
+                    mq = (int) (aluResult >> 32);
+                    cycleCount += mulDivCycles;
+                    break;
+                case DIV_STORE:
+                    mq = (int) aluResult;
+                    ac = (int) aluRemainder;
+                    cycleCount += mulDivCycles;
+                    break;
+                case MQ_TO_MBR:
+                    mbr = mq;
+                    break;
+                case MQ_TO_AC:
+                    ac = mq;
+                    break;
+                case AC_ADDRESS_TO_MBR:
+                    mbr = (mbr & ~addressMask) | (ac & addressMask);
+                    break;
+                case IR_ADDRESS_TO_PC: {
+                    int target = ir & addressMask;
+                    backEdge(instructionAddress, target, ac, mq);
+                    pc = target;
+                    break;
+                }
+                case JUMP_IF_NEGATIVE:
+                    jumpIf(signed(ac) < 0);
+                    break;
+                case JUMP_IF_POSITIVE:
+                    jumpIf(signed(ac) > 0);
+                    break;
+                case JUMP_IF_ZERO:
+                    jumpIf(ac == 0);
+                    break;
+                case JUMP_IF_NONNEGATIVE:
+                    jumpIf(signed(ac) >= 0);
+                    break;
+                case HALT:
+                    halted = true;
+                    controlUnits.put("Control", "DETENIDA");
+                    break;
+                default: // Las micro-operaciones de narración ya se descartaron al compilar
+                    break;
+            }
+        }
+
+        private void jumpIf(boolean taken) {
+            int target = ir & addressMask;
+            branchResolved(instructionAddress, target, taken);
+            if (taken) {
+                backEdge(instructionAddress, target, ac, mq);
+                pc = target;
+            }
+        }
+
+        @Override
+        protected void executeInstruction() {
+            instructionAddress = pc;
+            if (directFetch) {
+                mar = pc;
+                mbr = readMemory(mar);
+                pc = (pc + 1) & addressMask;
+                ir = mbr & fetchIrMask;
+                if (fetchClearsIbr) {
+                    ibr = 0;
+                }
+            } else {
+                for (MicroOp op : compiledFetch) {
+                    execute(op);
+                }
+            }
+
+            int opcode = (ir >>> isa.addressBits) & opcodeMask;
+            int prefix = operandPrefix[opcode];
+            if (prefix > 0) {
+                mar = ir & addressMask;
+                if (prefix > 1) {
+                    mbr = readMemory(mar);
+                }
+            }
+            for (MicroOp op : compiledMicrocode[opcode]) {
+                execute(op);
+            }
+
+            if (trace != null) {
+                traceInstruction(instructionAddress, ir, ac);
+            }
+        }
+
+        @Override
+        public void initialize() {
+            if (isa.storage.equals("heap")) {
+                memory = new int[isa.memoryWords];
+            } else if (wordMemory == null) {
+                wordMemory = isa.storage.equals("directo")
+                        ? new DirectWordMemory(isa.wordBits, isa.memoryWords)
+                        : new SparsePagedMemory(isa.wordBits, isa.memoryWords);
+            } else {
+                // Se reutiliza la memoria: borrarla es más barato que reservarla de nuevo (en la
+                // dispersa, solo se liberan las páginas usadas)
+                wordMemory.clear();
+            }
+            registers.clear();
+            for (String register : isa.registers) {
+                registers.put(register, 0);
+            }
+
+            controlUnits.put("ALU", "INACTIVA");
+            controlUnits.put("Control", "INACTIVA");
+        }
+
+        // Las ISA descritas no traen guiones de casos de prueba
+        @Override
+        public String[] getTestCases() {
+            return new String[0];
+        }
+
+        @Override
+        public void loadTestCase(int testCaseIndex) {
+            System.out.println("Caso de prueba no válido.");
+            isRunning = false;
+            steps = new String[0];
+            microSteps = new MicroOp[0];
+        }
+
+        @Override
+        protected void loadRegisterFile() {
+            pc = registers.get("PC");
+            mar = registers.get("MAR");
+            mbr = registers.get("MBR");
+            ir = registers.get("IR");
+            ac = registers.get("AC");
+            ibr = registers.getOrDefault("IBR", 0);
+            mq = registers.getOrDefault("MQ", 0);
+        }
+
+        @Override
+        protected void storeRegisterFile() {
+            registers.put("PC", pc);
+            registers.put("MAR", mar);
+            registers.put("MBR", mbr);
+            registers.put("IR", ir);
+            registers.put("AC", ac);
+            if (registers.containsKey("IBR")) {
+                registers.put("IBR", ibr);
+            }
+            if (registers.containsKey("MQ")) {
+                registers.put("MQ", mq);
+            }
+        }
+
+        @Override
+        protected void afterRun() {
+            if (ioBus != null) {
+                ioBus.flush();
+            }
+        }
+
+        @Override
+        protected MicroOp[] fetchMicrocode() {
+            return isa.fetch;
+        }
+
+        @Override
+        protected MicroOp[] executeMicrocode(int instruction) {
+            return microcode[(instruction >>> isa.addressBits) & opcodeMask];
+        }
+
+        @Override
+        protected int addressMask() {
+            return addressMask;
+        }
+
+        @Override
+        protected int instructionMask() {
+            return instructionMask;
+        }
+
+        // AC y las palabras de memoria tienen el ancho de la descripción, en complemento a 2
+        @Override
+        protected int wrap(long value) {
+            return signShift == 0 ? (int) value : (int) (value & wordMask);
+        }
+
+        @Override
+        protected int signed(int value) {
+            return (value << signShift) >> signShift;
+        }
+
+        @Override
+        protected String formatAddress(int address) {
+            return isa.hexAddresses
+                    ? String.format("0x%0" + ((isa.addressBits + 3) / 4) + "X", address) : Integer.toString(address);
+        }
+
+        @Override
+        protected String disassemble(int instruction) {
+            String name = instructionSet.get(opcodeBinary((instruction >>> isa.addressBits) & opcodeMask));
+            return name == null ? "HALT" : name.replace("(X", "(" + formatAddress(instruction & addressMask));
+        }
+
+        @Override
+        protected int ioRead(int port) {
+            return ioBus != null ? ioBus.read(port) : super.ioRead(port);
+        }
+
+        @Override
+        protected void ioWrite(int port, int value) {
+            if (ioBus == null) {
+                super.ioWrite(port, value);
+            } else {
+                ioBus.write(port, value);
+            }
+        }
+
+        @Override
+        protected long ioReadCount() {
+            return ioBus != null ? ioBus.getReadCount() : 0;
+        }
+
+        @Override
+        protected long ioTransferCount() {
+            return ioBus != null ? ioBus.getTransferCount() : 0;
+        }
+
+        @Override
+        public void displayState() {
+            display.println("===============================================");
+            display.println("         " + isa.name.toUpperCase());
+            display.println("===============================================");
+            display.println();
+
+            // Mostrar registros con el ancho de la descripción
+            display.println("REGISTROS:");
+            display.println("-----------------------------------------------");
+            display.printf("%-8s %-12s %-10s%n", "Registro", "Valor", "Bits");
+            for (String register : isa.registers) {
+                int bits = register.equals("PC") || register.equals("MAR") ? isa.addressBits
+                        : register.equals("IR") || register.equals("IBR") ? isa.opcodeBits + isa.addressBits
+                        : isa.wordBits;
+                display.printf("%-8s %-12s %d bits%n", register,
+                        String.format("0x%0" + ((bits + 3) / 4) + "X", registers.get(register)), bits);
+            }
+            display.println();
+
+            display.println("UNIDADES DE CONTROL:");
+            display.println("-----------------------------------------------");
+            display.printf("%-15s %-15s%n", "Unidad", "Estado");
+            display.printf("%-15s %-15s%n", "ALU", controlUnits.get("ALU"));
+            display.printf("%-15s %-15s%n", "Control", controlUnits.get("Control"));
+            display.println();
+
+            // Palabras a partir de PC
+            display.println("MEMORIA DESDE PC:");
+            display.println("-----------------------------------------------");
+            int start = registers.get("PC");
+            for (int address = start; address < Math.min(start + 8, isa.memoryWords); address++) {
+                int word = getMemoryWord(address);
+                display.printf("%-10s 0x%08X   %s%n", formatAddress(address), word, disassemble(word));
+            }
+            display.println();
+
+            displayCacheState();
+        }
+    }
+
+    // Barrido de parámetros: ejecuta un mismo programa con cada combinación de latencia de
+    // memoria, tamaño y asociatividad de la caché, costos de la ALU e IBR, en paralelo
+    static class ParameterSweep {
+        private final boolean ias;
+        private final int[] image;
+        private final int startAddress;
+        private Path inputFile;
+        private final RunLimits limits = new RunLimits();
+
+        private int[] memoryLatencies = {1};
+        private int[] cacheSizes = {0};
+        private int[] cacheWays = {1};
+        private int[] aluCosts = {1};
+        private int[] mulDivCosts = {10};
+        private boolean[] ibrSettings = {true};
+        private int lineWords = 4;
+        private ReplacementPolicy replacement = ReplacementPolicy.LRU;
+        private WritePolicy writePolicy = WritePolicy.WRITE_BACK;
+
+        public ParameterSweep(boolean ias, Path program) throws IOException {
+            this.ias = ias;
+            ComputerSimulationBase template = newSimulation();
+            template.loadProgram(program);
+            this.image = template.memory.clone();
+            this.startAddress = template.registers.get("PC");
+            limits.setMaxInstructions(100_000_000L);
+        }
+
+        // Una combinación de parámetros de la rejilla
+        static class Point {
+            final int memoryLatency;
+            final int cacheWords;
+            final int ways;
+            final int aluCycles;
+            final int mulDivCycles;
+            final boolean ibr;
+
+            Point(int memoryLatency, int cacheWords, int ways, int aluCycles, int mulDivCycles, boolean ibr) {
+                this.memoryLatency = memoryLatency;
+                this.cacheWords = cacheWords;
+                this.ways = ways;
+                this.aluCycles = aluCycles;
+                this.mulDivCycles = mulDivCycles;
+                this.ibr = ibr;
+            }
+        }
+
+        // Configurar la rejilla a partir de opciones "--nombre v1,v2,..."
+        public void configure(String option, String value) {
+            switch (option) {
+                case "--latencia":
+                    memoryLatencies = parseList(value);
+                    break;
+                case "--cache":
+                    cacheSizes = parseList(value);
+                    break;
+                case "--vias":
+                    cacheWays = parseList(value);
+                    for (int ways : cacheWays) {
+                        if (ways < 1) {
+                            throw new IllegalArgumentException("Número de vías no válido: " + value);
+                        }
+                    }
+                    break;
+                case "--alu":
+                    aluCosts = parseList(value);
+                    break;
+                case "--muldiv":
+                    mulDivCosts = parseList(value);
+                    break;
+                case "--ibr": {
+                    int[] values = parseList(value);
+                    ibrSettings = new boolean[values.length];
+                    for (int i = 0; i < values.length; i++) {
+                        ibrSettings[i] = values[i] != 0;
+                    }
+                    break;
+                }
+                case "--linea":
+                    lineWords = Integer.parseInt(value);
+                    if (lineWords < 1) {
+                        throw new IllegalArgumentException("Palabras por línea no válidas: " + value);
+                    }
+                    break;
+                case "--reemplazo":
+                    replacement = Cache.parseReplacementPolicy(value);
+                    break;
+                case "--escritura":
+                    writePolicy = Cache.parseWritePolicy(value);
+                    break;
+                case "--entrada":
+                    inputFile = Paths.get(value);
+                    break;
+                default:
+                    // Límites de cada ejecución (--max, --max-ciclos, --max-tiempo, ...)
+                    if (!limits.configure(option, value)) {
+                        throw new IllegalArgumentException("Opción desconocida: " + option);
+                    }
+                    break;
+            }
+        }
+
+        private static int[] parseList(String value) {
+            String[] parts = value.split(",");
+            int[] values = new int[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                values[i] = Integer.parseInt(parts[i].trim());
+            }
+            return values;
+        }
+
+        // Combinaciones válidas: sin caché la asociatividad no aplica, y el IBR solo existe en IAS
+        public List<Point> grid() {
+            List<Point> points = new ArrayList<>();
+            boolean[] ibrValues = ias ? ibrSettings : new boolean[] {false};
+            for (int latency : memoryLatencies) {
+                for (int size : cacheSizes) {
+                    for (int ways : size == 0 ? new int[] {0} : cacheWays) {
+                        if (size > 0 && (size % (lineWords * ways) != 0
+                                || Integer.bitCount(size / (lineWords * ways)) != 1)) {
+                            continue;
+                        }
+                        for (int alu : aluCosts) {
+                            for (int mulDiv : mulDivCosts) {
+                                for (boolean ibr : ibrValues) {
+                                    points.add(new Point(latency, size, ways, alu, mulDiv, ibr));
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            return points;
+        }
+
+        // Ejecutar todos los puntos repartidos entre los núcleos y escribir un CSV en el orden de la rejilla
+        public int run(Path csvFile) throws IOException, InterruptedException {
+            List<Point> points = grid();
+            int threads = Runtime.getRuntime().availableProcessors();
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<String>> rows = new ArrayList<>();
+                for (Point point : points) {
+                    rows.add(executor.submit(() -> runPoint(point)));
+                }
+
+                try (BufferedWriter writer = Files.newBufferedWriter(csvFile, StandardCharsets.UTF_8)) {
+                    writer.write("maquina,latencia,cache_palabras,vias,linea,alu,muldiv,ibr,instrucciones,ciclos,cpi,"
+                            + "aciertos,fallos,tasa_aciertos,escrituras_diferidas,estado");
+                    writer.newLine();
+                    for (Future<String> row : rows) {
+                        writer.write(row.get());
+                        writer.newLine();
+                    }
+                } catch (ExecutionException e) {
+                    throw new IOException("Falló una ejecución del barrido", e.getCause());
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+            return points.size();
+        }
+
+        private String runPoint(Point point) throws IOException {
+            ComputerSimulationBase simulation = newSimulation();
+            simulation.loadImage(image, startAddress);
+            simulation.setMemoryLatency(point.memoryLatency);
+            simulation.setAluCycles(point.aluCycles);
+            simulation.setMulDivCycles(point.mulDivCycles);
+            if (point.cacheWords > 0) {
+                simulation.setCache(new Cache(point.cacheWords, lineWords, point.ways, replacement, writePolicy));
+            }
+            if (simulation instanceof IASSimulation) {
+                ((IASSimulation) simulation).setIbrEnabled(point.ibr);
+            }
+            simulation.setLoopDetector(new LoopDetector());
+
+            IOBus ioBus = simulation instanceof HypotheticalMachineSimulation
+                    ? ((HypotheticalMachineSimulation) simulation).getIOBus() : null;
+            if (ioBus != null) {
+                // La consola no se usa en los barridos; la salida se descarta
+                ioBus.attach(IOBus.CONSOLE_PORT, new NullDevice());
+                ioBus.attach(IOBus.OUTPUT_FILE_PORT, new NullDevice());
+                if (inputFile != null) {
+                    ioBus.attach(IOBus.INPUT_FILE_PORT, new FileInputDevice(inputFile));
+                }
+            }
+
+            String status;
+            try {
+                status = simulation.run(limits).getStopReason().getCode();
+            } finally {
+                if (ioBus != null) {
+                    ioBus.close();
+                }
+            }
+
+            long instructions = simulation.getInstructionCount();
+            long cycles = simulation.getCycleCount();
+            Cache cache = simulation.getCache();
+            return String.format(Locale.ROOT, "%s,%d,%d,%d,%d,%d,%d,%d,%d,%d,%.4f,%d,%d,%.4f,%d,%s",
+                    ias ? "ias" : "hipotetica", point.memoryLatency, point.cacheWords, point.ways,
+                    point.cacheWords > 0 ? lineWords : 0, point.aluCycles, point.mulDivCycles, point.ibr ? 1 : 0,
+                    instructions, cycles, instructions > 0 ? (double) cycles / instructions : 0.0,
+                    cache != null ? cache.getHits() : 0, cache != null ? cache.getMisses() : 0,
+                    cache != null ? cache.getHitRate() : 0.0, cache != null ? cache.getWriteBacks() : 0, status);
+        }
+
+        private ComputerSimulationBase newSimulation() {
+            return ias ? new IASSimulation() : new HypotheticalMachineSimulation();
+        }
+    }
+
+    // Fuzzer diferencial: genera programas aleatorios válidos a partir de la tabla de códigos de
+    // operación de cada máquina, los ejecuta con todos los motores (microcódigo, intérprete y, para
+    // la Máquina Hipotética, la máquina segmentada) y compara el estado final. Los programas se
+    // reparten entre los núcleos; el programa i depende solo de la semilla y de i, así que cada
+    // fallo es reproducible, y se reduce a un caso mínimo antes de informarlo.
+    static class ProgramFuzzer {
+        // Motores de ejecución que se comparan
+        enum Tier {
+            MICROCODED("microcódigo"),
+            INTERPRETER("intérprete"),
+            PIPELINE("segmentada");
+
+            private final String label;
+
+            Tier(String label) {
+                this.label = label;
+            }
+
+            public String getLabel() {
+                return label;
+            }
+        }
+
+        // Estado observable al terminar una ejecución
+        static class Outcome {
+            final boolean halted;
+            final long instructions;
+            final int pc;
+            final int ac;
+            final int mq;
+            final int[] memory;
+            final int[] output;
+            final RuntimeException error;
+
+            Outcome(ComputerSimulationBase simulation, long instructions, int[] output, RuntimeException error) {
+                this.halted = simulation.isHalted();
+                this.instructions = instructions;
+                this.pc = simulation.registers.get("PC");
+                this.ac = simulation.registers.get("AC");
+                this.mq = simulation.registers.getOrDefault("MQ", 0);
+                this.memory = simulation.memory.clone();
+                this.output = output;
+                this.error = error;
+            }
+
+            // Primera diferencia con otro resultado, o null si coinciden
+            String difference(Outcome other) {
+                // Los motores redactan distinto sus mensajes: basta con que falle igual
+                if (error != null || other.error != null) {
+                    return error != null && other.error != null && error.getClass() == other.error.getClass()
+                            ? null : "error: " + error + " / " + other.error;
+                }
+                if (halted != other.halted) {
+                    return "detenida: " + halted + " / " + other.halted;
+                }
+                if (instructions != other.instructions) {
+                    return "instrucciones: " + instructions + " / " + other.instructions;
+                }
+                if (pc != other.pc) {
+                    return "PC: " + pc + " / " + other.pc;
+                }
+                if (ac != other.ac) {
+                    return "AC: " + ac + " / " + other.ac;
+                }
+                if (mq != other.mq) {
+                    return "MQ: " + mq + " / " + other.mq;
+                }
+                int address = Arrays.mismatch(memory, other.memory);
+                if (address >= 0) {
+                    return "M(" + address + "): " + memory[address] + " / " + other.memory[address];
+                }
+                if (!Arrays.equals(output, other.output)) {
+                    return "salida de E/S: " + Arrays.toString(output) + " / " + Arrays.toString(other.output);
+                }
+                return null;
+            }
+        }
+
+        private final boolean ias;
+        private final int codeStart;
+        private final int dataStart;
+        private final int dataWords = 16;
+        private final int[] opcodes;
+        private long seed = 1;
+        private long programs = 10_000;
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private long maxInstructions = 2_000;
+        private int maxLength = 24;
+        private Path failureDirectory = Paths.get(".");
+        private int maxFailures = 10;
+
+        public ProgramFuzzer(boolean ias) {
+            this.ias = ias;
+            // Código y datos en zonas separadas: la máquina segmentada no invalida instrucciones
+            // ya captadas cuando un STOR escribe sobre ellas
+            this.codeStart = ias ? 0 : 0x100;
+            this.dataStart = ias ? 500 : 0x200;
+
+            // Códigos de operación tomados de la tabla de la propia máquina
+            Map<String, String> instructionSet = newSimulation(Tier.INTERPRETER).instructionSet;
+            int[] table = new int[instructionSet.size()];
+            int count = 0;
+            for (String key : instructionSet.keySet()) {
+                table[count++] = Integer.parseInt(key, 2);
+            }
+            Arrays.sort(table);
+            this.opcodes = table;
+        }
+
+        public void configure(String option, String value) {
+            switch (option) {
+                case "--semilla":
+                    seed = Long.parseLong(value);
+                    break;
+                case "--programas":
+                    programs = Long.parseLong(value);
+                    break;
+                case "--hilos":
+                    threads = Integer.parseInt(value);
+                    break;
+                case "--max":
+                    maxInstructions = Long.parseLong(value);
+                    break;
+                case "--longitud":
+                    maxLength = Integer.parseInt(value);
+                    break;
+                case "--fallos":
+                    failureDirectory = Paths.get(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Opción desconocida: " + option);
+            }
+        }
+
+        // Imagen de memoria del programa número index: instrucciones con operandos en la zona de
+        // datos (o en el código, para los saltos y el STOR de campo de dirección del IAS)
+        int[] generate(long index) {
+            Random random = new Random(seed * 0x9E3779B97F4A7C15L + index);
+            int[] image = new int[ias ? 1000 : 4096];
+            int length = 1 + random.nextInt(maxLength);
+            for (int i = 0; i < length; i++) {
+                int opcode = opcodes[random.nextInt(opcodes.length)];
+                int address;
+                if (isJump(opcode) || (ias && opcode == 0x12)) {
+                    address = codeStart + random.nextInt(length + 1);
+                } else if (!ias && (opcode == 0x3 || opcode == 0x4)) {
+                    address = random.nextInt(4); // Puertos de E/S 0x000-0x003
+                } else {
+                    address = dataStart + random.nextInt(dataWords);
+                }
+                image[codeStart + i] = (opcode << 12) | address;
+            }
+            image[codeStart + length] = 0; // HALT
+
+            for (int i = 0; i < dataWords; i++) {
+                // Valores pequeños para que los saltos condicionales vean signos y ceros
+                int value = random.nextInt(5) == 0 ? 0 : random.nextInt(64) - 32;
+                image[dataStart + i] = ias ? value : value & 0xFFFF;
+            }
+            return image;
+        }
+
+        private boolean isJump(int opcode) {
+            return ias ? opcode >= 0x06 && opcode <= 0x09 : opcode >= 0x7 && opcode <= 0xA;
+        }
+
+        private boolean usesIO(int[] image) {
+            for (int i = codeStart; i < dataStart; i++) {
+                int opcode = (image[i] >> 12) & 0xF;
+                if (opcode == 0x3 || opcode == 0x4) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private ComputerSimulationBase newSimulation(Tier tier) {
+            if (tier == Tier.PIPELINE) {
+                return new PipelinedMachineSimulation();
+            }
+            return ias ? new IASSimulation() : new HypotheticalMachineSimulation();
+        }
+
+        List<Tier> tiers(int[] image) {
+            List<Tier> tiers = new ArrayList<>(Arrays.asList(Tier.MICROCODED, Tier.INTERPRETER));
+            if (!ias && !usesIO(image)) {
+                tiers.add(Tier.PIPELINE);
+            }
+            return tiers;
+        }
+
+        Outcome run(Tier tier, int[] image) {
+            ComputerSimulationBase simulation = newSimulation(tier);
+            simulation.loadImage(image, codeStart);
+
+            // Dispositivos deterministas: lecturas a 0 y escrituras registradas para compararlas
+            RecordingDevice output = new RecordingDevice(new NullDevice());
+            if (simulation instanceof HypotheticalMachineSimulation) {
+                IOBus ioBus = ((HypotheticalMachineSimulation) simulation).getIOBus();
+                for (int port = IOBus.CONSOLE_PORT; port <= IOBus.OUTPUT_FILE_PORT; port++) {
+                    ioBus.attach(port, output);
+                }
+            }
+
+            long executed = 0;
+            RuntimeException error = null;
+            try {
+                if (tier == Tier.MICROCODED) {
+                    executed = simulation.runMicrocoded(maxInstructions);
+                } else {
+                    RunResult result = simulation.run(limits());
+                    executed = result.getInstructions();
+                    error = result.getError();
+                }
+            } catch (RuntimeException e) {
+                error = e;
+                executed = simulation.getInstructionCount();
+            }
+            return new Outcome(simulation, executed, output.getWritten(), error);
+        }
+
+        private RunLimits limits() {
+            RunLimits limits = new RunLimits();
+            limits.setMaxInstructions(maxInstructions);
+            return limits;
+        }
+
+        // Descripción de la primera discrepancia entre motores, o null si todos coinciden
+        String check(int[] image) {
+            List<Tier> tiers = tiers(image);
+            Outcome reference = run(tiers.get(0), image);
+            for (Tier tier : tiers.subList(1, tiers.size())) {
+                if (tier == Tier.PIPELINE && !reference.halted) {
+                    // Al cortar por límite la segmentada tiene instrucciones a medio ejecutar: solo
+                    // se compara cuando el programa termina
+                    continue;
+                }
+                String difference = reference.difference(run(tier, image));
+                if (difference != null) {
+                    return tiers.get(0).getLabel() + " / " + tier.getLabel() + ": " + difference;
+                }
+            }
+            return null;
+        }
+
+        // Reducir un programa que falla: sustituir palabras por 0 (HALT en el código, cero en los
+        // datos) mientras se mantenga alguna discrepancia, hasta que ninguna sustitución sirva
+        int[] shrink(int[] image) {
+            int[] current = image.clone();
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (int address = current.length - 1; address >= 0; address--) {
+                    if (current[address] == 0) {
+                        continue;
+                    }
+                    int saved = current[address];
+                    current[address] = 0;
+                    if (check(current) != null) {
+                        changed = true;
+                    } else {
+                        current[address] = saved;
+                    }
+                }
+            }
+            return current;
+        }
+
+        // Ejecutar la campaña; devuelve el número de programas con discrepancias
+        public int run() throws IOException, InterruptedException {
+            AtomicLong next = new AtomicLong();
+            AtomicInteger failures = new AtomicInteger();
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            Files.createDirectories(failureDirectory);
+            long start = System.nanoTime();
+            try {
+                List<Future<?>> workers = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    workers.add(executor.submit(() -> {
+                        long index;
+                        while ((index = next.getAndIncrement()) < programs && failures.get() < maxFailures) {
+                            int[] image = generate(index);
+                            if (check(image) != null) {
+                                failures.incrementAndGet();
+                                reportFailure(index, shrink(image));
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> worker : workers) {
+                    worker.get();
+                }
+            } catch (ExecutionException e) {
+                throw new IOException("Falló el fuzzer", e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+
+            long tested = Math.min(next.get(), programs);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d programas comparados en %.2f s (%.0f programas/hora, %d hilos), %d con discrepancias%n",
+                    tested, seconds, tested / seconds * 3600, threads, failures.get());
+            return failures.get();
+        }
+
+        // Escribir el caso reducido en el formato de "ejecutar" para reproducirlo
+        private void reportFailure(long index, int[] image) throws IOException {
+            ComputerSimulationBase simulation = newSimulation(Tier.INTERPRETER);
+            String difference = check(image);
+            Path file = failureDirectory.resolve(String.format("fallo-%s-%d-%d.txt", ias ? "ias" : "hipotetica", seed, index));
+            List<String> lines = new ArrayList<>();
+            lines.add("# Programa " + index + " de la semilla " + seed + " (reducido)");
+            lines.add("# " + difference);
+            lines.add(String.format("PC: %X", codeStart));
+            for (int address = 0; address < image.length; address++) {
+                if (image[address] != 0 || address == codeStart) {
+                    String comment = address < dataStart ? "   # " + simulation.disassemble(image[address]) : "";
+                    int value = image[address];
+                    // loadProgram lee los valores con signo en hexadecimal
+                    String hex = value < 0 ? String.format("-%X", -(long) value) : String.format("%X", value);
+                    lines.add(String.format("%X: %s%s", address, hex, comment));
+                }
+            }
+            Files.write(file, lines, StandardCharsets.UTF_8);
+            synchronized (System.out) {
+                System.out.println("Discrepancia en el programa " + index + ": " + difference + " -> " + file);
+            }
+        }
+    }
+
+    // Conformidad con los casos de prueba: ejecuta cada programa de loadTestCase con el microcódigo
+    // de la máquina (no con el guion compilado) y, antes de cada micro-operación, comprueba que la
+    // descripción generada a partir del estado real coincide con la línea del guion, que incluye los
+    // valores esperados de los registros ("Sumar MBR (10) a AC (5) = 15"). Al terminar cada
+    // instrucción compara además PC, AC, MQ y la memoria con el intérprete de runProgram.
+    static class ConformanceSuite {
+        // Diferencias conocidas entre un guion y la máquina real: {máquina, caso, paso (desde 1), motivo}.
+        // Vacía: el caso 2 del IAS, que guardaba MQ con STOR M(13), ahora pasa por LOAD MQ.
+        private static final String[][] KNOWN_DEVIATIONS = {};
+
+        private final PrintStream out;
+        private int checkedSteps;
+        private int failures;
+        private int knownDeviations;
+
+        public ConformanceSuite(PrintStream out) {
+            this.out = out;
+        }
+
+        // Comprobar todos los casos de la Máquina Hipotética y del IAS; devuelve el número de fallos
+        public int run() {
+            long start = System.nanoTime();
+            checkMachine("Hipotética", HypotheticalMachineSimulation::new);
+            checkMachine("IAS", IASSimulation::new);
+            out.printf("%d pasos comprobados en %.0f ms: %d fallos, %d desviaciones conocidas%n", checkedSteps,
+                    (System.nanoTime() - start) / 1e6, failures, knownDeviations);
+            return failures;
+        }
+
+        private void checkMachine(String machine, Supplier<ComputerSimulationBase> factory) {
+            int cases = factory.get().getTestCases().length;
+            for (int testCase = 1; testCase <= cases; testCase++) {
+                ComputerSimulationBase engine = factory.get();
+                engine.initialize();
+                engine.loadTestCase(testCase);
+                ComputerSimulationBase reference = factory.get();
+                reference.initialize();
+                reference.loadTestCase(testCase);
+
+                String result = checkCase(machine, testCase, engine, reference);
+                out.println(machine + ", caso " + testCase + ": " + result);
             }
         }
 
-        @Override
-        public void executeStep() {
-            if (currentStep >= steps.length) {
-                isRunning = false;
+        private String checkCase(String machine, int testCase, ComputerSimulationBase engine,
+                                 ComputerSimulationBase reference) {
+            String[] script = engine.steps;
+            int step = 0;
+            while (step < script.length) {
+                // Captación y, con IR ya cargado, el microprograma del código de operación
+                for (int phase = 0; phase < 2; phase++) {
+                    MicroOp[] microcode = phase == 0
+                            ? engine.fetchMicrocode() : engine.executeMicrocode(engine.registers.get("IR"));
+                    for (MicroOp op : microcode) {
+                        // Pasos solo narrativos del guion (sin efecto en la máquina): comprobar su texto y seguir
+                        while (step < script.length && MicroOp.parse(script[step]) == MicroOp.PC_READY
+                                && op != MicroOp.PC_READY) {
+                            checkedSteps++;
+                            String narration = MicroOp.PC_READY.getPhase().getLabel() + " - "
+                                    + engine.describeMicroOp(MicroOp.PC_READY);
+                            if (!narration.equals(script[step])) {
+                                return mismatch(step, script[step], narration);
+                            }
+                            step++;
+                        }
+                        if (step >= script.length) {
+                            failures++;
+                            return "FALLO: el guion termina a mitad de una instrucción (paso " + step + ")";
+                        }
+                        String actual = op.getPhase().getLabel() + " - " + engine.describeMicroOp(op);
+                        checkedSteps++;
+                        if (!actual.equals(script[step])) {
+                            String known = knownDeviation(machine, testCase, step + 1);
+                            if (known != null) {
+                                // A partir de aquí el estado del guion y el de la máquina divergen
+                                knownDeviations++;
+                                return "desviación conocida en el paso " + (step + 1) + ": " + known;
+                            }
+                            return mismatch(step, script[step], actual);
+                        }
+                        engine.executeMicroOp(op);
+                        step++;
+                    }
+                }
+
+                // Fin de la instrucción: comparar con el intérprete
+                reference.runProgram(1);
+                String difference = compareState(engine, reference);
+                if (difference != null) {
+                    failures++;
+                    return "FALLO tras el paso " + step + ": " + difference;
+                }
+            }
+            return script.length + " pasos conformes";
+        }
+
+        private String mismatch(int step, String expected, String actual) {
+            failures++;
+            return "FALLO en el paso " + (step + 1) + "\n    guion:   " + expected + "\n    máquina: " + actual;
+        }
+
+        private static String compareState(ComputerSimulationBase engine, ComputerSimulationBase reference) {
+            for (String register : new String[] {"PC", "AC", "MQ"}) {
+                Integer expected = reference.registers.get(register);
+                Integer actual = engine.registers.get(register);
+                if (!Objects.equals(expected, actual)) {
+                    return register + " = " + actual + ", el intérprete da " + expected;
+                }
+            }
+            int address = Arrays.mismatch(engine.memory, reference.memory);
+            if (address >= 0) {
+                return "M(" + engine.formatAddress(address) + ") = " + engine.memory[address] + ", el intérprete da "
+                        + reference.memory[address];
+            }
+            return null;
+        }
+
+        private static String knownDeviation(String machine, int testCase, int step) {
+            for (String[] deviation : KNOWN_DEVIATIONS) {
+                if (deviation[0].equals(machine) && Integer.parseInt(deviation[1]) == testCase
+                        && Integer.parseInt(deviation[2]) == step) {
+                    return deviation[3];
+                }
+            }
+            return null;
+        }
+    }
+
+    // Comparación de una imagen de memoria final con la esperada. Las zonas exactas se comparan
+    // con Arrays.mismatch, que la JVM vectoriza; las zonas con tolerancia, palabra a palabra, y
+    // las ignoradas no se miran. Las zonas se resuelven una vez por tamaño de memoria, así que
+    // un mismo comparador sirve para corregir muchas ejecuciones. Las tolerancias se miden sobre
+    // los valores con signo (ver signExtendWith), de modo que -1 y 0 distan 1 aunque la palabra
+    // guardada sea 0xFFFF.
+    static class MemoryComparator {
+        // Tramo [start, end) de direcciones
+        static final class Range {
+            final int start;
+            final int end;
+
+            Range(int start, int end) {
+                this.start = start;
+                this.end = end;
+            }
+        }
+
+        private final List<int[]> ignored = new ArrayList<>();     // {inicio, fin}
+        private final List<int[]> tolerances = new ArrayList<>();  // {inicio, fin, tolerancia}
+
+        // Zonas consecutivas que cubren la memoria: inicio y tolerancia (-1: ignorar, 0: exacta)
+        private int planLength = -1;
+        private int[] planStarts;
+        private int[] planTolerances;
+
+        // Extensión de signo de una palabra guardada al ancho de la máquina
+        private IntUnaryOperator signed = IntUnaryOperator.identity();
+
+        public MemoryComparator signExtendWith(IntUnaryOperator signed) {
+            this.signed = signed;
+            return this;
+        }
+
+        // Las zonas se dan como [inicio, fin); si se solapan, ignorar gana y, si no, la mayor tolerancia
+        public MemoryComparator ignore(int start, int end) {
+            ignored.add(new int[] {start, end});
+            planLength = -1;
+            return this;
+        }
+
+        public MemoryComparator tolerate(int start, int end, int tolerance) {
+            if (tolerance < 0) {
+                throw new IllegalArgumentException("Tolerancia negativa: " + tolerance);
+            }
+            tolerances.add(new int[] {start, end, tolerance});
+            planLength = -1;
+            return this;
+        }
+
+        // Primera dirección que difiere, o -1 si las imágenes coinciden
+        public int firstDifference(int[] actual, int[] expected) {
+            return scan(actual, expected, null);
+        }
+
+        // Todos los tramos de direcciones consecutivas que difieren
+        public List<Range> differences(int[] actual, int[] expected) {
+            List<Range> ranges = new ArrayList<>();
+            scan(actual, expected, ranges);
+            return ranges;
+        }
+
+        // Recorrer las zonas; sin lista de tramos, se detiene en la primera diferencia
+        private int scan(int[] actual, int[] expected, List<Range> ranges) {
+            if (actual.length != expected.length) {
+                throw new IllegalArgumentException("Las imágenes tienen tamaños distintos: " + actual.length
+                        + " y " + expected.length);
+            }
+            plan(actual.length);
+
+            for (int zone = 0; zone < planStarts.length; zone++) {
+                int zoneEnd = zone + 1 < planStarts.length ? planStarts[zone + 1] : actual.length;
+                int tolerance = planTolerances[zone];
+                if (tolerance < 0) {
+                    continue;
+                }
+
+                int address = planStarts[zone];
+                while (address < zoneEnd) {
+                    int start;
+                    if (tolerance == 0) {
+                        int offset = Arrays.mismatch(actual, address, zoneEnd, expected, address, zoneEnd);
+                        if (offset < 0) {
+                            break;
+                        }
+                        start = address + offset;
+                    } else {
+                        start = address;
+                        while (start < zoneEnd && distance(actual[start], expected[start]) <= tolerance) {
+                            start++;
+                        }
+                        if (start == zoneEnd) {
+                            break;
+                        }
+                    }
+                    if (ranges == null) {
+                        return start;
+                    }
+
+                    int end = start + 1;
+                    while (end < zoneEnd && distance(actual[end], expected[end]) > tolerance) {
+                        end++;
+                    }
+                    // Un tramo que sigue a otro de la zona anterior se une a él
+                    Range last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+                    if (last != null && last.end == start) {
+                        ranges.set(ranges.size() - 1, new Range(last.start, end));
+                    } else {
+                        ranges.add(new Range(start, end));
+                    }
+                    address = end;
+                }
+            }
+            return ranges == null || ranges.isEmpty() ? -1 : ranges.get(0).start;
+        }
+
+        private long distance(int actual, int expected) {
+            return Math.abs((long) signed.applyAsInt(actual) - signed.applyAsInt(expected));
+        }
+
+        // Partir [0, length) en zonas con la misma tolerancia
+        private void plan(int length) {
+            if (planLength == length) {
                 return;
             }
+            TreeSet<Integer> boundaries = new TreeSet<>();
+            boundaries.add(0);
+            for (List<int[]> zones : List.of(ignored, tolerances)) {
+                for (int[] zone : zones) {
+                    boundaries.add(Math.max(0, Math.min(length, zone[0])));
+                    boundaries.add(Math.max(0, Math.min(length, zone[1])));
+                }
+            }
+            boundaries.remove(length);
 
-            String step = steps[currentStep];
-
-            // Ejecutar la acción correspondiente al paso actual
-            if (step.contains("Copiar PC a MAR")) {
-                registers.put("MAR", registers.get("PC"));
-            } else if (step.contains("Leer palabra de memoria a MBR")) {
-                registers.put("MBR", memory[registers.get("MAR")]);
-            } else if (step.contains("Incrementar PC")) {
-                registers.put("PC", registers.get("PC") + 1);
-            } else if (step.contains("Transferir instrucción izquierda de MBR a IR")) {
-                // Extraer los 20 bits izquierdos del MBR (instrucción izquierda)
-                registers.put("IR", registers.get("MBR") >> 20);
-            } else if (step.contains("Transferir instrucción derecha de MBR a IBR")) {
-                // Extraer los 20 bits derechos del MBR (instrucción derecha)
-                registers.put("IBR", registers.get("MBR") & 0xFFFFF);
-            } else if (step.contains("Decodificar instrucción")) {
-                controlUnits.put("Control", "DECODIFICANDO");
-            } else if (step.contains("Extraer dirección del operando")) {
-                // Extraer la dirección de 12 bits del IR
-                int address = registers.get("IR") & 0xFFF;
-                registers.put("MAR", address);
-            } else if (step.contains("Leer dato de memoria a MBR")) {
-                registers.put("MBR", memory[registers.get("MAR")]);
-            } else if (step.contains("Transferir dato de MBR a AC")) {
-                registers.put("AC", registers.get("MBR"));
-            } else if (step.contains("ALU realizando operación de suma")) {
-                controlUnits.put("ALU", "SUMANDO");
-            } else if (step.contains("ALU realizando operación de resta")) {
-                controlUnits.put("ALU", "RESTANDO");
-            } else if (step.contains("ALU realizando operación de multiplicación")) {
-                controlUnits.put("ALU", "MULTIPLICANDO");
-            } else if (step.contains("ALU realizando operación de división")) {
-                controlUnits.put("ALU", "DIVIDIENDO");
-            } else if (step.contains("Sumar MBR")) {
-                // Extraer valores de la descripción del paso
-                int mbrValue = extractValue(step, "MBR");
-                int acValue = extractValue(step, "AC");
-                int result = extractResult(step);
-                registers.put("AC", result);
-                controlUnits.put("ALU", "INACTIVA");
-            } else if (step.contains("Restar MBR")) {
-                // Extraer valores de la descripción del paso
-                int mbrValue = extractValue(step, "MBR");
-                int acValue = extractValue(step, "AC");
-                int result = extractResult(step);
-                registers.put("AC", result);
-                controlUnits.put("ALU", "INACTIVA");
-            } else if (step.contains("Multiplicar AC")) {
-                // Extraer valores de la descripción del paso
-                int acValue = extractValue(step, "AC");
-                int mbrValue = extractValue(step, "MBR");
-                int result = extractResult(step);
-                registers.put("AC", result);
-                registers.put("MQ", 0); // Simplificación: en IAS real, MQ contendría la parte baja
-                controlUnits.put("ALU", "INACTIVA");
-            } else if (step.contains("Dividir AC")) {
-                // Extraer valores de la descripción del paso
-                int acValue = extractValue(step, "AC");
-                int mbrValue = extractValue(step, "MBR");
-                int result = extractResult(step);
-                registers.put("MQ", result);
-                registers.put("AC", 0); // Simplificación: en IAS real, AC contendría el resto
-                controlUnits.put("ALU", "INACTIVA");
-            } else if (step.contains("Copiar AC")) {
-                int acValue = extractValue(step, "AC");
-                registers.put("MBR", acValue);
-            } else if (step.contains("Copiar MQ")) {
-                int mqValue = extractValue(step, "MQ");
-                registers.put("MBR", mqValue);
-            } else if (step.contains("Escribir MBR")) {
-                int mbrValue = extractValue(step, "MBR");
-                int address = extractAddress(step);
-                memory[address] = mbrValue;
+            List<Integer> starts = new ArrayList<>();
+            List<Integer> zoneTolerances = new ArrayList<>();
+            for (int start : boundaries) {
+                int tolerance = 0;
+                for (int[] zone : tolerances) {
+                    if (zone[0] <= start && start < zone[1]) {
+                        tolerance = Math.max(tolerance, zone[2]);
+                    }
+                }
+                for (int[] zone : ignored) {
+                    if (zone[0] <= start && start < zone[1]) {
+                        tolerance = -1;
+                    }
+                }
+                // Zonas vecinas con la misma tolerancia se juntan
+                if (!zoneTolerances.isEmpty() && zoneTolerances.get(zoneTolerances.size() - 1) == tolerance) {
+                    continue;
+                }
+                starts.add(start);
+                zoneTolerances.add(tolerance);
             }
 
-            // Restablecer unidades de control si es necesario
-            if (currentStep < steps.length - 1 && !steps[currentStep + 1].contains("ALU") && !steps[currentStep + 1].contains("Decodificar")) {
-                controlUnits.put("Control", "INACTIVA");
+            planStarts = starts.stream().mapToInt(Integer::intValue).toArray();
+            planTolerances = zoneTolerances.stream().mapToInt(Integer::intValue).toArray();
+            planLength = length;
+        }
+    }
+
+    // Estado final esperado de un programa, leído de un archivo con el formato del cargador:
+    // "dirección: valor" en hexadecimal, "registro NOMBRE: valor", "ignorar: inicio[-fin]" y
+    // "tolerancia inicio[-fin]: n" (direcciones en hexadecimal, con el fin incluido; la
+    // tolerancia, en decimal). Las direcciones no listadas deben conservar el valor con el que
+    // se cargó el programa. Los valores pueden ser negativos ("-1" o "FFFF" en la Máquina
+    // Hipotética): se ajustan al ancho de palabra de la máquina y se comparan con signo.
+    static class ExpectedState {
+        private final int[] memory;
+        private final Map<String, Integer> registers = new LinkedHashMap<>();
+        private final MemoryComparator comparator = new MemoryComparator();
+
+        private ExpectedState(int[] initialMemory) {
+            this.memory = initialMemory.clone();
+        }
+
+        // Estado esperado para el programa ya cargado en la simulación
+        public static ExpectedState load(Path file, ComputerSimulationBase simulation) throws IOException {
+            ExpectedState state = new ExpectedState(simulation.memory);
+            state.comparator.signExtendWith(simulation::signed);
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            for (int lineNumber = 0; lineNumber < lines.size(); lineNumber++) {
+                String line = lines.get(lineNumber);
+                int comment = line.indexOf('#');
+                if (comment >= 0) {
+                    line = line.substring(0, comment);
+                }
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+
+                int separator = line.indexOf(':');
+                if (separator < 0) {
+                    throw new IOException("Línea " + (lineNumber + 1) + " sin ':' en " + file);
+                }
+                String key = line.substring(0, separator).trim();
+                String value = line.substring(separator + 1).trim();
+                try {
+                    if (key.startsWith("registro ")) {
+                        state.registers.put(key.substring(9).trim(), (int) Long.parseLong(value, 16));
+                    } else if (key.equals("ignorar")) {
+                        int[] range = parseRange(value);
+                        state.comparator.ignore(range[0], range[1]);
+                    } else if (key.startsWith("tolerancia ")) {
+                        int[] range = parseRange(key.substring(11).trim());
+                        state.comparator.tolerate(range[0], range[1], Integer.parseInt(value));
+                    } else {
+                        state.memory[Integer.parseInt(key, 16)] = simulation.wrap(Long.parseLong(value, 16));
+                    }
+                } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                    throw new IOException("Línea " + (lineNumber + 1) + " no válida en " + file + ": " + e.getMessage());
+                }
             }
+            return state;
         }
 
-        // Método auxiliar para extraer valores numéricos de las descripciones de pasos
-        private int extractValue(String step, String register) {
-            try {
-                int startIndex = step.indexOf(register) + register.length() + 2;
-                int endIndex = step.indexOf(')', startIndex);
-                String valueStr = step.substring(startIndex, endIndex);
-                return Integer.parseInt(valueStr);
-            } catch (Exception e) {
-                // Si hay un error al extraer el valor, devolver 0
-                return 0;
+        // "inicio" o "inicio-fin" en hexadecimal, con el fin incluido, como [inicio, fin + 1)
+        private static int[] parseRange(String text) {
+            int dash = text.indexOf('-');
+            int start = Integer.parseInt((dash < 0 ? text : text.substring(0, dash)).trim(), 16);
+            int end = dash < 0 ? start : Integer.parseInt(text.substring(dash + 1).trim(), 16);
+            return new int[] {start, end + 1};
+        }
+
+        // Diferencias con el estado final de la simulación (vacía si coincide)
+        public List<String> check(ComputerSimulationBase simulation) {
+            List<String> report = new ArrayList<>();
+            for (Map.Entry<String, Integer> register : registers.entrySet()) {
+                Integer actual = simulation.registers.get(register.getKey());
+                int expected = simulation.signed(register.getValue());
+                if (actual == null || simulation.signed(actual) != expected) {
+                    report.add(register.getKey() + ": esperado " + expected + ", obtenido "
+                            + (actual == null ? "(no existe)" : Integer.toString(simulation.signed(actual))));
+                }
+            }
+            for (MemoryComparator.Range range : comparator.differences(simulation.memory, memory)) {
+                String addresses = simulation.formatAddress(range.start)
+                        + (range.end - range.start > 1 ? "-" + simulation.formatAddress(range.end - 1) : "");
+                report.add("M(" + addresses + "): esperado " + simulation.signed(memory[range.start]) + ", obtenido "
+                        + simulation.signed(simulation.memory[range.start])
+                        + (range.end - range.start > 1 ? " (primera palabra)" : ""));
+            }
+            return report;
+        }
+    }
+
+    // Caché persistente de resultados de "ejecutar". La clave es el SHA-256 de la imagen de memoria
+    // cargada, la dirección de inicio, el contenido del archivo de entrada y la configuración de la
+    // máquina; cada entrada guarda la memoria y los registros finales, el informe de métricas y lo
+    // escrito en la consola y en el archivo de salida. Al superar el tamaño máximo se borran las
+    // entradas usadas hace más tiempo (la fecha de modificación se actualiza en cada acierto).
+    static class ResultCache {
+        // Cambiar al modificar el formato de las entradas o la semántica de la simulación
+        private static final String VERSION = "1";
+        private static final int MAGIC = 0x52534331; // "RSC1"
+        private static final String SUFFIX = ".res";
+
+        private final Path directory;
+        private final long maxBytes;
+
+        // Resultado guardado de una ejecución
+        static class Entry {
+            final String report;
+            final Map<String, Integer> registers;
+            final int[] memory;
+            final int[] consoleOutput;
+            final int[] fileOutput;
+
+            Entry(String report, Map<String, Integer> registers, int[] memory, int[] consoleOutput, int[] fileOutput) {
+                this.report = report;
+                this.registers = registers;
+                this.memory = memory;
+                this.consoleOutput = consoleOutput;
+                this.fileOutput = fileOutput;
             }
         }
 
-        // Método auxiliar para extraer el resultado de una operación
-        private int extractResult(String step) {
+        public ResultCache(Path directory, long maxBytes) throws IOException {
+            this.directory = directory;
+            this.maxBytes = maxBytes;
+            Files.createDirectories(directory);
+        }
+
+        // Clave de contenido de una ejecución; las opciones se ordenan para que su orden no importe
+        public static String key(String machine, List<String> options, int[] image, int startAddress, Path inputFile)
+                throws IOException {
+            MessageDigest digest;
             try {
-                int startIndex = step.indexOf('=') + 2;
-                return Integer.parseInt(step.substring(startIndex));
-            } catch (Exception e) {
-                // Si hay un error al extraer el resultado, devolver 0
-                return 0;
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+
+            List<String> sorted = new ArrayList<>(options);
+            Collections.sort(sorted);
+            digest.update(("v" + VERSION + "|" + machine + "|" + String.join("|", sorted) + "|")
+                    .getBytes(StandardCharsets.UTF_8));
+
+            ByteBuffer words = ByteBuffer.allocate(4 * (image.length + 2));
+            words.putInt(startAddress).putInt(image.length);
+            for (int word : image) {
+                words.putInt(word);
+            }
+            digest.update(words.array());
+
+            if (inputFile != null) {
+                digest.update(Files.readAllBytes(inputFile));
+            }
+
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
             }
+            return hex.toString();
         }
 
-        // Método auxiliar para extraer una dirección de memoria
-        private int extractAddress(String step) {
+        // Entrada guardada para la clave, o null si no existe o está dañada
+        public Entry load(String key) throws IOException {
+            Path file = directory.resolve(key + SUFFIX);
+            if (!Files.exists(file)) {
+                return null;
+            }
+
+            Entry entry;
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(file)))) {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException("Entrada de caché no reconocida: " + file);
+                }
+                String report = in.readUTF();
+                int registerCount = in.readInt();
+                Map<String, Integer> registers = new HashMap<>();
+                for (int i = 0; i < registerCount; i++) {
+                    registers.put(in.readUTF(), in.readInt());
+                }
+                entry = new Entry(report, registers, readWords(in), readWords(in), readWords(in));
+            } catch (IOException e) {
+                // Una entrada incompleta o dañada se trata como un fallo y se descarta
+                Files.deleteIfExists(file);
+                return null;
+            }
+
+            // Marcar la entrada como usada recientemente para la expulsión LRU
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return entry;
+        }
+
+        // Guardar una entrada (escritura en un archivo temporal y renombrado atómico) y expulsar si hace falta
+        public void store(String key, Entry entry) throws IOException {
+            Path temporary = Files.createTempFile(directory, key, ".tmp");
             try {
-                int startIndex = step.indexOf('(') + 1;
-                int endIndex = step.indexOf(')', startIndex);
-                String addressStr = step.substring(startIndex, endIndex);
-                if (addressStr.startsWith("0x")) {
-                    return Integer.parseInt(addressStr.substring(2), 16);
-                } else {
-                    return Integer.parseInt(addressStr);
+                try (DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                    out.writeInt(MAGIC);
+                    out.writeUTF(entry.report);
+                    out.writeInt(entry.registers.size());
+                    for (Map.Entry<String, Integer> register : entry.registers.entrySet()) {
+                        out.writeUTF(register.getKey());
+                        out.writeInt(register.getValue());
+                    }
+                    writeWords(out, entry.memory);
+                    writeWords(out, entry.consoleOutput);
+                    writeWords(out, entry.fileOutput);
                 }
-            } catch (Exception e) {
-                // Si hay un error al extraer la dirección, devolver 0
-                return 0;
+                Files.move(temporary, directory.resolve(key + SUFFIX), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
             }
+            evict();
         }
 
-        @Override
-        public void displayState() {
-            System.out.println("===============================================");
-            System.out.println("         COMPUTADOR IAS");
-            System.out.println("===============================================");
-            System.out.println("Paso actual: " + (currentStep + 1) + "/" + steps.length);
-            System.out.println("Acción: " + steps[currentStep]);
-            System.out.println();
+        // Borrar las entradas menos recientes hasta que el directorio quepa en el tamaño máximo
+        private void evict() throws IOException {
+            List<Path> entries = new ArrayList<>();
+            Map<Path, Long> sizes = new HashMap<>();
+            Map<Path, Long> times = new HashMap<>();
+            long total = 0;
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+                for (Path file : stream) {
+                    long size = Files.size(file);
+                    entries.add(file);
+                    sizes.put(file, size);
+                    times.put(file, Files.getLastModifiedTime(file).toMillis());
+                    total += size;
+                }
+            }
+            if (total <= maxBytes) {
+                return;
+            }
 
-            // Mostrar registros
-            System.out.println("REGISTROS:");
-            System.out.println("-----------------------------------------------");
-            System.out.printf("%-8s %-12s %-10s%n", "Registro", "Valor", "Bits");
-            System.out.printf("%-8s 0x%03X        12 bits%n", "PC", registers.get("PC"));
-            System.out.printf("%-8s 0x%03X        12 bits%n", "MAR", registers.get("MAR"));
-            System.out.printf("%-8s 0x%010X    40 bits%n", "MBR", registers.get("MBR"));
-            System.out.printf("%-8s 0x%05X      20 bits%n", "IR", registers.get("IR"));
-            System.out.printf("%-8s 0x%05X      20 bits%n", "IBR", registers.get("IBR"));
-            System.out.printf("%-8s 0x%010X    40 bits%n", "AC", registers.get("AC"));
-            System.out.printf("%-8s 0x%010X    40 bits%n", "MQ", registers.get("MQ"));
-            System.out.println();
+            entries.sort(Comparator.comparingLong(times::get));
+            for (Path file : entries) {
+                if (total <= maxBytes) {
+                    break;
+                }
+                Files.deleteIfExists(file);
+                total -= sizes.get(file);
+            }
+        }
 
-            // Mostrar unidades de control
-            System.out.println("UNIDADES DE CONTROL:");
-            System.out.println("-----------------------------------------------");
-            System.out.printf("%-15s %-15s%n", "Unidad", "Estado");
-            System.out.printf("%-15s %-15s%n", "ALU", controlUnits.get("ALU"));
-            System.out.printf("%-15s %-15s%n", "Control", controlUnits.get("Control"));
-            System.out.println();
+        private static void writeWords(DataOutputStream out, int[] words) throws IOException {
+            out.writeInt(words.length);
+            for (int word : words) {
+                out.writeInt(word);
+            }
+        }
 
-            // Mostrar memoria relevante
-            System.out.println("MEMORIA RELEVANTE:");
-            System.out.println("-----------------------------------------------");
-            System.out.printf("%-8s %-12s %-15s%n", "Dirección", "Valor", "Contenido");
+        private static int[] readWords(DataInputStream in) throws IOException {
+            int[] words = new int[in.readInt()];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = in.readInt();
+            }
+            return words;
+        }
+    }
 
-            // Mostrar instrucciones
-            for (int i = 0; i <= 5; i++) {
-                if (memory[i] != 0) {
-                    int value = memory[i];
-                    String content = "";
+    // Modo sin interfaz: "ejecutar <programa> [opciones]" ejecuta un programa de forma continua
+    // y "barrido <programa> <resultado.csv> [opciones]" lo ejecuta con una rejilla de configuraciones.
+    // "fuzz [--maquina hipotetica|ias] [--programas N] [--semilla S] [--hilos N] [--max N] [--longitud N]
+    // [--fallos directorio]" compara los motores de ejecución con programas aleatorios, y "conformidad"
+    // comprueba la máquina real contra los guiones de los casos de prueba. "multiprocesador <programa>
+    // [--cpus N] [--cache palabras:línea:vías] [--latencia ciclos] [--cuanto N] [--max N] [--esperado archivo]"
+    // ejecuta el programa en N Máquinas Hipotéticas con memoria compartida y cachés MESI.
+    // Opciones de ejecutar: --maquina hipotetica|ias|ias-fuera-de-orden|segmentada, --entrada archivo, --salida archivo, --traza archivo,
+    // límites --max N (instrucciones), --max-ciclos N, --max-tiempo ms, --max-es palabras, --max-traza bytes,
+    // --comprobar N (instrucciones entre comprobaciones de los límites),
+    // --cache palabras:línea:vías:lru|fifo|aleatorio:wb|wt, --latencia ciclos, --ciclos-es ciclos (costo de
+    // LOADIO/STORIO), --predictor tipo,
+    // --penalizacion ciclos, --resultados directorio, --resultados-max MB, --bucles 0|1 (detección de
+    // bucles infinitos en las máquinas secuenciales, activa por defecto), y para la máquina segmentada
+    // --adelantamiento 0|1 y --saltos especular|detener, y para ias-fuera-de-orden --fuera-de-orden
+    // anchura:rob:alu:muldiv:memoria. --grabar y --reproducir guardan y reproducen las entradas externas
+    // de la Máquina Hipotética, y --semilla fija la semilla de las políticas de reemplazo aleatorias.
+    private static void runHeadless(String[] args) throws IOException {
+        switch (args[0]) {
+            case "ejecutar": {
+                if (args.length < 2) {
+                    System.out.println("Uso: ejecutar <programa> [--maquina hipotetica|ias|ias-fuera-de-orden|segmentada] [--isa descripción.isa]");
+                    System.out.println("                [--entrada archivo] [--salida archivo]");
+                    System.out.println("                [--max N] [--cache palabras:línea:vías:lru|fifo|aleatorio:wb|wt] [--latencia ciclos] [--ciclos-es ciclos]");
+                    System.out.println("                [--adelantamiento 0|1] [--saltos especular|detener]");
+                    System.out.println("                [--predictor no-tomado|tomado|btfn|1bit:bits|2bit:bits|gshare:bits] [--penalizacion ciclos]");
+                    System.out.println("                [--resultados directorio] [--resultados-max MB] [--bucles 0|1] [--traza archivo]");
+                    System.out.println("                [--esperado archivo] [--memoria-virtual marcos:página:tlb:lru|fifo|aleatorio:lru|fifo|aleatorio]");
+                    System.out.println("                [--fallo-pagina ciclos] [--irq puerto:línea:latencia] [--entrada-interrupcion ciclos]");
+                    System.out.println("                [--dma ciclos_por_palabra:ciclos_robados] [--fuera-de-orden anchura:rob:alu:muldiv:memoria]");
+                    System.out.println("                [--grabar registro] [--reproducir registro] [--semilla N]");
+                    System.out.println("                [--max-ciclos N] [--max-tiempo ms] [--max-es palabras] [--max-traza bytes] [--comprobar N]");
+                    return;
+                }
+
+                // Las opciones van de a pares: una opción final sin valor no se ignora en silencio
+                if (args.length % 2 != 0) {
+                    throw new IllegalArgumentException("Opción desconocida: " + args[args.length - 1] + " (sin valor)");
+                }
+                ComputerSimulationBase simulation = new HypotheticalMachineSimulation();
+                String machine = "hipotetica";
+                IsaDescriptor isa = null;
+                for (int i = 2; i + 1 < args.length; i += 2) {
+                    if (args[i].equals("--maquina")) {
+                        machine = args[i + 1];
+                        switch (machine) {
+                            case "hipotetica":
+                                simulation = new HypotheticalMachineSimulation();
+                                break;
+                            case "ias":
+                                simulation = new IASSimulation();
+                                break;
+                            case "ias-fuera-de-orden":
+                                simulation = new OutOfOrderIASSimulation();
+                                break;
+                            case "segmentada":
+                                simulation = new PipelinedMachineSimulation();
+                                break;
+                            default:
+                                throw new IllegalArgumentException("Opción desconocida: --maquina " + machine);
+                        }
+                    } else if (args[i].equals("--isa")) {
+                        isa = IsaDescriptor.load(Paths.get(args[i + 1]));
+                    }
+                }
+                if (isa != null) {
+                    // La descripción reemplaza a la máquina elegida con --maquina
+                    simulation = new DescriptorSimulation(isa);
+                    machine = "isa:" + isa.name;
+                }
+                simulation.loadProgram(Paths.get(args[1]));
+                if (!(simulation instanceof PipelinedMachineSimulation) && simulation.memory != null) {
+                    simulation.setLoopDetector(new LoopDetector());
+                }
+
+                IOBus ioBus = simulation instanceof HypotheticalMachineSimulation
+                        ? ((HypotheticalMachineSimulation) simulation).getIOBus()
+                        : simulation instanceof DescriptorSimulation ? ((DescriptorSimulation) simulation).getIOBus() : null;
+                RunLimits limits = new RunLimits();
+                Path traceFile = null;
+                Path inputFile = null;
+                Path resultsDirectory = null;
+                long resultsMaxBytes = 64L * 1024 * 1024;
+                ExpectedState expected = null;
+                int pageFaultCycles = -1;
+                List<String> irqSpecs = new ArrayList<>();
+                Path recordFile = null;
+                Path replayFile = null;
+                long seed = 0;
+                // Opciones que influyen en el resultado (forman parte de la clave de la caché de resultados)
+                List<String> configuration = new ArrayList<>();
+                if (isa != null) {
+                    // Cuenta el contenido de la descripción, no la ruta del archivo
+                    configuration.add("--isa=" + isa.source);
+                }
+                for (int i = 2; i + 1 < args.length; i += 2) {
+                    if (!args[i].equals("--entrada") && !args[i].equals("--salida") && !args[i].equals("--maquina")
+                            && !args[i].equals("--isa") && !args[i].startsWith("--resultados") && !args[i].equals("--esperado")
+                            && !args[i].equals("--traza")) {
+                        configuration.add(args[i] + "=" + args[i + 1]);
+                    }
+                    if (limits.configure(args[i], args[i + 1])) {
+                        continue;
+                    }
+                    switch (args[i]) {
+                        case "--maquina":
+                        case "--isa":
+                            break;
+                        case "--entrada":
+                        case "--salida":
+                            if (ioBus == null) {
+                                System.out.println("Esta máquina no tiene dispositivos de E/S");
+                                return;
+                            }
+                            if (args[i].equals("--entrada")) {
+                                inputFile = Paths.get(args[i + 1]);
+                                ioBus.attach(IOBus.INPUT_FILE_PORT, new FileInputDevice(inputFile));
+                            } else {
+                                // Solo importa si hay archivo de salida, no su ruta
+                                configuration.add("--salida");
+                                ioBus.attach(IOBus.OUTPUT_FILE_PORT, new FileOutputDevice(Paths.get(args[i + 1])));
+                            }
+                            break;
+                        case "--resultados":
+                            if (simulation.memory == null) {
+                                System.out.println("La caché de resultados necesita la memoria en el heap");
+                                return;
+                            }
+                            resultsDirectory = Paths.get(args[i + 1]);
+                            break;
+                        case "--resultados-max":
+                            resultsMaxBytes = Long.parseLong(args[i + 1]) * 1024 * 1024;
+                            break;
+                        case "--esperado":
+                            if (simulation.memory == null) {
+                                System.out.println("La comparación con el estado esperado necesita la memoria en el heap");
+                                return;
+                            }
+                            // Las direcciones no listadas se comparan con la imagen recién cargada
+                            expected = ExpectedState.load(Paths.get(args[i + 1]), simulation);
+                            break;
+                        case "--bucles": {
+                            boolean detectLoops = !args[i + 1].equals("0")
+                                    && !(simulation instanceof PipelinedMachineSimulation) && simulation.memory != null;
+                            simulation.setLoopDetector(detectLoops ? new LoopDetector() : null);
+                            break;
+                        }
+                        case "--traza":
+                            if (simulation instanceof PipelinedMachineSimulation) {
+                                System.out.println("La traza solo está disponible en las máquinas secuenciales");
+                                return;
+                            }
+                            // Se abre (y vacía) justo antes de ejecutar, no si se sale antes
+                            traceFile = Paths.get(args[i + 1]);
+                            break;
+                        case "--cache":
+                            if (simulation instanceof OutOfOrderIASSimulation) {
+                                System.out.println("El modelo fuera de orden no simula la caché");
+                                return;
+                            }
+                            if (simulation instanceof PipelinedMachineSimulation) {
+                                System.out.println("La máquina segmentada no simula la caché");
+                                return;
+                            }
+                            simulation.setCache(Cache.fromSpec(args[i + 1]));
+                            break;
+                        case "--fuera-de-orden":
+                            if (!(simulation instanceof OutOfOrderIASSimulation)) {
+                                System.out.println("La opción --fuera-de-orden solo aplica a la máquina ias-fuera-de-orden");
+                                return;
+                            }
+                            ((OutOfOrderIASSimulation) simulation).configure(args[i + 1]);
+                            break;
+                        case "--memoria-virtual":
+                            if (!(simulation instanceof HypotheticalMachineSimulation)) {
+                                System.out.println("La memoria virtual solo está disponible en la Máquina Hipotética");
+                                return;
+                            }
+                            simulation.setVirtualMemory(VirtualMemory.fromSpec(args[i + 1]));
+                            break;
+                        case "--fallo-pagina":
+                            pageFaultCycles = Integer.parseInt(args[i + 1]);
+                            break;
+                        case "--grabar":
+                        case "--reproducir":
+                            if (!(simulation instanceof HypotheticalMachineSimulation) || simulation.memory == null) {
+                                System.out.println("El registro de entradas solo está disponible en la Máquina Hipotética con la memoria en el heap");
+                                return;
+                            }
+                            if (args[i].equals("--grabar")) {
+                                recordFile = Paths.get(args[i + 1]);
+                            } else {
+                                replayFile = Paths.get(args[i + 1]);
+                            }
+                            break;
+                        case "--semilla":
+                            seed = Long.parseLong(args[i + 1]);
+                            break;
+                        case "--irq":
+                        case "--entrada-interrupcion":
+                        case "--dma":
+                            if (!(simulation instanceof HypotheticalMachineSimulation)) {
+                                System.out.println("Las interrupciones y el DMA solo están disponibles en la Máquina Hipotética");
+                                return;
+                            }
+                            if (args[i].equals("--irq")) {
+                                irqSpecs.add(args[i + 1]);
+                            } else if (args[i].equals("--dma")) {
+                                ((HypotheticalMachineSimulation) simulation).getDmaController().configure(args[i + 1]);
+                            } else {
+                                ((HypotheticalMachineSimulation) simulation).setInterruptEntryCycles(Integer.parseInt(args[i + 1]));
+                            }
+                            break;
+                        case "--latencia":
+                            // Cada etapa de la segmentada dura un ciclo: no hay accesos a memoria más lentos
+                            if (simulation instanceof PipelinedMachineSimulation) {
+                                System.out.println("La máquina segmentada no simula la latencia de memoria");
+                                return;
+                            }
+                            simulation.setMemoryLatency(Integer.parseInt(args[i + 1]));
+                            break;
+                        case "--ciclos-es":
+                            simulation.setIoCycles(Integer.parseInt(args[i + 1]));
+                            break;
+                        case "--predictor":
+                            simulation.setBranchPredictor(BranchPredictor.fromSpec(args[i + 1]));
+                            break;
+                        case "--penalizacion":
+                            simulation.setBranchPenalty(Integer.parseInt(args[i + 1]));
+                            break;
+                        case "--adelantamiento":
+                        case "--saltos":
+                            if (!(simulation instanceof PipelinedMachineSimulation)) {
+                                System.out.println("La opción " + args[i] + " solo aplica a la máquina segmentada");
+                                return;
+                            }
+                            if (args[i].equals("--adelantamiento")) {
+                                ((PipelinedMachineSimulation) simulation).setForwarding(!args[i + 1].equals("0"));
+                            } else {
+                                ((PipelinedMachineSimulation) simulation).setStallOnBranch(args[i + 1].equals("detener"));
+                            }
+                            break;
+                        default:
+                            System.out.println("Opción desconocida: " + args[i]);
+                            return;
+                    }
+                }
 
-                    // Extraer instrucción izquierda (20 bits)
-                    int leftInstr = value >> 20;
-                    int opcode = leftInstr >> 12;
-                    int address = leftInstr & 0xFFF;
-                    String opcodeStr = String.format("%08X", opcode);
-                    content = instructionSet.getOrDefault(opcodeStr, "???") + " M(" + address + ")";
+                // Registro de entradas: la consola y el archivo de entrada son las únicas fuentes externas
+                // (el resto de dispositivos, el DMA y las interrupciones dependen solo de los ciclos)
+                InputLog inputLog = null;
+                if (recordFile != null || replayFile != null) {
+                    if (recordFile != null && replayFile != null || resultsDirectory != null) {
+                        System.out.println("--grabar, --reproducir y --resultados no se pueden combinar");
+                        return;
+                    }
+                    long checksum = InputLog.checksum(simulation.memory, simulation.registers.get("PC"));
+                    try {
+                        inputLog = recordFile != null ? InputLog.record(recordFile, checksum) : InputLog.replay(replayFile, checksum);
+                    } catch (IOException e) {
+                        System.out.println(e.getMessage());
+                        return;
+                    }
+                    for (int port : new int[] {IOBus.CONSOLE_PORT, IOBus.INPUT_FILE_PORT}) {
+                        IODevice device = ioBus.getDevice(port);
+                        ioBus.attach(port, new LoggedInputDevice(device != null ? device : new NullDevice(), inputLog, port,
+                                simulation::getCycleCount));
+                    }
+                    ((HypotheticalMachineSimulation) simulation).setInputLog(inputLog);
+                    seed = inputLog.seed(seed);
+                }
+
+                // "--irq puerto:línea:latencia": el dispositivo del puerto pide la línea tras cada transferencia
+                // (después de --entrada y --salida, que conectan los dispositivos de archivo)
+                for (String spec : irqSpecs) {
+                    String[] parts = spec.split(":");
+                    int line = parts.length == 3 ? Integer.parseInt(parts[1]) : -1;
+                    if (line < 0 || line >= InterruptController.LINES) {
+                        System.out.println("Especificación de interrupción no válida: " + spec);
+                        return;
+                    }
+                    InterruptController interrupts = ((HypotheticalMachineSimulation) simulation).getInterruptController();
+                    int port = Integer.parseInt(parts[0], 16);
+                    if (ioBus.getDevice(port) == null) {
+                        System.out.println(String.format("No hay dispositivo en el puerto de E/S 0x%03X", port));
+                        return;
+                    }
+                    ioBus.attach(port, new InterruptingDevice(ioBus.getDevice(port), interrupts, line,
+                            Long.parseLong(parts[2]), simulation::getCycleCount));
+                }
+
+                VirtualMemory virtualMemory = simulation.getVirtualMemory();
+                if (virtualMemory != null) {
+                    // La detección de bucles lee "memory", que no está al día durante la ejecución
+                    simulation.setLoopDetector(null);
+                    if (pageFaultCycles >= 0) {
+                        virtualMemory.setFaultCycles(pageFaultCycles);
+                    }
+                    virtualMemory.setRandomSeed(seed);
+                }
+                if (simulation.getCache() != null) {
+                    simulation.getCache().setRandomSeed(seed);
+                }
+
+                ResultCache resultCache = null;
+                String cacheKey = null;
+                RecordingDevice consoleRecorder = null;
+                RecordingDevice outputRecorder = null;
+                if (resultsDirectory != null) {
+                    resultCache = new ResultCache(resultsDirectory, resultsMaxBytes);
+                    cacheKey = ResultCache.key(machine, configuration, simulation.memory, simulation.registers.get("PC"),
+                            inputFile);
+                    // Una traza pide ejecutar el programa: no se busca el resultado, pero sí se guarda
+                    ResultCache.Entry cached = traceFile == null ? resultCache.load(cacheKey) : null;
+                    if (cached != null) {
+                        // Acierto: reproducir las salidas guardadas en lugar de volver a ejecutar
+                        try {
+                            for (int word : cached.consoleOutput) {
+                                ioBus.write(IOBus.CONSOLE_PORT, word);
+                            }
+                            for (int word : cached.fileOutput) {
+                                ioBus.write(IOBus.OUTPUT_FILE_PORT, word);
+                            }
+                        } finally {
+                            if (ioBus != null) {
+                                ioBus.close();
+                            }
+                        }
+                        System.arraycopy(cached.memory, 0, simulation.memory, 0, simulation.memory.length);
+                        simulation.registers.putAll(cached.registers);
+                        System.out.print(cached.report);
+                        System.out.println("Resultado recuperado de la caché de resultados (" + cacheKey.substring(0, 12) + ")");
+                        reportExpected(expected, simulation);
+                        break;
+                    }
+
+                    if (ioBus != null) {
+                        consoleRecorder = new RecordingDevice(ioBus.getDevice(IOBus.CONSOLE_PORT));
+                        ioBus.attach(IOBus.CONSOLE_PORT, consoleRecorder);
+                        if (ioBus.getDevice(IOBus.OUTPUT_FILE_PORT) != null) {
+                            outputRecorder = new RecordingDevice(ioBus.getDevice(IOBus.OUTPUT_FILE_PORT));
+                            ioBus.attach(IOBus.OUTPUT_FILE_PORT, outputRecorder);
+                        }
+                    }
+                }
+
+                ExecutionTrace trace = null;
+                if (traceFile != null) {
+                    trace = new ExecutionTrace(traceFile);
+                    simulation.setTrace(trace);
+                }
+
+                RunResult result;
+                try {
+                    result = simulation.run(limits);
+                } finally {
+                    if (ioBus != null) {
+                        ioBus.close();
+                    }
+                    if (trace != null) {
+                        trace.close();
+                    }
+                    if (virtualMemory != null) {
+                        virtualMemory.close();
+                    }
+                    if (inputLog != null) {
+                        inputLog.close();
+                    }
+                }
+
+                String report = executionReport(simulation, result);
+                System.out.print(report);
+                reportExpected(expected, simulation);
+                if (inputLog != null) {
+                    System.out.printf("Registro de entradas %s %s: %d palabras leídas, %d interrupciones%n",
+                            recordFile != null ? "grabado en" : "reproducido desde", recordFile != null ? recordFile : replayFile,
+                            inputLog.getReads(), inputLog.getInterrupts());
+                    if (inputLog.hasRemaining()) {
+                        System.out.println("La ejecución terminó antes de consumir todo el registro");
+                    }
+                }
 
-                    System.out.printf("0x%03X    0x%010X    %-15s%n", i, value, content);
+                // No se guardan las ejecuciones que leyeron de la consola (dependen de lo que escribió el
+                // usuario) ni las que cortó el reloj, el tamaño de la traza o un error
+                StopReason reason = result.getStopReason();
+                if (resultCache != null && (consoleRecorder == null || consoleRecorder.getReadCount() == 0)
+                        && reason != StopReason.TIME_LIMIT && reason != StopReason.TRACE_LIMIT && reason != StopReason.ERROR) {
+                    resultCache.store(cacheKey, new ResultCache.Entry(report, new HashMap<>(simulation.registers),
+                            simulation.memory.clone(),
+                            consoleRecorder != null ? consoleRecorder.getWritten() : new int[0],
+                            outputRecorder != null ? outputRecorder.getWritten() : new int[0]));
                 }
+                break;
             }
 
-            // Mostrar datos
-            for (int i = 10; i <= 13; i++) {
-                if (memory[i] != 0) {
-                    System.out.printf("0x%03X    0x%010X    %-15s%n", i, memory[i], memory[i]);
+            case "barrido": {
+                if (args.length < 3) {
+                    System.out.println("Uso: barrido <programa> <resultado.csv> [--maquina hipotetica|ias] [--latencia l1,l2,...]");
+                    System.out.println("               [--cache palabras1,...] [--vias v1,...] [--linea palabras] [--alu c1,...]");
+                    System.out.println("               [--muldiv c1,...] [--ibr 0,1] [--reemplazo lru|fifo|aleatorio] [--escritura wb|wt]");
+                    System.out.println("               [--entrada archivo] [--max N] [--max-ciclos N] [--max-tiempo ms] [--max-es palabras]");
+                    return;
+                }
+
+                boolean ias = false;
+                for (int i = 3; i + 1 < args.length; i += 2) {
+                    if (args[i].equals("--maquina")) {
+                        ias = args[i + 1].equals("ias");
+                    }
+                }
+
+                ParameterSweep sweep = new ParameterSweep(ias, Paths.get(args[1]));
+                for (int i = 3; i + 1 < args.length; i += 2) {
+                    if (!args[i].equals("--maquina")) {
+                        sweep.configure(args[i], args[i + 1]);
+                    }
+                }
+
+                long start = System.nanoTime();
+                try {
+                    int points = sweep.run(Paths.get(args[2]));
+                    System.out.printf("%d configuraciones ejecutadas en %.2f s -> %s%n", points,
+                            (System.nanoTime() - start) / 1e9, args[2]);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                break;
+            }
+
+            case "conformidad":
+                new ConformanceSuite(System.out).run();
+                break;
+
+            case "multiprocesador": {
+                if (args.length < 2) {
+                    System.out.println("Uso: multiprocesador <programa> [--cpus N] [--cache palabras:línea:vías] [--latencia ciclos]");
+                    System.out.println("                     [--cuanto instrucciones] [--max N] [--esperado archivo]");
+                    return;
+                }
+
+                int count = 2;
+                String cacheSpec = "64:4:2";
+                for (int i = 2; i + 1 < args.length; i += 2) {
+                    if (args[i].equals("--cpus")) {
+                        count = Integer.parseInt(args[i + 1]);
+                    } else if (args[i].equals("--cache")) {
+                        cacheSpec = args[i + 1];
+                    }
+                }
+
+                MultiprocessorSimulation multiprocessor = new MultiprocessorSimulation(count, cacheSpec);
+                multiprocessor.loadProgram(Paths.get(args[1]));
+                ExpectedState expected = null;
+                for (int i = 2; i + 1 < args.length; i += 2) {
+                    switch (args[i]) {
+                        case "--cpus":
+                        case "--cache":
+                            break;
+                        case "--latencia":
+                            multiprocessor.setMemoryLatency(Integer.parseInt(args[i + 1]));
+                            break;
+                        case "--cuanto":
+                            multiprocessor.setQuantum(Integer.parseInt(args[i + 1]));
+                            break;
+                        case "--max":
+                            multiprocessor.setMaxInstructions(Long.parseLong(args[i + 1]));
+                            break;
+                        case "--esperado":
+                            expected = ExpectedState.load(Paths.get(args[i + 1]), multiprocessor.getCpu(0));
+                            break;
+                        default:
+                            System.out.println("Opción desconocida: " + args[i]);
+                            return;
+                    }
+                }
+
+                long start = System.nanoTime();
+                try {
+                    multiprocessor.run();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                System.out.print(multiprocessor.report());
+                System.out.printf("Tiempo: %.1f ms%n", (System.nanoTime() - start) / 1e6);
+                // Los registros que se comparan son los de la CPU 0
+                reportExpected(expected, multiprocessor.getCpu(0));
+                break;
+            }
+
+            case "fuzz": {
+                boolean ias = false;
+                for (int i = 1; i + 1 < args.length; i += 2) {
+                    if (args[i].equals("--maquina")) {
+                        ias = args[i + 1].equals("ias");
+                    }
+                }
+
+                ProgramFuzzer fuzzer = new ProgramFuzzer(ias);
+                for (int i = 1; i + 1 < args.length; i += 2) {
+                    if (!args[i].equals("--maquina")) {
+                        fuzzer.configure(args[i], args[i + 1]);
+                    }
+                }
+
+                try {
+                    fuzzer.run();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
                 }
+                break;
             }
 
-            System.out.println();
+            default:
+                System.out.println("Comando desconocido: " + args[0]);
+                break;
         }
+    }
 
-        @Override
-        public String[] getTestCases() {
-            return new String[] {
-                    "1. Suma Básica (5 + 10)",
-                    "2. Multiplicación y División (20 * 4, 20 / 4)"
-            };
+    // Motivo por el que terminó una ejecución continua
+    private static String describeStatus(ComputerSimulationBase simulation, RunResult result) {
+        switch (result.getStopReason()) {
+            case LOOP: {
+                LoopDetector detector = simulation.getLoopDetector();
+                return String.format("bucle infinito en %s-%s (el estado se repite cada %d saltos hacia atrás)",
+                        simulation.formatAddress(detector.getLoopStart()), simulation.formatAddress(detector.getLoopEnd()),
+                        detector.getLoopPeriod());
+            }
+            case ERROR:
+                return "error (" + (result.getError().getMessage() != null
+                        ? result.getError().getMessage() : result.getError().toString()) + ")";
+            default:
+                return result.getStopReason().getDescription();
+        }
+    }
+
+    // Resultado de la comparación con el estado esperado de --esperado (si se indicó)
+    private static void reportExpected(ExpectedState expected, ComputerSimulationBase simulation) {
+        if (expected == null) {
+            return;
         }
+        List<String> differences = expected.check(simulation);
+        if (differences.isEmpty()) {
+            System.out.println("Estado esperado: coincide");
+            return;
+        }
+        System.out.println("Estado esperado: " + differences.size() + " diferencias");
+        for (String difference : differences) {
+            System.out.println("  " + difference);
+        }
+    }
+
+    // Informe de métricas de una ejecución sin interfaz
+    private static String executionReport(ComputerSimulationBase simulation, RunResult result) {
+        StringWriter buffer = new StringWriter();
+        PrintWriter report = new PrintWriter(buffer);
+        report.println("Instrucciones ejecutadas: " + simulation.getInstructionCount());
+        report.println("Ciclos: " + simulation.getCycleCount());
+        report.println("Estado: " + describeStatus(simulation, result));
+        report.printf("PC = 0x%03X, AC = %d%n", simulation.registers.get("PC"), simulation.signed(simulation.registers.get("AC")));
+        Cache cache = simulation.getCache();
+        if (cache != null) {
+            report.printf("Caché (%s): %d aciertos, %d fallos (%.1f%%), %d escrituras diferidas%n", cache,
+                    cache.getHits(), cache.getMisses(), cache.getHitRate() * 100, cache.getWriteBacks());
+        }
+        if (simulation instanceof HypotheticalMachineSimulation) {
+            InterruptController interrupts = ((HypotheticalMachineSimulation) simulation).getInterruptController();
+            if (interrupts.getRequests() > 0) {
+                long cycles = simulation.getCycleCount();
+                report.printf("Interrupciones: %d peticiones, %d atendidas, %d ciclos en rutinas de servicio (%.1f%% del total)%n",
+                        interrupts.getRequests(), interrupts.getServiced(), interrupts.getServiceCycles(),
+                        cycles > 0 ? 100.0 * interrupts.getServiceCycles() / cycles : 0.0);
+            }
+            DmaController dma = ((HypotheticalMachineSimulation) simulation).getDmaController();
+            if (dma.getTransfers() > 0) {
+                report.printf("DMA: %d transferencias, %d palabras, %d ciclos robados a la CPU%n", dma.getTransfers(),
+                        dma.getWords(), dma.getStolenCycles());
+            }
+        }
+        VirtualMemory virtualMemory = simulation.getVirtualMemory();
+        if (virtualMemory != null) {
+            report.printf("Memoria virtual (%s): TLB %d aciertos, %d fallos (%.1f%%)%n", virtualMemory,
+                    virtualMemory.getTlbHits(), virtualMemory.getTlbMisses(), virtualMemory.getTlbHitRate() * 100);
+            report.printf("Fallos de página: %d, páginas leídas del intercambio: %d, escritas: %d, %d ciclos de traducción%n",
+                    virtualMemory.getPageFaults(), virtualMemory.getSwapIns(), virtualMemory.getSwapOuts(),
+                    virtualMemory.getCycles());
+        }
+        if (simulation.wordMemory instanceof SparsePagedMemory) {
+            SparsePagedMemory sparse = (SparsePagedMemory) simulation.wordMemory;
+            report.printf("Memoria dispersa: %d páginas de %d palabras reservadas (%d KB)%n", sparse.getAllocatedPages(),
+                    SparsePagedMemory.PAGE_WORDS, sparse.getFootprint() / 1024);
+        }
+        BranchPredictor predictor = simulation.getBranchPredictor();
+        if (predictor != null) {
+            report.printf("Predictor (%s): %d saltos, %d fallos, precisión %.1f%%, %d ciclos de penalización%n",
+                    predictor.getName(), predictor.getPredictions(), predictor.getMispredictions(),
+                    predictor.getAccuracy() * 100, predictor.getPenaltyCycles());
+        }
+        if (simulation instanceof PipelinedMachineSimulation) {
+            PipelinedMachineSimulation pipeline = (PipelinedMachineSimulation) simulation;
+            report.printf("Rendimiento: %.3f instr/ciclo, aceleración %.2fx frente a la máquina sin segmentar%n",
+                    pipeline.getThroughput(), pipeline.getSpeedup());
+            report.printf("Burbujas por datos: %d, ciclos detenidos por saltos: %d, instrucciones descartadas: %d%n",
+                    pipeline.getDataStalls(), pipeline.getControlStalls(), pipeline.getFlushedInstructions());
+        }
+        if (simulation instanceof OutOfOrderIASSimulation) {
+            OutOfOrderIASSimulation outOfOrder = (OutOfOrderIASSimulation) simulation;
+            report.printf("Fuera de orden (%s): %.3f instr/ciclo, ILP %.2f, ocupación media del ROB %.1f%n", outOfOrder,
+                    outOfOrder.getIpc(), outOfOrder.getIlp(), outOfOrder.getRobOccupancy());
+            report.println("Ciclos de emisión detenida: " + outOfOrder.describeStalls());
+        }
+        report.flush();
+        return buffer.toString();
     }
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0) {
+            runHeadless(args);
+            return;
+        }
+
         Scanner scanner = new Scanner(System.in);
 
         System.out.println("===============================================");
@@ -831,6 +8506,7 @@ public class ComputerSimulation {
         System.out.println("Seleccione el tipo de simulación:");
         System.out.println("1. Máquina Hipotética");
         System.out.println("2. Computador IAS");
+        System.out.println("3. Máquina Hipotética segmentada");
         System.out.print("Opción: ");
 
         int simulationType = scanner.nextInt();
@@ -844,6 +8520,9 @@ public class ComputerSimulation {
             case 2:
                 simulation = new IASSimulation();
                 break;
+            case 3:
+                simulation = new PipelinedMachineSimulation();
+                break;
             default:
                 System.out.println("Opción no válida.");
                 scanner.close();
@@ -5,8 +5,17 @@ import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
 
 public class ComputerSimulationGUI {
 
@@ -19,7 +28,17 @@ public class ComputerSimulationGUI {
         protected boolean isRunning;
         protected String[] steps;
         protected Map<String, String> instructionSet;
-        protected SimulationGUI gui;
+
+        // Oyentes suscritos y fase de la última micro-operación ejecutada
+        private final List<ListenerRegistration> listeners = new ArrayList<>();
+        private MicroPhase lastPhase;
+
+        // Guion del caso de prueba compilado a micro-operaciones (uno por cada entrada de steps)
+        protected MicroOp[] microSteps = new MicroOp[0];
+
+        // Latches de la ALU entre el cálculo y el almacenamiento del resultado
+        protected long aluResult;
+        protected long aluRemainder;
 
         public ComputerSimulationBase() {
             registers = new HashMap<>();
@@ -30,24 +49,308 @@ public class ComputerSimulationGUI {
         }
 
         public abstract void initialize();
-        public abstract void executeStep();
         public abstract String[] getTestCases();
         public abstract String getSimulationName();
 
-        public void setGUI(SimulationGUI gui) {
-            this.gui = gui;
+        // Suscribir un oyente que recibe los cambios cada stepsPerNotification pasos; con 0 no
+        // se le notifica y es él quien los recoge con pollChanges() (p. ej. una vez por fotograma)
+        public ListenerRegistration addListener(SimulationListener listener, int stepsPerNotification) {
+            ListenerRegistration registration = new ListenerRegistration(listener, stepsPerNotification);
+            listeners.add(registration);
+            return registration;
+        }
+
+        public void removeListener(ListenerRegistration registration) {
+            listeners.remove(registration);
+        }
+
+        // Escrituras del estado que registran el cambio para los oyentes
+        protected void setRegister(String register, int value) {
+            Integer previous = registers.put(register, value);
+            if (previous == null || previous != value) {
+                for (ListenerRegistration registration : listeners) {
+                    registration.pending.registerChanged(register, value);
+                }
+            }
+        }
+
+        protected void writeWord(int address, int value) {
+            memory[address] = value;
+            for (ListenerRegistration registration : listeners) {
+                registration.pending.memoryWritten(address, value);
+            }
+        }
+
+        protected void setControlUnit(String unit, String state) {
+            String previous = controlUnits.put(unit, state);
+            if (!state.equals(previous)) {
+                for (ListenerRegistration registration : listeners) {
+                    registration.pending.controlUnitChanged(unit, state);
+                }
+            }
         }
 
         protected abstract void loadTestCase(int testCaseIndex);
 
+        // Ejecutar la micro-operación del paso actual del guion
+        public void executeStep() {
+            if (currentStep >= microSteps.length) {
+                isRunning = false;
+                return;
+            }
+            MicroOp op = microSteps[currentStep];
+            if (op.getPhase() != lastPhase) {
+                lastPhase = op.getPhase();
+                for (ListenerRegistration registration : listeners) {
+                    registration.pending.phaseEntered(lastPhase);
+                }
+            }
+            executeMicroOp(op);
+        }
+
+        // Compilar una sola vez el guion de un caso de prueba a micro-operaciones tipadas
+        protected static MicroOp[] compileSteps(String[] steps) {
+            MicroOp[] compiled = new MicroOp[steps.length];
+            for (int i = 0; i < steps.length; i++) {
+                compiled[i] = MicroOp.parse(steps[i]);
+            }
+            return compiled;
+        }
+
+        // Ejecutar una micro-operación sobre los registros. El despacho es por tipo y los
+        // valores salen del estado real, nunca del texto de la narración.
+        protected void executeMicroOp(MicroOp op) {
+            int mbr = registers.get("MBR");
+            int ac = registers.get("AC");
+            switch (op) {
+                case PC_READY:
+                    break;
+                case PC_TO_MAR:
+                    setRegister("MAR", registers.get("PC"));
+                    break;
+                case READ_INSTRUCTION:
+                case READ_WORD:
+                case READ_DATA:
+                    setRegister("MBR", memory[registers.get("MAR")]);
+                    break;
+                case INCREMENT_PC:
+                    setRegister("PC", (registers.get("PC") + 1) & 0xFFF);
+                    break;
+                case MBR_TO_IR:
+                    setRegister("IR", mbr);
+                    break;
+                case MBR_LEFT_TO_IR:
+                    // Cada palabra contiene una sola instrucción de 20 bits
+                    setRegister("IR", mbr & 0xFFFFF);
+                    break;
+                case MBR_RIGHT_TO_IBR:
+                    // No hay instrucción derecha: IBR queda vacío
+                    setRegister("IBR", 0);
+                    break;
+                case DECODE:
+                    setControlUnit("Control", "DECODIFICANDO");
+                    return;
+                case IR_ADDRESS_TO_MAR:
+                    setRegister("MAR", registers.get("IR") & 0xFFF);
+                    break;
+                case MBR_TO_AC:
+                    setRegister("AC", mbr);
+                    break;
+                case MBR_NEGATED_TO_AC:
+                    setRegister("AC", wrap(-(long) signed(mbr)));
+                    break;
+                case MBR_ABS_TO_AC:
+                    setRegister("AC", wrap(Math.abs((long) signed(mbr))));
+                    break;
+                case MBR_NEGATED_ABS_TO_AC:
+                    setRegister("AC", wrap(-Math.abs((long) signed(mbr))));
+                    break;
+                case IO_TO_AC:
+                    setRegister("AC", wrap(ioRead(registers.get("MAR"))));
+                    break;
+                case AC_TO_IO:
+                    ioWrite(registers.get("MAR"), signed(ac));
+                    break;
+                case ALU_ADD_START:
+                    setControlUnit("ALU", "SUMANDO");
+                    break;
+                case ALU_SUB_START:
+                    setControlUnit("ALU", "RESTANDO");
+                    break;
+                case ALU_MUL_START:
+                    setControlUnit("ALU", "MULTIPLICANDO");
+                    break;
+                case ALU_DIV_START:
+                    setControlUnit("ALU", "DIVIDIENDO");
+                    break;
+                case ALU_ADD:
+                case ALU_ADD_ABS:
+                case ALU_SUB:
+                case ALU_SUB_ABS:
+                case ALU_LSH:
+                case ALU_RSH:
+                    setRegister("AC", (int) aluOutput(op));
+                    setControlUnit("ALU", "INACTIVA");
+                    break;
+                case ALU_MUL:
+                    aluResult = aluOutput(op);
+                    break;
+                case ALU_DIV:
+                    aluResult = aluOutput(op);
+                    aluRemainder = (long) signed(ac) % signed(mbr);
+                    break;
+                case MUL_STORE:
+                    setRegister("AC", (int) aluResult);
+                    setRegister("MQ", (int) (aluResult >> 32));
+                    setControlUnit("ALU", "INACTIVA");
+                    break;
+                case DIV_STORE:
+                    setRegister("MQ", (int) aluResult);
+                    setRegister("AC", (int) aluRemainder);
+                    setControlUnit("ALU", "INACTIVA");
+                    break;
+                case AC_TO_MBR:
+                    setRegister("MBR", ac);
+                    break;
+                case MQ_TO_MBR:
+                    setRegister("MBR", registers.get("MQ"));
+                    break;
+                case MQ_TO_AC:
+                    setRegister("AC", registers.get("MQ"));
+                    break;
+                case AC_ADDRESS_TO_MBR:
+                    setRegister("MBR", (mbr & ~0xFFF) | (ac & 0xFFF));
+                    break;
+                case MBR_TO_MEMORY:
+                    writeWord(registers.get("MAR"), mbr);
+                    break;
+                case IR_ADDRESS_TO_PC:
+                    setRegister("PC", registers.get("IR") & 0xFFF);
+                    break;
+                case JUMP_IF_NEGATIVE:
+                    jumpIf(signed(ac) < 0);
+                    break;
+                case JUMP_IF_POSITIVE:
+                    jumpIf(signed(ac) > 0);
+                    break;
+                case JUMP_IF_ZERO:
+                    jumpIf(ac == 0);
+                    break;
+                case JUMP_IF_NONNEGATIVE:
+                    jumpIf(signed(ac) >= 0);
+                    break;
+                case HALT:
+                    isRunning = false;
+                    setControlUnit("Control", "DETENIDA");
+                    return;
+            }
+            setControlUnit("Control", "INACTIVA");
+        }
+
+        private void jumpIf(boolean taken) {
+            if (taken) {
+                setRegister("PC", registers.get("IR") & 0xFFF);
+            }
+        }
+
+        // Resultado de la ALU para una micro-operación aritmética con los registros actuales
+        protected long aluOutput(MicroOp op) {
+            long ac = signed(registers.get("AC"));
+            long mbr = signed(registers.get("MBR"));
+            switch (op) {
+                case ALU_ADD:
+                    return wrap(ac + mbr);
+                case ALU_ADD_ABS:
+                    return wrap(ac + Math.abs(mbr));
+                case ALU_SUB:
+                    return wrap(ac - mbr);
+                case ALU_SUB_ABS:
+                    return wrap(ac - Math.abs(mbr));
+                case ALU_LSH:
+                    return wrap(ac << 1);
+                case ALU_RSH:
+                    return wrap(ac >> 1);
+                case ALU_MUL:
+                    return ac * mbr;
+                case ALU_DIV:
+                    if (mbr == 0) {
+                        throw new ArithmeticException("División por cero");
+                    }
+                    return ac / mbr;
+                default:
+                    throw new IllegalArgumentException(op + " no es una operación de la ALU");
+            }
+        }
+
+        // Narración de una micro-operación: su plantilla rellenada con el estado actual. Solo
+        // se usa para mostrarla; la ejecución no depende de este texto.
+        public String describeMicroOp(MicroOp op) {
+            String text = op.getTemplate();
+            if (text.indexOf('{') < 0) {
+                return text;
+            }
+            int ir = registers.get("IR");
+            text = text.replace("{INSTR}", disassemble(ir))
+                    .replace("{ADDR}", formatAddress(ir & 0xFFF))
+                    .replace("{MAR}", formatAddress(registers.get("MAR")))
+                    .replace("{MBR}", Integer.toString(signed(registers.get("MBR"))))
+                    .replace("{AC}", Integer.toString(signed(registers.get("AC"))))
+                    .replace("{MQ}", Integer.toString(registers.getOrDefault("MQ", 0)));
+            if (text.contains("{RESULT}")) {
+                String result;
+                try {
+                    long value = aluOutput(op);
+                    result = op == MicroOp.ALU_MUL || op == MicroOp.ALU_DIV
+                            ? Long.toString(value) : Integer.toString(signed((int) value));
+                } catch (ArithmeticException e) {
+                    result = "indefinido";
+                }
+                text = text.replace("{RESULT}", result);
+            }
+            return text;
+        }
+
+        // Ganchos de la ruta de datos que dependen de cada máquina
+
+        // Ajustar un resultado al ancho de AC
+        protected int wrap(long value) {
+            return (int) value;
+        }
+
+        // Valor con signo de un registro
+        protected int signed(int value) {
+            return value;
+        }
+
+        protected String formatAddress(int address) {
+            return Integer.toString(address);
+        }
+
+        protected abstract String disassemble(int instruction);
+
+        protected int ioRead(int port) {
+            throw new IllegalStateException("La interfaz gráfica no simula el bus de E/S");
+        }
+
+        protected void ioWrite(int port, int value) {
+            throw new IllegalStateException("La interfaz gráfica no simula el bus de E/S");
+        }
+
         public void nextStep() {
             if (currentStep < steps.length) {
                 executeStep();
                 currentStep++;
-                gui.updateDisplay();
+                for (ListenerRegistration registration : listeners) {
+                    registration.stepCompleted();
+                }
 
                 if (currentStep >= steps.length) {
-                    gui.simulationCompleted();
+                    for (ListenerRegistration registration : listeners) {
+                        if (registration.stepsPerNotification > 0) {
+                            registration.deliver();
+                        }
+                        registration.listener.simulationCompleted();
+                    }
                 }
             }
         }
@@ -55,17 +358,29 @@ public class ComputerSimulationGUI {
         public void reset() {
             currentStep = 0;
             isRunning = false;
+            lastPhase = null;
             initialize();
-            gui.updateDisplay();
+            for (ListenerRegistration registration : listeners) {
+                registration.pending.invalidate();
+                if (registration.stepsPerNotification > 0) {
+                    registration.deliver();
+                }
+            }
         }
 
         public String getCurrentStepDescription() {
-            if (currentStep < steps.length) {
-                return steps[currentStep];
+            if (currentStep < microSteps.length) {
+                MicroOp op = microSteps[currentStep];
+                return op.getPhase().getLabel() + " - " + describeMicroOp(op);
             }
             return "Simulación completada";
         }
 
+        // Micro-operación del paso actual (la que se ejecutará a continuación), o null al terminar
+        public MicroOp getCurrentMicroOp() {
+            return currentStep < microSteps.length ? microSteps[currentStep] : null;
+        }
+
         public int getTotalSteps() {
             return steps != null ? steps.length : 0;
         }
@@ -80,6 +395,434 @@ public class ComputerSimulationGUI {
         }
     }
 
+    // Fases del ciclo de instrucción en las que se agrupan las micro-operaciones
+    enum MicroPhase {
+        FETCH("Ciclo de captación"),
+        EXECUTE("Ciclo de ejecución");
+
+        private final String label;
+
+        MicroPhase(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    // Micro-operaciones de la unidad de control. Cada una lleva la plantilla de su narración;
+    // los marcadores {INSTR}, {ADDR}, {MAR}, {MBR}, {AC}, {MQ} y {RESULT} se rellenan con el
+    // estado de la máquina solo al mostrarla.
+    enum MicroOp {
+        PC_READY(MicroPhase.FETCH, "PC contiene la dirección de la instrucción"),
+        PC_TO_MAR(MicroPhase.FETCH, "Copiar PC a MAR"),
+        READ_INSTRUCTION(MicroPhase.FETCH, "Leer instrucción de memoria a MBR"),
+        READ_WORD(MicroPhase.FETCH, "Leer palabra de memoria a MBR"),
+        INCREMENT_PC(MicroPhase.FETCH, "Incrementar PC"),
+        MBR_TO_IR(MicroPhase.FETCH, "Transferir instrucción de MBR a IR"),
+        MBR_LEFT_TO_IR(MicroPhase.FETCH, "Transferir instrucción izquierda de MBR a IR"),
+        MBR_RIGHT_TO_IBR(MicroPhase.FETCH, "Transferir instrucción derecha de MBR a IBR"),
+        DECODE(MicroPhase.EXECUTE, "Decodificar instrucción {INSTR}"),
+        IR_ADDRESS_TO_MAR(MicroPhase.EXECUTE, "Extraer dirección del operando ({ADDR}) y colocar en MAR"),
+        READ_DATA(MicroPhase.EXECUTE, "Leer dato de memoria a MBR"),
+        MBR_TO_AC(MicroPhase.EXECUTE, "Transferir dato de MBR a AC"),
+        MBR_NEGATED_TO_AC(MicroPhase.EXECUTE, "Transferir dato negado de MBR a AC"),
+        MBR_ABS_TO_AC(MicroPhase.EXECUTE, "Transferir valor absoluto de MBR a AC"),
+        MBR_NEGATED_ABS_TO_AC(MicroPhase.EXECUTE, "Transferir valor absoluto negado de MBR a AC"),
+        IO_TO_AC(MicroPhase.EXECUTE, "Leer dato del puerto de E/S ({MAR}) a AC"),
+        AC_TO_IO(MicroPhase.EXECUTE, "Escribir AC ({AC}) en puerto de E/S ({MAR})"),
+        ALU_ADD_START(MicroPhase.EXECUTE, "ALU realizando operación de suma"),
+        ALU_SUB_START(MicroPhase.EXECUTE, "ALU realizando operación de resta"),
+        ALU_MUL_START(MicroPhase.EXECUTE, "ALU realizando operación de multiplicación"),
+        ALU_DIV_START(MicroPhase.EXECUTE, "ALU realizando operación de división"),
+        ALU_ADD(MicroPhase.EXECUTE, "Sumar MBR ({MBR}) a AC ({AC}) = {RESULT}"),
+        ALU_ADD_ABS(MicroPhase.EXECUTE, "Sumar |MBR| ({MBR}) a AC ({AC}) = {RESULT}"),
+        ALU_SUB(MicroPhase.EXECUTE, "Restar MBR ({MBR}) de AC ({AC}) = {RESULT}"),
+        ALU_SUB_ABS(MicroPhase.EXECUTE, "Restar |MBR| ({MBR}) de AC ({AC}) = {RESULT}"),
+        ALU_LSH(MicroPhase.EXECUTE, "Desplazar a la izquierda AC ({AC}) = {RESULT}"),
+        ALU_RSH(MicroPhase.EXECUTE, "Desplazar a la derecha AC ({AC}) = {RESULT}"),
+        ALU_MUL(MicroPhase.EXECUTE, "Multiplicar AC ({AC}) por MBR ({MBR}) = {RESULT}"),
+        MUL_STORE(MicroPhase.EXECUTE, "Almacenar parte alta en AC y parte baja en MQ"),
+        ALU_DIV(MicroPhase.EXECUTE, "Dividir AC ({AC}) por MBR ({MBR}) = {RESULT}"),
+        DIV_STORE(MicroPhase.EXECUTE, "Almacenar cociente en MQ y resto en AC"),
+        AC_TO_MBR(MicroPhase.EXECUTE, "Copiar AC ({AC}) a MBR"),
+        MQ_TO_MBR(MicroPhase.EXECUTE, "Copiar MQ ({MQ}) a MBR"),
+        MQ_TO_AC(MicroPhase.EXECUTE, "Transferir MQ ({MQ}) a AC"),
+        AC_ADDRESS_TO_MBR(MicroPhase.EXECUTE, "Reemplazar el campo de dirección de MBR con AC ({AC})"),
+        MBR_TO_MEMORY(MicroPhase.EXECUTE, "Escribir MBR ({MBR}) en memoria ({MAR})"),
+        IR_ADDRESS_TO_PC(MicroPhase.EXECUTE, "Cargar dirección de salto ({ADDR}) en PC"),
+        JUMP_IF_NEGATIVE(MicroPhase.EXECUTE, "Si AC es negativo ({AC}), cargar dirección de salto ({ADDR}) en PC"),
+        JUMP_IF_POSITIVE(MicroPhase.EXECUTE, "Si AC es positivo ({AC}), cargar dirección de salto ({ADDR}) en PC"),
+        JUMP_IF_ZERO(MicroPhase.EXECUTE, "Si AC es cero ({AC}), cargar dirección de salto ({ADDR}) en PC"),
+        JUMP_IF_NONNEGATIVE(MicroPhase.EXECUTE, "Si AC no es negativo ({AC}), cargar dirección de salto ({ADDR}) en PC"),
+        HALT(MicroPhase.EXECUTE, "Detener la máquina");
+
+        private final MicroPhase phase;
+        private final String template;
+        private final String prefix; // Texto fijo inicial, para reconocer la micro-operación en un guion
+
+        MicroOp(MicroPhase phase, String template) {
+            this.phase = phase;
+            this.template = template;
+            int marker = template.indexOf('{');
+            this.prefix = (marker < 0 ? template : template.substring(0, marker)).replaceAll("[\\s(]+$", "");
+        }
+
+        public MicroPhase getPhase() {
+            return phase;
+        }
+
+        public String getTemplate() {
+            return template;
+        }
+
+        // Reconocer la micro-operación de un paso de guion ("Ciclo de ... - descripción");
+        // gana el prefijo más largo para distinguir, p. ej., "Sumar MBR" de "Sumar |MBR|"
+        static MicroOp parse(String step) {
+            int separator = step.indexOf(" - ");
+            String description = separator < 0 ? step : step.substring(separator + 3);
+            MicroOp match = null;
+            for (MicroOp op : values()) {
+                if (description.startsWith(op.prefix) && (match == null || op.prefix.length() > match.prefix.length())) {
+                    match = op;
+                }
+            }
+            if (match == null) {
+                throw new IllegalArgumentException("Paso de guion sin micro-operación: " + step);
+            }
+            return match;
+        }
+    }
+
+    // Oyente de los cambios de estado de una simulación
+    interface SimulationListener {
+        void simulationChanged(ChangeBatch changes);
+
+        default void simulationCompleted() {
+        }
+    }
+
+    // Cambios del estado acumulados entre dos notificaciones. Se fusionan: de cada registro,
+    // palabra de memoria o unidad de control solo se conserva el último valor.
+    static class ChangeBatch {
+        private final Map<String, Integer> registers = new LinkedHashMap<>();
+        private final Map<Integer, Integer> memory = new TreeMap<>();
+        private final Map<String, String> controlUnits = new LinkedHashMap<>();
+        private MicroPhase phase;
+        private int phaseBoundaries;
+        private int steps;
+        private boolean fullRefresh;
+
+        void registerChanged(String register, int value) {
+            registers.put(register, value);
+        }
+
+        void memoryWritten(int address, int value) {
+            memory.put(address, value);
+        }
+
+        void controlUnitChanged(String unit, String state) {
+            controlUnits.put(unit, state);
+        }
+
+        void phaseEntered(MicroPhase phase) {
+            this.phase = phase;
+            phaseBoundaries++;
+        }
+
+        void stepCompleted() {
+            steps++;
+        }
+
+        // El estado se reemplazó por completo (reinicio): hay que volver a leerlo entero
+        void invalidate() {
+            fullRefresh = true;
+            registers.clear();
+            memory.clear();
+            controlUnits.clear();
+        }
+
+        public boolean isEmpty() {
+            return steps == 0 && phaseBoundaries == 0 && !fullRefresh && registers.isEmpty()
+                    && memory.isEmpty() && controlUnits.isEmpty();
+        }
+
+        public Map<String, Integer> getRegisterChanges() {
+            return Collections.unmodifiableMap(registers);
+        }
+
+        public Map<Integer, Integer> getMemoryChanges() {
+            return Collections.unmodifiableMap(memory);
+        }
+
+        public Map<String, String> getControlUnitChanges() {
+            return Collections.unmodifiableMap(controlUnits);
+        }
+
+        // Fase en la que se entró por última vez dentro del lote (null si no hubo cambio de fase)
+        public MicroPhase getPhase() {
+            return phase;
+        }
+
+        public int getPhaseBoundaries() {
+            return phaseBoundaries;
+        }
+
+        public int getSteps() {
+            return steps;
+        }
+
+        public boolean isFullRefresh() {
+            return fullRefresh;
+        }
+    }
+
+    // Suscripción de un oyente con su lote de cambios pendientes
+    static class ListenerRegistration {
+        private final SimulationListener listener;
+        private final int stepsPerNotification;
+        private ChangeBatch pending = new ChangeBatch();
+
+        ListenerRegistration(SimulationListener listener, int stepsPerNotification) {
+            this.listener = listener;
+            this.stepsPerNotification = stepsPerNotification;
+        }
+
+        // Entregar y vaciar los cambios acumulados
+        public ChangeBatch pollChanges() {
+            ChangeBatch changes = pending;
+            pending = new ChangeBatch();
+            return changes;
+        }
+
+        void stepCompleted() {
+            pending.stepCompleted();
+            if (stepsPerNotification > 0 && pending.getSteps() >= stepsPerNotification) {
+                deliver();
+            }
+        }
+
+        void deliver() {
+            if (!pending.isEmpty()) {
+                listener.simulationChanged(pollChanges());
+            }
+        }
+    }
+
+    // Estado inmutable de la simulación al terminar un paso. La interfaz siempre lee una
+    // instantánea completa, nunca un paso aplicado a medias.
+    static final class SimulationSnapshot {
+        private final long version;
+        private final long baseVersion; // Versión de la última recarga completa del estado
+        private final int currentStep;
+        private final int totalSteps;
+        private final String stepDescription;
+        private final MicroOp currentMicroOp;
+        private final Map<String, Integer> registers;
+        private final Map<String, String> controlUnits;
+        private final int[] memory; // Compartida entre instantáneas y nunca modificada tras publicarla
+        private final boolean completed;
+
+        SimulationSnapshot(long version, long baseVersion, int currentStep, int totalSteps, String stepDescription,
+                           MicroOp currentMicroOp, Map<String, Integer> registers, Map<String, String> controlUnits,
+                           int[] memory, boolean completed) {
+            this.version = version;
+            this.baseVersion = baseVersion;
+            this.currentStep = currentStep;
+            this.totalSteps = totalSteps;
+            this.stepDescription = stepDescription;
+            this.currentMicroOp = currentMicroOp;
+            this.registers = registers;
+            this.controlUnits = controlUnits;
+            this.memory = memory;
+            this.completed = completed;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public long getBaseVersion() {
+            return baseVersion;
+        }
+
+        public int getCurrentStep() {
+            return currentStep;
+        }
+
+        public int getTotalSteps() {
+            return totalSteps;
+        }
+
+        public String getStepDescription() {
+            return stepDescription;
+        }
+
+        public MicroOp getCurrentMicroOp() {
+            return currentMicroOp;
+        }
+
+        public Map<String, Integer> getRegisters() {
+            return registers;
+        }
+
+        public Map<String, String> getControlUnits() {
+            return controlUnits;
+        }
+
+        public int getWord(int address) {
+            return memory[address];
+        }
+
+        public int getMemorySize() {
+            return memory.length;
+        }
+
+        // Indica si la memoria es la misma que la de otra instantánea (sin escrituras entre ambas)
+        public boolean sharesMemoryWith(SimulationSnapshot other) {
+            return memory == other.memory;
+        }
+
+        public boolean isCompleted() {
+            return completed;
+        }
+    }
+
+    // Publicación sin bloqueos del estado: escucha los lotes de cambios en el hilo del motor y
+    // construye una instantánea nueva a partir de la anterior (copiando la memoria solo si hubo
+    // escrituras), que deja visible con una sola escritura atómica. El motor nunca espera a la
+    // interfaz y la interfaz lee la última instantánea cuando quiere.
+    static class SnapshotPublisher implements SimulationListener {
+        private final ComputerSimulationBase simulation;
+        private final AtomicReference<SimulationSnapshot> latest = new AtomicReference<>();
+        private long version;
+        private long baseVersion;
+
+        // Debe crearse antes de que el motor empiece a ejecutar en otro hilo
+        SnapshotPublisher(ComputerSimulationBase simulation) {
+            this.simulation = simulation;
+            publishFull();
+            simulation.addListener(this, 1);
+        }
+
+        public SimulationSnapshot getSnapshot() {
+            return latest.get();
+        }
+
+        @Override
+        public void simulationChanged(ChangeBatch changes) {
+            if (changes.isFullRefresh()) {
+                publishFull();
+                return;
+            }
+
+            SimulationSnapshot previous = latest.get();
+            Map<String, Integer> registers = previous.getRegisters();
+            if (!changes.getRegisterChanges().isEmpty()) {
+                registers = new HashMap<>(registers);
+                registers.putAll(changes.getRegisterChanges());
+                registers = Collections.unmodifiableMap(registers);
+            }
+            Map<String, String> controlUnits = previous.getControlUnits();
+            if (!changes.getControlUnitChanges().isEmpty()) {
+                controlUnits = new HashMap<>(controlUnits);
+                controlUnits.putAll(changes.getControlUnitChanges());
+                controlUnits = Collections.unmodifiableMap(controlUnits);
+            }
+            int[] memory = previous.memory;
+            if (!changes.getMemoryChanges().isEmpty()) {
+                memory = memory.clone();
+                for (Map.Entry<Integer, Integer> write : changes.getMemoryChanges().entrySet()) {
+                    memory[write.getKey()] = write.getValue();
+                }
+            }
+            publish(registers, controlUnits, memory, false);
+        }
+
+        @Override
+        public void simulationCompleted() {
+            SimulationSnapshot previous = latest.get();
+            publish(previous.getRegisters(), previous.getControlUnits(), previous.memory, true);
+        }
+
+        // Copiar el estado completo (al empezar y tras un reinicio)
+        private void publishFull() {
+            baseVersion = version + 1;
+            publish(Collections.unmodifiableMap(new HashMap<>(simulation.registers)),
+                    Collections.unmodifiableMap(new HashMap<>(simulation.controlUnits)),
+                    simulation.memory.clone(), false);
+        }
+
+        private void publish(Map<String, Integer> registers, Map<String, String> controlUnits, int[] memory,
+                             boolean completed) {
+            version++;
+            latest.set(new SimulationSnapshot(version, baseVersion, simulation.getCurrentStep(), simulation.getTotalSteps(),
+                    simulation.getCurrentStepDescription(), simulation.getCurrentMicroOp(), registers, controlUnits,
+                    memory, completed));
+        }
+    }
+
+    // Hilo del motor para la ejecución continua: avanza pasos sin tocar Swing; el estado sale
+    // hacia la interfaz solo a través de SnapshotPublisher
+    static class SimulationRunner {
+        private final ComputerSimulationBase simulation;
+        private final long stepDelayMillis;
+        private volatile boolean running;
+        private volatile RuntimeException error;
+        private Thread thread;
+
+        SimulationRunner(ComputerSimulationBase simulation, long stepDelayMillis) {
+            this.simulation = simulation;
+            this.stepDelayMillis = stepDelayMillis;
+        }
+
+        public void start() {
+            running = true;
+            thread = new Thread(this::run, "motor-simulacion");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void run() {
+            try {
+                while (running && simulation.getCurrentStep() < simulation.getTotalSteps()) {
+                    simulation.nextStep();
+                    if (stepDelayMillis > 0) {
+                        Thread.sleep(stepDelayMillis);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                error = e;
+            } finally {
+                running = false;
+            }
+        }
+
+        // Detener el hilo y esperar a que termine el paso en curso
+        public void stop() {
+            running = false;
+            if (thread != null) {
+                thread.interrupt();
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        public boolean isRunning() {
+            return running;
+        }
+
+        public RuntimeException getError() {
+            return error;
+        }
+    }
+
     // Simulación de la Máquina Hipotética
     static class HypotheticalMachineSimulation extends ComputerSimulationBase {
         public HypotheticalMachineSimulation() {
@@ -102,6 +845,29 @@ public class ComputerSimulationGUI {
             return "Máquina Hipotética";
         }
 
+        // AC y las palabras de memoria son de 16 bits en complemento a 2
+        @Override
+        protected int wrap(long value) {
+            return (int) (value & 0xFFFF);
+        }
+
+        @Override
+        protected int signed(int value) {
+            return (short) value;
+        }
+
+        @Override
+        protected String formatAddress(int address) {
+            return String.format("0x%03X", address);
+        }
+
+        @Override
+        protected String disassemble(int instruction) {
+            String opcode = String.format("%4s", Integer.toBinaryString((instruction >> 12) & 0xF)).replace(' ', '0');
+            String name = instructionSet.get(opcode);
+            return name == null ? "HALT" : name + " M(" + formatAddress(instruction & 0xFFF) + ")";
+        }
+
         @Override
         public void initialize() {
             memory = new int[4096];
@@ -254,7 +1020,7 @@ public class ComputerSimulationGUI {
                             "Ciclo de ejecución - Sumar MBR (9) a AC (11) = 20",
                             "Ciclo de captación - Copiar PC a MAR",
                             "Ciclo de captación - Leer instrucción de memoria a MBR",
-                            "Ciclo de ejecución - Incrementar PC",
+                            "Ciclo de captación - Incrementar PC",
                             "Ciclo de captación - Transferir instrucción de MBR a IR",
                             "Ciclo de ejecución - Decodificar instrucción STOR M(0x223)",
                             "Ciclo de ejecución - Extraer dirección del operando (0x223) y colocar en MAR",
@@ -270,107 +1036,8 @@ public class ComputerSimulationGUI {
                     steps = new String[0];
                     break;
             }
-        }
-
-        @Override
-        public void executeStep() {
-            if (currentStep >= steps.length) {
-                isRunning = false;
-                return;
-            }
 
-            String step = steps[currentStep];
-
-            // Ejecutar la acción correspondiente al paso actual
-            if (step.contains("Copiar PC a MAR")) {
-                registers.put("MAR", registers.get("PC"));
-            } else if (step.contains("Leer instrucción de memoria a MBR")) {
-                registers.put("MBR", memory[registers.get("MAR")]);
-            } else if (step.contains("Incrementar PC")) {
-                registers.put("PC", registers.get("PC") + 1);
-            } else if (step.contains("Transferir instrucción de MBR a IR")) {
-                registers.put("IR", registers.get("MBR"));
-            } else if (step.contains("Decodificar instrucción")) {
-                controlUnits.put("Control", "DECODIFICANDO");
-            } else if (step.contains("Extraer dirección del operando")) {
-                int address = registers.get("IR") & 0xFFF;
-                registers.put("MAR", address);
-            } else if (step.contains("Leer dato de memoria a MBR")) {
-                registers.put("MBR", memory[registers.get("MAR")]);
-            } else if (step.contains("Transferir dato de MBR a AC")) {
-                registers.put("AC", registers.get("MBR"));
-            } else if (step.contains("ALU realizando operación de suma")) {
-                controlUnits.put("ALU", "SUMANDO");
-            } else if (step.contains("ALU realizando operación de resta")) {
-                controlUnits.put("ALU", "RESTANDO");
-            } else if (step.contains("Sumar MBR")) {
-                // Extraer valores de la descripción del paso
-                int mbrValue = extractValue(step, "MBR");
-                int acValue = extractValue(step, "AC");
-                int result = extractResult(step);
-                registers.put("AC", result);
-                controlUnits.put("ALU", "INACTIVA");
-            } else if (step.contains("Restar MBR")) {
-                // Extraer valores de la descripción del paso
-                int mbrValue = extractValue(step, "MBR");
-                int acValue = extractValue(step, "AC");
-                int result = extractResult(step);
-                registers.put("AC", result);
-                controlUnits.put("ALU", "INACTIVA");
-            } else if (step.contains("Copiar AC")) {
-                int acValue = extractValue(step, "AC");
-                registers.put("MBR", acValue);
-            } else if (step.contains("Escribir MBR")) {
-                int mbrValue = extractValue(step, "MBR");
-                int address = extractAddress(step);
-                memory[address] = mbrValue;
-            }
-
-            // Restablecer unidades de control si es necesario
-            if (currentStep < steps.length - 1 && !steps[currentStep + 1].contains("ALU") && !steps[currentStep + 1].contains("Decodificar")) {
-                controlUnits.put("Control", "INACTIVA");
-            }
-        }
-
-        // Método auxiliar para extraer valores numéricos de las descripciones de pasos
-        private int extractValue(String step, String register) {
-            try {
-                int startIndex = step.indexOf(register) + register.length() + 2;
-                int endIndex = step.indexOf(')', startIndex);
-                String valueStr = step.substring(startIndex, endIndex);
-                return Integer.parseInt(valueStr);
-            } catch (Exception e) {
-                // Si hay un error al extraer el valor, devolver 0
-                return 0;
-            }
-        }
-
-        // Método auxiliar para extraer el resultado de una operación
-        private int extractResult(String step) {
-            try {
-                int startIndex = step.indexOf('=') + 2;
-                return Integer.parseInt(step.substring(startIndex));
-            } catch (Exception e) {
-                // Si hay un error al extraer el resultado, devolver 0
-                return 0;
-            }
-        }
-
-        // Método auxiliar para extraer una dirección de memoria
-        private int extractAddress(String step) {
-            try {
-                int startIndex = step.indexOf('(') + 1;
-                int endIndex = step.indexOf(')', startIndex);
-                String addressStr = step.substring(startIndex, endIndex);
-                if (addressStr.startsWith("0x")) {
-                    return Integer.parseInt(addressStr.substring(2), 16);
-                } else {
-                    return Integer.parseInt(addressStr);
-                }
-            } catch (Exception e) {
-                // Si hay un error al extraer la dirección, devolver 0
-                return 0;
-            }
+            microSteps = compileSteps(steps);
         }
 
         @Override
@@ -397,7 +1064,7 @@ public class ComputerSimulationGUI {
             instructionSet.put("00000111", "JUMP M(X,20:39)");
             instructionSet.put("00001000", "JUMP+ M(X,0:19)");
             instructionSet.put("00001001", "JUMP+ M(X,20:39)");
-            instructionSet.put("00001010", "M(X)");
+            instructionSet.put("00001010", "ADD M(X)");
             instructionSet.put("00001011", "ADD |M(X)|");
             instructionSet.put("00001100", "SUB M(X)");
             instructionSet.put("00001101", "SUB |M(X)|");
@@ -406,6 +1073,8 @@ public class ComputerSimulationGUI {
             instructionSet.put("00010000", "LSH");
             instructionSet.put("00010001", "RSH");
             instructionSet.put("00010010", "STOR M(X,8:19)");
+            // El IAS original usa 00001010, que aquí es ADD M(X)
+            instructionSet.put("00010011", "LOAD MQ");
         }
 
         @Override
@@ -413,6 +1082,13 @@ public class ComputerSimulationGUI {
             return "Computador IAS";
         }
 
+        @Override
+        protected String disassemble(int instruction) {
+            String opcode = String.format("%8s", Integer.toBinaryString((instruction >> 12) & 0xFF)).replace(' ', '0');
+            String name = instructionSet.get(opcode);
+            return name == null ? "HALT" : name.replace("X", Integer.toString(instruction & 0xFFF));
+        }
+
         @Override
         public void initialize() {
             memory = new int[1000];
@@ -502,7 +1178,8 @@ public class ComputerSimulationGUI {
                     memory[2] = 0x0500C; // STOR M(12)
                     memory[3] = 0x0100A; // LOAD M(10)
                     memory[4] = 0x0F00B; // DIV M(11)
-                    memory[5] = 0x0500D; // STOR M(13)
+                    memory[5] = 0x13000; // LOAD MQ
+                    memory[6] = 0x0500D; // STOR M(13)
                     memory[10] = 20;
                     memory[11] = 4;
                     memory[12] = 0;
@@ -565,9 +1242,16 @@ public class ComputerSimulationGUI {
                             "Ciclo de captación - Incrementar PC",
                             "Ciclo de captación - Transferir instrucción izquierda de MBR a IR",
                             "Ciclo de captación - Transferir instrucción derecha de MBR a IBR",
+                            "Ciclo de ejecución - Decodificar instrucción LOAD MQ",
+                            "Ciclo de ejecución - Transferir MQ (5) a AC",
+                            "Ciclo de captación - Copiar PC a MAR",
+                            "Ciclo de captación - Leer palabra de memoria a MBR",
+                            "Ciclo de captación - Incrementar PC",
+                            "Ciclo de captación - Transferir instrucción izquierda de MBR a IR",
+                            "Ciclo de captación - Transferir instrucción derecha de MBR a IBR",
                             "Ciclo de ejecución - Decodificar instrucción STOR M(13)",
                             "Ciclo de ejecución - Extraer dirección del operando (13) y colocar en MAR",
-                            "Ciclo de ejecución - Copiar MQ (5) a MBR",
+                            "Ciclo de ejecución - Copiar AC (5) a MBR",
                             "Ciclo de ejecución - Escribir MBR (5) en memoria (13)"
                     };
                     break;
@@ -579,164 +1263,435 @@ public class ComputerSimulationGUI {
                     steps = new String[0];
                     break;
             }
+
+            microSteps = compileSteps(steps);
         }
         @Override
-        public void executeStep() {
-            if (currentStep >= steps.length) {
-                isRunning = false;
+        public String[] getTestCases() {
+            return new String[] {
+                    "1. Suma Básica (5 + 10)",
+                    "2. Multiplicación y División (20 * 4, 20 / 4)"
+            };
+        }
+    }
+
+    // Diagrama de la ruta de datos dibujado con Java2D. Cajas, etiquetas y buses inactivos se
+    // pintan una sola vez en una capa estática; en cada instantánea solo se repintan las
+    // regiones de las unidades cuyo valor o actividad cambió y de los buses que se activan o
+    // se desactivan con la micro-operación actual.
+    static class DatapathPanel extends JComponent {
+        private static final long serialVersionUID = 1L;
+
+        private static final int WIDTH = 620;
+        private static final int HEIGHT = 320;
+        private static final Color BACKGROUND = new Color(248, 250, 252);
+        private static final Color BOX_FILL = Color.WHITE;
+        private static final Color BOX_BORDER = new Color(100, 116, 139);
+        private static final Color BUS_IDLE = new Color(203, 213, 225);
+        private static final Color ACTIVE = new Color(59, 130, 246);
+        private static final Color ACTIVE_FILL = new Color(59, 130, 246, 50);
+        private static final Stroke IDLE_STROKE = new BasicStroke(2f);
+        private static final Stroke ACTIVE_STROKE = new BasicStroke(4f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+        private static final Font LABEL_FONT = new Font("Arial", Font.BOLD, 11);
+        private static final Font VALUE_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 13);
+        private static final Font SMALL_VALUE_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 10);
+
+        // Unidades del diagrama; las marcadas como solo IAS no existen en la Máquina Hipotética
+        enum Unit {
+            PC("PC", 20, 20, 110, 40, false),
+            MAR("MAR", 300, 20, 110, 40, false),
+            IR("IR", 20, 100, 110, 40, false),
+            MBR("MBR", 300, 100, 110, 40, false),
+            IBR("IBR", 20, 180, 110, 40, true),
+            ALU("ALU", 160, 180, 110, 40, false),
+            AC("AC", 300, 180, 110, 40, false),
+            CONTROL("Control", 20, 260, 110, 40, false),
+            MQ("MQ", 300, 260, 110, 40, true),
+            MEMORY("Memoria", 480, 20, 120, 280, false);
+
+            private final String label;
+            private final Rectangle bounds;
+            private final boolean iasOnly;
+
+            Unit(String label, int x, int y, int width, int height, boolean iasOnly) {
+                this.label = label;
+                this.bounds = new Rectangle(x, y, width, height);
+                this.iasOnly = iasOnly;
+            }
+        }
+
+        // Buses como polilíneas (x1, y1, x2, y2, ...); la flecha va en el último punto
+        enum Bus {
+            PC_MAR(false, 130, 40, 300, 40),
+            IR_MAR(false, 130, 108, 200, 108, 200, 52, 300, 52),
+            MAR_MEMORY(false, 410, 40, 480, 40),
+            MEMORY_MBR(false, 480, 112, 410, 112),
+            MBR_MEMORY(false, 410, 128, 480, 128),
+            MBR_IR(false, 300, 120, 130, 120),
+            MBR_IBR(true, 300, 132, 150, 132, 150, 170, 75, 170, 75, 180),
+            IR_PC(false, 50, 100, 50, 60),
+            MBR_AC(false, 340, 140, 340, 180),
+            AC_MBR(false, 370, 180, 370, 140),
+            MBR_ALU(false, 310, 140, 310, 160, 215, 160, 215, 180),
+            AC_ALU(false, 300, 192, 270, 192),
+            ALU_AC(false, 270, 208, 300, 208),
+            ALU_MQ(true, 215, 220, 215, 280, 300, 280),
+            MQ_MBR(true, 410, 280, 440, 280, 440, 136, 410, 136),
+            MQ_AC(true, 390, 260, 390, 220);
+
+            private final boolean iasOnly;
+            private final int[] points;
+            private final Rectangle bounds;
+
+            Bus(boolean iasOnly, int... points) {
+                this.iasOnly = iasOnly;
+                this.points = points;
+                Rectangle box = new Rectangle(points[0], points[1], 0, 0);
+                for (int i = 2; i < points.length; i += 2) {
+                    box.add(points[i], points[i + 1]);
+                }
+                // Margen para el trazo grueso y la punta de flecha
+                box.grow(8, 8);
+                this.bounds = box;
+            }
+        }
+
+        private final BiFunction<String, Integer, String> registerFormatter;
+        private BufferedImage staticLayer;
+        private boolean ias;
+        private SimulationSnapshot shown;
+        private EnumSet<Bus> activeBuses = EnumSet.noneOf(Bus.class);
+        private EnumSet<Unit> activeUnits = EnumSet.noneOf(Unit.class);
+
+        DatapathPanel(BiFunction<String, Integer, String> registerFormatter) {
+            this.registerFormatter = registerFormatter;
+            setPreferredSize(new Dimension(WIDTH, HEIGHT));
+            setOpaque(true);
+        }
+
+        // Mostrar una instantánea nueva pidiendo repintar solo lo que cambió
+        public void showSnapshot(SimulationSnapshot snapshot) {
+            EnumSet<Bus> buses = EnumSet.noneOf(Bus.class);
+            EnumSet<Unit> units = EnumSet.noneOf(Unit.class);
+            if (snapshot.getCurrentMicroOp() != null) {
+                activity(snapshot.getCurrentMicroOp(), buses, units);
+            }
+
+            boolean snapshotIas = snapshot.getRegisters().containsKey("MQ");
+            SimulationSnapshot previous = shown;
+            EnumSet<Bus> previousBuses = activeBuses;
+            EnumSet<Unit> previousUnits = activeUnits;
+            shown = snapshot;
+            activeBuses = buses;
+            activeUnits = units;
+
+            if (previous == null || snapshotIas != ias) {
+                // Otra máquina: cambian las unidades visibles y hay que rehacer la capa estática
+                ias = snapshotIas;
+                staticLayer = null;
+                repaint();
                 return;
             }
 
-            String step = steps[currentStep];
-
-            // Ejecutar la acción correspondiente al paso actual
-            if (step.contains("Copiar PC a MAR")) {
-                registers.put("MAR", registers.get("PC"));
-            } else if (step.contains("Leer palabra de memoria a MBR")) {
-                registers.put("MBR", memory[registers.get("MAR")]);
-            } else if (step.contains("Incrementar PC")) {
-                registers.put("PC", registers.get("PC") + 1);
-            } else if (step.contains("Transferir instrucción izquierda de MBR a IR")) {
-                // CORRECCIÓN: El MBR ya contiene la única instrucción (simplificación de 32 bits)
-                registers.put("IR", registers.get("MBR"));
-            } else if (step.contains("Transferir instrucción derecha de MBR a IBR")) {
-                // CORRECCIÓN: No hay instrucción derecha en esta simulación simplificada
-                registers.put("IBR", 0);
-            } else if (step.contains("Decodificar instrucción")) {
-                controlUnits.put("Control", "DECODIFICANDO");
-            } else if (step.contains("Extraer dirección del operando")) {
-                // Extraer la dirección de 12 bits del IR
-                int address = registers.get("IR") & 0xFFF;
-                registers.put("MAR", address);
-            } else if (step.contains("Leer dato de memoria a MBR")) {
-                registers.put("MBR", memory[registers.get("MAR")]);
-            } else if (step.contains("Transferir dato de MBR a AC")) {
-                registers.put("AC", registers.get("MBR"));
-            } else if (step.contains("ALU realizando operación de suma")) {
-                controlUnits.put("ALU", "SUMANDO");
-            } else if (step.contains("ALU realizando operación de resta")) {
-                controlUnits.put("ALU", "RESTANDO");
-            } else if (step.contains("ALU realizando operación de multiplicación")) {
-                controlUnits.put("ALU", "MULTIPLICANDO");
-            } else if (step.contains("ALU realizando operación de división")) {
-                controlUnits.put("ALU", "DIVIDIENDO");
-            } else if (step.contains("Sumar MBR")) {
-                // Extraer valores de la descripción del paso
-                int mbrValue = extractValue(step, "MBR");
-                int acValue = extractValue(step, "AC");
-                int result = extractResult(step);
-                registers.put("AC", result);
-                controlUnits.put("ALU", "INACTIVA");
-            } else if (step.contains("Restar MBR")) {
-                // Extraer valores de la descripción del paso
-                int mbrValue = extractValue(step, "MBR");
-                int acValue = extractValue(step, "AC");
-                int result = extractResult(step);
-                registers.put("AC", result);
-                controlUnits.put("ALU", "INACTIVA");
-            } else if (step.contains("Multiplicar AC")) {
-                // Extraer valores de la descripción del paso
-                int acValue = extractValue(step, "AC");
-                int mbrValue = extractValue(step, "MBR");
-                int result = extractResult(step);
-                registers.put("AC", result);
-                registers.put("MQ", 0); // Simplificación: en IAS real, MQ contendría la parte baja
-                controlUnits.put("ALU", "INACTIVA");
-            } else if (step.contains("Dividir AC")) {
-                // Extraer valores de la descripción del paso
-                int acValue = extractValue(step, "AC");
-                int mbrValue = extractValue(step, "MBR");
-                int result = extractResult(step);
-                registers.put("MQ", result);
-                registers.put("AC", 0); // Simplificación: en IAS real, AC contendría el resto
-                controlUnits.put("ALU", "INACTIVA");
-            } else if (step.contains("Copiar AC")) {
-                int acValue = extractValue(step, "AC");
-                registers.put("MBR", acValue);
-            } else if (step.contains("Copiar MQ")) {
-                int mqValue = extractValue(step, "MQ");
-                registers.put("MBR", mqValue);
-            } else if (step.contains("Escribir MBR")) {
-                int mbrValue = extractValue(step, "MBR");
-                int address = extractAddress(step);
-                memory[address] = mbrValue;
+            for (Bus bus : Bus.values()) {
+                if (buses.contains(bus) != previousBuses.contains(bus)) {
+                    repaint(bus.bounds);
+                }
             }
+            for (Unit unit : Unit.values()) {
+                if (isVisible(unit) && (units.contains(unit) != previousUnits.contains(unit)
+                        || !unitText(unit, snapshot).equals(unitText(unit, previous)))) {
+                    Rectangle dirty = new Rectangle(unit.bounds);
+                    dirty.grow(3, 3);
+                    repaint(dirty);
+                }
+            }
+        }
 
-            // Restablecer unidades de control si es necesario
-            if (currentStep < steps.length - 1 && !steps[currentStep + 1].contains("ALU") && !steps[currentStep + 1].contains("Decodificar")) {
-                controlUnits.put("Control", "INACTIVA");
+        // Buses y unidades que intervienen en cada micro-operación
+        private static void activity(MicroOp op, EnumSet<Bus> buses, EnumSet<Unit> units) {
+            switch (op) {
+                case PC_READY:
+                case INCREMENT_PC:
+                    units.add(Unit.PC);
+                    break;
+                case PC_TO_MAR:
+                    buses.add(Bus.PC_MAR);
+                    break;
+                case READ_INSTRUCTION:
+                case READ_WORD:
+                case READ_DATA:
+                    buses.add(Bus.MAR_MEMORY);
+                    buses.add(Bus.MEMORY_MBR);
+                    units.add(Unit.MEMORY);
+                    break;
+                case MBR_TO_IR:
+                case MBR_LEFT_TO_IR:
+                    buses.add(Bus.MBR_IR);
+                    break;
+                case MBR_RIGHT_TO_IBR:
+                    buses.add(Bus.MBR_IBR);
+                    break;
+                case DECODE:
+                case HALT:
+                    units.add(Unit.IR);
+                    units.add(Unit.CONTROL);
+                    break;
+                case IR_ADDRESS_TO_MAR:
+                    buses.add(Bus.IR_MAR);
+                    break;
+                case MBR_TO_AC:
+                case MBR_NEGATED_TO_AC:
+                case MBR_ABS_TO_AC:
+                case MBR_NEGATED_ABS_TO_AC:
+                    buses.add(Bus.MBR_AC);
+                    break;
+                case IO_TO_AC:
+                case AC_TO_IO:
+                    units.add(Unit.MAR);
+                    units.add(Unit.AC);
+                    break;
+                case ALU_ADD_START:
+                case ALU_SUB_START:
+                case ALU_MUL_START:
+                case ALU_DIV_START:
+                    units.add(Unit.ALU);
+                    units.add(Unit.CONTROL);
+                    break;
+                case ALU_ADD:
+                case ALU_ADD_ABS:
+                case ALU_SUB:
+                case ALU_SUB_ABS:
+                    buses.add(Bus.MBR_ALU);
+                    buses.add(Bus.AC_ALU);
+                    buses.add(Bus.ALU_AC);
+                    units.add(Unit.ALU);
+                    break;
+                case ALU_LSH:
+                case ALU_RSH:
+                    buses.add(Bus.AC_ALU);
+                    buses.add(Bus.ALU_AC);
+                    units.add(Unit.ALU);
+                    break;
+                case ALU_MUL:
+                case ALU_DIV:
+                    buses.add(Bus.MBR_ALU);
+                    buses.add(Bus.AC_ALU);
+                    units.add(Unit.ALU);
+                    break;
+                case MUL_STORE:
+                case DIV_STORE:
+                    buses.add(Bus.ALU_AC);
+                    buses.add(Bus.ALU_MQ);
+                    units.add(Unit.ALU);
+                    break;
+                case AC_TO_MBR:
+                case AC_ADDRESS_TO_MBR:
+                    buses.add(Bus.AC_MBR);
+                    break;
+                case MQ_TO_MBR:
+                    buses.add(Bus.MQ_MBR);
+                    break;
+                case MQ_TO_AC:
+                    buses.add(Bus.MQ_AC);
+                    break;
+                case MBR_TO_MEMORY:
+                    buses.add(Bus.MAR_MEMORY);
+                    buses.add(Bus.MBR_MEMORY);
+                    units.add(Unit.MEMORY);
+                    break;
+                case IR_ADDRESS_TO_PC:
+                case JUMP_IF_NEGATIVE:
+                case JUMP_IF_POSITIVE:
+                case JUMP_IF_ZERO:
+                case JUMP_IF_NONNEGATIVE:
+                    buses.add(Bus.IR_PC);
+                    break;
             }
         }
 
-        // Método auxiliar para extraer valores numéricos de las descripciones de pasos
-        private int extractValue(String step, String register) {
-            try {
-                int startIndex = step.indexOf(register) + register.length() + 2;
-                int endIndex = step.indexOf(')', startIndex);
-                String valueStr = step.substring(startIndex, endIndex);
-                return Integer.parseInt(valueStr);
-            } catch (Exception e) {
-                // Si hay un error al extraer el valor, devolver 0
-                return 0;
+        private boolean isVisible(Unit unit) {
+            return ias || !unit.iasOnly;
+        }
+
+        // Texto dinámico de una unidad: valor del registro, estado de la unidad o palabra en M[MAR]
+        private String unitText(Unit unit, SimulationSnapshot snapshot) {
+            switch (unit) {
+                case ALU:
+                    return snapshot.getControlUnits().getOrDefault("ALU", "");
+                case CONTROL:
+                    return snapshot.getControlUnits().getOrDefault("Control", "");
+                case MEMORY: {
+                    int mar = snapshot.getRegisters().getOrDefault("MAR", 0);
+                    return mar < snapshot.getMemorySize()
+                            ? String.format("M[0x%03X] = %d", mar, snapshot.getWord(mar)) : "";
+                }
+                default:
+                    Integer value = snapshot.getRegisters().get(unit.name());
+                    return value == null ? "" : registerFormatter.apply(unit.name(), value);
             }
         }
 
-        // Método auxiliar para extraer el resultado de una operación
-        private int extractResult(String step) {
+        @Override
+        protected void paintComponent(Graphics g) {
+            Rectangle clip = g.getClipBounds();
+            if (clip == null) {
+                clip = new Rectangle(0, 0, getWidth(), getHeight());
+            }
+            g.setColor(BACKGROUND);
+            g.fillRect(clip.x, clip.y, clip.width, clip.height);
+            if (staticLayer == null) {
+                staticLayer = renderStaticLayer();
+            }
+            g.drawImage(staticLayer, 0, 0, null);
+            if (shown == null) {
+                return;
+            }
+
+            Graphics2D g2 = (Graphics2D) g.create();
             try {
-                int startIndex = step.indexOf('=') + 2;
-                return Integer.parseInt(step.substring(startIndex));
-            } catch (Exception e) {
-                // Si hay un error al extraer el resultado, devolver 0
-                return 0;
+                g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+
+                g2.setColor(ACTIVE);
+                g2.setStroke(ACTIVE_STROKE);
+                for (Bus bus : activeBuses) {
+                    if (isVisibleBus(bus) && clip.intersects(bus.bounds)) {
+                        drawBus(g2, bus);
+                    }
+                }
+
+                for (Unit unit : Unit.values()) {
+                    if (isVisible(unit) && clip.intersects(unit.bounds)) {
+                        drawUnitState(g2, unit);
+                    }
+                }
+            } finally {
+                g2.dispose();
             }
         }
 
-        // Método auxiliar para extraer una dirección de memoria
-        private int extractAddress(String step) {
+        private boolean isVisibleBus(Bus bus) {
+            return ias || !bus.iasOnly;
+        }
+
+        // Capa estática: cajas, etiquetas y buses en reposo de la máquina actual
+        private BufferedImage renderStaticLayer() {
+            BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g2 = image.createGraphics();
             try {
-                int startIndex = step.indexOf('(') + 1;
-                int endIndex = step.indexOf(')', startIndex);
-                String addressStr = step.substring(startIndex, endIndex);
-                if (addressStr.startsWith("0x")) {
-                    return Integer.parseInt(addressStr.substring(2), 16);
-                } else {
-                    return Integer.parseInt(addressStr);
+                g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+                g2.setColor(BACKGROUND);
+                g2.fillRect(0, 0, WIDTH, HEIGHT);
+
+                g2.setColor(BUS_IDLE);
+                g2.setStroke(IDLE_STROKE);
+                for (Bus bus : Bus.values()) {
+                    if (isVisibleBus(bus)) {
+                        drawBus(g2, bus);
+                    }
                 }
-            } catch (Exception e) {
-                // Si hay un error al extraer la dirección, devolver 0
-                return 0;
+
+                g2.setFont(LABEL_FONT);
+                for (Unit unit : Unit.values()) {
+                    if (!isVisible(unit)) {
+                        continue;
+                    }
+                    Rectangle r = unit.bounds;
+                    g2.setColor(BOX_FILL);
+                    g2.fillRoundRect(r.x, r.y, r.width, r.height, 8, 8);
+                    g2.setColor(BOX_BORDER);
+                    g2.setStroke(IDLE_STROKE);
+                    g2.drawRoundRect(r.x, r.y, r.width, r.height, 8, 8);
+                    g2.drawString(unit.label, r.x + 6, r.y + 13);
+                }
+            } finally {
+                g2.dispose();
             }
+            return image;
         }
 
-        @Override
-        public String[] getTestCases() {
-            return new String[] {
-                    "1. Suma Básica (5 + 10)",
-                    "2. Multiplicación y División (20 * 4, 20 / 4)"
-            };
+        private void drawUnitState(Graphics2D g2, Unit unit) {
+            Rectangle r = unit.bounds;
+            if (activeUnits.contains(unit)) {
+                g2.setColor(ACTIVE_FILL);
+                g2.fillRoundRect(r.x, r.y, r.width, r.height, 8, 8);
+                g2.setColor(ACTIVE);
+                g2.setStroke(IDLE_STROKE);
+                g2.drawRoundRect(r.x, r.y, r.width, r.height, 8, 8);
+            }
+
+            String text = unitText(unit, shown);
+            g2.setFont(VALUE_FONT);
+            if (g2.getFontMetrics().stringWidth(text) > r.width - 8) {
+                g2.setFont(SMALL_VALUE_FONT);
+            }
+            g2.setColor(Color.DARK_GRAY);
+            FontMetrics metrics = g2.getFontMetrics();
+            int x = r.x + Math.max(4, (r.width - metrics.stringWidth(text)) / 2);
+            int y = unit == Unit.MEMORY ? r.y + r.height / 2 : r.y + r.height - 8;
+            g2.drawString(text, x, y);
+        }
+
+        private static void drawBus(Graphics2D g2, Bus bus) {
+            int[] p = bus.points;
+            for (int i = 0; i + 3 < p.length; i += 2) {
+                g2.drawLine(p[i], p[i + 1], p[i + 2], p[i + 3]);
+            }
+
+            // Punta de flecha en el extremo final
+            int n = p.length;
+            double angle = Math.atan2(p[n - 1] - p[n - 3], p[n - 2] - p[n - 4]);
+            int size = 7;
+            int[] xs = {p[n - 2],
+                    (int) Math.round(p[n - 2] - size * Math.cos(angle - Math.PI / 6)),
+                    (int) Math.round(p[n - 2] - size * Math.cos(angle + Math.PI / 6))};
+            int[] ys = {p[n - 1],
+                    (int) Math.round(p[n - 1] - size * Math.sin(angle - Math.PI / 6)),
+                    (int) Math.round(p[n - 1] - size * Math.sin(angle + Math.PI / 6))};
+            g2.fillPolygon(xs, ys, 3);
         }
     }
 
     // Clase para la interfaz gráfica
     static class SimulationGUI extends JFrame {
+        private static final long serialVersionUID = 1L;
+
         private ComputerSimulationBase simulation;
         private JLabel titleLabel;
         private JLabel stepLabel;
         private JLabel actionLabel;
         private JProgressBar progressBar;
+        private DatapathPanel datapathPanel;
         private JTable registersTable;
         private JTable controlUnitsTable;
         private JTable memoryTable;
         private JButton nextButton;
+        private JButton runButton;
         private JButton resetButton;
         private JComboBox<String> simulationComboBox;
         private JComboBox<String> testCaseComboBox;
         private JButton startButton;
 
+        // Fila de cada registro, unidad de control y dirección de memoria en su tabla, para
+        // actualizar solo las celdas que cambian
+        private final Map<String, Integer> registerRows = new HashMap<>();
+        private final Map<String, Integer> controlUnitRows = new HashMap<>();
+        private final Map<Integer, Integer> memoryRows = new HashMap<>();
+
+        // El motor publica instantáneas; un temporizador de Swing dibuja la última
+        // disponible unas 30 veces por segundo
+        private static final int FRAME_MILLIS = 33;
+        private static final long RUN_STEP_DELAY_MILLIS = 250;
+        private SnapshotPublisher publisher;
+        private SimulationRunner runner;
+        private SimulationSnapshot rendered;
+        private final Timer frameTimer = new Timer(FRAME_MILLIS, e -> renderLatestSnapshot());
+
         public SimulationGUI() {
             setTitle("Simulación de Arquitectura de Computadoras");
-            setSize(1000, 700);
+            setSize(1000, 1000);
             setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
             setLocationRelativeTo(null);
 
@@ -829,29 +1784,57 @@ public class ComputerSimulationGUI {
             buttonPanel.setBorder(new EmptyBorder(10, 10, 10, 10));
 
             nextButton = new JButton("Siguiente Paso");
+            runButton = new JButton("Ejecutar");
             resetButton = new JButton("Reiniciar");
 
             nextButton.addActionListener(e -> {
-                if (simulation != null) {
+                if (simulation != null && !isRunning()) {
                     simulation.nextStep();
                 }
             });
 
+            runButton.addActionListener(e -> {
+                if (simulation == null) {
+                    return;
+                }
+                if (isRunning()) {
+                    stopRunner();
+                } else {
+                    runner = new SimulationRunner(simulation, RUN_STEP_DELAY_MILLIS);
+                    runner.start();
+                    runButton.setText("Pausar");
+                    nextButton.setEnabled(false);
+                }
+            });
+
             resetButton.addActionListener(e -> {
                 if (simulation != null) {
+                    stopRunner();
                     simulation.reset();
                 }
             });
 
             nextButton.setEnabled(false);
+            runButton.setEnabled(false);
             resetButton.setEnabled(false);
 
             buttonPanel.add(nextButton);
+            buttonPanel.add(runButton);
             buttonPanel.add(resetButton);
 
+            // Diagrama de la ruta de datos
+            datapathPanel = new DatapathPanel(this::formatRegister);
+            JPanel datapathContainer = new JPanel(new BorderLayout());
+            datapathContainer.setBorder(new TitledBorder("Ruta de Datos"));
+            datapathContainer.add(datapathPanel, BorderLayout.CENTER);
+
+            JPanel centerPanel = new JPanel(new BorderLayout());
+            centerPanel.add(progressBar, BorderLayout.NORTH);
+            centerPanel.add(datapathContainer, BorderLayout.CENTER);
+
             // Ensamblar la ventana
             mainPanel.add(infoPanel, BorderLayout.NORTH);
-            mainPanel.add(progressBar, BorderLayout.CENTER);
+            mainPanel.add(centerPanel, BorderLayout.CENTER);
             mainPanel.add(tablesPanel, BorderLayout.SOUTH);
 
             add(topPanel, BorderLayout.NORTH);
@@ -889,173 +1872,230 @@ public class ComputerSimulationGUI {
             int selectedTestCase = testCaseComboBox.getSelectedIndex();
 
             if (selectedSimulation != null && selectedTestCase >= 0) {
+                stopRunner();
                 if (selectedSimulation.equals("Máquina Hipotética")) {
                     simulation = new HypotheticalMachineSimulation();
                 } else {
                     simulation = new IASSimulation();
                 }
 
-                simulation.setGUI(this);
                 simulation.loadTestCase(selectedTestCase);
+                publisher = new SnapshotPublisher(simulation);
+                rendered = null;
 
                 titleLabel.setText(simulation.getSimulationName());
-                updateDisplay();
+                renderLatestSnapshot();
+                frameTimer.start();
 
                 nextButton.setEnabled(true);
+                runButton.setEnabled(true);
                 resetButton.setEnabled(true);
             }
         }
 
-        public void updateDisplay() {
-            if (simulation == null) return;
+        private boolean isRunning() {
+            return runner != null && runner.isRunning();
+        }
+
+        private void stopRunner() {
+            if (runner != null) {
+                runner.stop();
+                runner = null;
+            }
+            runButton.setText("Ejecutar");
+            nextButton.setEnabled(simulation != null);
+        }
+
+        // Dibujar la última instantánea publicada: entera si el estado se recargó y, si no,
+        // solo las celdas que difieren de la instantánea dibujada anteriormente
+        private void renderLatestSnapshot() {
+            if (runner != null && !runner.isRunning()) {
+                RuntimeException error = runner.getError();
+                stopRunner();
+                if (error != null) {
+                    JOptionPane.showMessageDialog(this, "Error en la simulación: " + error.getMessage(),
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+
+            SimulationSnapshot snapshot = publisher.getSnapshot();
+            if (snapshot == rendered) {
+                return;
+            }
+            SimulationSnapshot previous = rendered;
+            rendered = snapshot;
+
+            updateStepInfo(snapshot);
+            datapathPanel.showSnapshot(snapshot);
+            if (previous == null || previous.getBaseVersion() != snapshot.getBaseVersion()) {
+                refreshRegistersTable();
+                refreshControlUnitsTable();
+                refreshMemoryTable();
+            } else {
+                updateChangedCells(previous, snapshot);
+            }
+
+            if (snapshot.isCompleted() && (previous == null || !previous.isCompleted())) {
+                simulationCompleted();
+            }
+        }
+
+        private void updateChangedCells(SimulationSnapshot previous, SimulationSnapshot snapshot) {
+            DefaultTableModel registersModel = (DefaultTableModel) registersTable.getModel();
+            if (snapshot.getRegisters() != previous.getRegisters()) {
+                for (Map.Entry<String, Integer> entry : snapshot.getRegisters().entrySet()) {
+                    Integer row = registerRows.get(entry.getKey());
+                    if (row != null && !entry.getValue().equals(previous.getRegisters().get(entry.getKey()))) {
+                        registersModel.setValueAt(formatRegister(entry.getKey(), entry.getValue()), row, 1);
+                    }
+                }
+            }
 
+            DefaultTableModel controlModel = (DefaultTableModel) controlUnitsTable.getModel();
+            if (snapshot.getControlUnits() != previous.getControlUnits()) {
+                for (Map.Entry<String, String> entry : snapshot.getControlUnits().entrySet()) {
+                    Integer row = controlUnitRows.get(entry.getKey());
+                    if (row != null && !entry.getValue().equals(previous.getControlUnits().get(entry.getKey()))) {
+                        controlModel.setValueAt(entry.getValue(), row, 1);
+                    }
+                }
+            }
+
+            if (!snapshot.sharesMemoryWith(previous)) {
+                // Una palabra de instrucción que deja de ser cero añade una fila: reconstruir
+                if (displayedMemoryChanged(previous, snapshot)) {
+                    refreshMemoryTable();
+                    return;
+                }
+                DefaultTableModel memoryModel = (DefaultTableModel) memoryTable.getModel();
+                for (Map.Entry<Integer, Integer> entry : memoryRows.entrySet()) {
+                    int address = entry.getKey();
+                    if (snapshot.getWord(address) != previous.getWord(address)) {
+                        Object[] cells = memoryRow(address, snapshot.getWord(address));
+                        memoryModel.setValueAt(cells[1], entry.getValue(), 1);
+                        memoryModel.setValueAt(cells[2], entry.getValue(), 2);
+                    }
+                }
+            }
+        }
+
+        private boolean displayedMemoryChanged(SimulationSnapshot previous, SimulationSnapshot snapshot) {
+            int first = simulation instanceof HypotheticalMachineSimulation ? 0x100 : 0;
+            int last = simulation instanceof HypotheticalMachineSimulation ? 0x123 : 4;
+            for (int i = first; i <= last; i++) {
+                if ((snapshot.getWord(i) != 0) != (previous.getWord(i) != 0)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void updateStepInfo(SimulationSnapshot snapshot) {
             // Actualizar etiquetas
-            stepLabel.setText("Paso: " + (simulation.getCurrentStep() + 1) + "/" + simulation.getTotalSteps());
-            actionLabel.setText("Acción: " + simulation.getCurrentStepDescription());
+            stepLabel.setText("Paso: " + (snapshot.getCurrentStep() + 1) + "/" + snapshot.getTotalSteps());
+            actionLabel.setText("Acción: " + snapshot.getStepDescription());
 
             // Actualizar barra de progreso
-            int totalSteps = simulation.getTotalSteps();
-            int progress = totalSteps > 0 ? (int) ((double) simulation.getCurrentStep() / totalSteps * 100) : 0;
+            int totalSteps = snapshot.getTotalSteps();
+            int progress = totalSteps > 0 ? (int) ((double) snapshot.getCurrentStep() / totalSteps * 100) : 0;
             progressBar.setValue(progress);
             progressBar.setString(progress + "%");
+        }
 
-            // Actualizar tabla de registros
+        private void refreshRegistersTable() {
             DefaultTableModel registersModel = (DefaultTableModel) registersTable.getModel();
             registersModel.setRowCount(0);
+            registerRows.clear();
 
-            for (Map.Entry<String, Integer> entry : simulation.registers.entrySet()) {
+            for (Map.Entry<String, Integer> entry : rendered.getRegisters().entrySet()) {
                 String register = entry.getKey();
-                int value = entry.getValue();
-                String bits = "";
-
-                if (simulation instanceof HypotheticalMachineSimulation) {
-                    if (register.equals("PC") || register.equals("MAR")) {
-                        bits = "12 bits";
-                        registersModel.addRow(new Object[]{register, String.format("0x%03X", value), bits});
-                    } else {
-                        bits = "16 bits";
-                        registersModel.addRow(new Object[]{register, String.format("0x%04X", value), bits});
-                    }
-                } else { // IAS
-                    if (register.equals("PC") || register.equals("MAR")) {
-                        bits = "12 bits";
-                        registersModel.addRow(new Object[]{register, String.format("0x%03X", value), bits});
-                    } else if (register.equals("IR") || register.equals("IBR")) {
-                        bits = "20 bits";
-                        registersModel.addRow(new Object[]{register, String.format("0x%05X", value), bits});
-                    } else {
-                        bits = "40 bits";
-                        registersModel.addRow(new Object[]{register, String.format("0x%010X", value), bits});
-                    }
-                }
+                registerRows.put(register, registersModel.getRowCount());
+                registersModel.addRow(new Object[]{register, formatRegister(register, entry.getValue()), registerBits(register)});
+            }
+        }
+
+        private String registerBits(String register) {
+            if (register.equals("PC") || register.equals("MAR")) {
+                return "12 bits";
+            }
+            if (simulation instanceof HypotheticalMachineSimulation) {
+                return "16 bits";
             }
+            return register.equals("IR") || register.equals("IBR") ? "20 bits" : "40 bits";
+        }
 
-            // Actualizar tabla de unidades de control
+        private String formatRegister(String register, int value) {
+            switch (registerBits(register)) {
+                case "12 bits":
+                    return String.format("0x%03X", value);
+                case "16 bits":
+                    return String.format("0x%04X", value);
+                case "20 bits":
+                    return String.format("0x%05X", value);
+                default:
+                    return String.format("0x%010X", value);
+            }
+        }
+
+        private void refreshControlUnitsTable() {
             DefaultTableModel controlModel = (DefaultTableModel) controlUnitsTable.getModel();
             controlModel.setRowCount(0);
+            controlUnitRows.clear();
 
-            for (Map.Entry<String, String> entry : simulation.controlUnits.entrySet()) {
-                String unit = entry.getKey();
-                String state = entry.getValue();
-                controlModel.addRow(new Object[]{unit, state});
+            for (Map.Entry<String, String> entry : rendered.getControlUnits().entrySet()) {
+                controlUnitRows.put(entry.getKey(), controlModel.getRowCount());
+                controlModel.addRow(new Object[]{entry.getKey(), entry.getValue()});
             }
+        }
 
-            // Actualizar tabla de memoria
+        private void refreshMemoryTable() {
             DefaultTableModel memoryModel = (DefaultTableModel) memoryTable.getModel();
             memoryModel.setRowCount(0);
+            memoryRows.clear();
 
             if (simulation instanceof HypotheticalMachineSimulation) {
                 // Mostrar instrucciones
                 for (int i = 0x100; i <= 0x123; i++) {
-                    if (simulation.memory[i] != 0) {
-                        int value = simulation.memory[i];
-                        String content = "";
-
-                        if (i < 0x200) { // Es una instrucción
-                            // Extraer opcode (4 bits) y dirección (12 bits)
-                            int opcode = (value >> 12) & 0xF;
-                            int address = value & 0xFFF;
-
-                            // Convertir opcode a binario de 4 bits
-                            String opcodeBinary = String.format("%4s", Integer.toBinaryString(opcode)).replace(' ', '0');
-
-                            // Buscar la instrucción en el conjunto de instrucciones
-                            Map<String, String> instructionSet = simulation.getInstructionSet();
-                            String instructionName = instructionSet.get(opcodeBinary);
-                            if (instructionName == null) {
-                                instructionName = "???";
-                            }
-
-                            content = instructionName + " M(0x" + Integer.toHexString(address).toUpperCase() + ")";
-                        } else { // Es un dato
-                            content = Integer.toString(value);
-                        }
-
-                        memoryModel.addRow(new Object[]{
-                                String.format("0x%03X", i),
-                                String.format("0x%04X", value),
-                                content
-                        });
+                    if (rendered.getWord(i) != 0) {
+                        addMemoryRow(memoryModel, i);
                     }
                 }
 
                 // Mostrar datos
                 for (int i = 0x200; i < 0x203; i++) {
-                    memoryModel.addRow(new Object[]{
-                            String.format("0x%03X", i),
-                            String.format("0x%04X", simulation.memory[i]),
-                            Integer.toString(simulation.memory[i])
-                    });
-
+                    addMemoryRow(memoryModel, i);
                 }
             } else { // IAS
                 // Mostrar instrucciones
                 for (int i = 0; i < 5; i++) {
-                    if (simulation.memory[i] != 0) {
-                        int value = simulation.memory[i];
-                        String content = "";
-
-                        // Extraer instrucción izquierda (20 bits)
-                        int leftInstr = value;
-                        int opcode = leftInstr >> 12;
-                        int address = leftInstr & 0xFFF;
-
-                        // Convertir opcode a binario de 8 bits
-                        String opcodeStr = String.format("%8s", Integer.toBinaryString(opcode)).replace(' ', '0');
-
-                        // Buscar la instrucción en el conjunto de instrucciones
-                        Map<String, String> instructionSet = simulation.getInstructionSet();
-                        String instructionName = instructionSet.get(opcodeStr);
-                        if (instructionName == null) {
-                            instructionName = "???";
-                        }
-
-                        // Corregir aquí: cambiar la forma de construir la cadena de contenido
-                        content = ((IASSimulation) simulation).instructionSet.getOrDefault(opcodeStr, "???") +
-                                 + address + ")";
-
-                        memoryModel.addRow(new Object[]{
-                                String.format("0x%03X", i),
-                                String.format("0x%010X", value),
-                                content
-                        });
+                    if (rendered.getWord(i) != 0) {
+                        addMemoryRow(memoryModel, i);
                     }
                 }
 
                 // Mostrar datos
                 for (int i = 10; i <= 13; i++) {
-
-                    memoryModel.addRow(new Object[]{
-                            String.format("0x%03X", i),
-                            String.format("0x%010X", simulation.memory[i]),
-                            Integer.toString(simulation.memory[i])
-                    });
-
-
+                    addMemoryRow(memoryModel, i);
                 }
             }
         }
 
+        private void addMemoryRow(DefaultTableModel memoryModel, int address) {
+            memoryRows.put(address, memoryModel.getRowCount());
+            memoryModel.addRow(memoryRow(address, rendered.getWord(address)));
+        }
+
+        // Dirección, valor y contenido (instrucción desensamblada o dato) de una palabra
+        private Object[] memoryRow(int address, int value) {
+            boolean hypothetical = simulation instanceof HypotheticalMachineSimulation;
+            boolean instruction = hypothetical ? address < 0x200 : address < 10;
+            return new Object[]{
+                    String.format("0x%03X", address),
+                    String.format(hypothetical ? "0x%04X" : "0x%010X", value),
+                    instruction ? simulation.disassemble(value) : Integer.toString(value)
+            };
+        }
+
         public void simulationCompleted() {
             JOptionPane.showMessageDialog(this,
                     "Simulación completada con éxito",